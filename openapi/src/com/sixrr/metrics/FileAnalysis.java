@@ -0,0 +1,51 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.metrics;
+
+import com.intellij.psi.PsiElement;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An intermediate analysis of a single element, which is computed at most once while the file containing the element
+ * is processed, and shared by all calculators processing that file.  The values are released as soon as the file has
+ * been processed, so they never keep the PSI of a file alive for the rest of the run.  Analyses are identified by
+ * instance, so every analysis should be declared as a constant and obtained through
+ * {@link MetricsExecutionContext#getFileAnalysis(FileAnalysis, PsiElement)}.
+ */
+public abstract class FileAnalysis<E extends PsiElement, T> {
+
+    private final String name;
+
+    protected FileAnalysis(@NonNls @NotNull String name) {
+        this.name = name;
+    }
+
+    /**
+     * Computes the analysis of an element.  Called at most once for each element of the file being processed, and
+     * every time the analysis is requested for elements outside of it.
+     * @param element  the element to analyze.
+     * @return  the analysis.
+     */
+    @NotNull
+    public abstract T compute(@NotNull E element);
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.metrics;
+
+/**
+ * A metric calculator whose results depend only on the contents of the files it processes, and can be summed per
+ * file.  Processing several files gives the same results as processing each file with a calculator of its own and
+ * adding up the values posted for each measured object, where a numerator and denominator are added up separately.
+ * The results of such calculators are kept per file, in memory and on disk, so a later run only needs to process the
+ * files which changed in the meantime.  Results kept on disk are calculated again when the plugin providing the
+ * metric is updated.  To attribute results to files, {@link #endMetricsRun()} is called after every file the
+ * calculator processes.  It must post the values of the files processed since the previous call, and then forget
+ * them.
+ */
+public interface FileLocalMetricCalculator extends MetricCalculator {
+}
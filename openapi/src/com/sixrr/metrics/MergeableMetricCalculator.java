@@ -0,0 +1,37 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.metrics;
+
+/**
+ * A metric calculator which can be used in a parallel metrics run.  In such a run, every worker thread gets its own
+ * calculator instance, created by the same {@link Metric}, and processes a subset of the files in the analysis scope.
+ * When all files have been processed, the state of every worker calculator is merged into a single calculator,
+ * after which {@link #endMetricsRun()} is called on that calculator only.
+ * <p>
+ * Calculators which do not implement this interface are still supported in a parallel run, but will process files
+ * one at a time.
+ */
+public interface MergeableMetricCalculator extends MetricCalculator {
+
+    /**
+     * Merge the intermediate results of another calculator into this one.  This method is called after all
+     * files have been processed and before {@link #endMetricsRun()}.
+     * @param other  a calculator created by the same metric for the same run, which has processed a different set of
+     *               files.  It will not be used after this call.
+     */
+    void merge(MetricCalculator other);
+}
@@ -18,7 +18,9 @@ package com.sixrr.metrics;
 
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.UserDataHolder;
+import com.intellij.psi.PsiElement;
 import com.intellij.analysis.AnalysisScope;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * The MetricsExecutionContext is used .  One MetricsExecutionContext is created for each metrics run, and shared by
@@ -37,4 +39,28 @@ public interface MetricsExecutionContext extends UserDataHolder {
      */
     AnalysisScope getScope();
 
+    /**
+     * The number of threads the run uses to process files.  Calculators may use up to this many threads for
+     * expensive work of their own, like building data shared by all calculators.
+     * @return  the number of threads, at least one.
+     */
+    int getParallelism();
+
+    /**
+     * The shared analysis for this run, which is created on first use and reused by all calculators afterwards.
+     * @param analysis  the analysis to look up.
+     * @return  the analysis result for the run.
+     */
+    @NotNull
+    <T> T getSharedAnalysis(@NotNull SharedAnalysis<T> analysis);
+
+    /**
+     * The file analysis of an element, which is computed on first use and reused by all calculators until the file
+     * being processed is finished.  Elements of other files are analyzed again on every request.
+     * @param analysis  the analysis to look up.
+     * @param element  the element to analyze.
+     * @return  the analysis result for the element.
+     */
+    @NotNull
+    <E extends PsiElement, T> T getFileAnalysis(@NotNull FileAnalysis<E, T> analysis, @NotNull E element);
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.sixrr.metrics;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An intermediate analysis which is computed at most once per metrics run, and shared by all calculators which need
+ * it.  Analyses are identified by instance, so every analysis should be declared as a constant and obtained through
+ * {@link MetricsExecutionContext#getSharedAnalysis(SharedAnalysis)}.  Because calculators may run on several threads
+ * at once, the value created must be safe to use concurrently.
+ */
+public abstract class SharedAnalysis<T> {
+
+    private final String name;
+
+    protected SharedAnalysis(@NonNls @NotNull String name) {
+        this.name = name;
+    }
+
+    /**
+     * Creates the analysis for a metrics run.  Called at most once per run, the first time the analysis is requested.
+     * @param executionContext  the context of the run.
+     * @return  the analysis.
+     */
+    @NotNull
+    public abstract T create(@NotNull MetricsExecutionContext executionContext);
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
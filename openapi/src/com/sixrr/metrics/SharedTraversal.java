@@ -0,0 +1,75 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.sixrr.metrics;
+
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiElementVisitor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Walks a PSI tree once on behalf of any number of non-recursive visitors.  The walk is iterative, so deeply nested
+ * trees do not overflow the stack, and every element is offered to all visitors before its children are.
+ */
+public final class SharedTraversal {
+
+    private final PsiElementVisitor[] visitors;
+    private final TraversalListener[] listeners;
+
+    public SharedTraversal(@NotNull List<? extends PsiElementVisitor> visitors) {
+        this.visitors = visitors.toArray(new PsiElementVisitor[visitors.size()]);
+        final List<TraversalListener> listeners = new ArrayList<TraversalListener>(visitors.size());
+        for (PsiElementVisitor visitor : visitors) {
+            if (visitor instanceof TraversalListener) {
+                listeners.add((TraversalListener) visitor);
+            }
+        }
+        this.listeners = listeners.toArray(new TraversalListener[listeners.size()]);
+    }
+
+    public void walk(@NotNull PsiElement root) {
+        if (visitors.length == 0) {
+            return;
+        }
+        PsiElement element = root;
+        while (true) {
+            for (PsiElementVisitor visitor : visitors) {
+                element.accept(visitor);
+            }
+            final PsiElement firstChild = element.getFirstChild();
+            if (firstChild != null) {
+                element = firstChild;
+                continue;
+            }
+            while (true) {
+                for (TraversalListener listener : listeners) {
+                    listener.elementFinished(element);
+                }
+                if (element == root) {
+                    return;
+                }
+                final PsiElement nextSibling = element.getNextSibling();
+                if (nextSibling != null) {
+                    element = nextSibling;
+                    break;
+                }
+                element = element.getParent();
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.sixrr.metrics;
+
+import com.intellij.psi.PsiElementVisitor;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A metric calculator which lets the metrics run walk the files in the analysis scope for it.  All calculators of a
+ * run which provide a traversal visitor share a single walk of every file, instead of each walking the file again.
+ */
+public interface SharedTraversalMetricCalculator extends MetricCalculator {
+
+    /**
+     * The visitor to offer every element of every file to, in document order.  The visitor must not visit the
+     * children of an element itself.  If it also implements {@link TraversalListener}, it is notified when all
+     * children of an element have been visited.
+     * @return  the visitor, or null if {@link #processFile(com.intellij.psi.PsiFile)} must be called instead.
+     */
+    @Nullable
+    PsiElementVisitor getTraversalVisitor();
+}
@@ -13,18 +13,20 @@
  *  See the License for the specific language governing permissions and
  *  limitations under the License.
  */
+package com.sixrr.metrics;
 
-package com.sixrr.stockmetrics.utils;
+import com.intellij.psi.PsiElement;
 
-import com.intellij.psi.PsiMethod;
-import com.intellij.psi.PsiReference;
-
-import java.util.Set;
-
-public interface MethodCallMap {
-    Set<PsiReference> calculateMethodCallPoints(PsiMethod method);
-
-    Set<PsiReference> calculateTestMethodCallPoints(PsiMethod method);
+/**
+ * Implemented by traversal visitors which need to know when the subtree of an element has been walked, for example
+ * to post a result for a method after all of its statements have been counted.
+ * @see SharedTraversal
+ */
+public interface TraversalListener {
 
-    Set<PsiReference> calculateProductMethodCallPoints(PsiMethod method);
+    /**
+     * Called after the element and all of its descendants have been visited.
+     * @param element  the element which has been finished.
+     */
+    void elementFinished(PsiElement element);
 }
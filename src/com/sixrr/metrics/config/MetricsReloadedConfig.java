@@ -29,6 +29,7 @@ public final class MetricsReloadedConfig implements PersistentStateComponent<Met
     public String selectedProfile = "";
     public boolean autoscroll = false;
     public boolean showOnlyWarnings = false;
+    public boolean parallelCalculation = false;
 
     private MetricsReloadedConfig() {}
 
@@ -60,6 +61,14 @@ public final class MetricsReloadedConfig implements PersistentStateComponent<Met
         this.showOnlyWarnings = showOnlyWarnings;
     }
 
+    public boolean isParallelCalculation() {
+        return parallelCalculation;
+    }
+
+    public void setParallelCalculation(boolean parallelCalculation) {
+        this.parallelCalculation = parallelCalculation;
+    }
+
     @Nullable
     @Override
     public MetricsReloadedConfig getState() {
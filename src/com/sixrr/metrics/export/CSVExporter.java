@@ -18,32 +18,80 @@ package com.sixrr.metrics.export;
 
 import com.sixrr.metrics.Metric;
 import com.sixrr.metrics.MetricCategory;
-import com.sixrr.metrics.metricModel.MetricAbbreviationComparator;
+import com.sixrr.metrics.MetricType;
 import com.sixrr.metrics.metricModel.MetricsResult;
 import com.sixrr.metrics.metricModel.MetricsRun;
-import com.sixrr.metrics.utils.FormatUtils;
 import org.jetbrains.annotations.NonNls;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
 public class CSVExporter implements Exporter {
 
+    /**
+     * Writes comma separated rows.  Absent values are written as n/a, and values containing a comma are quoted.
+     */
+    static final ExportUtils.RowWriter ROW_WRITER = new ExportUtils.RowWriter() {
+        @Override
+        public void writeHeader(@NonNls PrintWriter writer, String type, Metric[] metrics) {
+            writer.print(type);
+            for (final Metric metric : metrics) {
+                writer.print(',');
+                writer.print(metric.getAbbreviation());
+            }
+            writer.println();
+        }
+
+        @Override
+        public void writeRow(@NonNls PrintWriter writer, String measuredObject, MetricType[] types,
+                             double[][] columns, BitSet[] present, int row, ValueFormatter formatter) {
+            writer.print('\"');
+            writer.print(measuredObject);
+            writer.print('\"');
+            for (int i = 0; i < types.length; i++) {
+                writer.print(',');
+                if (present[i].get(row)) {
+                    formatter.write(writer, types[i], columns[i][row], ',');
+                } else {
+                    writer.print("n/a");
+                }
+            }
+            writer.println();
+        }
+
+        @Override
+        public void writeFooter(PrintWriter writer) {
+            writer.println();
+        }
+    };
+
     private final MetricsRun run;
+    private final int parallelism;
 
     public CSVExporter(MetricsRun run) {
+        this(run, 1);
+    }
+
+    /**
+     * @param parallelism  the number of threads to render the export with.  Output is the same for any value.
+     */
+    public CSVExporter(MetricsRun run, int parallelism) {
         this.run = run;
+        this.parallelism = parallelism;
     }
 
     @Override
     public void export(String fileName) throws IOException {
-        PrintWriter writer = new PrintWriter(fileName);
+        final PrintWriter writer = ExportUtils.createWriter(fileName);
         try {
             export(writer);
         } finally {
             writer.close();
         }
+        ExportUtils.checkError(writer, fileName);
     }
 
     @Override
@@ -51,48 +99,16 @@ public class CSVExporter implements Exporter {
         writer.print(run.getProfileName());
         writer.print(',');
         writer.println(run.getTimestamp());
+        final List<ExportUtils.Block> blocks = new ArrayList<ExportUtils.Block>();
         for (MetricCategory category : MetricCategory.values()) {
-            writeResultsForCategory(category, writer);
+            addBlocksForCategory(category, blocks);
         }
+        ExportUtils.writeBlocks(blocks, writer, parallelism);
     }
 
-    private void writeResultsForCategory(MetricCategory category, PrintWriter writer) {
+    private void addBlocksForCategory(MetricCategory category, List<ExportUtils.Block> blocks) {
         final MetricsResult results = run.getResultsForCategory(category);
         final String categoryName = category.name();
-        writeResults(results, writer, categoryName);
-    }
-
-    private static void writeResults(MetricsResult results, @NonNls PrintWriter writer, String type) {
-        final Metric[] metrics = results.getMetrics();
-        if (metrics.length == 0) {
-            return;
-        }
-        Arrays.sort(metrics, new MetricAbbreviationComparator());
-        writer.print(type);
-        for (final Metric metric : metrics) {
-            final String abbreviation = metric.getAbbreviation();
-            writer.print(',' + abbreviation);
-        }
-        writer.println();
-        final String[] measuredObjects = results.getMeasuredObjects();
-        Arrays.sort(measuredObjects);
-
-        for (final String object : measuredObjects) {
-            writer.print('\"' + object + '\"');
-            for (final Metric metric : metrics) {
-                final Double metricValue = results.getValueForMetric(metric, object);
-                if (metricValue == null) {
-                    writer.print(",n/a");
-                } else {
-                    String formattedValue = FormatUtils.formatValue(metric, metricValue);
-                    if (formattedValue.indexOf((int) ',') >= 0) {
-                        formattedValue = '"' + formattedValue + '"';
-                    }
-                    writer.print(',' + formattedValue);
-                }
-            }
-            writer.println();
-        }
-        writer.println();
+        ExportUtils.addTableBlocks(results, categoryName, ROW_WRITER, blocks);
     }
 }
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.metrics.export;
+
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricCategory;
+import com.sixrr.metrics.metricModel.MetricsResult;
+import com.sixrr.metrics.metricModel.MetricsRun;
+import org.jetbrains.annotations.NonNls;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Exports to a self describing columnar binary file, for loading into analytics tools without parsing text.
+ * All numbers are little endian, and every column starts at a multiple of eight bytes from the start of the file.
+ * <pre>
+ * file:    "MRCF" version:int32 profile:string timestamp:string numTables:int32 table*
+ * table:   category:string numRows:int32 numColumns:int32 descriptor* column*
+ * descriptor: type:int32 name:string displayName:string metricType:string
+ * column:  length:int64 padding to 8 data
+ * string:  length:int32 utf-8 bytes
+ * </pre>
+ * The first column of a table is the measured object column of type {@link #UTF8}, with numRows + 1 int32 offsets
+ * into the UTF-8 data that follows them, like an Arrow string array.  Every other column is a metric of type
+ * {@link #FLOAT64}, with a validity bitmap of numRows bits padded to eight bytes, followed by numRows doubles.
+ * Rows are sorted by measured object, metric columns by abbreviation.  Files are read by {@link ColumnarReader}.
+ */
+public class ColumnarExporter implements Exporter {
+
+    @NonNls public static final String EXTENSION = ".mcf";
+    static final byte[] MAGIC = {'M', 'R', 'C', 'F'};
+    static final int VERSION = 1;
+    static final int UTF8 = 0;
+    static final int FLOAT64 = 1;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+    static final int BUFFER_SIZE = 65536;
+
+    private final MetricsRun run;
+
+    public ColumnarExporter(MetricsRun run) {
+        this.run = run;
+    }
+
+    @Override
+    public void export(String fileName) throws IOException {
+        final FileChannel channel = new FileOutputStream(fileName).getChannel();
+        try {
+            final Output out = new Output(channel);
+            out.putBytes(MAGIC);
+            out.putInt(VERSION);
+            out.putString(run.getProfileName());
+            out.putString(String.valueOf(run.getTimestamp()));
+            final List<MetricCategory> categories = new ArrayList<MetricCategory>();
+            for (MetricCategory category : MetricCategory.values()) {
+                if (run.getResultsForCategory(category).getMetrics().length > 0) {
+                    categories.add(category);
+                }
+            }
+            out.putInt(categories.size());
+            for (MetricCategory category : categories) {
+                writeTable(category, run.getResultsForCategory(category), out);
+            }
+            out.flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Not supported, a binary file can't be written to a text writer.
+     */
+    @Override
+    public void export(PrintWriter writer) throws IOException {
+        throw new IOException("The columnar format can only be exported to a file");
+    }
+
+    private static void writeTable(MetricCategory category, MetricsResult results, Output out) throws IOException {
+        final Metric[] metrics = ExportUtils.getSortedMetrics(results);
+        final String[] measuredObjects = ExportUtils.getSortedMeasuredObjects(results);
+        final int numRows = measuredObjects.length;
+        out.putString(category.name());
+        out.putInt(numRows);
+        out.putInt(metrics.length + 1);
+        out.putInt(UTF8);
+        out.putString("measured");
+        out.putString(category.name());
+        out.putString("");
+        for (Metric metric : metrics) {
+            out.putInt(FLOAT64);
+            out.putString(metric.getAbbreviation());
+            out.putString(metric.getDisplayName());
+            out.putString(metric.getType().name());
+        }
+
+        final byte[][] strings = new byte[numRows][];
+        long dataLength = 0L;
+        for (int i = 0; i < numRows; i++) {
+            strings[i] = measuredObjects[i].getBytes(UTF_8);
+            dataLength += (long) strings[i].length;
+        }
+        if (dataLength > (long) Integer.MAX_VALUE) {
+            throw new IOException("Measured objects of category " + category + " exceed the range of int32 offsets");
+        }
+        out.startColumn(4L * (long) (numRows + 1) + dataLength);
+        int offset = 0;
+        out.putInt(offset);
+        for (byte[] string : strings) {
+            offset += string.length;
+            out.putInt(offset);
+        }
+        for (byte[] string : strings) {
+            out.putBytes(string);
+        }
+
+        final int bitmapLength = (numRows + 63) / 64 * 8;
+        for (Metric metric : metrics) {
+            final BitSet present = new BitSet(numRows);
+            final double[] column = ExportUtils.getColumn(results, metric, measuredObjects, 0, numRows, present);
+            out.startColumn((long) bitmapLength + 8L * (long) numRows);
+            // the bitmap is written as longs, whose little endian bytes have the bits in Arrow order
+            final long[] words = new long[bitmapLength / 8];
+            for (int i = present.nextSetBit(0); i >= 0; i = present.nextSetBit(i + 1)) {
+                words[i >> 6] |= 1L << (i & 63);
+            }
+            for (long word : words) {
+                out.putLong(word);
+            }
+            for (double value : column) {
+                out.putDouble(value);
+            }
+        }
+    }
+
+    /**
+     * A little endian buffer which is flushed to the channel when full, and keeps track of the file position.
+     */
+    private static final class Output {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long flushed = 0L;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void startColumn(long length) throws IOException {
+            putLong(length);
+            final int padding = (int) (-(flushed + (long) buffer.position()) & 7L);
+            for (int i = 0; i < padding; i++) {
+                ensureCapacity(1);
+                buffer.put((byte) 0);
+            }
+        }
+
+        void putInt(int value) throws IOException {
+            ensureCapacity(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensureCapacity(8);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensureCapacity(8);
+            buffer.putDouble(value);
+        }
+
+        void putString(String string) throws IOException {
+            final byte[] bytes = (string == null ? "" : string).getBytes(UTF_8);
+            putInt(bytes.length);
+            putBytes(bytes);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensureCapacity(1);
+                final int length = Math.min(bytes.length - offset, buffer.remaining());
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        private void ensureCapacity(int size) throws IOException {
+            if (buffer.remaining() < size) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                flushed += (long) channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.sixrr.metrics.export;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads a file written by {@link ColumnarExporter}.  Columns of an unknown type are skipped.
+ */
+public final class ColumnarReader {
+
+    private final String profileName;
+    private final String timestamp;
+    private final List<Table> tables;
+
+    private ColumnarReader(String profileName, String timestamp, List<Table> tables) {
+        this.profileName = profileName;
+        this.timestamp = timestamp;
+        this.tables = tables;
+    }
+
+    public static ColumnarReader read(@NotNull File file) throws IOException {
+        final FileChannel channel = new FileInputStream(file).getChannel();
+        try {
+            final Input in = new Input(channel);
+            final byte[] magic = new byte[ColumnarExporter.MAGIC.length];
+            in.getBytes(magic, 0, magic.length);
+            if (!Arrays.equals(magic, ColumnarExporter.MAGIC)) {
+                throw new IOException("Not a columnar export: " + file);
+            }
+            final int version = in.getInt();
+            if (version != ColumnarExporter.VERSION) {
+                throw new IOException("Unsupported columnar export version " + version + ": " + file);
+            }
+            final String profileName = in.getString();
+            final String timestamp = in.getString();
+            final int numTables = in.getInt();
+            final List<Table> tables = new ArrayList<Table>(numTables);
+            for (int i = 0; i < numTables; i++) {
+                tables.add(readTable(in));
+            }
+            return new ColumnarReader(profileName, timestamp, Collections.unmodifiableList(tables));
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static Table readTable(Input in) throws IOException {
+        final String category = in.getString();
+        final int numRows = in.getInt();
+        final int numColumns = in.getInt();
+        final int[] types = new int[numColumns];
+        final String[] names = new String[numColumns];
+        final String[] displayNames = new String[numColumns];
+        final String[] metricTypes = new String[numColumns];
+        for (int i = 0; i < numColumns; i++) {
+            types[i] = in.getInt();
+            names[i] = in.getString();
+            displayNames[i] = in.getString();
+            metricTypes[i] = in.getString();
+        }
+        String[] measuredObjects = null;
+        final List<Column> columns = new ArrayList<Column>(numColumns);
+        for (int i = 0; i < numColumns; i++) {
+            final long length = in.startColumn();
+            if (types[i] == ColumnarExporter.UTF8 && measuredObjects == null) {
+                measuredObjects = readStrings(in, numRows, length);
+            } else if (types[i] == ColumnarExporter.FLOAT64) {
+                columns.add(readDoubles(in, numRows, length, names[i], displayNames[i], metricTypes[i]));
+            } else {
+                in.skip(length);
+            }
+        }
+        if (measuredObjects == null) {
+            throw new IOException("Table " + category + " has no measured object column");
+        }
+        return new Table(category, measuredObjects, Collections.unmodifiableList(columns));
+    }
+
+    private static String[] readStrings(Input in, int numRows, long length) throws IOException {
+        final long dataLength = length - 4L * (long) (numRows + 1);
+        if (dataLength < 0L || dataLength > (long) Integer.MAX_VALUE) {
+            throw new IOException("Corrupt string column of length " + length);
+        }
+        final int[] offsets = new int[numRows + 1];
+        for (int i = 0; i <= numRows; i++) {
+            offsets[i] = in.getInt();
+        }
+        final byte[] data = new byte[(int) dataLength];
+        in.getBytes(data, 0, data.length);
+        final String[] strings = new String[numRows];
+        for (int i = 0; i < numRows; i++) {
+            strings[i] = new String(data, offsets[i], offsets[i + 1] - offsets[i], ColumnarExporter.UTF_8);
+        }
+        return strings;
+    }
+
+    private static Column readDoubles(Input in, int numRows, long length, String name, String displayName,
+                                      String metricType) throws IOException {
+        final int numWords = (numRows + 63) / 64;
+        if (length != 8L * (long) numWords + 8L * (long) numRows) {
+            throw new IOException("Corrupt column " + name + " of length " + length);
+        }
+        final BitSet present = new BitSet(numRows);
+        for (int word = 0; word < numWords; word++) {
+            final long bits = in.getLong();
+            for (int bit = 0; bit < 64; bit++) {
+                if ((bits & (1L << bit)) != 0L) {
+                    present.set((word << 6) + bit);
+                }
+            }
+        }
+        final double[] values = new double[numRows];
+        for (int i = 0; i < numRows; i++) {
+            values[i] = in.getDouble();
+        }
+        return new Column(name, displayName, metricType, values, present);
+    }
+
+    public String getProfileName() {
+        return profileName;
+    }
+
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    public List<Table> getTables() {
+        return tables;
+    }
+
+    /**
+     * The results of one category, with a row per measured object.
+     */
+    public static final class Table {
+
+        private final String category;
+        private final String[] measuredObjects;
+        private final List<Column> columns;
+
+        Table(String category, String[] measuredObjects, List<Column> columns) {
+            this.category = category;
+            this.measuredObjects = measuredObjects;
+            this.columns = columns;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public int getNumRows() {
+            return measuredObjects.length;
+        }
+
+        public String getMeasuredObject(int row) {
+            return measuredObjects[row];
+        }
+
+        public List<Column> getColumns() {
+            return columns;
+        }
+    }
+
+    /**
+     * The values of one metric.
+     */
+    public static final class Column {
+
+        private final String name;
+        private final String displayName;
+        private final String metricType;
+        private final double[] values;
+        private final BitSet present;
+
+        Column(String name, String displayName, String metricType, double[] values, BitSet present) {
+            this.name = name;
+            this.displayName = displayName;
+            this.metricType = metricType;
+            this.values = values;
+            this.present = present;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public String getMetricType() {
+            return metricType;
+        }
+
+        public boolean hasValue(int row) {
+            return present.get(row);
+        }
+
+        public double getValue(int row) {
+            return values[row];
+        }
+    }
+
+    /**
+     * A little endian buffer which is refilled from the channel when empty, and keeps track of the file position.
+     */
+    private static final class Input {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer =
+                ByteBuffer.allocateDirect(ColumnarExporter.BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        // the file position of the start of the buffer
+        private long bufferStart = 0L;
+
+        Input(FileChannel channel) {
+            this.channel = channel;
+            buffer.limit(0);
+        }
+
+        /**
+         * Reads the length of a column and skips the padding which follows it.
+         */
+        long startColumn() throws IOException {
+            final long length = getLong();
+            skip(-(bufferStart + (long) buffer.position()) & 7L);
+            return length;
+        }
+
+        int getInt() throws IOException {
+            ensureAvailable(4);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            ensureAvailable(8);
+            return buffer.getLong();
+        }
+
+        double getDouble() throws IOException {
+            ensureAvailable(8);
+            return buffer.getDouble();
+        }
+
+        String getString() throws IOException {
+            final byte[] bytes = new byte[getInt()];
+            getBytes(bytes, 0, bytes.length);
+            return new String(bytes, ColumnarExporter.UTF_8);
+        }
+
+        void getBytes(byte[] bytes, int offset, int length) throws IOException {
+            int position = offset;
+            final int end = offset + length;
+            while (position < end) {
+                ensureAvailable(1);
+                final int count = Math.min(end - position, buffer.remaining());
+                buffer.get(bytes, position, count);
+                position += count;
+            }
+        }
+
+        void skip(long length) throws IOException {
+            long remaining = length;
+            while (remaining > 0L) {
+                ensureAvailable(1);
+                final int count = (int) Math.min(remaining, (long) buffer.remaining());
+                buffer.position(buffer.position() + count);
+                remaining -= (long) count;
+            }
+        }
+
+        private void ensureAvailable(int size) throws IOException {
+            if (buffer.remaining() >= size) {
+                return;
+            }
+            bufferStart += (long) buffer.position();
+            buffer.compact();
+            while (buffer.position() < size) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException();
+                }
+            }
+            buffer.flip();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.metrics.export;
+
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricCategory;
+import com.sixrr.metrics.MetricType;
+import com.sixrr.metrics.metricModel.MetricsDiff;
+import com.sixrr.metrics.metricModel.MetricsRun;
+import org.jetbrains.annotations.NonNls;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Exports the differences between a run and a previous run as CSV, with a line for every value of a measured object
+ * which was added, removed or changed:
+ * <pre>
+ * category,measured object,state,metric,previous,current,delta
+ * </pre>
+ * Values of unchanged measured objects are not exported.
+ */
+public class DiffExporter implements Exporter {
+
+    @NonNls private static final String[] STATES = {"unchanged", "changed", "added", "removed"};
+
+    private final MetricsRun run;
+    private final MetricsRun previousRun;
+
+    public DiffExporter(MetricsRun run, MetricsRun previousRun) {
+        this.run = run;
+        this.previousRun = previousRun;
+    }
+
+    @Override
+    public void export(String fileName) throws IOException {
+        final PrintWriter writer = ExportUtils.createWriter(fileName);
+        try {
+            export(writer);
+        } finally {
+            writer.close();
+        }
+        ExportUtils.checkError(writer, fileName);
+    }
+
+    @Override
+    public void export(@NonNls PrintWriter writer) throws IOException {
+        writer.print(run.getProfileName());
+        writer.print(',');
+        writer.print(previousRun.getTimestamp());
+        writer.print(',');
+        writer.println(run.getTimestamp());
+        writer.println("category,measured object,state,metric,previous,current,delta");
+        final ValueFormatter formatter = new ValueFormatter();
+        for (MetricCategory category : MetricCategory.values()) {
+            final MetricsDiff diff = MetricsDiff.compute(run.getResultsForCategory(category),
+                    previousRun.getResultsForCategory(category));
+            writeDiff(category.name(), diff, writer, formatter);
+        }
+    }
+
+    private static void writeDiff(String categoryName, MetricsDiff diff, PrintWriter writer,
+                                  ValueFormatter formatter) {
+        final Metric[] metrics = diff.getMetrics();
+        final MetricType[] types = new MetricType[metrics.length];
+        for (int i = 0; i < metrics.length; i++) {
+            types[i] = metrics[i].getType();
+        }
+        final int numRows = diff.getRowCount();
+        for (int row = 0; row < numRows; row++) {
+            final byte state = diff.getState(row);
+            if (state == MetricsDiff.UNCHANGED) {
+                continue;
+            }
+            for (int i = 0; i < metrics.length; i++) {
+                final boolean hasValue = diff.hasValue(i, row);
+                final boolean hasPreviousValue = diff.hasPreviousValue(i, row);
+                if (!hasValue && !hasPreviousValue || state == MetricsDiff.CHANGED && hasValue && hasPreviousValue &&
+                        Double.compare(diff.getValue(i, row), diff.getPreviousValue(i, row)) == 0) {
+                    continue;
+                }
+                writer.print(categoryName);
+                writer.print(",\"");
+                writer.print(diff.getMeasuredObject(row));
+                writer.print("\",");
+                writer.print(STATES[state]);
+                writer.print(',');
+                writer.print(metrics[i].getAbbreviation());
+                writer.print(',');
+                writeValue(hasPreviousValue, types[i], diff.getPreviousValue(i, row), writer, formatter);
+                writer.print(',');
+                writeValue(hasValue, types[i], diff.getValue(i, row), writer, formatter);
+                writer.print(',');
+                writeValue(hasValue && hasPreviousValue, types[i], diff.getDelta(i, row), writer, formatter);
+                writer.println();
+            }
+        }
+    }
+
+    private static void writeValue(boolean present, MetricType type, double value, @NonNls PrintWriter writer,
+                                   ValueFormatter formatter) {
+        if (present) {
+            formatter.write(writer, type, value, ',');
+        } else {
+            writer.print("n/a");
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.metrics.export;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricType;
+import com.sixrr.metrics.metricModel.MetricAbbreviationComparator;
+import com.sixrr.metrics.metricModel.MetricsResult;
+import com.sixrr.metrics.utils.ParallelUtils;
+import org.jetbrains.annotations.NonNls;
+
+import java.io.BufferedWriter;
+import java.io.CharArrayWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+final class ExportUtils {
+
+    /**
+     * The number of rows of a category rendered as one block.
+     */
+    static final int ROWS_PER_BLOCK = 4096;
+    private static final int BLOCKS_PER_THREAD = 4;
+    private static final int BUFFER_SIZE = 65536;
+
+    private ExportUtils() {}
+
+    /**
+     * Creates a buffered UTF-8 writer which writes straight to the channel of the specified file.
+     */
+    static PrintWriter createWriter(String fileName) throws IOException {
+        final FileChannel channel = new FileOutputStream(fileName).getChannel();
+        return new PrintWriter(new BufferedWriter(Channels.newWriter(channel, "UTF-8"), BUFFER_SIZE));
+    }
+
+    /**
+     * Throws the first error encountered by a writer created by {@link #createWriter(String)}, because a
+     * PrintWriter swallows them.
+     */
+    static void checkError(PrintWriter writer, String fileName) throws IOException {
+        if (writer.checkError()) {
+            throw new IOException("Could not write " + fileName);
+        }
+    }
+
+    static Metric[] getSortedMetrics(MetricsResult results) {
+        final Metric[] metrics = results.getMetrics();
+        Arrays.sort(metrics, new MetricAbbreviationComparator());
+        return metrics;
+    }
+
+    static String[] getSortedMeasuredObjects(MetricsResult results) {
+        final String[] measuredObjects = results.getMeasuredObjects();
+        Arrays.sort(measuredObjects);
+        return measuredObjects;
+    }
+
+    /**
+     * Looks up the values of a metric for a range of measured objects at once, so rows can be written without boxing.
+     * @param present  receives the indices, relative to {@code from}, of the measured objects which have a value.
+     */
+    static double[] getColumn(MetricsResult results, Metric metric, String[] measuredObjects, int from, int to,
+                              BitSet present) {
+        final double[] column = new double[to - from];
+        for (int i = from; i < to; i++) {
+            final String measuredObject = measuredObjects[i];
+            final double value = results.getDoubleValueForMetric(metric, measuredObject);
+            if (!Double.isNaN(value) || results.hasValueForMetric(metric, measuredObject)) {
+                column[i - from] = value;
+                present.set(i - from);
+            }
+        }
+        return column;
+    }
+
+    /**
+     * Adds the blocks of a table with a row per measured object and a column per metric, which is written by the
+     * specified row writer.
+     */
+    static void addTableBlocks(final MetricsResult results, @NonNls final String type, final RowWriter rowWriter,
+                               List<Block> blocks) {
+        final Metric[] metrics = getSortedMetrics(results);
+        if (metrics.length == 0) {
+            return;
+        }
+        final String[] measuredObjects = getSortedMeasuredObjects(results);
+        final MetricType[] types = new MetricType[metrics.length];
+        for (int i = 0; i < metrics.length; i++) {
+            types[i] = metrics[i].getType();
+        }
+        blocks.add(new Block() {
+            @Override
+            public void write(PrintWriter writer, ValueFormatter formatter) {
+                rowWriter.writeHeader(writer, type, metrics);
+            }
+        });
+        for (int from = 0; from < measuredObjects.length; from += ROWS_PER_BLOCK) {
+            final int start = from;
+            final int end = Math.min(from + ROWS_PER_BLOCK, measuredObjects.length);
+            blocks.add(new Block() {
+                @Override
+                public void write(PrintWriter writer, ValueFormatter formatter) {
+                    writeRows(results, metrics, types, measuredObjects, start, end, rowWriter, writer, formatter);
+                }
+            });
+        }
+        blocks.add(new Block() {
+            @Override
+            public void write(PrintWriter writer, ValueFormatter formatter) {
+                rowWriter.writeFooter(writer);
+            }
+        });
+    }
+
+    private static void writeRows(MetricsResult results, Metric[] metrics, MetricType[] types,
+                                  String[] measuredObjects, int from, int to, RowWriter rowWriter, PrintWriter writer,
+                                  ValueFormatter formatter) {
+        final double[][] columns = new double[metrics.length][];
+        final BitSet[] present = new BitSet[metrics.length];
+        for (int i = 0; i < metrics.length; i++) {
+            present[i] = new BitSet(to - from);
+            columns[i] = getColumn(results, metrics[i], measuredObjects, from, to, present[i]);
+        }
+        for (int row = 0; row < to - from; row++) {
+            rowWriter.writeRow(writer, measuredObjects[from + row], types, columns, present, row, formatter);
+        }
+    }
+
+    /**
+     * Writes the blocks in order.  With a parallelism greater than one, blocks are rendered concurrently into
+     * separate buffers by a single pool of threads, and the buffers are written in order, so the output is the same
+     * as when writing serially.  At most a few blocks per thread are rendered ahead of the writer at any time.
+     */
+    static void writeBlocks(List<Block> blocks, PrintWriter writer, int parallelism) throws IOException {
+        final int numBlocks = blocks.size();
+        if (parallelism <= 1 || numBlocks <= 1) {
+            final ValueFormatter formatter = new ValueFormatter();
+            for (Block block : blocks) {
+                block.write(writer, formatter);
+            }
+            return;
+        }
+        final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+        final ThreadLocal<ValueFormatter> formatters = new ThreadLocal<ValueFormatter>() {
+            @Override
+            protected ValueFormatter initialValue() {
+                return new ValueFormatter();
+            }
+        };
+        final int queueSize = parallelism * BLOCKS_PER_THREAD;
+        final Queue<Future<CharArrayWriter>> queue = new ArrayDeque<Future<CharArrayWriter>>(queueSize);
+        final ExecutorService executor = ParallelUtils.createExecutor(Math.min(parallelism, numBlocks));
+        try {
+            int next = 0;
+            while (next < numBlocks || !queue.isEmpty()) {
+                while (next < numBlocks && queue.size() < queueSize) {
+                    queue.add(executor.submit(new RenderTask(blocks.get(next), formatters, indicator)));
+                    next++;
+                }
+                ParallelUtils.waitFor(queue.remove()).writeTo(writer);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static class RenderTask implements Callable<CharArrayWriter> {
+
+        private final Block block;
+        private final ThreadLocal<ValueFormatter> formatters;
+        private final ProgressIndicator indicator;
+
+        RenderTask(Block block, ThreadLocal<ValueFormatter> formatters, ProgressIndicator indicator) {
+            this.block = block;
+            this.formatters = formatters;
+            this.indicator = indicator;
+        }
+
+        @Override
+        public CharArrayWriter call() {
+            final CharArrayWriter buffer = new CharArrayWriter(8192);
+            final PrintWriter bufferWriter = new PrintWriter(buffer);
+            ProgressManager.getInstance().executeProcessUnderProgress(new Runnable() {
+                @Override
+                public void run() {
+                    block.write(bufferWriter, formatters.get());
+                }
+            }, indicator);
+            bufferWriter.flush();
+            return buffer;
+        }
+    }
+
+    /**
+     * A part of an export which can be rendered independently of the other parts.
+     */
+    interface Block {
+
+        void write(PrintWriter writer, ValueFormatter formatter);
+    }
+
+    /**
+     * Writes a table built by {@link #addTableBlocks(MetricsResult, String, RowWriter, List)}.  Called concurrently
+     * for different rows when the export is rendered in parallel.
+     */
+    interface RowWriter {
+
+        void writeHeader(PrintWriter writer, String type, Metric[] metrics);
+
+        /**
+         * @param present  the values of each column which are present, the other values are absent.
+         */
+        void writeRow(PrintWriter writer, String measuredObject, MetricType[] types, double[][] columns,
+                      BitSet[] present, int row, ValueFormatter formatter);
+
+        void writeFooter(PrintWriter writer);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.metrics.export;
+
+import com.sixrr.metrics.MetricType;
+import com.sixrr.metrics.utils.FormatUtils;
+
+import java.io.PrintWriter;
+
+/**
+ * Writes values formatted like {@link FormatUtils#formatValue(com.sixrr.metrics.Metric, Double)} to the output
+ * directly, without allocating.  Not thread safe, every exporter thread needs a formatter of its own.
+ */
+final class ValueFormatter {
+
+    private final FormatUtils.ValueFormat valueFormat = new FormatUtils.ValueFormat();
+    private char[] chars = new char[32];
+
+    /**
+     * Writes the formatted value, quoted if it contains the separator.
+     */
+    void write(PrintWriter writer, MetricType metricType, double value, char separator) {
+        final StringBuffer buffer = valueFormat.format(metricType, value, false);
+        final int length = buffer.length();
+        if (length > chars.length) {
+            chars = new char[length];
+        }
+        buffer.getChars(0, length, chars, 0);
+        boolean quote = false;
+        for (int i = 0; i < length && !quote; i++) {
+            quote = chars[i] == separator;
+        }
+        if (quote) {
+            writer.write('"');
+        }
+        writer.write(chars, 0, length);
+        if (quote) {
+            writer.write('"');
+        }
+    }
+}
@@ -20,32 +20,42 @@ import com.intellij.analysis.AnalysisScope;
 import com.intellij.openapi.util.text.StringUtil;
 import com.sixrr.metrics.Metric;
 import com.sixrr.metrics.MetricCategory;
-import com.sixrr.metrics.metricModel.MetricAbbreviationComparator;
 import com.sixrr.metrics.metricModel.MetricsResult;
 import com.sixrr.metrics.metricModel.MetricsRun;
 import org.jetbrains.annotations.NonNls;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
 public class XMLExporter implements Exporter {
 
     private final MetricsRun run;
+    private final int parallelism;
 
     public XMLExporter(MetricsRun run) {
+        this(run, 1);
+    }
+
+    /**
+     * @param parallelism  the number of threads to render the export with.  Output is the same for any value.
+     */
+    public XMLExporter(MetricsRun run, int parallelism) {
         this.run = run;
+        this.parallelism = parallelism;
     }
 
     @Override
     public void export(String fileName) throws IOException {
-        @NonNls final PrintWriter writer = new PrintWriter(new FileOutputStream(fileName));
+        @NonNls final PrintWriter writer = ExportUtils.createWriter(fileName);
         try {
             export(writer);
         } finally {
             writer.close();
         }
+        ExportUtils.checkError(writer, fileName);
     }
 
     @Override
@@ -53,39 +63,76 @@ public class XMLExporter implements Exporter {
         writer.println("<METRICS profile=\"" + StringUtil.escapeXml(run.getProfileName()) + "\" timestamp=\"" +
                 run.getTimestamp() + "\">");
         writeContext(run.getContext());
+        final List<ExportUtils.Block> blocks = new ArrayList<ExportUtils.Block>();
         for (MetricCategory category : MetricCategory.values()) {
-            writeResultsForCategory(category, writer);
+            addBlocksForCategory(category, blocks);
         }
+        ExportUtils.writeBlocks(blocks, writer, parallelism);
         writer.println("</METRICS>");
     }
 
     private void writeContext(AnalysisScope context) {
     }
 
-    private void writeResultsForCategory(MetricCategory category, PrintWriter writer) {
+    private void addBlocksForCategory(MetricCategory category, List<ExportUtils.Block> blocks) {
         final MetricsResult results = run.getResultsForCategory(category);
-        final Metric[] metrics = results.getMetrics();
-        Arrays.sort(metrics, new MetricAbbreviationComparator());
+        final Metric[] metrics = ExportUtils.getSortedMetrics(results);
+        if (metrics.length == 0) {
+            return;
+        }
+        final String[] measuredObjects = ExportUtils.getSortedMeasuredObjects(results);
+        final String[] escapedObjects = new String[measuredObjects.length];
+        for (int i = 0; i < measuredObjects.length; i++) {
+            escapedObjects[i] = StringUtil.escapeXml(measuredObjects[i]);
+        }
         for (final Metric metric : metrics) {
-            writeResultsForMetric(category, metric, results, writer);
+            addBlocksForMetric(category, metric, results, measuredObjects, escapedObjects, blocks);
         }
     }
 
-    private static void writeResultsForMetric(MetricCategory category, Metric metric, MetricsResult results,
-                                              @NonNls PrintWriter writer) {
-        writer.println("\t<METRIC category=\"" + category.name() + "\" name=\"" +
-                metric.getDisplayName() + "\" abbreviation=\"" + metric.getAbbreviation() + "\">");
-        for (final String measuredObject : results.getMeasuredObjects()) {
-            writeValue(results, metric, measuredObject, writer);
+    private static void addBlocksForMetric(final MetricCategory category, final Metric metric,
+                                           final MetricsResult results, final String[] measuredObjects,
+                                           final String[] escapedObjects, List<ExportUtils.Block> blocks) {
+        blocks.add(new ExportUtils.Block() {
+            @Override
+            public void write(@NonNls PrintWriter writer, ValueFormatter formatter) {
+                writer.print("\t<METRIC category=\"");
+                writer.print(category.name());
+                writer.print("\" name=\"");
+                writer.print(metric.getDisplayName());
+                writer.print("\" abbreviation=\"");
+                writer.print(metric.getAbbreviation());
+                writer.println("\">");
+            }
+        });
+        for (int from = 0; from < measuredObjects.length; from += ExportUtils.ROWS_PER_BLOCK) {
+            final int start = from;
+            final int end = Math.min(from + ExportUtils.ROWS_PER_BLOCK, measuredObjects.length);
+            blocks.add(new ExportUtils.Block() {
+                @Override
+                public void write(PrintWriter writer, ValueFormatter formatter) {
+                    writeValues(metric, results, measuredObjects, escapedObjects, start, end, writer);
+                }
+            });
         }
-        writer.println("\t</METRIC>");
+        blocks.add(new ExportUtils.Block() {
+            @Override
+            public void write(@NonNls PrintWriter writer, ValueFormatter formatter) {
+                writer.println("\t</METRIC>");
+            }
+        });
     }
 
-    private static void writeValue(MetricsResult results, Metric metric, String measuredObject,
-                                   @NonNls PrintWriter writer) {
-        final Double value = results.getValueForMetric(metric, measuredObject);
-        if (value != null) {
-            writer.println("\t\t<VALUE measured=\"" + StringUtil.escapeXml(measuredObject) + "\" value=\"" + value + "\"/>");
+    private static void writeValues(Metric metric, MetricsResult results, String[] measuredObjects,
+                                    String[] escapedObjects, int from, int to, @NonNls PrintWriter writer) {
+        final BitSet present = new BitSet(to - from);
+        final double[] column = ExportUtils.getColumn(results, metric, measuredObjects, from, to, present);
+        for (int i = present.nextSetBit(0); i >= 0; i = present.nextSetBit(i + 1)) {
+            writer.print("\t\t<VALUE measured=\"");
+            writer.print(escapedObjects[from + i]);
+            writer.print("\" value=\"");
+            writer.print(column[i]);
+            writer.println("\"/>");
         }
     }
 }
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.metrics.metricModel;
+
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricCategory;
+import com.sixrr.metrics.profile.MetricRepository;
+import com.sixrr.metrics.profile.MetricsProfileRepository;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The binary snapshot format.  A snapshot starts with a header of three ints: {@link #MAGIC}, {@link #VERSION} and
+ * flags, which are reserved and always zero.  The body contains the profile name, the timestamp and the number of
+ * categories, followed by a block for every category containing:
+ * <ul>
+ * <li>the category ordinal, the number of measured objects and the number of metrics</li>
+ * <li>the class names of the metrics</li>
+ * <li>an int offset into the string data for every measured object</li>
+ * <li>the length of the string data, followed by the measured objects in ascending order</li>
+ * <li>a column of doubles for every metric, with a value for every measured object, or {@link #ABSENT}</li>
+ * </ul>
+ * Strings are stored as an int byte count followed by the UTF-8 bytes.  All sizes are known before the columns are
+ * read, so a snapshot can be accessed in place.
+ */
+public final class BinarySnapshot {
+
+    @NonNls public static final String EXTENSION = ".metb";
+
+    static final int MAGIC = 0x4D524253;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 12;
+    /** A NaN which marks a measured object without a value for a metric, distinct from a NaN value. */
+    static final long ABSENT = 0x7FF8ABADL << 32;
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private BinarySnapshot() {}
+
+    public static boolean isBinarySnapshot(@NotNull File file) {
+        try {
+            final DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                return file.length() >= HEADER_SIZE && in.readInt() == MAGIC;
+            } finally {
+                in.close();
+            }
+        } catch (IOException ignore) {
+            return false;
+        }
+    }
+
+    static void write(@NotNull MetricsRun run, @NotNull File file) throws IOException {
+        final OutputStream fileOut = new FileOutputStream(file);
+        try {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 65536));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(0);
+            writeString(out, run.getProfileName());
+            writeString(out, run.getTimestamp().toString());
+            final MetricCategory[] categories = MetricCategory.values();
+            out.writeInt(categories.length);
+            for (MetricCategory category : categories) {
+                writeCategory(out, category, run.getResultsForCategory(category));
+            }
+            out.flush();
+        } finally {
+            fileOut.close();
+        }
+    }
+
+    private static void writeCategory(DataOutputStream out, MetricCategory category, MetricsResult results)
+            throws IOException {
+        final String[] measuredObjects = results.getMeasuredObjects().clone();
+        Arrays.sort(measuredObjects);
+        final Metric[] metrics = results.getMetrics().clone();
+        Arrays.sort(metrics, new Comparator<Metric>() {
+            @Override
+            public int compare(Metric metric1, Metric metric2) {
+                return metric1.getClass().getName().compareTo(metric2.getClass().getName());
+            }
+        });
+        out.writeInt(category.ordinal());
+        out.writeInt(measuredObjects.length);
+        out.writeInt(metrics.length);
+        for (Metric metric : metrics) {
+            writeString(out, metric.getClass().getName());
+        }
+        final ByteArrayOutputStream stringData = new ByteArrayOutputStream();
+        final DataOutputStream strings = new DataOutputStream(stringData);
+        for (String measuredObject : measuredObjects) {
+            out.writeInt(strings.size());
+            writeString(strings, measuredObject);
+        }
+        out.writeInt(strings.size());
+        stringData.writeTo(out);
+        for (Metric metric : metrics) {
+            for (String measuredObject : measuredObjects) {
+                if (results.hasValueForMetric(metric, measuredObject)) {
+                    out.writeLong(Double.doubleToRawLongBits(results.getDoubleValueForMetric(metric, measuredObject)));
+                } else {
+                    out.writeLong(ABSENT);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a complete snapshot into a new run.  Columns of metrics which are no longer known are skipped.
+     */
+    static MetricsRunImpl read(@NotNull File file) throws IOException {
+        return read(file, MetricsProfileRepository.getInstance());
+    }
+
+    static MetricsRunImpl read(@NotNull File file, @NotNull MetricRepository repository) throws IOException {
+        final InputStream fileIn = new FileInputStream(file);
+        try {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn, 65536));
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a binary snapshot: " + file);
+            }
+            final int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary snapshot version " + version + ": " + file);
+            }
+            final int flags = in.readInt();
+            if (flags != 0) {
+                throw new IOException("Unsupported binary snapshot flags " + flags + ": " + file);
+            }
+            final MetricsRunImpl run = new MetricsRunImpl();
+            run.setProfileName(readString(in));
+            run.setTimestamp(new TimeStamp(readString(in)));
+            final int numCategories = in.readInt();
+            for (int i = 0; i < numCategories; i++) {
+                readCategory(in, run, repository);
+            }
+            return run;
+        } finally {
+            fileIn.close();
+        }
+    }
+
+    private static void readCategory(DataInputStream in, MetricsRunImpl run, MetricRepository repository)
+            throws IOException {
+        in.readInt(); // category ordinal, every metric knows its own category
+        final int numObjects = in.readInt();
+        final int numMetrics = in.readInt();
+        final Metric[] metrics = new Metric[numMetrics];
+        for (int i = 0; i < numMetrics; i++) {
+            metrics[i] = repository.getMetric(readString(in));
+        }
+        for (int i = 0; i < numObjects; i++) {
+            in.readInt(); // string offsets, only needed for access in place
+        }
+        in.readInt();
+        final String[] measuredObjects = new String[numObjects];
+        for (int i = 0; i < numObjects; i++) {
+            measuredObjects[i] = readString(in);
+        }
+        for (Metric metric : metrics) {
+            for (String measuredObject : measuredObjects) {
+                final long bits = in.readLong();
+                if (metric != null && bits != ABSENT) {
+                    run.postRawMetric(metric, measuredObject, Double.longBitsToDouble(bits));
+                }
+            }
+        }
+    }
+
+    private static void writeString(DataOutput out, String string) throws IOException {
+        final byte[] bytes = (string == null ? "" : string).getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.metrics.metricModel;
+
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.module.Module;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiPackage;
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricsResultsHolder;
+
+/**
+ * Passes all posts of the file local calculators of a worker on to the contribution of the file the worker is
+ * processing, so the calculators can be created once per run instead of once per file.
+ */
+class ContributionRecorder implements MetricsResultsHolder {
+
+    private FileContribution contribution = null;
+
+    void setContribution(FileContribution contribution) {
+        this.contribution = contribution;
+    }
+
+    @Override
+    public void postProjectMetric(Metric metric, double value) {
+        contribution.postProjectMetric(metric, value);
+    }
+
+    @Override
+    public void postFileTypeMetric(Metric metric, FileType fileType, double value) {
+        contribution.postFileTypeMetric(metric, fileType, value);
+    }
+
+    @Override
+    public void postModuleMetric(Metric metric, Module module, double value) {
+        contribution.postModuleMetric(metric, module, value);
+    }
+
+    @Override
+    public void postPackageMetric(Metric metric, PsiPackage aPackage, double value) {
+        contribution.postPackageMetric(metric, aPackage, value);
+    }
+
+    @Override
+    public void postClassMetric(Metric metric, PsiClass aClass, double value) {
+        contribution.postClassMetric(metric, aClass, value);
+    }
+
+    @Override
+    public void postInterfaceMetric(Metric metric, PsiClass anInterface, double value) {
+        contribution.postInterfaceMetric(metric, anInterface, value);
+    }
+
+    @Override
+    public void postMethodMetric(Metric metric, PsiMethod method, double value) {
+        contribution.postMethodMetric(metric, method, value);
+    }
+
+    @Override
+    public void postProjectMetric(Metric metric, double numerator, double denominator) {
+        contribution.postProjectMetric(metric, numerator, denominator);
+    }
+
+    @Override
+    public void postFileTypeMetric(Metric metric, FileType fileType,
+                                                double numerator, double denominator) {
+        contribution.postFileTypeMetric(metric, fileType, numerator, denominator);
+    }
+
+    @Override
+    public void postModuleMetric(Metric metric, Module module, double numerator, double denominator) {
+        contribution.postModuleMetric(metric, module, numerator, denominator);
+    }
+
+    @Override
+    public void postPackageMetric(Metric metric, PsiPackage aPackage,
+                                               double numerator, double denominator) {
+        contribution.postPackageMetric(metric, aPackage, numerator, denominator);
+    }
+
+    @Override
+    public void postClassMetric(Metric metric, PsiClass aClass, double numerator, double denominator) {
+        contribution.postClassMetric(metric, aClass, numerator, denominator);
+    }
+
+    @Override
+    public void postInterfaceMetric(Metric metric, PsiClass anInterface,
+                                                 double numerator, double denominator) {
+        contribution.postInterfaceMetric(metric, anInterface, numerator, denominator);
+    }
+
+    @Override
+    public void postMethodMetric(Metric metric, PsiMethod method, double numerator, double denominator) {
+        contribution.postMethodMetric(metric, method, numerator, denominator);
+    }
+}
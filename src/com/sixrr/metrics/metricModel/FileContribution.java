@@ -0,0 +1,282 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.sixrr.metrics.metricModel;
+
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiPackage;
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricCategory;
+import com.sixrr.metrics.MetricsResultsHolder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the values posted by the file local calculators of a metrics run for a single file.  Measured objects are
+ * kept as the ids of {@link MeasuredObjects}, so a contribution kept between runs does not hold on to any PSI.
+ */
+final class FileContribution implements MetricsResultsHolder {
+
+    private final VirtualFile file;
+    private final long modificationStamp;
+    private final List<Value> values = new ArrayList<Value>();
+
+    FileContribution(VirtualFile file, long modificationStamp) {
+        this.file = file;
+        this.modificationStamp = modificationStamp;
+    }
+
+    /**
+     * Returns true if the file still exists, and was not modified since its contribution was recorded.
+     */
+    boolean isUpToDate(long modificationStamp) {
+        return this.modificationStamp == modificationStamp && file.isValid();
+    }
+
+    List<Value> getValues() {
+        return values;
+    }
+
+    void add(Value value) {
+        values.add(value);
+    }
+
+    /**
+     * Adds the values of this file to the totals per metric and measured object.  Values of objects which can no
+     * longer be found are left out.
+     */
+    void addTo(Map<Metric, Map<Object, Value>> totals, PsiManager psiManager) {
+        final PsiFile psiFile = file.isValid() ? psiManager.findFile(file) : null;
+        if (psiFile == null) {
+            return;
+        }
+        final MeasuredObjects measuredObjects = new MeasuredObjects(psiFile);
+        for (Value value : values) {
+            final Object measured = measuredObjects.find(value.category, value.measured);
+            if (measured == null && value.category != MetricCategory.Project) {
+                continue;
+            }
+            Map<Object, Value> metricTotals = totals.get(value.metric);
+            if (metricTotals == null) {
+                metricTotals = new LinkedHashMap<Object, Value>();
+                totals.put(value.metric, metricTotals);
+            }
+            final Value total = metricTotals.get(measured);
+            if (total == null) {
+                metricTotals.put(measured, value.copy());
+            } else {
+                total.add(value);
+            }
+        }
+    }
+
+    @Override
+    public void postProjectMetric(Metric metric, double value) {
+        values.add(new Value(MetricCategory.Project, metric, "", value, 1.0, false));
+    }
+
+    @Override
+    public void postFileTypeMetric(Metric metric, FileType fileType, double value) {
+        values.add(new Value(MetricCategory.FileType, metric, MeasuredObjects.getId(fileType), value, 1.0, false));
+    }
+
+    @Override
+    public void postModuleMetric(Metric metric, Module module, double value) {
+        values.add(new Value(MetricCategory.Module, metric, MeasuredObjects.getId(module), value, 1.0, false));
+    }
+
+    @Override
+    public void postPackageMetric(Metric metric, PsiPackage aPackage, double value) {
+        values.add(new Value(MetricCategory.Package, metric, MeasuredObjects.getId(aPackage), value, 1.0, false));
+    }
+
+    @Override
+    public void postClassMetric(Metric metric, PsiClass aClass, double value) {
+        values.add(new Value(MetricCategory.Class, metric, MeasuredObjects.getId(aClass), value, 1.0, false));
+    }
+
+    @Override
+    public void postInterfaceMetric(Metric metric, PsiClass anInterface, double value) {
+        values.add(new Value(MetricCategory.Interface, metric, MeasuredObjects.getId(anInterface), value, 1.0, false));
+    }
+
+    @Override
+    public void postMethodMetric(Metric metric, PsiMethod method, double value) {
+        values.add(new Value(MetricCategory.Method, metric, MeasuredObjects.getId(method), value, 1.0, false));
+    }
+
+    @Override
+    public void postProjectMetric(Metric metric, double numerator, double denominator) {
+        values.add(new Value(MetricCategory.Project, metric, "",
+                numerator, denominator, true));
+    }
+
+    @Override
+    public void postFileTypeMetric(Metric metric, FileType fileType, double numerator, double denominator) {
+        values.add(new Value(MetricCategory.FileType, metric, MeasuredObjects.getId(fileType),
+                numerator, denominator, true));
+    }
+
+    @Override
+    public void postModuleMetric(Metric metric, Module module, double numerator, double denominator) {
+        values.add(new Value(MetricCategory.Module, metric, MeasuredObjects.getId(module),
+                numerator, denominator, true));
+    }
+
+    @Override
+    public void postPackageMetric(Metric metric, PsiPackage aPackage, double numerator, double denominator) {
+        values.add(new Value(MetricCategory.Package, metric, MeasuredObjects.getId(aPackage),
+                numerator, denominator, true));
+    }
+
+    @Override
+    public void postClassMetric(Metric metric, PsiClass aClass, double numerator, double denominator) {
+        values.add(new Value(MetricCategory.Class, metric, MeasuredObjects.getId(aClass),
+                numerator, denominator, true));
+    }
+
+    @Override
+    public void postInterfaceMetric(Metric metric, PsiClass anInterface, double numerator, double denominator) {
+        values.add(new Value(MetricCategory.Interface, metric, MeasuredObjects.getId(anInterface),
+                numerator, denominator, true));
+    }
+
+    @Override
+    public void postMethodMetric(Metric metric, PsiMethod method, double numerator, double denominator) {
+        values.add(new Value(MetricCategory.Method, metric, MeasuredObjects.getId(method),
+                numerator, denominator, true));
+    }
+
+    static final class Value {
+
+        private final MetricCategory category;
+        private final Metric metric;
+        private final String measured;
+        private double numerator;
+        private double denominator;
+        private final boolean ratio;
+
+        Value(MetricCategory category, Metric metric, String measured,
+              double numerator, double denominator, boolean ratio) {
+            this.category = category;
+            this.metric = metric;
+            this.measured = measured;
+            this.numerator = numerator;
+            this.denominator = denominator;
+            this.ratio = ratio;
+        }
+
+        Metric getMetric() {
+            return metric;
+        }
+
+        MetricCategory getCategory() {
+            return category;
+        }
+
+        String getMeasured() {
+            return measured;
+        }
+
+        double getNumerator() {
+            return numerator;
+        }
+
+        double getDenominator() {
+            return denominator;
+        }
+
+        boolean isRatio() {
+            return ratio;
+        }
+
+        Value copy() {
+            return new Value(category, metric, measured, numerator, denominator, ratio);
+        }
+
+        void add(Value value) {
+            numerator += value.numerator;
+            if (ratio) {
+                denominator += value.denominator;
+            }
+        }
+
+        /**
+         * Posts this value for the specified measured object, which is the object identified by this value.
+         */
+        void postTo(MetricsResultsHolder resultsHolder, Object measured) {
+            switch (category) {
+                case Project:
+                    if (ratio) {
+                        resultsHolder.postProjectMetric(metric, numerator, denominator);
+                    } else {
+                        resultsHolder.postProjectMetric(metric, numerator);
+                    }
+                    break;
+                case FileType:
+                    if (ratio) {
+                        resultsHolder.postFileTypeMetric(metric, (FileType) measured, numerator, denominator);
+                    } else {
+                        resultsHolder.postFileTypeMetric(metric, (FileType) measured, numerator);
+                    }
+                    break;
+                case Module:
+                    if (ratio) {
+                        resultsHolder.postModuleMetric(metric, (Module) measured, numerator, denominator);
+                    } else {
+                        resultsHolder.postModuleMetric(metric, (Module) measured, numerator);
+                    }
+                    break;
+                case Package:
+                    if (ratio) {
+                        resultsHolder.postPackageMetric(metric, (PsiPackage) measured, numerator, denominator);
+                    } else {
+                        resultsHolder.postPackageMetric(metric, (PsiPackage) measured, numerator);
+                    }
+                    break;
+                case Class:
+                    if (ratio) {
+                        resultsHolder.postClassMetric(metric, (PsiClass) measured, numerator, denominator);
+                    } else {
+                        resultsHolder.postClassMetric(metric, (PsiClass) measured, numerator);
+                    }
+                    break;
+                case Interface:
+                    if (ratio) {
+                        resultsHolder.postInterfaceMetric(metric, (PsiClass) measured, numerator, denominator);
+                    } else {
+                        resultsHolder.postInterfaceMetric(metric, (PsiClass) measured, numerator);
+                    }
+                    break;
+                case Method:
+                    if (ratio) {
+                        resultsHolder.postMethodMetric(metric, (PsiMethod) measured, numerator, denominator);
+                    } else {
+                        resultsHolder.postMethodMetric(metric, (PsiMethod) measured, numerator);
+                    }
+                    break;
+            }
+        }
+    }
+}
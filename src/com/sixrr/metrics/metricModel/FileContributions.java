@@ -0,0 +1,81 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.sixrr.metrics.metricModel;
+
+import com.intellij.psi.PsiManager;
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricsResultsHolder;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The values posted by the file local calculators of a metrics run, per file.  A later run of the same metrics can
+ * take over the contributions of files which did not change, and only needs to process the other files.  The
+ * values of package, module and project metrics are totalled over all contributions.
+ */
+public final class FileContributions {
+
+    private final Set<String> metricIds;
+    private final Map<String, FileContribution> contributions = new ConcurrentHashMap<String, FileContribution>();
+
+    FileContributions(Collection<Metric> metrics) {
+        metricIds = new HashSet<String>(metrics.size());
+        for (Metric metric : metrics) {
+            metricIds.add(metric.getID());
+        }
+    }
+
+    /**
+     * Returns true if these contributions were recorded for exactly the specified metrics.
+     */
+    boolean isRecordedFor(FileContributions other) {
+        return metricIds.equals(other.metricIds);
+    }
+
+    /**
+     * Returns the contribution of the file at the specified path, or null if it is missing or out of date.
+     */
+    @Nullable
+    FileContribution get(String path, long modificationStamp) {
+        final FileContribution contribution = contributions.get(path);
+        if (contribution == null || !contribution.isUpToDate(modificationStamp)) {
+            return null;
+        }
+        return contribution;
+    }
+
+    void put(String path, FileContribution contribution) {
+        contributions.put(path, contribution);
+    }
+
+    /**
+     * Posts the total values of all contributions.
+     */
+    void postTo(MetricsResultsHolder resultsHolder, PsiManager psiManager) {
+        final Map<Metric, Map<Object, FileContribution.Value>> totals =
+                new LinkedHashMap<Metric, Map<Object, FileContribution.Value>>();
+        for (FileContribution contribution : contributions.values()) {
+            contribution.addTo(totals, psiManager);
+        }
+        for (Map<Object, FileContribution.Value> metricTotals : totals.values()) {
+            for (Map.Entry<Object, FileContribution.Value> entry : metricTotals.entrySet()) {
+                entry.getValue().postTo(resultsHolder, entry.getKey());
+            }
+        }
+    }
+}
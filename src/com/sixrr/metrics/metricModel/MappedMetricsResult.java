@@ -0,0 +1,358 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.metrics.metricModel;
+
+import com.intellij.psi.PsiElement;
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricType;
+import com.sixrr.metrics.profile.MetricInstance;
+import com.sixrr.metrics.profile.MetricsProfile;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The results of one category of a binary snapshot, read in place from a mapped buffer.  Measured objects are
+ * found by binary search in the sorted string table, and values are only decoded when asked for.  Read only, so
+ * posting a value throws {@link UnsupportedOperationException}.
+ */
+public class MappedMetricsResult implements MetricsResult {
+
+    private final MappedMetricsRun run;
+    private final int numObjects;
+    private final int offsetsPosition;
+    private final int stringsPosition;
+    private final int columnsPosition;
+    private final Map<Metric, Integer> columns;
+    // decoded on first request, after which it is used for lookups as well
+    private volatile String[] measuredObjects = null;
+    private boolean released = false;
+
+    /**
+     * @param columns  the index of the column of every known metric in the snapshot, in snapshot order.
+     */
+    MappedMetricsResult(MappedMetricsRun run, int numObjects, int offsetsPosition, int stringsPosition,
+                        int columnsPosition, LinkedHashMap<Metric, Integer> columns) {
+        this.run = run;
+        this.numObjects = numObjects;
+        this.offsetsPosition = offsetsPosition;
+        this.stringsPosition = stringsPosition;
+        this.columnsPosition = columnsPosition;
+        this.columns = columns;
+    }
+
+    /**
+     * Tells the snapshot these results are no longer used.  The snapshot is unmapped once the results of all its
+     * categories are released.  Releasing results more than once has no effect.
+     */
+    public synchronized void release() {
+        if (!released) {
+            released = true;
+            run.release();
+        }
+    }
+
+    @Override
+    public void postValue(Metric metric, String measured, double value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void postValue(Metric metric, String measured, double numerator, double denominator) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    @Nullable
+    public Double getValueForMetric(Metric metric, String measured) {
+        final long bits = getBits(metric, measured);
+        return bits == BinarySnapshot.ABSENT ? null : Double.valueOf(Double.longBitsToDouble(bits));
+    }
+
+    @Override
+    public boolean hasValueForMetric(Metric metric, String measured) {
+        return getBits(metric, measured) != BinarySnapshot.ABSENT;
+    }
+
+    @Override
+    public double getDoubleValueForMetric(Metric metric, String measured) {
+        final long bits = getBits(metric, measured);
+        return bits == BinarySnapshot.ABSENT ? Double.NaN : Double.longBitsToDouble(bits);
+    }
+
+    private long getBits(Metric metric, String measured) {
+        final Integer column = columns.get(metric);
+        if (column == null || measured == null) {
+            return BinarySnapshot.ABSENT;
+        }
+        final int index = indexOf(measured);
+        if (index < 0) {
+            return BinarySnapshot.ABSENT;
+        }
+        return run.getBuffer().getLong(getPosition(column.intValue(), index));
+    }
+
+    private int getPosition(int column, int index) {
+        return columnsPosition + ((column * numObjects + index) << 3);
+    }
+
+    private int indexOf(String measured) {
+        final String[] decoded = measuredObjects;
+        if (decoded != null) {
+            return Arrays.binarySearch(decoded, measured);
+        }
+        int low = 0;
+        int high = numObjects - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int comparison = getMeasuredObject(middle).compareTo(measured);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private String getMeasuredObject(int index) {
+        final ByteBuffer buffer = run.getBuffer();
+        final int position = stringsPosition + buffer.getInt(offsetsPosition + (index << 2));
+        final byte[] bytes = new byte[buffer.getInt(position)];
+        final ByteBuffer source = buffer.duplicate();
+        source.position(position + 4);
+        source.get(bytes);
+        return new String(bytes, BinarySnapshot.UTF_8);
+    }
+
+    /**
+     * Returns the measured objects which have a value for at least one metric, like {@link MetricsResultImpl}.
+     */
+    @Override
+    public String[] getMeasuredObjects() {
+        String[] decoded = measuredObjects;
+        if (decoded == null) {
+            decoded = new String[numObjects];
+            for (int i = 0; i < numObjects; i++) {
+                decoded[i] = getMeasuredObject(i);
+            }
+            measuredObjects = decoded;
+        }
+        final String[] result = new String[numObjects];
+        int count = 0;
+        for (int i = 0; i < numObjects; i++) {
+            if (isMeasured(i)) {
+                result[count] = decoded[i];
+                count++;
+            }
+        }
+        return count == numObjects ? result : Arrays.copyOf(result, count);
+    }
+
+    private boolean isMeasured(int index) {
+        for (Integer column : columns.values()) {
+            if (run.getBuffer().getLong(getPosition(column.intValue(), index)) != BinarySnapshot.ABSENT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public double[] getValuesForMetric(Metric metric, BitSet present) {
+        final ByteBuffer buffer = run.getBuffer();
+        final Integer column = columns.get(metric);
+        final double[] values = new double[numObjects];
+        int count = 0;
+        for (int i = 0; i < numObjects; i++) {
+            if (!isMeasured(i)) {
+                continue;
+            }
+            final long bits =
+                    column == null ? BinarySnapshot.ABSENT : buffer.getLong(getPosition(column.intValue(), i));
+            if (bits == BinarySnapshot.ABSENT) {
+                values[count] = Double.NaN;
+            } else {
+                values[count] = Double.longBitsToDouble(bits);
+                present.set(count);
+            }
+            count++;
+        }
+        return count == numObjects ? values : Arrays.copyOf(values, count);
+    }
+
+    @Override
+    public Metric[] getMetrics() {
+        return columns.keySet().toArray(new Metric[columns.size()]);
+    }
+
+    @Override
+    @Nullable
+    public Double getTotalForMetric(Metric metric) {
+        final ByteBuffer buffer = run.getBuffer();
+        if (metric.getType() != MetricType.Count) {
+            return null;
+        }
+        final Integer column = columns.get(metric);
+        if (column == null) {
+            return Double.valueOf(0.0);
+        }
+        double total = 0.0;
+        for (int i = 0; i < numObjects; i++) {
+            final long bits = buffer.getLong(getPosition(column.intValue(), i));
+            if (bits != BinarySnapshot.ABSENT) {
+                total += Double.longBitsToDouble(bits);
+            }
+        }
+        return Double.valueOf(total);
+    }
+
+    @Override
+    @Nullable
+    public Double getAverageForMetric(Metric metric) {
+        final ByteBuffer buffer = run.getBuffer();
+        final MetricType metricType = metric.getType();
+        if (metricType == MetricType.RecursiveCount || metricType == MetricType.RecursiveRatio) {
+            return null;
+        }
+        final Integer column = columns.get(metric);
+        if (column == null) {
+            return Double.valueOf(0.0);
+        }
+        double total = 0.0;
+        int count = 0;
+        for (int i = 0; i < numObjects; i++) {
+            final long bits = buffer.getLong(getPosition(column.intValue(), i));
+            if (bits != BinarySnapshot.ABSENT) {
+                total += Double.longBitsToDouble(bits);
+                count++;
+            }
+        }
+        return Double.valueOf(count == 0 ? 1.0 : total / (double) count);
+    }
+
+    @Override
+    @Nullable
+    public Double getMinimumForMetric(Metric metric) {
+        final ByteBuffer buffer = run.getBuffer();
+        final Integer column = columns.get(metric);
+        if (column == null) {
+            return Double.valueOf(0.0);
+        }
+        double minimum = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < numObjects; i++) {
+            final long bits = buffer.getLong(getPosition(column.intValue(), i));
+            if (bits != BinarySnapshot.ABSENT) {
+                minimum = Math.min(minimum, Double.longBitsToDouble(bits));
+            }
+        }
+        return Double.valueOf(minimum);
+    }
+
+    @Override
+    @Nullable
+    public Double getMaximumForMetric(Metric metric) {
+        final ByteBuffer buffer = run.getBuffer();
+        final Integer column = columns.get(metric);
+        if (column == null) {
+            return Double.valueOf(0.0);
+        }
+        double maximum = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < numObjects; i++) {
+            final long bits = buffer.getLong(getPosition(column.intValue(), i));
+            if (bits != BinarySnapshot.ABSENT) {
+                maximum = Math.max(maximum, Double.longBitsToDouble(bits));
+            }
+        }
+        return Double.valueOf(maximum);
+    }
+
+    /**
+     * Does nothing, a snapshot has no elements.
+     */
+    @Override
+    public void setElementForMeasuredObject(String measuredObject, PsiElement element) {}
+
+    @Override
+    @Nullable
+    public PsiElement getElementForMeasuredObject(String measuredObject) {
+        return null;
+    }
+
+    @Override
+    public boolean hasWarnings(MetricsProfile profile) {
+        final ByteBuffer buffer = run.getBuffer();
+        for (Map.Entry<Metric, Integer> entry : columns.entrySet()) {
+            final MetricInstance metricInstance = profile.getMetricInstance(entry.getKey());
+            assert metricInstance != null : "no instance found for " + entry.getKey().getID();
+            final int column = entry.getValue().intValue();
+            for (int i = 0; i < numObjects; i++) {
+                final long bits = buffer.getLong(getPosition(column, i));
+                if (bits != BinarySnapshot.ABSENT &&
+                        isOutsideThresholds(metricInstance, Double.longBitsToDouble(bits))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isOutsideThresholds(MetricInstance metricInstance, double value) {
+        if (metricInstance.isUpperThresholdEnabled() && value > metricInstance.getUpperThreshold()) {
+            return true;
+        }
+        return metricInstance.isLowerThresholdEnabled() && value < metricInstance.getLowerThreshold();
+    }
+
+    @Override
+    public MetricsResult filterRowsWithoutWarnings(MetricsProfile profile) {
+        final ByteBuffer buffer = run.getBuffer();
+        final MetricsResult out = new MetricsResultImpl();
+        for (int i = 0; i < numObjects; i++) {
+            boolean found = false;
+            for (Map.Entry<Metric, Integer> entry : columns.entrySet()) {
+                final MetricInstance metricInstance = profile.getMetricInstance(entry.getKey());
+                assert metricInstance != null : "no instance found for " + entry.getKey().getID();
+                if (!metricInstance.isEnabled()) {
+                    continue;
+                }
+                final long bits = buffer.getLong(getPosition(entry.getValue().intValue(), i));
+                if (bits != BinarySnapshot.ABSENT &&
+                        isOutsideThresholds(metricInstance, Double.longBitsToDouble(bits))) {
+                    found = true;
+                    break;
+                }
+            }
+            if (found) {
+                final String measuredObject = getMeasuredObject(i);
+                for (Map.Entry<Metric, Integer> entry : columns.entrySet()) {
+                    final long bits = buffer.getLong(getPosition(entry.getValue().intValue(), i));
+                    if (bits != BinarySnapshot.ABSENT) {
+                        out.postValue(entry.getKey(), measuredObject, Double.longBitsToDouble(bits));
+                    }
+                }
+            }
+        }
+        return out;
+    }
+}
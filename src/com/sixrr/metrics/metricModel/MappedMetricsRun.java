@@ -0,0 +1,329 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.metrics.metricModel;
+
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.module.Module;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiPackage;
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricCategory;
+import com.sixrr.metrics.profile.MetricRepository;
+import com.sixrr.metrics.profile.MetricsProfile;
+import com.sixrr.metrics.profile.MetricsProfileRepository;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * A read only run backed by a memory mapped binary snapshot.  Opening it only reads the header of every category,
+ * so a snapshot of any size can be compared with instantly.  Values are decoded when they are requested.
+ * <p>
+ * The mapping is released by {@link #close()}, or when every category's results have been released with
+ * {@link MappedMetricsResult#release()}.  Results must not be used afterwards.
+ */
+public final class MappedMetricsRun implements MetricsRun {
+
+    private static final Logger logger = Logger.getInstance("MetricsReloaded");
+
+    private final File file;
+    private final String profileName;
+    private final TimeStamp timestamp;
+    private final Map<MetricCategory, MetricsResult> metricResults =
+            new EnumMap<MetricCategory, MetricsResult>(MetricCategory.class);
+    // null once the mapping is released
+    private volatile MappedByteBuffer buffer;
+    private int numOpenResults = 0;
+
+    private MappedMetricsRun(File file, MappedByteBuffer buffer, String profileName, TimeStamp timestamp) {
+        this.file = file;
+        this.buffer = buffer;
+        this.profileName = profileName;
+        this.timestamp = timestamp;
+        for (MetricCategory category : MetricCategory.values()) {
+            metricResults.put(category, new MetricsResultImpl());
+        }
+    }
+
+    /**
+     * Opens the snapshot in the specified file, or returns null if it is not a binary snapshot.
+     * Other snapshots can be read with {@link MetricsRunImpl#readFromFile(File)}.
+     */
+    @Nullable
+    public static MappedMetricsRun open(@NotNull File file) {
+        return open(file, MetricsProfileRepository.getInstance());
+    }
+
+    @Nullable
+    static MappedMetricsRun open(@NotNull File file, @NotNull MetricRepository repository) {
+        if (!BinarySnapshot.isBinarySnapshot(file) || file.length() > Integer.MAX_VALUE) {
+            return null;
+        }
+        try {
+            final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+            final MappedByteBuffer buffer;
+            try {
+                // the mapping stays valid after the channel is closed
+                buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0L, file.length());
+            } finally {
+                randomAccessFile.close();
+            }
+            final MappedMetricsRun run = read(file, buffer, repository);
+            if (run == null) {
+                unmap(buffer);
+            }
+            return run;
+        } catch (IOException e) {
+            logger.warn(e);
+        } catch (BufferUnderflowException e) {
+            logger.warn("Truncated snapshot: " + file, e);
+        } catch (IndexOutOfBoundsException e) {
+            logger.warn("Truncated snapshot: " + file, e);
+        }
+        return null;
+    }
+
+    @Nullable
+    private static MappedMetricsRun read(File file, MappedByteBuffer buffer, MetricRepository repository) {
+        buffer.position(4);
+        if (buffer.getInt() != BinarySnapshot.VERSION || buffer.getInt() != 0) {
+            return null;
+        }
+        final String profileName = readString(buffer);
+        final TimeStamp timestamp = new TimeStamp(readString(buffer));
+        final MappedMetricsRun run = new MappedMetricsRun(file, buffer, profileName, timestamp);
+        final MetricCategory[] categories = MetricCategory.values();
+        final int numCategories = buffer.getInt();
+        for (int i = 0; i < numCategories; i++) {
+            final MetricCategory category = categories[buffer.getInt()];
+            final int numObjects = buffer.getInt();
+            final int numMetrics = buffer.getInt();
+            final LinkedHashMap<Metric, Integer> columns = new LinkedHashMap<Metric, Integer>(numMetrics);
+            for (int column = 0; column < numMetrics; column++) {
+                final Metric metric = repository.getMetric(readString(buffer));
+                if (metric != null) {
+                    columns.put(metric, Integer.valueOf(column));
+                }
+            }
+            final int offsetsPosition = buffer.position();
+            buffer.position(offsetsPosition + (numObjects << 2));
+            final int stringDataLength = buffer.getInt();
+            final int stringsPosition = buffer.position();
+            final int columnsPosition = stringsPosition + stringDataLength;
+            buffer.position(columnsPosition + (numMetrics * numObjects << 3));
+            run.metricResults.put(category, new MappedMetricsResult(run, numObjects, offsetsPosition,
+                    stringsPosition, columnsPosition, columns));
+            run.numOpenResults++;
+        }
+        return run;
+    }
+
+    /**
+     * Returns the mapped snapshot.
+     * @throws IllegalStateException if this run was closed.
+     */
+    ByteBuffer getBuffer() {
+        final ByteBuffer result = buffer;
+        if (result == null) {
+            throw new IllegalStateException("Snapshot closed: " + file);
+        }
+        return result;
+    }
+
+    /**
+     * Releases the results of one category, and the mapping once the results of all categories are released.
+     */
+    synchronized void release() {
+        numOpenResults--;
+        if (numOpenResults == 0) {
+            close();
+        }
+    }
+
+    /**
+     * Releases the mapping of the snapshot file right away, instead of when it is garbage collected, which also
+     * allows the file to be deleted or overwritten on Windows.  The results of this run must not be used afterwards.
+     */
+    public synchronized void close() {
+        final MappedByteBuffer mappedBuffer = buffer;
+        if (mappedBuffer == null) {
+            return;
+        }
+        buffer = null;
+        unmap(mappedBuffer);
+    }
+
+    private static void unmap(MappedByteBuffer buffer) {
+        // there is no public api to unmap a buffer, so invoke the cleaner of the jdk when it is available
+        try {
+            final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            final Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            // the mapping is released when the buffer is garbage collected
+            logger.info("Could not unmap snapshot", e);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, BinarySnapshot.UTF_8);
+    }
+
+    @Override
+    public List<Metric> getMetrics() {
+        final Set<Metric> allMetrics = new HashSet<Metric>();
+        for (MetricsResult result : metricResults.values()) {
+            allMetrics.addAll(Arrays.asList(result.getMetrics()));
+        }
+        return new ArrayList<Metric>(allMetrics);
+    }
+
+    @Override
+    public MetricsResult getResultsForCategory(MetricCategory category) {
+        return metricResults.get(category);
+    }
+
+    /**
+     * Writes a copy of this snapshot, in the binary format if the file name ends with {@link BinarySnapshot#EXTENSION}
+     * and as XML otherwise.
+     */
+    @Override
+    public void writeToFile(String fileName) {
+        try {
+            if (fileName.endsWith(BinarySnapshot.EXTENSION)) {
+                BinarySnapshot.write(this, new File(fileName));
+            } else {
+                BinarySnapshot.read(file).writeToFile(fileName);
+            }
+        } catch (IOException e) {
+            logger.warn(e);
+        }
+    }
+
+    @Override
+    public String getProfileName() {
+        return profileName;
+    }
+
+    @Override
+    public TimeStamp getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public AnalysisScope getContext() {
+        return null;
+    }
+
+    @Override
+    public MetricsRun filterRowsWithoutWarnings(MetricsProfile profile) {
+        final MetricsRunImpl out = new MetricsRunImpl();
+        out.setProfileName(profileName);
+        out.setTimestamp(timestamp);
+        for (MetricCategory category : MetricCategory.values()) {
+            out.setResultsForCategory(category, getResultsForCategory(category).filterRowsWithoutWarnings(profile));
+        }
+        return out;
+    }
+
+    @Override
+    public void postProjectMetric(Metric metric, double value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void postFileTypeMetric(Metric metric, FileType fileType, double value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void postModuleMetric(Metric metric, Module module, double value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void postPackageMetric(Metric metric, PsiPackage aPackage, double value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void postClassMetric(Metric metric, PsiClass aClass, double value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void postInterfaceMetric(Metric metric, PsiClass anInterface, double value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void postMethodMetric(Metric metric, PsiMethod method, double value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void postProjectMetric(Metric metric, double numerator, double denominator) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void postFileTypeMetric(Metric metric, FileType fileType, double numerator, double denominator) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void postModuleMetric(Metric metric, Module module, double numerator, double denominator) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void postPackageMetric(Metric metric, PsiPackage aPackage, double numerator, double denominator) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void postClassMetric(Metric metric, PsiClass aClass, double numerator, double denominator) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void postInterfaceMetric(Metric metric, PsiClass anInterface, double numerator, double denominator) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void postMethodMetric(Metric metric, PsiMethod method, double numerator, double denominator) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.sixrr.metrics.metricModel;
+
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.fileTypes.FileTypeManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiPackage;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.sixrr.metrics.MetricCategory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Identifies the objects measured by file local metrics without referencing them, and finds them again in a file.
+ * Classes and methods are identified by their offset in the file, which stays valid for as long as the contents of
+ * the file are unchanged.  Packages, modules and file types are identified by their name.
+ */
+final class MeasuredObjects {
+
+    private final PsiFile file;
+
+    MeasuredObjects(PsiFile file) {
+        this.file = file;
+    }
+
+    @NotNull
+    static String getId(@NotNull Object measured) {
+        if (measured instanceof PsiPackage) {
+            return ((PsiPackage) measured).getQualifiedName();
+        } else if (measured instanceof PsiElement) {
+            return Integer.toString(((PsiElement) measured).getTextRange().getStartOffset());
+        } else if (measured instanceof Module) {
+            return ((Module) measured).getName();
+        } else if (measured instanceof FileType) {
+            return ((FileType) measured).getName();
+        }
+        throw new IllegalArgumentException("unexpected measured object: " + measured);
+    }
+
+    /**
+     * Returns the object with the specified id, or null if it can't be found.  Project values are not measured
+     * on any object, so null is returned for those as well.
+     */
+    @Nullable
+    Object find(MetricCategory category, String id) {
+        switch (category) {
+            case Method:
+                return findAtOffset(id, PsiMethod.class);
+            case Class:
+            case Interface:
+                return findAtOffset(id, PsiClass.class);
+            case Package:
+                return JavaPsiFacade.getInstance(file.getProject()).findPackage(id);
+            case Module:
+                return ModuleManager.getInstance(file.getProject()).findModuleByName(id);
+            case FileType:
+                return FileTypeManager.getInstance().findFileTypeByName(id);
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    private <T extends PsiElement> T findAtOffset(String id, Class<T> aClass) {
+        final int offset;
+        try {
+            offset = Integer.parseInt(id);
+        } catch (NumberFormatException ignore) {
+            return null;
+        }
+        return PsiTreeUtil.findElementOfClassAtOffset(file, offset, aClass, true);
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.metrics.metricModel;
+
+import com.sixrr.metrics.Metric;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * The difference between the results of a category in two runs.  The measured objects of both runs are sorted once
+ * and merge joined.  The values of a metric are read into primitive columns over the joined rows when the metric is
+ * first accessed, a whole column at once, so a table only reads the columns it shows, and rows, values and deltas
+ * can be accessed afterwards without lookups or boxing.  Because columns are read lazily, a diff must not be used by
+ * several threads at the same time.
+ * <p>
+ * Rows are sorted by measured object.  A row is {@link #ADDED} when it only has values in the current run,
+ * {@link #REMOVED} when it only has values in the previous run, and {@link #CHANGED} when the value of at least one
+ * metric differs.
+ */
+public final class MetricsDiff {
+
+    public static final byte UNCHANGED = 0;
+    public static final byte CHANGED = 1;
+    public static final byte ADDED = 2;
+    public static final byte REMOVED = 3;
+
+    private static final long ABSENT = BinarySnapshot.ABSENT;
+
+    private final MetricsResult results;
+    private final MetricsResult previousResults;
+    private final String[] measuredObjects;
+    // the index of every row in the measured objects of each result, or -1 if the result does not have the row
+    private final int[] indices;
+    private final int[] previousIndices;
+    private final Metric[] metrics;
+    private final Map<Metric, Integer> metricIndices;
+    // raw bits of the values, ABSENT where a row has no value, read on first access
+    private final long[][] values;
+    private final long[][] previousValues;
+    private byte[] states = null;
+
+    private MetricsDiff(MetricsResult results, MetricsResult previousResults, String[] measuredObjects,
+                        int[] indices, int[] previousIndices, Metric[] metrics) {
+        this.results = results;
+        this.previousResults = previousResults;
+        this.measuredObjects = measuredObjects;
+        this.indices = indices;
+        this.previousIndices = previousIndices;
+        this.metrics = metrics;
+        values = new long[metrics.length][];
+        previousValues = new long[metrics.length][];
+        metricIndices = new HashMap<Metric, Integer>(metrics.length * 2);
+        for (int i = 0; i < metrics.length; i++) {
+            metricIndices.put(metrics[i], Integer.valueOf(i));
+        }
+    }
+
+    public static MetricsDiff compute(@NotNull MetricsResult results, @NotNull MetricsResult previousResults) {
+        final Set<Metric> allMetrics = new LinkedHashSet<Metric>();
+        Collections.addAll(allMetrics, results.getMetrics());
+        Collections.addAll(allMetrics, previousResults.getMetrics());
+        final Metric[] metrics = allMetrics.toArray(new Metric[allMetrics.size()]);
+
+        final String[] objects = results.getMeasuredObjects();
+        final int[] order = sort(objects);
+        final String[] previousObjects = previousResults.getMeasuredObjects();
+        final int[] previousOrder = sort(previousObjects);
+
+        // merge join, rows which exist in both runs are matched by position in the sorted order
+        final int capacity = objects.length + previousObjects.length;
+        final String[] rows = new String[capacity];
+        final int[] indices = new int[capacity];
+        final int[] previousIndices = new int[capacity];
+        int numRows = 0;
+        int i = 0;
+        int j = 0;
+        while (i < objects.length || j < previousObjects.length) {
+            final int comparison;
+            if (i == objects.length) {
+                comparison = 1;
+            } else if (j == previousObjects.length) {
+                comparison = -1;
+            } else {
+                comparison = objects[order[i]].compareTo(previousObjects[previousOrder[j]]);
+            }
+            if (comparison < 0) {
+                rows[numRows] = objects[order[i]];
+                indices[numRows] = order[i++];
+                previousIndices[numRows] = -1;
+            } else if (comparison > 0) {
+                rows[numRows] = previousObjects[previousOrder[j]];
+                indices[numRows] = -1;
+                previousIndices[numRows] = previousOrder[j++];
+            } else {
+                rows[numRows] = objects[order[i]];
+                indices[numRows] = order[i++];
+                previousIndices[numRows] = previousOrder[j++];
+            }
+            numRows++;
+        }
+        return new MetricsDiff(results, previousResults, Arrays.copyOf(rows, numRows),
+                Arrays.copyOf(indices, numRows), Arrays.copyOf(previousIndices, numRows), metrics);
+    }
+
+    /**
+     * Returns the indices of the measured objects in ascending order of the measured objects.
+     */
+    private static int[] sort(final String[] measuredObjects) {
+        final Integer[] order = new Integer[measuredObjects.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = Integer.valueOf(i);
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer index1, Integer index2) {
+                return measuredObjects[index1.intValue()].compareTo(measuredObjects[index2.intValue()]);
+            }
+        });
+        final int[] result = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = order[i].intValue();
+        }
+        return result;
+    }
+
+    private long[] getColumn(int metric) {
+        long[] column = values[metric];
+        if (column == null) {
+            column = readColumn(results, metrics[metric], indices);
+            values[metric] = column;
+        }
+        return column;
+    }
+
+    private long[] getPreviousColumn(int metric) {
+        long[] column = previousValues[metric];
+        if (column == null) {
+            column = readColumn(previousResults, metrics[metric], previousIndices);
+            previousValues[metric] = column;
+        }
+        return column;
+    }
+
+    private static long[] readColumn(MetricsResult results, Metric metric, int[] indices) {
+        final BitSet present = new BitSet();
+        final double[] column = results.getValuesForMetric(metric, present);
+        final long[] result = new long[indices.length];
+        for (int row = 0; row < indices.length; row++) {
+            final int index = indices[row];
+            result[row] = index >= 0 && present.get(index) ? Double.doubleToRawLongBits(column[index]) : ABSENT;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the state of every row.  Reads the columns of all metrics, because a row changed when any of its
+     * values changed.
+     */
+    private byte[] getStates() {
+        if (states != null) {
+            return states;
+        }
+        final int numRows = measuredObjects.length;
+        final byte[] result = new byte[numRows];
+        final BitSet candidates = new BitSet(numRows);
+        for (int row = 0; row < numRows; row++) {
+            if (previousIndices[row] < 0) {
+                result[row] = ADDED;
+            } else if (indices[row] < 0) {
+                result[row] = REMOVED;
+            } else {
+                candidates.set(row);
+            }
+        }
+        for (int m = 0; m < metrics.length; m++) {
+            final long[] column = getColumn(m);
+            final long[] previousColumn = getPreviousColumn(m);
+            for (int row = candidates.nextSetBit(0); row >= 0; row = candidates.nextSetBit(row + 1)) {
+                if (column[row] != previousColumn[row]) {
+                    result[row] = CHANGED;
+                    candidates.clear(row);
+                }
+            }
+        }
+        states = result;
+        return result;
+    }
+
+    public int getRowCount() {
+        return measuredObjects.length;
+    }
+
+    public String getMeasuredObject(int row) {
+        return measuredObjects[row];
+    }
+
+    /**
+     * Returns the measured objects of both runs, sorted.
+     */
+    public String[] getMeasuredObjects() {
+        return measuredObjects.clone();
+    }
+
+    public byte getState(int row) {
+        return getStates()[row];
+    }
+
+    public int countRows(byte state) {
+        int count = 0;
+        for (byte rowState : getStates()) {
+            if (rowState == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public Metric[] getMetrics() {
+        return metrics.clone();
+    }
+
+    /**
+     * Returns the index of the specified metric in {@link #getMetrics()}, or -1 if neither run has values for it.
+     */
+    public int indexOf(Metric metric) {
+        final Integer index = metricIndices.get(metric);
+        return index == null ? -1 : index.intValue();
+    }
+
+    public boolean hasValue(int metric, int row) {
+        return getColumn(metric)[row] != ABSENT;
+    }
+
+    public boolean hasPreviousValue(int metric, int row) {
+        return getPreviousColumn(metric)[row] != ABSENT;
+    }
+
+    /**
+     * Returns the value in the current run, or NaN if there is none.
+     */
+    public double getValue(int metric, int row) {
+        return toDouble(getColumn(metric)[row]);
+    }
+
+    /**
+     * Returns the value in the previous run, or NaN if there is none.
+     */
+    public double getPreviousValue(int metric, int row) {
+        return toDouble(getPreviousColumn(metric)[row]);
+    }
+
+    /**
+     * Returns the current value minus the previous value, or NaN if either run has no value.
+     */
+    public double getDelta(int metric, int row) {
+        return getValue(metric, row) - getPreviousValue(metric, row);
+    }
+
+    /**
+     * Returns the values of the current run, of the rows which have one.
+     */
+    public double[] getValues(int metric) {
+        return getPresentValues(getColumn(metric));
+    }
+
+    /**
+     * Returns the values of the previous run, of the rows which have one.
+     */
+    public double[] getPreviousValues(int metric) {
+        return getPresentValues(getPreviousColumn(metric));
+    }
+
+    private static double[] getPresentValues(long[] column) {
+        final double[] result = new double[column.length];
+        int count = 0;
+        for (long bits : column) {
+            if (bits != ABSENT) {
+                result[count] = Double.longBitsToDouble(bits);
+                count++;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    private static double toDouble(long bits) {
+        return bits == ABSENT ? Double.NaN : Double.longBitsToDouble(bits);
+    }
+}
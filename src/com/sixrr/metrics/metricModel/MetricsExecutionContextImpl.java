@@ -17,6 +17,8 @@
 package com.sixrr.metrics.metricModel;
 
 import com.intellij.analysis.AnalysisScope;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
@@ -27,30 +29,53 @@ import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiCompiledElement;
+import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.Processor;
+import com.sixrr.metrics.FileAnalysis;
+import com.sixrr.metrics.FileLocalMetricCalculator;
+import com.sixrr.metrics.MergeableMetricCalculator;
 import com.sixrr.metrics.Metric;
 import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.MetricsExecutionContext;
 import com.sixrr.metrics.MetricsResultsHolder;
+import com.sixrr.metrics.SharedAnalysis;
+import com.sixrr.metrics.SharedTraversal;
+import com.sixrr.metrics.SharedTraversalMetricCalculator;
+import com.sixrr.metrics.config.MetricsReloadedConfig;
 import com.sixrr.metrics.profile.MetricInstance;
 import com.sixrr.metrics.profile.MetricsProfile;
 import com.sixrr.metrics.utils.MetricsReloadedBundle;
+import com.sixrr.metrics.utils.ParallelUtils;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MetricsExecutionContextImpl implements MetricsExecutionContext {
 
     private final Project project;
     private final AnalysisScope scope;
+    private int parallelism;
+    private List<Metric> fileLocalMetrics = null;
+    private FileContributions contributions = null;
+    private FileContributions previousContributions = null;
+    private MetricsResultCache resultCache = null;
 
     public MetricsExecutionContextImpl(Project project, AnalysisScope scope) {
         this.project = project;
         this.scope = scope;
+        parallelism = MetricsReloadedConfig.getInstance().isParallelCalculation()
+                ? Runtime.getRuntime().availableProcessors() : 1;
     }
 
     public final void execute(final MetricsProfile profile, final MetricsResultsHolder resultsHolder) {
@@ -77,8 +102,68 @@ public class MetricsExecutionContextImpl implements MetricsExecutionContext {
 
     public void calculateMetrics(MetricsProfile profile, final MetricsResultsHolder resultsHolder) {
         final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
-        final List<MetricInstance> metrics = profile.getMetricInstances();
-        indicator.setText(MetricsReloadedBundle.message("initializing.progress.string"));
+        final List<MetricInstance> metrics = new ArrayList<MetricInstance>();
+        final List<Metric> fileLocalMetrics = new ArrayList<Metric>();
+        for (MetricInstance metricInstance : profile.getMetricInstances()) {
+            if (!metricInstance.isEnabled()) {
+                continue;
+            }
+            final Metric metric = metricInstance.getMetric();
+            if (metric.createCalculator() instanceof FileLocalMetricCalculator) {
+                fileLocalMetrics.add(metric);
+            } else {
+                metrics.add(metricInstance);
+            }
+        }
+        final FileContributions contributions;
+        if (fileLocalMetrics.isEmpty()) {
+            contributions = null;
+        } else {
+            contributions = new FileContributions(fileLocalMetrics);
+            if (resultsHolder instanceof MetricsRunImpl) {
+                final FileContributions previousContributions =
+                        ((MetricsRunImpl) resultsHolder).getFileContributions();
+                if (previousContributions != null && previousContributions.isRecordedFor(contributions)) {
+                    this.previousContributions = previousContributions;
+                }
+            }
+        }
+        this.fileLocalMetrics = fileLocalMetrics;
+        this.contributions = contributions;
+        resultCache = contributions == null ? null : MetricsResultCache.load(project, fileLocalMetrics);
+        try {
+            indicator.setText(MetricsReloadedBundle.message("initializing.progress.string"));
+            if (parallelism > 1) {
+                calculateMetricsInParallel(metrics, resultsHolder, indicator);
+            } else {
+                calculateMetricsSerially(metrics, resultsHolder, indicator);
+            }
+            if (contributions != null) {
+                ApplicationManager.getApplication().runReadAction(new Runnable() {
+                    @Override
+                    public void run() {
+                        contributions.postTo(resultsHolder, PsiManager.getInstance(project));
+                    }
+                });
+            }
+            if (resultsHolder instanceof MetricsRunImpl) {
+                ((MetricsRunImpl) resultsHolder).setFileContributions(contributions);
+            }
+            if (resultCache != null) {
+                resultCache.save();
+            }
+        } finally {
+            resultCache = null;
+            this.fileLocalMetrics = null;
+            this.contributions = null;
+            previousContributions = null;
+            // release the analyses and the PSI elements they reference, even if this context is kept
+            sharedAnalyses.clear();
+        }
+    }
+
+    private void calculateMetricsSerially(List<MetricInstance> metrics, MetricsResultsHolder resultsHolder,
+                                          final ProgressIndicator indicator) {
         final int numFiles = scope.getFileCount();
         final int numMetrics = metrics.size();
         final List<MetricCalculator> calculators = new ArrayList<MetricCalculator>(numMetrics);
@@ -93,6 +178,7 @@ public class MetricsExecutionContextImpl implements MetricsExecutionContext {
             calculators.add(calculator);
             calculator.beginMetricsRun(metric, resultsHolder, this);
         }
+        final FileProcessor fileProcessor = new FileProcessor(calculators, false);
 
         scope.accept(new PsiElementVisitor() {
             private int mainTraversalProgress = 0;
@@ -117,9 +203,7 @@ public class MetricsExecutionContextImpl implements MetricsExecutionContext {
                 indicator.setText(MetricsReloadedBundle.message("analyzing.progress.string", fileName));
                 mainTraversalProgress++;
 
-                for (MetricCalculator calculator : calculators) {
-                    calculator.processFile(file);
-                }
+                fileProcessor.process(file);
                 indicator.setFraction((double) mainTraversalProgress / (double) numFiles);
             }
         });
@@ -131,6 +215,252 @@ public class MetricsExecutionContextImpl implements MetricsExecutionContext {
         }
     }
 
+    private void calculateMetricsInParallel(List<MetricInstance> metrics, MetricsResultsHolder resultsHolder,
+                                            final ProgressIndicator indicator) {
+        final List<VirtualFile> files = collectFiles();
+        final int numFiles = files.size();
+        final int numWorkers = Math.max(1, Math.min(parallelism, numFiles));
+        final MetricsResultsHolder synchronizedResultsHolder = new SynchronizedResultsHolder(resultsHolder);
+
+        // calculators are created and initialized on this thread, so shared data like the dependency map
+        // is built only once
+        final List<List<MetricCalculator>> workerCalculators = new ArrayList<List<MetricCalculator>>(numWorkers);
+        for (int i = 0; i < numWorkers; i++) {
+            final List<MetricCalculator> calculators = new ArrayList<MetricCalculator>(metrics.size());
+            final List<MetricCalculator> primaryCalculators = i == 0 ? null : workerCalculators.get(0);
+            int index = 0;
+            for (final MetricInstance metricInstance : metrics) {
+                indicator.checkCanceled();
+                if (!metricInstance.isEnabled()) {
+                    continue;
+                }
+                final Metric metric = metricInstance.getMetric();
+                final MetricCalculator calculator;
+                if (primaryCalculators != null &&
+                        !(primaryCalculators.get(index) instanceof MergeableMetricCalculator)) {
+                    // not safe to split, share a single instance between all workers
+                    calculator = primaryCalculators.get(index);
+                } else {
+                    calculator = metric.createCalculator();
+                    calculator.beginMetricsRun(metric, synchronizedResultsHolder, this);
+                }
+                calculators.add(calculator);
+                index++;
+            }
+            workerCalculators.add(calculators);
+        }
+        final List<FileProcessor> fileProcessors = new ArrayList<FileProcessor>(numWorkers);
+        for (List<MetricCalculator> calculators : workerCalculators) {
+            fileProcessors.add(new FileProcessor(calculators, true));
+        }
+
+        final AtomicInteger nextFile = new AtomicInteger(0);
+        final AtomicInteger filesProcessed = new AtomicInteger(0);
+        final List<Runnable> tasks = new ArrayList<Runnable>(numWorkers);
+        for (final FileProcessor fileProcessor : fileProcessors) {
+            tasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    processFiles(files, nextFile, filesProcessed, fileProcessor, indicator);
+                }
+            });
+        }
+        ParallelUtils.runInParallel(tasks, indicator);
+
+        indicator.setText(MetricsReloadedBundle.message("tabulating.results.progress.string"));
+        final List<MetricCalculator> primaryCalculators = workerCalculators.get(0);
+        for (int i = 0, size = primaryCalculators.size(); i < size; i++) {
+            indicator.checkCanceled();
+            final MetricCalculator calculator = primaryCalculators.get(i);
+            if (calculator instanceof MergeableMetricCalculator) {
+                final MergeableMetricCalculator mergeableCalculator = (MergeableMetricCalculator) calculator;
+                for (int j = 1; j < numWorkers; j++) {
+                    mergeableCalculator.merge(workerCalculators.get(j).get(i));
+                }
+            }
+            calculator.endMetricsRun();
+        }
+    }
+
+    private void processFiles(List<VirtualFile> files, AtomicInteger nextFile, AtomicInteger filesProcessed,
+                              final FileProcessor fileProcessor, ProgressIndicator indicator) {
+        final PsiManager psiManager = PsiManager.getInstance(project);
+        final Application application = ApplicationManager.getApplication();
+        final int numFiles = files.size();
+        while (true) {
+            indicator.checkCanceled();
+            final int index = nextFile.getAndIncrement();
+            if (index >= numFiles) {
+                return;
+            }
+            final VirtualFile virtualFile = files.get(index);
+            indicator.setText(MetricsReloadedBundle.message("analyzing.progress.string", virtualFile.getName()));
+            application.runReadAction(new Runnable() {
+                @Override
+                public void run() {
+                    if (!virtualFile.isValid()) {
+                        return;
+                    }
+                    final PsiFile file = psiManager.findFile(virtualFile);
+                    if (file == null || file instanceof PsiCompiledElement) {
+                        return;
+                    }
+                    fileProcessor.process(file);
+                }
+            });
+            indicator.setFraction((double) filesProcessed.incrementAndGet() / (double) numFiles);
+        }
+    }
+
+    /**
+     * Processes files for the calculators of one worker.  The file local metrics get calculators of their own, which
+     * are created once per worker and join the traversal of the other calculators, but only for files whose values
+     * can't be taken over from the previous run or from the result cache.
+     */
+    private class FileProcessor {
+
+        private final SharedTraversal traversal;
+        private final List<MetricCalculator> fileCalculators;
+        private final List<MetricCalculator> fileLocalCalculators;
+        private final SharedTraversal fileLocalTraversal;
+        private final List<MetricCalculator> fileLocalFileCalculators;
+        private final ContributionRecorder recorder = new ContributionRecorder();
+
+        /**
+         * @param parallel  true if the calculators which are not mergeable are shared with other workers.  Those are
+         *                  not thread safe, and can't join the traversal of this worker.
+         */
+        FileProcessor(List<MetricCalculator> calculators, boolean parallel) {
+            fileCalculators = new ArrayList<MetricCalculator>(calculators.size());
+            traversal = createTraversal(calculators, fileCalculators, parallel);
+            if (contributions == null) {
+                fileLocalCalculators = null;
+                fileLocalTraversal = null;
+                fileLocalFileCalculators = null;
+                return;
+            }
+            fileLocalCalculators = new ArrayList<MetricCalculator>(fileLocalMetrics.size());
+            for (Metric metric : fileLocalMetrics) {
+                final MetricCalculator calculator = metric.createCalculator();
+                calculator.beginMetricsRun(metric, recorder, MetricsExecutionContextImpl.this);
+                fileLocalCalculators.add(calculator);
+            }
+            final List<MetricCalculator> allCalculators =
+                    new ArrayList<MetricCalculator>(calculators.size() + fileLocalCalculators.size());
+            allCalculators.addAll(calculators);
+            allCalculators.addAll(fileLocalCalculators);
+            fileLocalFileCalculators = new ArrayList<MetricCalculator>(allCalculators.size());
+            fileLocalTraversal = createTraversal(allCalculators, fileLocalFileCalculators, parallel);
+        }
+
+        void process(PsiFile file) {
+            if (contributions == null) {
+                process(file, traversal, fileCalculators);
+                return;
+            }
+            final VirtualFile virtualFile = file.getVirtualFile();
+            final String path = virtualFile.getPath();
+            final long modificationStamp = file.getModificationStamp();
+            FileContribution contribution =
+                    previousContributions == null ? null : previousContributions.get(path, modificationStamp);
+            if (contribution != null) {
+                process(file, traversal, fileCalculators);
+                contributions.put(path, contribution);
+                return;
+            }
+            contribution = new FileContribution(virtualFile, modificationStamp);
+            if (resultCache.restore(virtualFile, contribution)) {
+                process(file, traversal, fileCalculators);
+                contributions.put(path, contribution);
+                return;
+            }
+            recorder.setContribution(contribution);
+            try {
+                process(file, fileLocalTraversal, fileLocalFileCalculators);
+                // file local calculators post the values of the file processed since the last call
+                for (MetricCalculator calculator : fileLocalCalculators) {
+                    calculator.endMetricsRun();
+                }
+            } finally {
+                recorder.setContribution(null);
+            }
+            resultCache.store(virtualFile, contribution);
+            contributions.put(path, contribution);
+        }
+
+        private void process(PsiFile file, SharedTraversal traversal, List<MetricCalculator> fileCalculators) {
+            fileAnalyses.set(new FileAnalyses(file));
+            try {
+                traversal.walk(file);
+                for (MetricCalculator calculator : fileCalculators) {
+                    if (calculator instanceof MergeableMetricCalculator) {
+                        calculator.processFile(file);
+                    } else {
+                        synchronized (calculator) {
+                            calculator.processFile(file);
+                        }
+                    }
+                }
+            } finally {
+                // release the file analyses and the PSI elements they reference
+                fileAnalyses.remove();
+            }
+        }
+    }
+
+    /**
+     * Collects the traversal visitors of all calculators which support a shared traversal into a single traversal.
+     * The other calculators are added to {@code fileCalculators}, and must process each file themselves.
+     */
+    private static SharedTraversal createTraversal(List<MetricCalculator> calculators,
+                                                   List<MetricCalculator> fileCalculators, boolean mergeableOnly) {
+        final List<PsiElementVisitor> visitors = new ArrayList<PsiElementVisitor>(calculators.size());
+        for (MetricCalculator calculator : calculators) {
+            if (calculator instanceof SharedTraversalMetricCalculator &&
+                    (!mergeableOnly || calculator instanceof MergeableMetricCalculator)) {
+                final PsiElementVisitor visitor = ((SharedTraversalMetricCalculator) calculator).getTraversalVisitor();
+                if (visitor != null) {
+                    visitors.add(visitor);
+                    continue;
+                }
+            }
+            fileCalculators.add(calculator);
+        }
+        return new SharedTraversal(visitors);
+    }
+
+    private List<VirtualFile> collectFiles() {
+        final List<VirtualFile> files = new ArrayList<VirtualFile>(scope.getFileCount());
+        final ProjectFileIndex fileIndex = ProjectRootManager.getInstance(project).getFileIndex();
+        scope.accept(new Processor<VirtualFile>() {
+            @Override
+            public boolean process(VirtualFile virtualFile) {
+                if (virtualFile.isDirectory() || virtualFile.getFileType().isBinary()) {
+                    return true;
+                }
+                if (fileIndex.isExcluded(virtualFile) || !fileIndex.isInContent(virtualFile)) {
+                    return true;
+                }
+                files.add(virtualFile);
+                return true;
+            }
+        });
+        return files;
+    }
+
+    @Override
+    public int getParallelism() {
+        return Math.max(1, parallelism);
+    }
+
+    /**
+     * Sets the number of worker threads used to process the files in the analysis scope.  A value of one or less
+     * processes all files on the calling thread.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
     public void onFinish() {}
 
     public void onCancel() {}
@@ -145,7 +475,11 @@ public class MetricsExecutionContextImpl implements MetricsExecutionContext {
         return scope;
     }
 
-    private Map userData = new HashMap();
+    private final Map<Key, Object> userData = new ConcurrentHashMap<Key, Object>();
+    private final ConcurrentMap<SharedAnalysis<?>, Future<?>> sharedAnalyses =
+            new ConcurrentHashMap<SharedAnalysis<?>, Future<?>>();
+    // the analyses of the file each thread is processing
+    private final ThreadLocal<FileAnalyses> fileAnalyses = new ThreadLocal<FileAnalyses>();
 
     @Override
     public final <T> T getUserData(@NotNull Key<T> key) {
@@ -154,6 +488,96 @@ public class MetricsExecutionContextImpl implements MetricsExecutionContext {
 
     @Override
     public final <T> void putUserData(@NotNull Key<T> key, T t) {
-        userData.put(key, t);
+        if (t == null) {
+            userData.remove(key);
+        } else {
+            userData.put(key, t);
+        }
+    }
+
+    @NotNull
+    @Override
+    public final <T> T getSharedAnalysis(@NotNull final SharedAnalysis<T> analysis) {
+        return getOrCreate(sharedAnalyses, analysis, new Callable<T>() {
+            @Override
+            public T call() {
+                return analysis.create(MetricsExecutionContextImpl.this);
+            }
+        });
+    }
+
+    @NotNull
+    @Override
+    public final <E extends PsiElement, T> T getFileAnalysis(@NotNull final FileAnalysis<E, T> analysis,
+                                                             @NotNull final E element) {
+        final FileAnalyses analyses = fileAnalyses.get();
+        if (analyses == null || analyses.file != element.getContainingFile()) {
+            // nothing to share the analysis with, and it could only be released at the end of the run
+            return analysis.compute(element);
+        }
+        return getOrCreate(analyses.values, new FileAnalysisKey(analysis, element), new Callable<T>() {
+            @Override
+            public T call() {
+                return analysis.compute(element);
+            }
+        });
+    }
+
+    /**
+     * Every value is created by the first thread requesting it, while other threads requesting it wait for the
+     * future, so creating one value does not block the creation of others.
+     */
+    private static <K, T> T getOrCreate(ConcurrentMap<K, Future<?>> values, K key, Callable<T> creator) {
+        Future<?> future = values.get(key);
+        if (future == null) {
+            final FutureTask<T> task = new FutureTask<T>(creator);
+            future = values.putIfAbsent(key, task);
+            if (future == null) {
+                future = task;
+                task.run();
+            }
+        }
+        try {
+            return (T) ParallelUtils.waitFor(future);
+        } catch (RuntimeException e) {
+            // a canceled or failed value is created again when it is requested again
+            values.remove(key, future);
+            throw e;
+        }
+    }
+
+    private static class FileAnalyses {
+
+        final PsiFile file;
+        final ConcurrentMap<FileAnalysisKey, Future<?>> values = new ConcurrentHashMap<FileAnalysisKey, Future<?>>();
+
+        FileAnalyses(PsiFile file) {
+            this.file = file;
+        }
+    }
+
+    private static class FileAnalysisKey {
+
+        private final FileAnalysis<?, ?> analysis;
+        private final PsiElement element;
+
+        FileAnalysisKey(FileAnalysis<?, ?> analysis, PsiElement element) {
+            this.analysis = analysis;
+            this.element = element;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FileAnalysisKey)) {
+                return false;
+            }
+            final FileAnalysisKey other = (FileAnalysisKey) o;
+            return analysis == other.analysis && element.equals(other.element);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(analysis) + element.hashCode();
+        }
     }
 }
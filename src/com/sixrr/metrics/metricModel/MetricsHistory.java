@@ -0,0 +1,657 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.metrics.metricModel;
+
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricCategory;
+import gnu.trove.TObjectIntHashMap;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * An append-only store of the values of a series of runs, for example of nightly builds.  Every run only stores the
+ * values which changed since the previous run, so a store of years of runs stays small, and the history of a value or
+ * the regressions since a date can be found without reading all runs.
+ * <p>
+ * A store is a directory containing:
+ * <ul>
+ * <li>a dictionary, which assigns ids to metric class names and to measured objects of a metric ("keys")</li>
+ * <li>segment files of at most a few tens of megabytes, to which every run appends its changes, sorted by key.  A
+ * change consists of the key, the run, the new value, and the position of the previous change of the key</li>
+ * <li>an index of the runs, with the time and position of every run</li>
+ * <li>the position of the last change and the current value of every key, rewritten after every run</li>
+ * </ul>
+ * The changes of a key thus form a chain backwards through the segments, which is followed by the queries.
+ */
+public final class MetricsHistory implements Closeable {
+
+    @NonNls private static final String DICTIONARY_FILE = "dictionary.dat";
+    @NonNls private static final String RUNS_FILE = "runs.idx";
+    @NonNls private static final String HEADS_FILE = "heads.dat";
+    @NonNls private static final String SEGMENT_PREFIX = "segment-";
+    @NonNls private static final String SEGMENT_SUFFIX = ".dat";
+
+    private static final int VERSION = 1;
+    private static final byte METRIC_RECORD = 0;
+    private static final byte KEY_RECORD = 1;
+    private static final long SEGMENT_SIZE = 64L << 20;
+    // positions are the number of the segment times this, plus the offset in the segment
+    private static final long SEGMENT_SPAN = 1L << 40;
+    private static final int RUN_HEADER_SIZE = 16;
+    private static final int CHANGE_SIZE = 24;
+    private static final int RUN_RECORD_SIZE = 20;
+    private static final long NONE = -1L;
+    private static final long ABSENT = BinarySnapshot.ABSENT;
+
+    private final File directory;
+    private final List<String> metricNames = new ArrayList<String>();
+    // ids are stored plus one, because the maps return zero for absent keys
+    private final TObjectIntHashMap<String> metricIds = new TObjectIntHashMap<String>();
+    private final TObjectIntHashMap<String> keyIds = new TObjectIntHashMap<String>();
+    private int[] keyMetrics = new int[1024];
+    private String[] keyObjects = new String[1024];
+    private long[] heads = new long[1024];
+    private long[] latest = new long[1024];
+    private int numKeys = 0;
+    private long[] runTimes = new long[64];
+    private long[] runPositions = new long[64];
+    private int numRuns = 0;
+    private final Map<Integer, RandomAccessFile> segments = new HashMap<Integer, RandomAccessFile>();
+
+    private MetricsHistory(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens the store in the specified directory, creating it if it does not exist.
+     */
+    public static MetricsHistory open(@NotNull File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory " + directory);
+        }
+        final MetricsHistory history = new MetricsHistory(directory);
+        history.readDictionary();
+        history.readRuns();
+        if (!history.readHeads()) {
+            history.rebuildHeads();
+        }
+        return history;
+    }
+
+    public int getNumRuns() {
+        return numRuns;
+    }
+
+    /**
+     * Appends the values of a run, which must be later than the last run in the store.
+     */
+    public void append(@NotNull MetricsRun run) throws IOException {
+        final long time = run.getTimestamp().getTime();
+        if (numRuns > 0 && time < runTimes[numRuns - 1]) {
+            throw new IOException("Run is older than the last run in the history");
+        }
+        final int oldNumKeys = numKeys;
+        final BitSet seen = new BitSet();
+        final BitSet changed = new BitSet();
+        final DataOutputStream dictionary = openForAppend(DICTIONARY_FILE, true);
+        try {
+            for (MetricCategory category : MetricCategory.values()) {
+                final MetricsResult results = run.getResultsForCategory(category);
+                for (Metric metric : results.getMetrics()) {
+                    final int metricId = internMetric(metric.getClass().getName(), dictionary);
+                    for (String measuredObject : results.getMeasuredObjects()) {
+                        if (!results.hasValueForMetric(metric, measuredObject)) {
+                            continue;
+                        }
+                        final int key = internKey(metricId, measuredObject, dictionary);
+                        final long value =
+                                Double.doubleToRawLongBits(results.getDoubleValueForMetric(metric, measuredObject));
+                        seen.set(key);
+                        if (value != latest[key]) {
+                            latest[key] = value;
+                            changed.set(key);
+                        }
+                    }
+                }
+            }
+        } finally {
+            dictionary.close();
+        }
+        for (int key = seen.nextClearBit(0); key < oldNumKeys; key = seen.nextClearBit(key + 1)) {
+            if (latest[key] != ABSENT) {
+                latest[key] = ABSENT;
+                changed.set(key);
+            }
+        }
+
+        final int segment = getSegmentForAppend();
+        final File segmentFile = getSegmentFile(segment);
+        final long start = (long) segment * SEGMENT_SPAN + segmentFile.length();
+        final int numChanges = changed.cardinality();
+        final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(segmentFile, true), 65536));
+        try {
+            out.writeInt(numRuns);
+            out.writeLong(time);
+            out.writeInt(numChanges);
+            long position = start + RUN_HEADER_SIZE;
+            for (int key = changed.nextSetBit(0); key >= 0; key = changed.nextSetBit(key + 1)) {
+                out.writeInt(key);
+                out.writeInt(numRuns);
+                out.writeLong(latest[key]);
+                out.writeLong(heads[key]);
+                heads[key] = position;
+                position += CHANGE_SIZE;
+            }
+        } finally {
+            out.close();
+        }
+        final DataOutputStream runsOut = openForAppend(RUNS_FILE, false);
+        try {
+            runsOut.writeLong(time);
+            runsOut.writeLong(start);
+            runsOut.writeInt(numChanges);
+        } finally {
+            runsOut.close();
+        }
+        addRun(time, start);
+        writeHeads();
+    }
+
+    /**
+     * Returns the changes of the value of a metric for a measured object, oldest first.  A value holds until the
+     * next change.
+     * @param metricClassName  the class name of the metric, as in snapshots.
+     */
+    public List<Change> getHistory(@NotNull String metricClassName, @NotNull String measuredObject)
+            throws IOException {
+        final int metricId = metricIds.get(metricClassName) - 1;
+        if (metricId < 0) {
+            return Collections.emptyList();
+        }
+        final int key = keyIds.get(createKey(metricId, measuredObject)) - 1;
+        if (key < 0) {
+            return Collections.emptyList();
+        }
+        final List<Change> result = new ArrayList<Change>();
+        final ByteBuffer change = ByteBuffer.allocate(CHANGE_SIZE);
+        for (long position = heads[key]; position != NONE; position = change.getLong(16)) {
+            readChange(position, change);
+            final int run = change.getInt(4);
+            result.add(new Change(metricClassName, measuredObject, runTimes[run], change.getLong(8)));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Returns the largest increases of values between the last run before the specified time and the last run,
+     * largest first.  Values which did not exist before the time, or no longer exist, are not included.
+     * @param count  the maximum number of regressions returned.
+     */
+    public List<Regression> getTopRegressions(long since, int count) throws IOException {
+        int baselineRun = numRuns - 1;
+        while (baselineRun >= 0 && runTimes[baselineRun] >= since) {
+            baselineRun--;
+        }
+        if (baselineRun < 0 || count <= 0) {
+            return Collections.emptyList();
+        }
+        // the first change of a key after the baseline run points to its last change at the baseline run, so the
+        // changes since are read in order instead of following the chain of every key
+        final long[] baselinePositions = new long[numKeys];
+        final BitSet changed = new BitSet(numKeys);
+        readChanges(baselineRun + 1, new ChangeProcessor() {
+            @Override
+            public void process(int key, long value, long previous, long position) {
+                if (!changed.get(key)) {
+                    changed.set(key);
+                    baselinePositions[key] = previous;
+                }
+            }
+        });
+        final long[] positions = new long[changed.cardinality()];
+        int numPositions = 0;
+        for (int key = changed.nextSetBit(0); key >= 0; key = changed.nextSetBit(key + 1)) {
+            if (latest[key] != ABSENT && baselinePositions[key] != NONE) {
+                positions[numPositions] = baselinePositions[key];
+                numPositions++;
+            }
+        }
+        Arrays.sort(positions, 0, numPositions);
+
+        final PriorityQueue<Regression> top = new PriorityQueue<Regression>(count + 1, new Comparator<Regression>() {
+            @Override
+            public int compare(Regression regression1, Regression regression2) {
+                return Double.compare(regression1.getDelta(), regression2.getDelta());
+            }
+        });
+        final ByteBuffer change = ByteBuffer.allocate(CHANGE_SIZE);
+        for (int i = 0; i < numPositions; i++) {
+            readChange(positions[i], change);
+            final int key = change.getInt(0);
+            final long baseline = change.getLong(8);
+            if (baseline == ABSENT) {
+                continue;
+            }
+            final double delta = Double.longBitsToDouble(latest[key]) - Double.longBitsToDouble(baseline);
+            if (!(delta > 0.0) || top.size() == count && delta <= top.peek().getDelta()) {
+                continue;
+            }
+            top.add(new Regression(metricNames.get(keyMetrics[key]), keyObjects[key],
+                    Double.longBitsToDouble(baseline), Double.longBitsToDouble(latest[key])));
+            if (top.size() > count) {
+                top.poll();
+            }
+        }
+        final List<Regression> result = new ArrayList<Regression>(top);
+        Collections.sort(result, Collections.reverseOrder(top.comparator()));
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (RandomAccessFile segment : segments.values()) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    private void readChange(long position, ByteBuffer change) throws IOException {
+        final int segment = (int) (position / SEGMENT_SPAN);
+        RandomAccessFile file = segments.get(Integer.valueOf(segment));
+        if (file == null) {
+            file = new RandomAccessFile(getSegmentFile(segment), "r");
+            segments.put(Integer.valueOf(segment), file);
+        }
+        file.seek(position % SEGMENT_SPAN);
+        file.readFully(change.array());
+    }
+
+    private int internMetric(String metricClassName, DataOutputStream dictionary) throws IOException {
+        final int id = metricIds.get(metricClassName) - 1;
+        if (id >= 0) {
+            return id;
+        }
+        dictionary.writeByte(METRIC_RECORD);
+        dictionary.writeUTF(metricClassName);
+        return addMetric(metricClassName);
+    }
+
+    private int addMetric(String metricClassName) {
+        metricNames.add(metricClassName);
+        metricIds.put(metricClassName, metricNames.size());
+        return metricNames.size() - 1;
+    }
+
+    private int internKey(int metricId, String measuredObject, DataOutputStream dictionary) throws IOException {
+        final int id = keyIds.get(createKey(metricId, measuredObject)) - 1;
+        if (id >= 0) {
+            return id;
+        }
+        dictionary.writeByte(KEY_RECORD);
+        dictionary.writeInt(metricId);
+        dictionary.writeUTF(measuredObject);
+        return addKey(metricId, measuredObject);
+    }
+
+    private int addKey(int metricId, String measuredObject) {
+        final int key = numKeys;
+        if (key == heads.length) {
+            keyMetrics = Arrays.copyOf(keyMetrics, key << 1);
+            keyObjects = Arrays.copyOf(keyObjects, key << 1);
+            heads = Arrays.copyOf(heads, key << 1);
+            latest = Arrays.copyOf(latest, key << 1);
+        }
+        keyMetrics[key] = metricId;
+        keyObjects[key] = measuredObject;
+        heads[key] = NONE;
+        latest[key] = ABSENT;
+        keyIds.put(createKey(metricId, measuredObject), key + 1);
+        numKeys++;
+        return key;
+    }
+
+    private static String createKey(int metricId, String measuredObject) {
+        return metricId + "\n" + measuredObject;
+    }
+
+    private void addRun(long time, long position) {
+        if (numRuns == runTimes.length) {
+            runTimes = Arrays.copyOf(runTimes, numRuns << 1);
+            runPositions = Arrays.copyOf(runPositions, numRuns << 1);
+        }
+        runTimes[numRuns] = time;
+        runPositions[numRuns] = position;
+        numRuns++;
+    }
+
+    private int getSegmentForAppend() {
+        if (numRuns == 0) {
+            return 0;
+        }
+        final int segment = (int) (runPositions[numRuns - 1] / SEGMENT_SPAN);
+        return getSegmentFile(segment).length() < SEGMENT_SIZE ? segment : segment + 1;
+    }
+
+    private File getSegmentFile(int segment) {
+        return new File(directory, SEGMENT_PREFIX + String.format("%05d", Integer.valueOf(segment)) + SEGMENT_SUFFIX);
+    }
+
+    private DataOutputStream openForAppend(String fileName, boolean versioned) throws IOException {
+        final File file = new File(directory, fileName);
+        final boolean exists = file.exists();
+        final DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 65536));
+        if (versioned && !exists) {
+            out.writeInt(VERSION);
+        }
+        return out;
+    }
+
+    private void readDictionary() throws IOException {
+        final File file = new File(directory, DICTIONARY_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        final CountingInputStream counter =
+                new CountingInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+        final DataInputStream in = new DataInputStream(counter);
+        long validLength = 0L;
+        try {
+            final int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported history version " + version + ": " + directory);
+            }
+            validLength = counter.getCount();
+            while (true) {
+                final int record = in.read();
+                if (record == METRIC_RECORD) {
+                    addMetric(in.readUTF());
+                } else if (record == KEY_RECORD) {
+                    final int metricId = in.readInt();
+                    addKey(metricId, in.readUTF());
+                } else {
+                    break;
+                }
+                validLength = counter.getCount();
+            }
+        } catch (EOFException ignore) {
+            // a record was only partially written, the run it belonged to was not added
+        } finally {
+            in.close();
+        }
+        truncate(file, validLength);
+    }
+
+    private void readRuns() throws IOException {
+        final File file = new File(directory, RUNS_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+        // a partially written last record is ignored
+        final long numRecords = file.length() / RUN_RECORD_SIZE;
+        try {
+            for (long i = 0; i < numRecords; i++) {
+                final long time = in.readLong();
+                final long position = in.readLong();
+                in.readInt();
+                addRun(time, position);
+            }
+        } finally {
+            in.close();
+        }
+        truncate(file, numRecords * RUN_RECORD_SIZE);
+    }
+
+    /**
+     * Removes a partially written record from the end of a file, which the next run would otherwise be appended to.
+     */
+    private static void truncate(File file, long length) throws IOException {
+        if (file.length() <= length) {
+            return;
+        }
+        if (length == 0L) {
+            if (!file.delete()) {
+                throw new IOException("Could not delete " + file);
+            }
+            return;
+        }
+        final RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(length);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns false if the heads are missing or do not match the runs, in which case they have to be rebuilt.
+     */
+    private boolean readHeads() throws IOException {
+        final File file = new File(directory, HEADS_FILE);
+        if (!file.exists()) {
+            return numRuns == 0;
+        }
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+        try {
+            if (in.readInt() != VERSION || in.readInt() != numRuns) {
+                return false;
+            }
+            final int count = in.readInt();
+            if (count > numKeys) {
+                return false;
+            }
+            for (int key = 0; key < count; key++) {
+                heads[key] = in.readLong();
+                latest[key] = in.readLong();
+            }
+            return true;
+        } catch (EOFException ignore) {
+            return false;
+        } finally {
+            in.close();
+        }
+    }
+
+    private void rebuildHeads() throws IOException {
+        Arrays.fill(heads, NONE);
+        Arrays.fill(latest, ABSENT);
+        readChanges(0, new ChangeProcessor() {
+            @Override
+            public void process(int key, long value, long previous, long position) {
+                latest[key] = value;
+                heads[key] = position;
+            }
+        });
+        writeHeads();
+    }
+
+    /**
+     * Reads the changes of the runs from the specified run on, in the order they were appended.
+     */
+    private void readChanges(int fromRun, ChangeProcessor processor) throws IOException {
+        for (int run = fromRun; run < numRuns; run++) {
+            final long start = runPositions[run];
+            final RandomAccessFile file = new RandomAccessFile(getSegmentFile((int) (start / SEGMENT_SPAN)), "r");
+            try {
+                file.seek(start % SEGMENT_SPAN);
+                final DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(file.getFD()), 65536));
+                in.readInt();
+                in.readLong();
+                final int numChanges = in.readInt();
+                long position = start + RUN_HEADER_SIZE;
+                for (int i = 0; i < numChanges; i++) {
+                    final int key = in.readInt();
+                    in.readInt();
+                    final long value = in.readLong();
+                    final long previous = in.readLong();
+                    processor.process(key, value, previous, position);
+                    position += CHANGE_SIZE;
+                }
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    private void writeHeads() throws IOException {
+        final File file = new File(directory, HEADS_FILE);
+        final File temp = new File(directory, HEADS_FILE + ".tmp");
+        final DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 65536));
+        try {
+            out.writeInt(VERSION);
+            out.writeInt(numRuns);
+            out.writeInt(numKeys);
+            for (int key = 0; key < numKeys; key++) {
+                out.writeLong(heads[key]);
+                out.writeLong(latest[key]);
+            }
+        } finally {
+            out.close();
+        }
+        if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+            throw new IOException("Could not write " + file);
+        }
+    }
+
+    private interface ChangeProcessor {
+
+        void process(int key, long value, long previous, long position);
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count = 0L;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int result = super.read();
+            if (result >= 0) {
+                count++;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            final int result = super.read(bytes, offset, length);
+            if (result > 0) {
+                count += (long) result;
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long result = super.skip(n);
+            count += result;
+            return result;
+        }
+    }
+
+    /**
+     * A value of a metric for a measured object, from the time of a run on.
+     */
+    public static final class Change {
+
+        private final String metricClassName;
+        private final String measuredObject;
+        private final long time;
+        private final long value;
+
+        Change(String metricClassName, String measuredObject, long time, long value) {
+            this.metricClassName = metricClassName;
+            this.measuredObject = measuredObject;
+            this.time = time;
+            this.value = value;
+        }
+
+        public String getMetricClassName() {
+            return metricClassName;
+        }
+
+        public String getMeasuredObject() {
+            return measuredObject;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * Returns true if the measured object no longer had a value from the time of this change.
+         */
+        public boolean isRemoved() {
+            return value == ABSENT;
+        }
+
+        public double getValue() {
+            return value == ABSENT ? Double.NaN : Double.longBitsToDouble(value);
+        }
+    }
+
+    public static final class Regression {
+
+        private final String metricClassName;
+        private final String measuredObject;
+        private final double baseline;
+        private final double current;
+
+        Regression(String metricClassName, String measuredObject, double baseline, double current) {
+            this.metricClassName = metricClassName;
+            this.measuredObject = measuredObject;
+            this.baseline = baseline;
+            this.current = current;
+        }
+
+        public String getMetricClassName() {
+            return metricClassName;
+        }
+
+        public String getMeasuredObject() {
+            return measuredObject;
+        }
+
+        public double getBaseline() {
+            return baseline;
+        }
+
+        public double getCurrent() {
+            return current;
+        }
+
+        public double getDelta() {
+            return current - baseline;
+        }
+    }
+}
@@ -21,17 +21,45 @@ import com.sixrr.metrics.Metric;
 import com.sixrr.metrics.profile.MetricsProfile;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.BitSet;
+
 public interface MetricsResult {
 
+    /**
+     * @throws UnsupportedOperationException if these results are read only, like those of a
+     * {@link MappedMetricsRun}.
+     */
     void postValue(Metric metric, String measured, double value);
 
+    /**
+     * @throws UnsupportedOperationException if these results are read only, like those of a
+     * {@link MappedMetricsRun}.
+     */
     void postValue(Metric metric, String measured, double numerator, double denominator);
 
     @Nullable
     Double getValueForMetric(Metric metric, String measured);
 
+    /**
+     * Returns true if a value was posted for the metric and measured object.
+     */
+    boolean hasValueForMetric(Metric metric, String measured);
+
+    /**
+     * Returns the value of the metric for the measured object without boxing it, or {@link Double#NaN} if no value
+     * was posted.
+     */
+    double getDoubleValueForMetric(Metric metric, String measured);
+
     String[] getMeasuredObjects();
 
+    /**
+     * Returns the values of the metric for the measured objects in the order of {@link #getMeasuredObjects()},
+     * reading the whole column at once instead of looking up every measured object.  Measured objects without a
+     * value get {@link Double#NaN}, the indices of those with a value are set in {@code present}.
+     */
+    double[] getValuesForMetric(Metric metric, BitSet present);
+
     Metric[] getMetrics();
 
     @Nullable
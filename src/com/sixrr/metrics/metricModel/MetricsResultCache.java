@@ -0,0 +1,355 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.sixrr.metrics.metricModel;
+
+import com.intellij.ide.plugins.IdeaPluginDescriptor;
+import com.intellij.ide.plugins.PluginManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.extensions.PluginId;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricCategory;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores the values of file local metrics per file on disk, so they survive between IDE sessions and headless runs.
+ * Values are stored per file path and metric, and are valid as long as the contents of the file and the version of
+ * the plugin providing the metric are unchanged.  The contents of a file are hashed only when its time stamp or
+ * length differ from the cached ones.
+ */
+final class MetricsResultCache {
+
+    private static final Logger LOG = Logger.getInstance("MetricsReloaded");
+    private static final int VERSION = 3;
+
+    private final File cacheFile;
+    private final Map<String, CachedFile> files;
+    private final List<Metric> metrics;
+    private final Map<String, String> metricVersions = new HashMap<String, String>();
+    private volatile boolean modified = false;
+
+    private MetricsResultCache(File cacheFile, Map<String, CachedFile> files, List<Metric> metrics) {
+        this.cacheFile = cacheFile;
+        this.files = files;
+        this.metrics = metrics;
+        for (Metric metric : metrics) {
+            metricVersions.put(metric.getID(), getVersion(metric));
+        }
+    }
+
+    /**
+     * Returns the version of the plugin providing the metric, so cached values are calculated again after the plugin
+     * is updated.
+     */
+    private static String getVersion(Metric metric) {
+        final PluginId pluginId = PluginManager.getPluginByClassName(metric.getClass().getName());
+        final IdeaPluginDescriptor plugin = pluginId == null ? null : PluginManager.getPlugin(pluginId);
+        if (plugin == null) {
+            return "";
+        }
+        final String version = plugin.getVersion();
+        return version == null ? "" : version;
+    }
+
+    static MetricsResultCache load(Project project, List<Metric> metrics) {
+        @NonNls final String fileName = PathManager.getSystemPath() + File.separator + "metrics" + File.separator +
+                project.getLocationHash() + ".results";
+        final File cacheFile = new File(fileName);
+        final Map<String, CachedFile> files = new ConcurrentHashMap<String, CachedFile>();
+        if (cacheFile.exists()) {
+            try {
+                final DataInputStream in =
+                        new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+                try {
+                    if (in.readInt() == VERSION) {
+                        final int numFiles = in.readInt();
+                        for (int i = 0; i < numFiles; i++) {
+                            final String path = in.readUTF();
+                            files.put(path, CachedFile.read(in));
+                        }
+                    }
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                LOG.info("Could not read metrics result cache, rebuilding it", e);
+                files.clear();
+            }
+        }
+        return new MetricsResultCache(cacheFile, files, metrics);
+    }
+
+    /**
+     * Returns true if values of the file can be cached, which is not the case if it has unsaved changes.
+     */
+    private static boolean isCacheable(VirtualFile file) {
+        return file.isInLocalFileSystem() && !FileDocumentManager.getInstance().isFileModified(file);
+    }
+
+    /**
+     * Returns the hash of the contents of the file, or null if the file can't be read.
+     */
+    @Nullable
+    private static byte[] hash(VirtualFile file) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(file.contentsToByteArray());
+        } catch (IOException e) {
+            return null;
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Adds the cached values of all metrics of the file to the contribution.
+     * @return true if valid cached values were found for all metrics, false if nothing was added and the file must
+     * be processed.
+     */
+    boolean restore(VirtualFile file, FileContribution contribution) {
+        if (!isCacheable(file)) {
+            return false;
+        }
+        final String path = file.getPath();
+        CachedFile cachedFile = files.get(path);
+        if (cachedFile == null) {
+            return false;
+        }
+        final long timeStamp = file.getTimeStamp();
+        final long length = file.getLength();
+        if (!cachedFile.isUpToDate(timeStamp, length)) {
+            // the file was touched, but its contents may be unchanged, like after switching branches and back
+            final byte[] hash = length == cachedFile.length ? hash(file) : null;
+            if (hash == null || !Arrays.equals(cachedFile.hash, hash)) {
+                return false;
+            }
+            cachedFile = new CachedFile(hash, timeStamp, length, cachedFile.ids, cachedFile.metrics);
+            files.put(path, cachedFile);
+            modified = true;
+        }
+        for (Metric metric : metrics) {
+            final CachedValues cachedValues = cachedFile.metrics.get(metric.getID());
+            if (cachedValues == null || !cachedValues.version.equals(metricVersions.get(metric.getID()))) {
+                return false;
+            }
+        }
+        for (Metric metric : metrics) {
+            final CachedValues cachedValues = cachedFile.metrics.get(metric.getID());
+            final MetricCategory category = metric.getCategory();
+            for (int i = 0; i < cachedValues.measured.length; i++) {
+                final boolean ratio = !Double.isNaN(cachedValues.denominators[i]);
+                final double denominator = ratio ? cachedValues.denominators[i] : 1.0;
+                contribution.add(new FileContribution.Value(category, metric,
+                        cachedFile.ids[cachedValues.measured[i]], cachedValues.numerators[i], denominator, ratio));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stores the values of all metrics of the file recorded in the contribution.
+     */
+    void store(VirtualFile file, FileContribution contribution) {
+        if (!isCacheable(file)) {
+            return;
+        }
+        final long timeStamp = file.getTimeStamp();
+        final long length = file.getLength();
+        final byte[] hash = hash(file);
+        if (hash == null) {
+            return;
+        }
+        final List<String> ids = new ArrayList<String>();
+        final Map<String, Integer> idIndices = new HashMap<String, Integer>();
+        final Map<String, CachedValues> cachedMetrics = new HashMap<String, CachedValues>(metrics.size());
+        final List<FileContribution.Value> values = contribution.getValues();
+        for (Metric metric : metrics) {
+            int numValues = 0;
+            for (FileContribution.Value value : values) {
+                if (value.getMetric() == metric) {
+                    numValues++;
+                }
+            }
+            final CachedValues cachedValues =
+                    new CachedValues(metricVersions.get(metric.getID()), numValues);
+            int index = 0;
+            for (FileContribution.Value value : values) {
+                if (value.getMetric() != metric) {
+                    continue;
+                }
+                final String id = value.getMeasured();
+                Integer idIndex = idIndices.get(id);
+                if (idIndex == null) {
+                    idIndex = Integer.valueOf(ids.size());
+                    ids.add(id);
+                    idIndices.put(id, idIndex);
+                }
+                cachedValues.measured[index] = idIndex.intValue();
+                cachedValues.numerators[index] = value.getNumerator();
+                cachedValues.denominators[index] = value.isRatio() ? value.getDenominator() : Double.NaN;
+                index++;
+            }
+            cachedMetrics.put(metric.getID(), cachedValues);
+        }
+        final String[] idArray = ids.toArray(new String[ids.size()]);
+        files.put(file.getPath(), new CachedFile(hash, timeStamp, length, idArray, cachedMetrics));
+        modified = true;
+    }
+
+    /**
+     * Writes the cache to disk if it was modified, dropping the entries of files which no longer exist.  Failure
+     * to write the cache is logged, but otherwise ignored.
+     */
+    void save() {
+        if (!modified) {
+            return;
+        }
+        final LocalFileSystem fileSystem = LocalFileSystem.getInstance();
+        final File directory = cacheFile.getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            LOG.info("Could not create directory " + directory);
+            return;
+        }
+        try {
+            final DataOutputStream out =
+                    new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)));
+            try {
+                out.writeInt(VERSION);
+                for (String path : files.keySet()) {
+                    if (fileSystem.findFileByPath(path) == null) {
+                        files.remove(path);
+                    }
+                }
+                out.writeInt(files.size());
+                for (Map.Entry<String, CachedFile> entry : files.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    entry.getValue().write(out);
+                }
+            } finally {
+                out.close();
+            }
+            modified = false;
+        } catch (IOException e) {
+            LOG.info("Could not write metrics result cache", e);
+            if (!cacheFile.delete()) {
+                LOG.info("Could not delete " + cacheFile);
+            }
+        }
+    }
+
+    private static final class CachedFile {
+
+        final byte[] hash;
+        final long timeStamp;
+        final long length;
+        // ids of the measured objects of all metrics of the file
+        final String[] ids;
+        final Map<String, CachedValues> metrics;
+
+        CachedFile(byte[] hash, long timeStamp, long length, String[] ids, Map<String, CachedValues> metrics) {
+            this.hash = hash;
+            this.timeStamp = timeStamp;
+            this.length = length;
+            this.ids = ids;
+            this.metrics = metrics;
+        }
+
+        boolean isUpToDate(long timeStamp, long length) {
+            return this.timeStamp == timeStamp && this.length == length;
+        }
+
+        void write(DataOutput out) throws IOException {
+            out.writeByte(hash.length);
+            out.write(hash);
+            out.writeLong(timeStamp);
+            out.writeLong(length);
+            out.writeInt(ids.length);
+            for (String id : ids) {
+                out.writeUTF(id);
+            }
+            out.writeInt(metrics.size());
+            for (Map.Entry<String, CachedValues> entry : metrics.entrySet()) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().write(out);
+            }
+        }
+
+        static CachedFile read(DataInput in) throws IOException {
+            final byte[] hash = new byte[in.readUnsignedByte()];
+            in.readFully(hash);
+            final long timeStamp = in.readLong();
+            final long length = in.readLong();
+            final String[] ids = new String[in.readInt()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = in.readUTF();
+            }
+            final int numMetrics = in.readInt();
+            final Map<String, CachedValues> metrics = new HashMap<String, CachedValues>(numMetrics);
+            for (int i = 0; i < numMetrics; i++) {
+                final String metricId = in.readUTF();
+                metrics.put(metricId, CachedValues.read(in));
+            }
+            return new CachedFile(hash, timeStamp, length, ids, metrics);
+        }
+    }
+
+    private static final class CachedValues {
+
+        final String version;
+        final int[] measured;
+        final double[] numerators;
+        // NaN for values which are not ratios
+        final double[] denominators;
+
+        CachedValues(String version, int numValues) {
+            this.version = version;
+            measured = new int[numValues];
+            numerators = new double[numValues];
+            denominators = new double[numValues];
+        }
+
+        void write(DataOutput out) throws IOException {
+            out.writeUTF(version);
+            out.writeInt(measured.length);
+            for (int i = 0; i < measured.length; i++) {
+                out.writeInt(measured[i]);
+                out.writeDouble(numerators[i]);
+                out.writeDouble(denominators[i]);
+            }
+        }
+
+        static CachedValues read(DataInput in) throws IOException {
+            final String version = in.readUTF();
+            final CachedValues values = new CachedValues(version, in.readInt());
+            for (int i = 0; i < values.measured.length; i++) {
+                values.measured[i] = in.readInt();
+                values.numerators[i] = in.readDouble();
+                values.denominators[i] = in.readDouble();
+            }
+            return values;
+        }
+    }
+}
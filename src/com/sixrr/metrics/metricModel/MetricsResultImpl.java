@@ -13,7 +13,6 @@
  *  See the License for the specific language governing permissions and
  *  limitations under the License.
  */
-
 package com.sixrr.metrics.metricModel;
 
 import com.intellij.openapi.project.Project;
@@ -24,20 +23,30 @@ import com.sixrr.metrics.Metric;
 import com.sixrr.metrics.MetricType;
 import com.sixrr.metrics.profile.MetricInstance;
 import com.sixrr.metrics.profile.MetricsProfile;
-import com.sixrr.metrics.utils.StringToFractionMap;
+import gnu.trove.TObjectIntHashMap;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
 
+/**
+ * Stores values in columns.  Measured objects are interned to consecutive ids, and every metric has a column of
+ * numerators and denominators indexed by id, plus a bitset of the ids which have a value.
+ */
 public class MetricsResultImpl implements MetricsResult {
-    private final Map<Metric, StringToFractionMap> values = new HashMap<Metric, StringToFractionMap>(32);
-    private final Set<String> measuredObjects = new HashSet<String>(32);
-    private final Set<Metric> metrics = new HashSet<Metric>(32);
-    private final Map<String, SmartPsiElementPointer<PsiElement>> elements =
-            new HashMap<String, SmartPsiElementPointer<PsiElement>>(1024);
+
+    private static final int INITIAL_CAPACITY = 32;
+
+    // ids are stored plus one, because the map returns zero for absent keys
+    private final TObjectIntHashMap<String> measuredObjectIds = new TObjectIntHashMap<String>();
+    private String[] measuredObjects = new String[INITIAL_CAPACITY];
+    private SmartPsiElementPointer<?>[] elements = new SmartPsiElementPointer<?>[INITIAL_CAPACITY];
+    private int numMeasuredObjects = 0;
+    // measured objects with a value for at least one metric
+    private final BitSet measured = new BitSet();
+    private final Map<Metric, Column> columns = new LinkedHashMap<Metric, Column>(32);
 
     @Override
     public void postValue(Metric metric, String measured, double value) {
@@ -49,54 +58,105 @@ public class MetricsResultImpl implements MetricsResult {
         if (measured == null) {
             return;
         }
-        StringToFractionMap metricValues = values.get(metric);
-        if (metricValues == null) {
-            metricValues = new StringToFractionMap();
-            values.put(metric, metricValues);
+        final int id = intern(measured);
+        Column column = columns.get(metric);
+        if (column == null) {
+            column = new Column(measuredObjects.length);
+            columns.put(metric, column);
+        }
+        column.put(id, numerator, denominator);
+        this.measured.set(id);
+    }
+
+    private int intern(String measuredObject) {
+        final int id = measuredObjectIds.get(measuredObject) - 1;
+        if (id >= 0) {
+            return id;
+        }
+        final int newId = numMeasuredObjects;
+        if (newId == measuredObjects.length) {
+            measuredObjects = Arrays.copyOf(measuredObjects, newId << 1);
+            elements = Arrays.copyOf(elements, newId << 1);
         }
-        metricValues.put(measured, numerator, denominator);
-        measuredObjects.add(measured);
-        metrics.add(metric);
+        measuredObjects[newId] = measuredObject;
+        measuredObjectIds.put(measuredObject, newId + 1);
+        numMeasuredObjects++;
+        return newId;
     }
 
     @Override
     @Nullable
     public Double getValueForMetric(Metric metric, String measured) {
-        final StringToFractionMap metricValues = values.get(metric);
-        if (metricValues == null) {
-            return null;
+        return hasValueForMetric(metric, measured) ? Double.valueOf(getDoubleValueForMetric(metric, measured)) : null;
+    }
+
+    @Override
+    public boolean hasValueForMetric(Metric metric, String measured) {
+        final Column column = columns.get(metric);
+        return column != null && column.has(measuredObjectIds.get(measured) - 1);
+    }
+
+    @Override
+    public double getDoubleValueForMetric(Metric metric, String measured) {
+        final Column column = columns.get(metric);
+        if (column == null) {
+            return Double.NaN;
         }
-        return metricValues.containsKey(measured) ? Double.valueOf(metricValues.get(measured)) : null;
+        final int id = measuredObjectIds.get(measured) - 1;
+        return column.has(id) ? column.get(id) : Double.NaN;
     }
 
     @Override
     public String[] getMeasuredObjects() {
-        return measuredObjects.toArray(new String[measuredObjects.size()]);
+        final String[] result = new String[measured.cardinality()];
+        int index = 0;
+        for (int id = measured.nextSetBit(0); id >= 0; id = measured.nextSetBit(id + 1)) {
+            result[index] = measuredObjects[id];
+            index++;
+        }
+        return result;
+    }
+
+    @Override
+    public double[] getValuesForMetric(Metric metric, BitSet present) {
+        final double[] values = new double[measured.cardinality()];
+        final Column column = columns.get(metric);
+        int index = 0;
+        for (int id = measured.nextSetBit(0); id >= 0; id = measured.nextSetBit(id + 1)) {
+            if (column != null && column.has(id)) {
+                values[index] = column.get(id);
+                present.set(index);
+            } else {
+                values[index] = Double.NaN;
+            }
+            index++;
+        }
+        return values;
     }
 
     @Override
     public Metric[] getMetrics() {
-        return metrics.toArray(new Metric[metrics.size()]);
+        return columns.keySet().toArray(new Metric[columns.size()]);
     }
 
     @Override
     @Nullable
     public Double getMinimumForMetric(Metric metric) {
-        final StringToFractionMap metricValues = values.get(metric);
-        if (metricValues == null) {
+        final Column column = columns.get(metric);
+        if (column == null) {
             return Double.valueOf(0.0);
         }
-        return Double.valueOf(metricValues.getMinimum());
+        return Double.valueOf(column.getMinimum());
     }
 
     @Override
     @Nullable
     public Double getMaximumForMetric(Metric metric) {
-        final StringToFractionMap metricValues = values.get(metric);
-        if (metricValues == null) {
+        final Column column = columns.get(metric);
+        if (column == null) {
             return Double.valueOf(0.0);
         }
-        return Double.valueOf(metricValues.getMaximum());
+        return Double.valueOf(column.getMaximum());
     }
 
     @Override
@@ -106,11 +166,11 @@ public class MetricsResultImpl implements MetricsResult {
         if (metricType != MetricType.Count) {
             return null;
         }
-        final StringToFractionMap metricValues = values.get(metric);
-        if (metricValues == null) {
+        final Column column = columns.get(metric);
+        if (column == null) {
             return Double.valueOf(0.0);
         }
-        return Double.valueOf(metricValues.getTotal());
+        return Double.valueOf(column.getTotal());
     }
 
     @Override
@@ -120,11 +180,11 @@ public class MetricsResultImpl implements MetricsResult {
         if (metricType == MetricType.RecursiveCount || metricType == MetricType.RecursiveRatio) {
             return null;
         }
-        final StringToFractionMap metricValues = values.get(metric);
-        if (metricValues == null) {
+        final Column column = columns.get(metric);
+        if (column == null) {
             return Double.valueOf(0.0);
         }
-        return Double.valueOf(metricValues.getAverage());
+        return Double.valueOf(column.getAverage());
     }
 
     @Override
@@ -132,13 +192,17 @@ public class MetricsResultImpl implements MetricsResult {
         final Project project = element.getProject();
         final SmartPointerManager pointerManager = SmartPointerManager.getInstance(project);
         final SmartPsiElementPointer<PsiElement> pointer = pointerManager.createSmartPsiElementPointer(element);
-        elements.put(measuredObject, pointer);
+        elements[intern(measuredObject)] = pointer;
     }
 
     @Override
     @Nullable
     public PsiElement getElementForMeasuredObject(String measuredObject) {
-        final SmartPsiElementPointer<PsiElement> pointer = elements.get(measuredObject);
+        final int id = measuredObjectIds.get(measuredObject) - 1;
+        if (id < 0) {
+            return null;
+        }
+        final SmartPsiElementPointer<?> pointer = elements[id];
         if (pointer == null) {
             return null;
         }
@@ -147,16 +211,13 @@ public class MetricsResultImpl implements MetricsResult {
 
     @Override
     public boolean hasWarnings(MetricsProfile profile) {
-        for (Metric metric : metrics) {
+        for (Map.Entry<Metric, Column> entry : columns.entrySet()) {
+            final Metric metric = entry.getKey();
             final MetricInstance metricInstance = profile.getMetricInstance(metric);
             assert metricInstance != null : "no instance found for " + metric.getID();
-            final StringToFractionMap valuesForMetric = values.get(metric);
-            for (String measuredObject : measuredObjects) {
-                final double value = valuesForMetric.get(measuredObject);
-                if (metricInstance.isUpperThresholdEnabled() && value > metricInstance.getUpperThreshold()) {
-                    return true;
-                }
-                if (metricInstance.isLowerThresholdEnabled() && value < metricInstance.getLowerThreshold()) {
+            final Column column = entry.getValue();
+            for (int id = column.present.nextSetBit(0); id >= 0; id = column.present.nextSetBit(id + 1)) {
+                if (isOutsideThresholds(metricInstance, column.get(id))) {
                     return true;
                 }
             }
@@ -164,36 +225,38 @@ public class MetricsResultImpl implements MetricsResult {
         return false;
     }
 
+    private static boolean isOutsideThresholds(MetricInstance metricInstance, double value) {
+        if (metricInstance.isUpperThresholdEnabled() && value > metricInstance.getUpperThreshold()) {
+            return true;
+        }
+        return metricInstance.isLowerThresholdEnabled() && value < metricInstance.getLowerThreshold();
+    }
+
     @Override
     public MetricsResult filterRowsWithoutWarnings(MetricsProfile profile) {
         final MetricsResult out = new MetricsResultImpl();
-        for (String measuredObject : measuredObjects) {
+        for (int id = measured.nextSetBit(0); id >= 0; id = measured.nextSetBit(id + 1)) {
             boolean found = false;
-            for (Metric metric : metrics) {
+            for (Map.Entry<Metric, Column> entry : columns.entrySet()) {
+                final Metric metric = entry.getKey();
                 final MetricInstance metricInstance = profile.getMetricInstance(metric);
                 assert metricInstance != null : "no instance found for " + metric.getID();
                 if (!metricInstance.isEnabled()) {
                     continue;
                 }
-                final StringToFractionMap valuesForMetric = values.get(metric);
-                if (!valuesForMetric.containsKey(measuredObject)) {
-                    continue;
-                }
-                final double value = valuesForMetric.get(measuredObject);
-                if (metricInstance.isUpperThresholdEnabled() && value > metricInstance.getUpperThreshold()) {
-                    found = true;
-                    break;
-                }
-                if (metricInstance.isLowerThresholdEnabled() && value < metricInstance.getLowerThreshold()) {
+                final Column column = entry.getValue();
+                if (column.has(id) && isOutsideThresholds(metricInstance, column.get(id))) {
                     found = true;
                     break;
                 }
             }
             if (found) {
-                for (Metric metric : metrics) {
-                    final StringToFractionMap valuesForMetric = values.get(metric);
-                    final double value = valuesForMetric.get(measuredObject);
-                    out.postValue(metric, measuredObject, value, 1.0); //not quite right
+                final String measuredObject = measuredObjects[id];
+                for (Map.Entry<Metric, Column> entry : columns.entrySet()) {
+                    final Column column = entry.getValue();
+                    if (column.has(id)) {
+                        out.postValue(entry.getKey(), measuredObject, column.numerators[id], column.denominators[id]);
+                    }
                 }
                 final PsiElement elementForMeasuredObject = getElementForMeasuredObject(measuredObject);
                 if (elementForMeasuredObject != null) {
@@ -202,6 +265,77 @@ public class MetricsResultImpl implements MetricsResult {
             }
         }
         return out;
+    }
+
+    private static final class Column {
 
+        double[] numerators;
+        double[] denominators;
+        final BitSet present = new BitSet();
+
+        Column(int capacity) {
+            numerators = new double[capacity];
+            denominators = new double[capacity];
+        }
+
+        boolean has(int id) {
+            return id >= 0 && present.get(id);
+        }
+
+        void put(int id, double numerator, double denominator) {
+            if (id >= numerators.length) {
+                final int capacity = Math.max(id + 1, numerators.length << 1);
+                numerators = Arrays.copyOf(numerators, capacity);
+                denominators = Arrays.copyOf(denominators, capacity);
+            }
+            numerators[id] = numerator;
+            denominators[id] = denominator;
+            present.set(id);
+        }
+
+        double get(int id) {
+            final double denominator = denominators[id];
+            if (denominator == 0.0) {
+                return 1.0;
+            }
+            return numerators[id] / denominator;
+        }
+
+        double getMinimum() {
+            double minimum = Double.POSITIVE_INFINITY;
+            for (int id = present.nextSetBit(0); id >= 0; id = present.nextSetBit(id + 1)) {
+                minimum = Math.min(minimum, numerators[id] / denominators[id]);
+            }
+            return minimum;
+        }
+
+        double getMaximum() {
+            double maximum = Double.NEGATIVE_INFINITY;
+            for (int id = present.nextSetBit(0); id >= 0; id = present.nextSetBit(id + 1)) {
+                maximum = Math.max(maximum, numerators[id] / denominators[id]);
+            }
+            return maximum;
+        }
+
+        double getTotal() {
+            double total = 0.0;
+            for (int id = present.nextSetBit(0); id >= 0; id = present.nextSetBit(id + 1)) {
+                total += numerators[id] / denominators[id];
+            }
+            return total;
+        }
+
+        double getAverage() {
+            double totalNumerator = 0.0;
+            double totalDenominator = 0.0;
+            for (int id = present.nextSetBit(0); id >= 0; id = present.nextSetBit(id + 1)) {
+                totalNumerator += numerators[id];
+                totalDenominator += denominators[id];
+            }
+            if (totalDenominator == 0.0) {
+                return 1.0;
+            }
+            return totalNumerator / totalDenominator;
+        }
     }
 }
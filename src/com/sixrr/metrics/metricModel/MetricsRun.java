@@ -25,6 +25,10 @@ import org.jetbrains.annotations.NonNls;
 
 import java.util.List;
 
+/**
+ * The results of a metrics run.  Runs opened from a snapshot with {@link MappedMetricsRun} are read only, and throw
+ * {@link UnsupportedOperationException} when a metric is posted to them.
+ */
 public interface MetricsRun extends MetricsResultsHolder {
 
     List<Metric> getMetrics();
@@ -22,7 +22,6 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.extensions.PluginId;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.module.Module;
-import com.intellij.openapi.util.io.FileUtilRt;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiMethod;
@@ -33,14 +32,9 @@ import com.sixrr.metrics.profile.MetricRepository;
 import com.sixrr.metrics.profile.MetricsProfile;
 import com.sixrr.metrics.profile.MetricsProfileRepository;
 import com.sixrr.metrics.utils.MethodUtils;
-import org.jdom.Document;
-import org.jdom.Element;
-import org.jdom.input.SAXBuilder;
 import org.jetbrains.annotations.NotNull;
 
-import javax.xml.stream.XMLOutputFactory;
-import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.*;
 import java.io.*;
 import java.util.*;
 
@@ -52,6 +46,7 @@ public class MetricsRunImpl implements MetricsRun {
     private String profileName = null;
     private AnalysisScope context = null;
     private TimeStamp timestamp = null;
+    private FileContributions fileContributions = null;
 
     public MetricsRunImpl() {
         final MetricCategory[] categories = MetricCategory.values();
@@ -175,7 +170,7 @@ public class MetricsRunImpl implements MetricsRun {
         results.setElementForMeasuredObject(signature, method);
     }
 
-    private void postRawMetric(@NotNull Metric metric, @NotNull String measured, double value) {
+    void postRawMetric(@NotNull Metric metric, @NotNull String measured, double value) {
         final MetricCategory category = metric.getCategory();
         final MetricsResult result = metricResults.get(category);
         result.postValue(metric, measured, value);
@@ -186,12 +181,20 @@ public class MetricsRunImpl implements MetricsRun {
         return metricResults.get(category);
     }
 
-    private void setResultsForCategory(@NotNull MetricCategory category, @NotNull MetricsResult results) {
+    void setResultsForCategory(@NotNull MetricCategory category, @NotNull MetricsResult results) {
         metricResults.put(category, results);
     }
 
+    /**
+     * Writes a snapshot of this run, in the binary format if the file name ends with
+     * {@link BinarySnapshot#EXTENSION} and as XML otherwise.
+     */
     @Override
     public void writeToFile(@NotNull String fileName) {
+        if (fileName.endsWith(BinarySnapshot.EXTENSION)) {
+            writeToBinaryFile(fileName);
+            return;
+        }
         try {
             final XMLStreamWriter writer =
                     XMLOutputFactory.newInstance().createXMLStreamWriter(new FileOutputStream(fileName), "UTF-8");
@@ -224,6 +227,14 @@ public class MetricsRunImpl implements MetricsRun {
         }
     }
 
+    private void writeToBinaryFile(@NotNull String fileName) {
+        try {
+            BinarySnapshot.write(this, new File(fileName));
+        } catch (IOException e) {
+            logger.warn(e);
+        }
+    }
+
     @Override
     public String getProfileName() {
         return profileName;
@@ -241,6 +252,18 @@ public class MetricsRunImpl implements MetricsRun {
         this.timestamp = timestamp;
     }
 
+    /**
+     * Returns the values of the file local metrics of this run per file, or null if they were not recorded.  Pass
+     * them to a new run of the same scope and profile to recalculate only the files which have changed since.
+     */
+    public FileContributions getFileContributions() {
+        return fileContributions;
+    }
+
+    public void setFileContributions(FileContributions fileContributions) {
+        this.fileContributions = fileContributions;
+    }
+
     @Override
     public TimeStamp getTimestamp() {
         return timestamp;
@@ -257,6 +280,7 @@ public class MetricsRunImpl implements MetricsRun {
         out.context = context;
         out.profileName = profileName;
         out.timestamp = timestamp;
+        out.fileContributions = fileContributions;
 
         final Set<MetricCategory> categories = metricResults.keySet();
         for (MetricCategory category : categories) {
@@ -294,81 +318,69 @@ public class MetricsRunImpl implements MetricsRun {
 
     private static void writeValue(MetricsResult results, Metric metric, String measuredObject, XMLStreamWriter writer)
             throws XMLStreamException {
-        final Double value = results.getValueForMetric(metric, measuredObject);
-        if (value != null) {
+        if (results.hasValueForMetric(metric, measuredObject)) {
+            final double value = results.getDoubleValueForMetric(metric, measuredObject);
             writer.writeCharacters("    ");
             writer.writeEmptyElement("VALUE");
             writer.writeAttribute("measured", measuredObject);
-            writer.writeAttribute("value", value.toString());
+            writer.writeAttribute("value", Double.toString(value));
             writer.writeCharacters("\n");
         }
     }
 
     public static MetricsRun readFromFile(@NotNull File file) {
-        final SAXBuilder builder = new SAXBuilder();
-        Document doc;
         try {
-            doc = builder.build(file);
-        } catch (Exception e) {
+            if (BinarySnapshot.isBinarySnapshot(file)) {
+                return BinarySnapshot.read(file);
+            }
+            final Reader reader = new QuoteEscapingReader(
+                    new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8")));
             try {
-                doc = builder.build(fixBrokenXml(file));
-            } catch (Exception e1) {
-                logger.warn(e);
-                return null;
+                final XMLStreamReader xmlReader = XMLInputFactory.newInstance().createXMLStreamReader(reader);
+                try {
+                    return readSnapshot(xmlReader);
+                } finally {
+                    xmlReader.close();
+                }
+            } finally {
+                reader.close();
             }
+        } catch (IOException e) {
+            logger.warn(e);
+        } catch (XMLStreamException e) {
+            logger.warn(e);
         }
-        final Element snapshotElement = doc.getRootElement();
-        final MetricsRunImpl run = new MetricsRunImpl();
-        run.setTimestamp(new TimeStamp(snapshotElement.getAttributeValue("timestamp")));
-        run.setProfileName(snapshotElement.getAttributeValue("profile"));
-        final String version = snapshotElement.getAttributeValue("version"); // may need this later
-        final List<Element> metrics = snapshotElement.getChildren("METRIC");
-        final MetricRepository repository = MetricsProfileRepository.getInstance();
-        for (final Element metricElement : metrics) {
-            readMetricElement(metricElement, repository, run);
-        }
-        return run;
+        return null;
     }
 
-    @NotNull
-    private static Reader fixBrokenXml(@NotNull File file) throws IOException {
-        final String s = FileUtilRt.loadFile(file);
-        final StringBuilder sb = new StringBuilder();
-        boolean insideQuotes = false;
-        for (int i = 0, length = s.length(); i < length; i++) {
-            final int c = s.codePointAt(i);
-            if (c == '"') {
-                insideQuotes = !insideQuotes;
-                sb.appendCodePoint(c);
-            }
-            else if (!insideQuotes) {
-                sb.appendCodePoint(c);
-            }
-            else if (c == '<') {
-                sb.append("&lt;");
-            } else {
-                sb.appendCodePoint(c);
+    /**
+     * Posts the values of the snapshot to a new run while parsing, so the snapshot is never kept in memory as a whole.
+     */
+    private static MetricsRun readSnapshot(XMLStreamReader reader) throws XMLStreamException {
+        final MetricsRunImpl run = new MetricsRunImpl();
+        final MetricRepository repository = MetricsProfileRepository.getInstance();
+        Metric metric = null;
+        while (reader.hasNext()) {
+            if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                continue;
             }
-        }
-        return new StringReader(sb.toString());
-    }
-
-    private static void readMetricElement(Element metricElement, MetricRepository repository, MetricsRunImpl run) {
-        try {
-            final String className = metricElement.getAttributeValue("class_name");
-            final Metric metric = repository.getMetric(className);
-            if (metric != null) {
-                final List<Element> values = metricElement.getChildren("VALUE");
-                for (final Element valueElement : values) {
-                    final String measured = valueElement.getAttributeValue("measured");
-                    final String valueString = valueElement.getAttributeValue("value");
-                    final double value = Double.parseDouble(valueString);
-                    run.postRawMetric(metric, measured, value);
+            final String name = reader.getLocalName();
+            if ("SNAPSHOT".equals(name)) {
+                run.setTimestamp(new TimeStamp(reader.getAttributeValue(null, "timestamp")));
+                run.setProfileName(reader.getAttributeValue(null, "profile"));
+            } else if ("METRIC".equals(name)) {
+                metric = repository.getMetric(reader.getAttributeValue(null, "class_name"));
+            } else if ("VALUE".equals(name) && metric != null) {
+                final String measured = reader.getAttributeValue(null, "measured");
+                final String valueString = reader.getAttributeValue(null, "value");
+                try {
+                    run.postRawMetric(metric, measured, Double.parseDouble(valueString));
+                } catch (NumberFormatException e) {
+                    logger.warn(e);
                 }
             }
-        } catch (Exception e) {
-            logger.warn(e);
         }
+        return run;
     }
 
     public boolean hasWarnings(@NotNull MetricsProfile profile) {
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.sixrr.metrics.metricModel;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Escapes {@code <} characters inside quoted attribute values while reading.  Older versions wrote method signatures
+ * with generic parameter types into snapshots without escaping them, which makes those snapshots invalid XML.
+ * Valid XML passes through unchanged.
+ */
+class QuoteEscapingReader extends Reader {
+
+    private static final char[] ESCAPED_LESS_THAN = {'&', 'l', 't', ';'};
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int position = 0;
+    private int limit = 0;
+    private int escapeIndex = ESCAPED_LESS_THAN.length;
+    private boolean insideQuotes = false;
+
+    QuoteEscapingReader(@NotNull Reader in) {
+        this.in = in;
+    }
+
+    @Override
+    public int read(@NotNull char[] chars, int offset, int length) throws IOException {
+        int count = 0;
+        while (count < length) {
+            if (escapeIndex < ESCAPED_LESS_THAN.length) {
+                chars[offset + count] = ESCAPED_LESS_THAN[escapeIndex];
+                escapeIndex++;
+                count++;
+            } else if (position < limit) {
+                final char c = buffer[position];
+                position++;
+                if (c == '"') {
+                    insideQuotes = !insideQuotes;
+                } else if (c == '<' && insideQuotes) {
+                    escapeIndex = 0;
+                    continue;
+                }
+                chars[offset + count] = c;
+                count++;
+            } else if (count > 0) {
+                // don't block while characters are available
+                break;
+            } else {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit < 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
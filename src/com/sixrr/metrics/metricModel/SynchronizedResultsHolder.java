@@ -0,0 +1,110 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.metrics.metricModel;
+
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.module.Module;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiPackage;
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricsResultsHolder;
+
+/**
+ * Serializes all posts to a results holder, so calculators running on different worker threads can share it.
+ */
+class SynchronizedResultsHolder implements MetricsResultsHolder {
+
+    private final MetricsResultsHolder delegate;
+
+    SynchronizedResultsHolder(MetricsResultsHolder delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public synchronized void postProjectMetric(Metric metric, double value) {
+        delegate.postProjectMetric(metric, value);
+    }
+
+    @Override
+    public synchronized void postFileTypeMetric(Metric metric, FileType fileType, double value) {
+        delegate.postFileTypeMetric(metric, fileType, value);
+    }
+
+    @Override
+    public synchronized void postModuleMetric(Metric metric, Module module, double value) {
+        delegate.postModuleMetric(metric, module, value);
+    }
+
+    @Override
+    public synchronized void postPackageMetric(Metric metric, PsiPackage aPackage, double value) {
+        delegate.postPackageMetric(metric, aPackage, value);
+    }
+
+    @Override
+    public synchronized void postClassMetric(Metric metric, PsiClass aClass, double value) {
+        delegate.postClassMetric(metric, aClass, value);
+    }
+
+    @Override
+    public synchronized void postInterfaceMetric(Metric metric, PsiClass anInterface, double value) {
+        delegate.postInterfaceMetric(metric, anInterface, value);
+    }
+
+    @Override
+    public synchronized void postMethodMetric(Metric metric, PsiMethod method, double value) {
+        delegate.postMethodMetric(metric, method, value);
+    }
+
+    @Override
+    public synchronized void postProjectMetric(Metric metric, double numerator, double denominator) {
+        delegate.postProjectMetric(metric, numerator, denominator);
+    }
+
+    @Override
+    public synchronized void postFileTypeMetric(Metric metric, FileType fileType,
+                                                double numerator, double denominator) {
+        delegate.postFileTypeMetric(metric, fileType, numerator, denominator);
+    }
+
+    @Override
+    public synchronized void postModuleMetric(Metric metric, Module module, double numerator, double denominator) {
+        delegate.postModuleMetric(metric, module, numerator, denominator);
+    }
+
+    @Override
+    public synchronized void postPackageMetric(Metric metric, PsiPackage aPackage,
+                                               double numerator, double denominator) {
+        delegate.postPackageMetric(metric, aPackage, numerator, denominator);
+    }
+
+    @Override
+    public synchronized void postClassMetric(Metric metric, PsiClass aClass, double numerator, double denominator) {
+        delegate.postClassMetric(metric, aClass, numerator, denominator);
+    }
+
+    @Override
+    public synchronized void postInterfaceMetric(Metric metric, PsiClass anInterface,
+                                                 double numerator, double denominator) {
+        delegate.postInterfaceMetric(metric, anInterface, numerator, denominator);
+    }
+
+    @Override
+    public synchronized void postMethodMetric(Metric metric, PsiMethod method, double numerator, double denominator) {
+        delegate.postMethodMetric(metric, method, numerator, denominator);
+    }
+}
@@ -36,6 +36,10 @@ public class TimeStamp {
         timestamp = new Date();
     }
 
+    public TimeStamp(long time) {
+        timestamp = new Date(time);
+    }
+
     public TimeStamp(String timestamp) {
         try {
             DateFormat df = new SimpleDateFormat(TIMESTAMP_FORMAT);
@@ -46,6 +50,13 @@ public class TimeStamp {
         }
     }
 
+    /**
+     * Returns the time in milliseconds since the epoch.
+     */
+    public long getTime() {
+        return timestamp.getTime();
+    }
+
     public String toString() {
         DateFormat df = new SimpleDateFormat(TIMESTAMP_FORMAT);
         return df.format(timestamp);
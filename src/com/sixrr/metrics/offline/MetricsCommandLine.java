@@ -29,6 +29,7 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.util.ProgressIndicatorBase;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
@@ -37,9 +38,16 @@ import com.intellij.psi.PsiManager;
 import com.intellij.psi.search.GlobalSearchScopesCore;
 import com.intellij.psi.search.scope.packageSet.NamedScope;
 import com.intellij.psi.search.scope.packageSet.NamedScopesHolder;
+import com.intellij.util.execution.ParametersListUtil;
+import com.sixrr.metrics.export.CSVExporter;
+import com.sixrr.metrics.export.ColumnarExporter;
+import com.sixrr.metrics.export.DiffExporter;
 import com.sixrr.metrics.export.Exporter;
 import com.sixrr.metrics.export.XMLExporter;
+import com.sixrr.metrics.metricModel.MappedMetricsRun;
 import com.sixrr.metrics.metricModel.MetricsExecutionContextImpl;
+import com.sixrr.metrics.metricModel.MetricsHistory;
+import com.sixrr.metrics.metricModel.MetricsRun;
 import com.sixrr.metrics.metricModel.MetricsRunImpl;
 import com.sixrr.metrics.metricModel.TimeStamp;
 import com.sixrr.metrics.profile.MetricsProfile;
@@ -47,26 +55,31 @@ import com.sixrr.metrics.profile.MetricsProfileRepository;
 import org.jetbrains.annotations.Contract;
 import org.kohsuke.args4j.*;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 public class MetricsCommandLine implements ApplicationStarter {
 
     private static final Logger LOG = Logger.getInstance("MetricsReloaded");
+    private static final int GATE_FAILED = 2;
+    private static final int MAX_REGRESSIONS = 20;
+    private static final long DAY = 24L * 60L * 60L * 1000L;
 
-    @Argument(index = 0, required = true, metaVar = "<project_path>", usage = "the project to calculate metrics for")
+    @Argument(index = 0, metaVar = "<project_path>", usage = "the project to calculate metrics for")
     private String projectPath = null;
 
-    @Argument(index = 1, required = true, metaVar = "<metrics_profile_name>",
-            usage = "name of the metrics profile to use")
-    private String metricsProfileName = "";
+    @Argument(index = 1, metaVar = "<metrics_profile_name>", usage = "name of the metrics profile to use")
+    private String metricsProfileName = null;
 
     @Argument(index = 2, metaVar = "<output_path>",
-            usage = "the path to write the output xml to, default writes to STDOUT")
+            usage = "the path to write the output to, default writes to STDOUT")
     private String outputXmlPath = null;
 
     @Option(name = "-d", aliases = "--directory", metaVar = "<path>", forbids = "-s",
@@ -77,6 +90,38 @@ public class MetricsCommandLine implements ApplicationStarter {
             usage = "name of scope to calculate metrics for, default is the whole project")
     private String scope = null;
 
+    @Option(name = "-t", aliases = "--threads", metaVar = "<count>",
+            usage = "number of threads to calculate and export metrics with, default is 1")
+    private int threads = 1;
+
+    @Option(name = "-f", aliases = "--format", metaVar = "<format>",
+            usage = "output format, one of xml, csv or columnar, default is xml")
+    private String format = "xml";
+
+    @Option(name = "-b", aliases = "--baseline", metaVar = "<snapshot_file>", forbids = "-f",
+            usage = "write the differences with the specified snapshot as CSV, instead of the metrics. " +
+                    "With --gate, only fail on violations which are new or worse than in the snapshot")
+    private String baselinePath = null;
+
+    @Option(name = "-g", aliases = "--gate", forbids = "-f",
+            usage = "only calculate the metrics with thresholds, write the values outside the thresholds as CSV, " +
+                    "and exit with code 2 if there are any")
+    private boolean gate = false;
+
+    @Option(name = "-H", aliases = "--history", metaVar = "<directory>",
+            usage = "append the results to the history in the specified directory")
+    private String historyPath = null;
+
+    @Option(name = "-r", aliases = "--regressions", metaVar = "<days>", depends = "-H",
+            usage = "after appending to the history, show the largest increases of values since the specified " +
+                    "number of days ago, and when each value last changed")
+    private int regressionDays = -1;
+
+    @Option(name = "-m", aliases = "--manifest", metaVar = "<manifest_file>",
+            usage = "calculate metrics for every line of the specified file, which holds the arguments and options " +
+                    "of one run. The options -t, -f, -g, -v and -q given here are the defaults for every line")
+    private String manifestPath = null;
+
     @Option(name = "-v", aliases = "--verbose", usage = "show more progress information", forbids = "-q")
     private boolean verbose = false;
 
@@ -86,6 +131,8 @@ public class MetricsCommandLine implements ApplicationStarter {
     @Option(name = "-h", aliases = "--help", usage = "show this message", help = true)
     private boolean help = false;
 
+    private int gateFailures = 0;
+
     @Override
     public String getCommandName() {
         return "metrics";
@@ -95,21 +142,38 @@ public class MetricsCommandLine implements ApplicationStarter {
         final String scriptName = ApplicationNamesInfo.getInstance().getScriptName();
         out.println("Usage: " + scriptName +
                 " metrics [options] <project_path> <metrics_profile_name> [<output_xml_file>]");
+        out.println("   or: " + scriptName + " metrics [options] --manifest <manifest_file>");
         parser.printUsage(out);
     }
 
-    @Override
-    public void premain(String[] args) {
+    private static CmdLineParser createParser(MetricsCommandLine bean) {
         final ParserProperties properties = ParserProperties.defaults()
                 .withShowDefaults(false)
                 .withOptionSorter(null);
-        final CmdLineParser parser = new CmdLineParser(this, properties);
+        return new CmdLineParser(bean, properties);
+    }
+
+    @Override
+    public void premain(String[] args) {
+        final CmdLineParser parser = createParser(this);
         try {
             parser.parseArgument(Arrays.copyOfRange(args, 1, args.length));
             if (help) {
                 printUsage(parser, System.out);
                 System.exit(0);
             }
+            if (manifestPath == null && metricsProfileName == null) {
+                throw new CmdLineException(parser, "Argument \"<metrics_profile_name>\" is required", null);
+            }
+            if (manifestPath != null && projectPath != null) {
+                throw new CmdLineException(parser, "No project can be specified with a manifest", null);
+            }
+            if (manifestPath != null &&
+                    (baselinePath != null || historyPath != null || scope != null || directory != null)) {
+                // these name a snapshot, history, scope or directory of a single project
+                throw new CmdLineException(parser,
+                        "Options -b, -H, -s and -d can only be given on the lines of a manifest", null);
+            }
         } catch (CmdLineException e) {
             System.err.println(e.getMessage());
             printUsage(parser, System.err);
@@ -119,107 +183,232 @@ public class MetricsCommandLine implements ApplicationStarter {
 
     @Override
     public void main(String[] args) {
-        if (outputXmlPath != null) {
-            final File file = new File(outputXmlPath);
-            final File parentFile = file.getParentFile();
-            if (parentFile != null && !parentFile.exists()) {
-                error("Could not find directory " + parentFile.getAbsolutePath());
-            }
-        }
         final ApplicationEx application = (ApplicationEx) ApplicationManager.getApplication();
         try {
             final ApplicationInfoEx applicationInfo = (ApplicationInfoEx) ApplicationInfo.getInstance();
             info("MetricsReloaded running on " + applicationInfo.getFullApplicationName());
             application.doNotSave();
-            try {
-                info("Opening project...");
-                if (projectPath == null) {
-                    projectPath = new File("").getAbsolutePath();
+            if (manifestPath != null) {
+                runManifest(new File(manifestPath));
+            } else {
+                try {
+                    run(application);
+                } catch (RunFailedException e) {
+                    error(e.getMessage());
+                }
+                if (gateFailures > 0) {
+                    System.err.println(gateFailures + " new or worse threshold violations");
+                    System.exit(GATE_FAILED);
                 }
-                projectPath = projectPath.replace(File.separatorChar, '/');
-                final Project project = ProjectUtil.openOrImport(projectPath, null, false);
-                if (project == null) {
-                    error("Unable to open project: " + projectPath);
+            }
+            application.exit(true, true);
+        } catch (Exception e) {
+            error(e);
+        }
+    }
+
+    /**
+     * Runs every line of a manifest in this application, one project at a time, so the application is started and
+     * the indexes of shared libraries and JDKs are built only once.  Every line holds the arguments and options of a
+     * single run, with the options of the command line as defaults.  Empty lines and lines starting with # are
+     * skipped.  All lines are parsed before the first project is opened, and a run which fails does not stop the
+     * runs after it.
+     */
+    private void runManifest(File manifest) throws IOException {
+        final List<String> lines = FileUtil.loadLines(manifest);
+        final List<MetricsCommandLine> runs = new ArrayList<MetricsCommandLine>();
+        for (int i = 0; i < lines.size(); i++) {
+            final String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            final MetricsCommandLine run = createManifestRun();
+            final CmdLineParser parser = createParser(run);
+            final List<String> arguments = ParametersListUtil.parse(line);
+            try {
+                parser.parseArgument(arguments.toArray(new String[arguments.size()]));
+            } catch (CmdLineException e) {
+                error(manifest.getPath() + ':' + (i + 1) + ": " + e.getMessage());
+            }
+            if (run.projectPath == null || run.metricsProfileName == null) {
+                error(manifest.getPath() + ':' + (i + 1) + ": project path and metrics profile name are required");
+            }
+            if (run.manifestPath != null || run.help) {
+                error(manifest.getPath() + ':' + (i + 1) + ": option not allowed in a manifest");
+            }
+            runs.add(run);
+        }
+        final ApplicationEx application = (ApplicationEx) ApplicationManager.getApplication();
+        int numFailed = 0;
+        int numGateFailed = 0;
+        for (int i = 0; i < runs.size(); i++) {
+            final MetricsCommandLine run = runs.get(i);
+            info("Run " + (i + 1) + " of " + runs.size() + ": " + run.projectPath);
+            try {
+                run.run(application);
+                if (run.gateFailures > 0) {
+                    System.err.println(run.projectPath + ": " + run.gateFailures +
+                            " new or worse threshold violations");
+                    numGateFailed++;
                 }
+            } catch (RunFailedException e) {
+                System.err.println(run.projectPath + ": " + e.getMessage());
+                numFailed++;
+            } catch (Exception e) {
+                System.err.println(run.projectPath + ": " + e.getMessage());
+                LOG.error(e);
+                numFailed++;
+            }
+        }
+        info("Finished " + runs.size() + " runs, " + numFailed + " failed.");
+        if (numFailed > 0) {
+            System.exit(1);
+        }
+        if (numGateFailed > 0) {
+            System.exit(GATE_FAILED);
+        }
+    }
 
-                application.runWriteAction(new Runnable() {
-                    @Override
-                    public void run() {
-                        VirtualFileManager.getInstance().refreshWithoutFileWatcher(false);
-                    }
-                });
-                PatchProjectUtil.patchProject(project);
-                info("Project " + project.getName() + " opened.");
+    private MetricsCommandLine createManifestRun() {
+        final MetricsCommandLine run = new MetricsCommandLine();
+        run.threads = threads;
+        run.format = format;
+        run.gate = gate;
+        run.verbose = verbose;
+        run.quiet = quiet;
+        return run;
+    }
+
+    /**
+     * Opens the project, calculates and exports its metrics, and closes it again, which disposes its PSI and caches.
+     */
+    private void run(ApplicationEx application) throws Exception {
+        if (!"xml".equals(format) && !"csv".equals(format) && !"columnar".equals(format)) {
+            fail("Unknown output format: " + format);
+        }
+        if ("columnar".equals(format) && outputXmlPath == null) {
+            fail("The columnar format can't be written to STDOUT, specify an output path");
+        }
+        if (baselinePath != null && !new File(baselinePath).isFile()) {
+            fail("Could not find baseline snapshot " + new File(baselinePath).getAbsolutePath());
+        }
+        if (outputXmlPath != null) {
+            final File file = new File(outputXmlPath);
+            final File parentFile = file.getParentFile();
+            if (parentFile != null && !parentFile.exists()) {
+                fail("Could not find directory " + parentFile.getAbsolutePath());
+            }
+        }
+        info("Opening project...");
+        projectPath = projectPath.replace(File.separatorChar, '/');
+        final Project project = ProjectUtil.openOrImport(projectPath, null, false);
+        if (project == null) {
+            fail("Unable to open project: " + projectPath);
+        }
+        try {
+            application.runWriteAction(new Runnable() {
+                @Override
+                public void run() {
+                    VirtualFileManager.getInstance().refreshWithoutFileWatcher(false);
+                }
+            });
+            PatchProjectUtil.patchProject(project);
+            info("Project " + project.getName() + " opened.");
 
-                final MetricsProfile profile = getMetricsProfile(metricsProfileName);
+            final MetricsProfile selectedProfile = getMetricsProfile(metricsProfileName);
+            if (selectedProfile == null) {
+                fail("Profile not found: " + metricsProfileName);
+            }
+            final MetricsProfile profile;
+            if (gate) {
+                profile = ThresholdGate.createGateProfile(selectedProfile);
                 if (profile == null) {
-                    error("Profile not found: " + metricsProfileName);
+                    fail("Profile has no enabled metrics with thresholds: " + metricsProfileName);
                 }
-                info("Calculating metrics");
-                final AnalysisScope analysisScope;
-                if (scope != null) {
-                    final NamedScope namedScope = NamedScopesHolder.getScope(project, scope);
-                    if (namedScope == null) {
-                        error("Scope not found: " + scope);
-                    }
-                    analysisScope = new AnalysisScope(GlobalSearchScopesCore.filterScope(project, namedScope), project);
-                } else if (directory != null) {
-                    directory = directory.replace(File.separatorChar, '/');
+            } else {
+                profile = selectedProfile;
+            }
+            final MetricsRun baseline = baselinePath == null ? null : readBaseline(new File(baselinePath));
+            info("Calculating metrics");
+            final AnalysisScope analysisScope;
+            if (scope != null) {
+                final NamedScope namedScope = NamedScopesHolder.getScope(project, scope);
+                if (namedScope == null) {
+                    fail("Scope not found: " + scope);
+                }
+                analysisScope = new AnalysisScope(GlobalSearchScopesCore.filterScope(project, namedScope), project);
+            } else if (directory != null) {
+                directory = directory.replace(File.separatorChar, '/');
 
-                    final VirtualFile vfsDir = LocalFileSystem.getInstance().findFileByPath(directory);
-                    if (vfsDir == null) {
-                        error("Directory not found: " + directory);
-                    }
-                    final PsiDirectory psiDirectory = PsiManager.getInstance(project).findDirectory(vfsDir);
-                    if (psiDirectory == null) {
-                        error("Directory not found: " + directory);
-                    }
-                    analysisScope = new AnalysisScope(psiDirectory);
-                } else {
-                    analysisScope = new AnalysisScope(project);
+                final VirtualFile vfsDir = LocalFileSystem.getInstance().findFileByPath(directory);
+                if (vfsDir == null) {
+                    fail("Directory not found: " + directory);
                 }
-                ProgressManager.getInstance().runProcess(new Runnable() {
-                    @Override
-                    public void run() {
-                        final MetricsRunImpl metricsRun = new MetricsRunImpl();
-                        metricsRun.setProfileName(profile.getName());
-                        metricsRun.setTimestamp(new TimeStamp());
-                        metricsRun.setContext(analysisScope);
-                        final MetricsExecutionContextImpl metricsExecutionContext =
-                                new MetricsExecutionContextImpl(project, analysisScope);
-                        metricsExecutionContext.calculateMetrics(profile, metricsRun);
-                        final Exporter exporter = new XMLExporter(metricsRun);
-                        try {
-                            if (outputXmlPath == null) {
-                                final PrintWriter writer = new PrintWriter(System.out, true);
-                                exporter.export(writer);
-                            } else {
-                                exporter.export(outputXmlPath);
-                            }
-                        } catch (IOException e) {
-                            error(e.getMessage());
-                        }
+                final PsiDirectory psiDirectory = PsiManager.getInstance(project).findDirectory(vfsDir);
+                if (psiDirectory == null) {
+                    fail("Directory not found: " + directory);
+                }
+                analysisScope = new AnalysisScope(psiDirectory);
+            } else {
+                analysisScope = new AnalysisScope(project);
+            }
+            ProgressManager.getInstance().runProcess(new Runnable() {
+                @Override
+                public void run() {
+                    final MetricsRunImpl metricsRun = new MetricsRunImpl();
+                    metricsRun.setProfileName(profile.getName());
+                    metricsRun.setTimestamp(new TimeStamp());
+                    metricsRun.setContext(analysisScope);
+                    final MetricsExecutionContextImpl metricsExecutionContext =
+                            new MetricsExecutionContextImpl(project, analysisScope);
+                    metricsExecutionContext.setParallelism(threads);
+                    metricsExecutionContext.calculateMetrics(profile, metricsRun);
+                    final Exporter exporter;
+                    if (gate) {
+                        exporter = new ThresholdGate(metricsRun, baseline, profile);
+                    } else if (baseline != null) {
+                        exporter = new DiffExporter(metricsRun, baseline);
+                    } else {
+                        exporter = createExporter(metricsRun);
                     }
-                }, new ProgressIndicatorBase() {
-                    private int lastPercent = 0;
-
-                    @Override
-                    public void setFraction(double fraction) {
-                        final int percent = (int)(fraction * 100);
-                        if (lastPercent != percent && !isIndeterminate()) {
-                            lastPercent = percent;
-                            trace("Calculating metrics " + lastPercent + "%");
+                    try {
+                        if (outputXmlPath == null) {
+                            // no auto flush, which would flush every line of a large export
+                            final PrintWriter writer = new PrintWriter(
+                                    new BufferedWriter(new OutputStreamWriter(System.out), 65536));
+                            exporter.export(writer);
+                            writer.flush();
+                        } else {
+                            exporter.export(outputXmlPath);
                         }
+                    } catch (IOException e) {
+                        fail(e.getMessage());
+                    }
+                    if (exporter instanceof ThresholdGate) {
+                        gateFailures = ((ThresholdGate) exporter).getFailures();
+                    }
+                    if (historyPath != null) {
+                        appendToHistory(metricsRun);
                     }
-                });
-                info("Finished.");
-            } catch (Exception ex) {
-                error(ex);
+                }
+            }, new ProgressIndicatorBase() {
+                private int lastPercent = 0;
+
+                @Override
+                public void setFraction(double fraction) {
+                    final int percent = (int)(fraction * 100);
+                    if (lastPercent != percent && !isIndeterminate()) {
+                        lastPercent = percent;
+                        trace("Calculating metrics " + lastPercent + "%");
+                    }
+                }
+            });
+            if (baseline instanceof MappedMetricsRun) {
+                ((MappedMetricsRun) baseline).close();
             }
-            application.exit(true, true);
-        } catch (Exception e) {
-            LOG.error(e);
-            error(e);
+            info("Finished.");
+        } finally {
+            ProjectUtil.closeAndDispose(project);
         }
     }
 
@@ -233,6 +422,57 @@ public class MetricsCommandLine implements ApplicationStarter {
         return repository.getCurrentProfile();
     }
 
+    private MetricsRun readBaseline(File file) {
+        info("Reading baseline " + file.getPath());
+        // binary snapshots are mapped, so only the header is read before the comparison
+        MetricsRun baseline = MappedMetricsRun.open(file);
+        if (baseline == null) {
+            baseline = MetricsRunImpl.readFromFile(file);
+            if (baseline == null) {
+                fail("Could not read baseline snapshot " + file.getAbsolutePath());
+            }
+        }
+        return baseline;
+    }
+
+    private void appendToHistory(MetricsRun metricsRun) {
+        info("Appending to history " + historyPath);
+        try {
+            final MetricsHistory history = MetricsHistory.open(new File(historyPath));
+            try {
+                history.append(metricsRun);
+                if (regressionDays >= 0) {
+                    showRegressions(history, metricsRun.getTimestamp().getTime() - (long) regressionDays * DAY);
+                }
+            } finally {
+                history.close();
+            }
+        } catch (IOException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    private void showRegressions(MetricsHistory history, long since) throws IOException {
+        final List<MetricsHistory.Regression> regressions = history.getTopRegressions(since, MAX_REGRESSIONS);
+        info(regressions.size() + " largest increases since " + new TimeStamp(since) + ':');
+        for (MetricsHistory.Regression regression : regressions) {
+            final List<MetricsHistory.Change> changes =
+                    history.getHistory(regression.getMetricClassName(), regression.getMeasuredObject());
+            final long changed = changes.get(changes.size() - 1).getTime();
+            info(regression.getMetricClassName() + ',' + '"' + regression.getMeasuredObject() + "\"," +
+                    regression.getBaseline() + ',' + regression.getCurrent() + ',' + new TimeStamp(changed));
+        }
+    }
+
+    private Exporter createExporter(MetricsRun metricsRun) {
+        if ("csv".equals(format)) {
+            return new CSVExporter(metricsRun, threads);
+        } else if ("columnar".equals(format)) {
+            return new ColumnarExporter(metricsRun);
+        }
+        return new XMLExporter(metricsRun, threads);
+    }
+
     @Contract("_ -> fail")
     private static void error(Throwable throwable) {
         System.err.println(throwable.getMessage());
@@ -246,6 +486,11 @@ public class MetricsCommandLine implements ApplicationStarter {
         System.exit(1);
     }
 
+    @Contract("_ -> fail")
+    private static void fail(String message) {
+        throw new RunFailedException(message);
+    }
+
     private void info(String message) {
         if (quiet) {
             return;
@@ -259,5 +504,14 @@ public class MetricsCommandLine implements ApplicationStarter {
         }
         System.out.println(message);
     }
-}
 
+    /**
+     * Thrown when a single run fails, which ends the application unless it is part of a manifest.
+     */
+    private static class RunFailedException extends RuntimeException {
+
+        RunFailedException(String message) {
+            super(message);
+        }
+    }
+}
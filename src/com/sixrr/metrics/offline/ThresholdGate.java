@@ -0,0 +1,179 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.metrics.offline;
+
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricCategory;
+import com.sixrr.metrics.export.Exporter;
+import com.sixrr.metrics.metricModel.MetricsDiff;
+import com.sixrr.metrics.metricModel.MetricsResult;
+import com.sixrr.metrics.metricModel.MetricsResultImpl;
+import com.sixrr.metrics.metricModel.MetricsRun;
+import com.sixrr.metrics.profile.MetricInstance;
+import com.sixrr.metrics.profile.MetricsProfile;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * Checks the values of a run against the thresholds of a profile, for gating builds.  Writes a CSV line for every
+ * value outside its thresholds:
+ * <pre>
+ * category,measured object,metric,baseline,value,status
+ * </pre>
+ * The baseline column holds the value in the baseline only if it was outside the thresholds there as well.
+ * The status is "new" for a value which was not outside its thresholds in the baseline, "worse" for a value
+ * further outside its thresholds than in the baseline, and "existing" otherwise.  Without a baseline every
+ * violation is new.  New and worse values fail the gate.
+ */
+class ThresholdGate implements Exporter {
+
+    private final MetricsRun run;
+    @Nullable private final MetricsRun baseline;
+    private final MetricsProfile profile;
+    private int failures = 0;
+
+    ThresholdGate(MetricsRun run, @Nullable MetricsRun baseline, MetricsProfile profile) {
+        this.run = run;
+        this.baseline = baseline;
+        this.profile = profile;
+    }
+
+    /**
+     * Returns a copy of the profile in which only the metrics with thresholds are enabled, so only the metrics
+     * involved in the gate are calculated.  Returns null if no enabled metric has thresholds.
+     */
+    @Nullable
+    static MetricsProfile createGateProfile(MetricsProfile profile) throws CloneNotSupportedException {
+        final MetricsProfile gateProfile = profile.clone();
+        boolean found = false;
+        for (MetricInstance metricInstance : gateProfile.getMetricInstances()) {
+            if (!metricInstance.isUpperThresholdEnabled() && !metricInstance.isLowerThresholdEnabled()) {
+                metricInstance.setEnabled(false);
+            } else if (metricInstance.isEnabled()) {
+                found = true;
+            }
+        }
+        return found ? gateProfile : null;
+    }
+
+    /**
+     * Returns the number of new and worse violations found by the last export.
+     */
+    int getFailures() {
+        return failures;
+    }
+
+    @Override
+    public void export(String fileName) throws IOException {
+        final PrintWriter writer = new PrintWriter(
+                new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName), "UTF-8")));
+        try {
+            export(writer);
+        } finally {
+            writer.close();
+        }
+        if (writer.checkError()) {
+            throw new IOException("Could not write " + fileName);
+        }
+    }
+
+    @Override
+    public void export(@NonNls PrintWriter writer) throws IOException {
+        failures = 0;
+        writer.println("category,measured object,metric,baseline,value,status");
+        for (MetricCategory category : MetricCategory.values()) {
+            final MetricsResult results = run.getResultsForCategory(category);
+            if (!results.hasWarnings(profile)) {
+                continue;
+            }
+            final MetricsResult violations = results.filterRowsWithoutWarnings(profile);
+            final MetricsResult baselineViolations;
+            if (baseline == null) {
+                baselineViolations = new MetricsResultImpl();
+            } else {
+                final MetricsResult baselineResults = baseline.getResultsForCategory(category);
+                baselineViolations = baselineResults.hasWarnings(profile)
+                        ? baselineResults.filterRowsWithoutWarnings(profile) : new MetricsResultImpl();
+            }
+            check(category.name(), MetricsDiff.compute(violations, baselineViolations), writer);
+        }
+    }
+
+    private void check(String categoryName, MetricsDiff diff, @NonNls PrintWriter writer) {
+        final Metric[] metrics = diff.getMetrics();
+        for (int i = 0; i < metrics.length; i++) {
+            final MetricInstance metricInstance = profile.getMetricInstance(metrics[i]);
+            if (metricInstance == null || !metricInstance.isEnabled()) {
+                continue;
+            }
+            final int numRows = diff.getRowCount();
+            for (int row = 0; row < numRows; row++) {
+                if (!diff.hasValue(i, row)) {
+                    continue;
+                }
+                final double value = diff.getValue(i, row);
+                final double excess = getExcess(metricInstance, value);
+                if (excess <= 0.0) {
+                    continue;
+                }
+                final boolean hasBaselineValue = diff.hasPreviousValue(i, row);
+                final double baselineValue = diff.getPreviousValue(i, row);
+                final double baselineExcess = hasBaselineValue ? getExcess(metricInstance, baselineValue) : 0.0;
+                @NonNls final String status;
+                if (baselineExcess <= 0.0) {
+                    status = "new";
+                    failures++;
+                } else if (excess > baselineExcess) {
+                    status = "worse";
+                    failures++;
+                } else {
+                    status = "existing";
+                }
+                writer.print(categoryName);
+                writer.print(",\"");
+                writer.print(diff.getMeasuredObject(row));
+                writer.print("\",");
+                writer.print(metrics[i].getAbbreviation());
+                writer.print(',');
+                writer.print(baselineExcess > 0.0 ? String.valueOf(baselineValue) : "n/a");
+                writer.print(',');
+                writer.print(value);
+                writer.print(',');
+                writer.println(status);
+            }
+        }
+    }
+
+    /**
+     * Returns how far a value is outside the thresholds of a metric, or zero if it is not.
+     */
+    private static double getExcess(MetricInstance metricInstance, double value) {
+        if (metricInstance.isUpperThresholdEnabled() && value > metricInstance.getUpperThreshold()) {
+            return value - metricInstance.getUpperThreshold();
+        }
+        if (metricInstance.isLowerThresholdEnabled() && value < metricInstance.getLowerThreshold()) {
+            return metricInstance.getLowerThreshold() - value;
+        }
+        return 0.0;
+    }
+}
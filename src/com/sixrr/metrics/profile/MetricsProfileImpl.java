@@ -33,7 +33,7 @@ import java.util.*;
 public class MetricsProfileImpl implements MetricsProfile {
 
     private String name;
-    private final Map<String, MetricInstance> id2instance = new HashMap<String, MetricInstance>();
+    private Map<String, MetricInstance> id2instance = new HashMap<String, MetricInstance>();
     private MetricDisplaySpecification displaySpecification = new MetricDisplaySpecification();
     private boolean builtIn = false;
 
@@ -94,7 +94,8 @@ public class MetricsProfileImpl implements MetricsProfile {
     @Override
     public MetricsProfileImpl clone() throws CloneNotSupportedException {
         final MetricsProfileImpl out = (MetricsProfileImpl) super.clone();
-        out.id2instance.clear();
+        // the shallow copy shares the map with this profile
+        out.id2instance = new HashMap<String, MetricInstance>(id2instance.size());
         for (Map.Entry<String, MetricInstance> entry : id2instance.entrySet()) {
             out.id2instance.put(entry.getKey(), entry.getValue().clone());
         }
@@ -44,11 +44,11 @@ public class DiffDistributionDialog extends DialogWrapper {
     private final String metricName;
     private final MetricType metricType;
     private final String category;
-    private final Double[] datapoints;
-    private final Double[] prevDatapoints;
+    private final double[] datapoints;
+    private final double[] prevDatapoints;
 
     public DiffDistributionDialog(Project project, String metricName, String category, MetricType metricType,
-                                  Double[] datapoints, Double[] prevDatapoints) {
+                                  double[] datapoints, double[] prevDatapoints) {
         super(project, false);
         this.category = category;
         this.metricName = metricName;
@@ -65,7 +65,7 @@ public class DiffDistributionDialog extends DialogWrapper {
 
     private XYSeriesCollection createDistributionSeries() {
 
-        final double[] strippedDataPoints = GraphUtils.stripNulls(datapoints);
+        final double[] strippedDataPoints = datapoints.clone();
         final XYSeries series = new XYSeries(metricName);
         Arrays.sort(strippedDataPoints);
         if (strippedDataPoints[0] != 0.0) {
@@ -81,7 +81,7 @@ public class DiffDistributionDialog extends DialogWrapper {
         }
         final XYSeriesCollection seriesCollection = new XYSeriesCollection();
         seriesCollection.addSeries(series);
-        final double[] strippedPrevDataPoints = GraphUtils.stripNulls(prevDatapoints);
+        final double[] strippedPrevDataPoints = prevDatapoints.clone();
         final XYSeries prevSeries = new XYSeries(MetricsReloadedBundle.message("previous") + " " + metricName);
         Arrays.sort(strippedPrevDataPoints);
         if (strippedPrevDataPoints[0] != 0.0) {
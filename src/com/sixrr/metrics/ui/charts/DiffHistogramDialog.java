@@ -47,12 +47,12 @@ public class DiffHistogramDialog extends DialogWrapper {
     private final String metricCategory;
     private final String metricName;
     private final MetricType metricType;
-    private final Double[] datapoints;
-    private final Double[] prevDatapoints;
+    private final double[] datapoints;
+    private final double[] prevDatapoints;
     private static final double EPSILON = 0.0000001;
 
     public DiffHistogramDialog(Project project, String metricCategory, String metricName, MetricType metricType,
-                               Double[] datapoints, Double[] prevDatapoints) {
+                               double[] datapoints, double[] prevDatapoints) {
         super(project, false);
         this.metricCategory = metricCategory;
         this.metricName = metricName;
@@ -69,10 +69,7 @@ public class DiffHistogramDialog extends DialogWrapper {
         init();
     }
 
-    private static boolean isDataIntegral(Double[] datapoints, Double[] prevDatapoints) {
-        final double[] strippedData = GraphUtils.stripNulls(datapoints);
-        final double[] strippedPrevData = GraphUtils.stripNulls(prevDatapoints);
-
+    private static boolean isDataIntegral(double[] strippedData, double[] strippedPrevData) {
         boolean isIntegral = true;
         double maximum = Double.MIN_VALUE;
         for (double aStrippedData : strippedData) {
@@ -91,8 +88,8 @@ public class DiffHistogramDialog extends DialogWrapper {
     }
 
     private IntervalXYDataset createDataset(boolean isIntegral) {
-        final double[] clonedData = GraphUtils.stripNulls(datapoints);
-        final double[] clonedData1 = GraphUtils.stripNulls(prevDatapoints);
+        final double[] clonedData = datapoints.clone();
+        final double[] clonedData1 = prevDatapoints.clone();
         if (isIntegral) {
             final IntegerHistogramDataset dataset = new IntegerHistogramDataset();
             dataset.setType(HistogramDataset.FREQUENCY);
@@ -41,7 +41,9 @@ public class ProfileSelectionPanel extends JPanel {
 
         final JComponent separator =
                 new TitledSeparator(MetricsReloadedBundle.message("metrics.profile"));
-        final JCheckBox checkBox = buildCheckBox(MetricsReloadedConfig.getInstance());
+        final MetricsReloadedConfig configuration = MetricsReloadedConfig.getInstance();
+        final JCheckBox checkBox = buildCheckBox(configuration);
+        final JCheckBox parallelCheckBox = buildParallelCheckBox(configuration);
 
         final GridBagConstraints constraints = new GridBagConstraints();
         constraints.insets.left = 0;
@@ -59,8 +61,11 @@ public class ProfileSelectionPanel extends JPanel {
         add(comboboxWithBrowseButton, constraints);
 
         constraints.gridy = 2;
-        constraints.weighty = 1.0;
         add(checkBox, constraints);
+
+        constraints.gridy = 3;
+        constraints.weighty = 1.0;
+        add(parallelCheckBox, constraints);
     }
 
     private static JCheckBox buildCheckBox(final MetricsReloadedConfig configuration) {
@@ -76,6 +81,19 @@ public class ProfileSelectionPanel extends JPanel {
         return checkBox;
     }
 
+    private static JCheckBox buildParallelCheckBox(final MetricsReloadedConfig configuration) {
+        final JCheckBox checkBox = new JCheckBox(MetricsReloadedBundle.message(
+                "calculate.metrics.using.multiple.threads"));
+        checkBox.setSelected(configuration.isParallelCalculation());
+        checkBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent event) {
+                configuration.setParallelCalculation(checkBox.isSelected());
+            }
+        });
+        return checkBox;
+    }
+
     private static ComboboxWithBrowseButton buildComboBoxWithBrowseButton(
             final Project project, final MetricsProfileRepository repository) {
         final String[] profiles = repository.getProfileNames();
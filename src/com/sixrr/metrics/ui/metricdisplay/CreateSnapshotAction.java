@@ -21,6 +21,7 @@ import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.wm.WindowManager;
+import com.sixrr.metrics.metricModel.BinarySnapshot;
 import com.sixrr.metrics.metricModel.MetricsRun;
 import com.sixrr.metrics.utils.MetricsReloadedBundle;
 import org.jetbrains.annotations.NonNls;
@@ -51,16 +52,20 @@ class CreateSnapshotAction extends AnAction {
         if (returnVal == JFileChooser.APPROVE_OPTION) {
             final File selectedFile = chooser.getSelectedFile();
             @NonNls final String fileName = selectedFile.getAbsolutePath();
-            if (fileName.endsWith(".met")) {
+            final String extension = ((SnapshotFileFilter) chooser.getFileFilter()).getExtension();
+            if (fileName.endsWith(SnapshotFileFilter.EXTENSION) || fileName.endsWith(BinarySnapshot.EXTENSION)) {
                 currentResults.writeToFile(fileName);
             } else {
-                currentResults.writeToFile(fileName + ".met");
+                currentResults.writeToFile(fileName + extension);
             }
         }
     }
 
     private int selectFile(JFileChooser chooser) {
-        final FileFilter filter = new SnapshotFileFilter();
+        final FileFilter filter = new SnapshotFileFilter(SnapshotFileFilter.EXTENSION);
+        chooser.setAcceptAllFileFilterUsed(false);
+        chooser.addChoosableFileFilter(filter);
+        chooser.addChoosableFileFilter(new SnapshotFileFilter(BinarySnapshot.EXTENSION));
         chooser.setFileFilter(filter);
         final WindowManager myWindowManager = WindowManager.getInstance();
         final Window parent = myWindowManager.suggestParentWindow(project);
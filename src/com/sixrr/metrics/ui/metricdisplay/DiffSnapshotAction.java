@@ -20,6 +20,7 @@ import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.wm.WindowManager;
+import com.sixrr.metrics.metricModel.MappedMetricsRun;
 import com.sixrr.metrics.metricModel.MetricsRun;
 import com.sixrr.metrics.metricModel.MetricsRunImpl;
 import com.sixrr.metrics.utils.MetricsReloadedBundle;
@@ -52,8 +53,14 @@ class DiffSnapshotAction extends AnAction {
 
         if (returnVal == JFileChooser.APPROVE_OPTION) {
             final File selectedFile = chooser.getSelectedFile();
-            final MetricsRun previousResults =
-                    MetricsRunImpl.readFromFile(selectedFile);
+            // binary snapshots are mapped instead of read, so only the values shown are decoded
+            MetricsRun previousResults = MappedMetricsRun.open(selectedFile);
+            if (previousResults == null) {
+                previousResults = MetricsRunImpl.readFromFile(selectedFile);
+                if (previousResults == null) {
+                    return;
+                }
+            }
             toolWindow.reloadAsDiff(previousResults);
         }
     }
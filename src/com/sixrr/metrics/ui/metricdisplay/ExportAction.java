@@ -23,7 +23,9 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.wm.WindowManager;
+import com.sixrr.metrics.config.MetricsReloadedConfig;
 import com.sixrr.metrics.export.CSVExporter;
+import com.sixrr.metrics.export.ColumnarExporter;
 import com.sixrr.metrics.export.Exporter;
 import com.sixrr.metrics.export.XMLExporter;
 import com.sixrr.metrics.metricModel.MetricsRun;
@@ -57,10 +59,13 @@ class ExportAction extends AnAction {
 //        final FileTypeFilter htmlFilter = new FileTypeFilter(".html", "HTML Files");
         final FileTypeFilter csvFilter =
                 new FileTypeFilter(".csv", MetricsReloadedBundle.message("csv.files"));
+        final FileTypeFilter columnarFilter =
+                new FileTypeFilter(ColumnarExporter.EXTENSION, MetricsReloadedBundle.message("columnar.files"));
         chooser.setAcceptAllFileFilterUsed(false);
         chooser.addChoosableFileFilter(csvFilter);
 //        chooser.addChoosableFileFilter(htmlFilter);
         chooser.addChoosableFileFilter(xmlFilter);
+        chooser.addChoosableFileFilter(columnarFilter);
         final WindowManager myWindowManager;
         final Application application = ApplicationManager.getApplication();
         if (application != null && application.hasComponent(WindowManager.class)) {
@@ -77,16 +82,20 @@ class ExportAction extends AnAction {
         final File selectedFile = chooser.getSelectedFile();
         final FileTypeFilter filter = (FileTypeFilter) chooser.getFileFilter();
         String fileName = selectedFile.getAbsolutePath();
+        final int parallelism = MetricsReloadedConfig.getInstance().isParallelCalculation()
+                ? Runtime.getRuntime().availableProcessors() : 1;
         final Exporter exporter;
         if (filter.equals(csvFilter)) {
-            exporter = new CSVExporter(currentResults);
+            exporter = new CSVExporter(currentResults, parallelism);
+        } else if (filter.equals(columnarFilter)) {
+            exporter = new ColumnarExporter(currentResults);
         }
 //        else if (filter.equals(htmlFilter))
 //        {
 //            exporter = new HTMLExporter(currentResults);
 //        }
         else {
-            exporter = new XMLExporter(currentResults);
+            exporter = new XMLExporter(currentResults, parallelism);
         }
         final String extension = filter.getExtension();
         if (!fileName.endsWith(extension)) {
@@ -21,7 +21,9 @@ import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.PsiElement;
 import com.sixrr.metrics.Metric;
 import com.sixrr.metrics.profile.MetricInstance;
+import com.sixrr.metrics.metricModel.MappedMetricsResult;
 import com.sixrr.metrics.metricModel.MetricInstanceAbbreviationComparator;
+import com.sixrr.metrics.metricModel.MetricsDiff;
 import com.sixrr.metrics.metricModel.MetricsResult;
 import com.sixrr.metrics.profile.MetricTableSpecification;
 import com.sixrr.metrics.profile.MetricsProfile;
@@ -42,6 +44,9 @@ class MetricTableModel extends AbstractTableModel {
     private MetricInstance[] metricsInstances;
     private MetricsResult prevResults;
     private MetricsResult results;
+    private MetricsDiff diff = null;
+    // the index in the diff of every metric instance
+    private int[] diffMetrics = null;
     private int[] rowPermutation;
 
     MetricTableModel(@NotNull MetricsResult results, @NotNull String type,
@@ -173,8 +178,17 @@ class MetricTableModel extends AbstractTableModel {
         return results;
     }
 
+    /**
+     * Returns the difference with the previous results, or null if there are no previous results.
+     */
+    @Nullable
+    public MetricsDiff getDiff() {
+        return diff;
+    }
+
     public void setResults(MetricsResult newResults) {
         results = newResults;
+        computeDiff();
         tabulateMetrics();
         tabulateMeasuredObjects();
         rowPermutation = new int[measuredObjects.length];
@@ -232,9 +246,14 @@ class MetricTableModel extends AbstractTableModel {
             final MetricInstance metricInstance = metricsInstances[permutedColumn - 1];
             return results.getValueForMetric(metricInstance.getMetric(), measuredObject);
         } else {
-            final MetricInstance metric = metricsInstances[permutedColumn - 1];
-            final Double value = results.getValueForMetric(metric.getMetric(), measuredObject);
-            final Double prevValue = prevResults.getValueForMetric(metric.getMetric(), measuredObject);
+            final int row = rowPermutation[rowIndex];
+            final int metric = diffMetrics[permutedColumn - 1];
+            if (metric < 0) {
+                return Pair.create(null, null);
+            }
+            final Double value = diff.hasValue(metric, row) ? Double.valueOf(diff.getValue(metric, row)) : null;
+            final Double prevValue =
+                    diff.hasPreviousValue(metric, row) ? Double.valueOf(diff.getPreviousValue(metric, row)) : null;
             return Pair.create(value, prevValue);
         }
     }
@@ -252,7 +271,11 @@ class MetricTableModel extends AbstractTableModel {
     }
 
     public void setPrevResults(MetricsResult newResults) {
+        if (prevResults != newResults) {
+            releasePrevResults();
+        }
         prevResults = newResults;
+        computeDiff();
         tabulateMetrics();
         tabulateMeasuredObjects();
         rowPermutation = new int[measuredObjects.length];
@@ -261,6 +284,22 @@ class MetricTableModel extends AbstractTableModel {
         fireTableDataChanged();
     }
 
+    /**
+     * Releases the previous results if they are backed by a mapped snapshot.  Call it when the model is no longer
+     * used.
+     */
+    public void dispose() {
+        releasePrevResults();
+        prevResults = null;
+    }
+
+    private void releasePrevResults() {
+        if (prevResults instanceof MappedMetricsResult) {
+            // the snapshot is unmapped once the tables of all categories released it
+            ((MappedMetricsResult) prevResults).release();
+        }
+    }
+
     private void sort() {
         // change the rowPermutation
         int sortColumn = tableSpecification.getSortColumn();
@@ -277,10 +316,15 @@ class MetricTableModel extends AbstractTableModel {
                 tempArray[i] = Pair.create(Integer.valueOf(i), name);
             }
         } else {
+            final MetricInstance metricInstance = metricsInstances[permutedColumn - 1];
+            final int metric = diff == null ? -1 : diffMetrics[permutedColumn - 1];
             for (int i = 0; i < rowPermutation.length; i++) {
-                final String name = measuredObjects[i];
-                final MetricInstance metricInstance = metricsInstances[permutedColumn - 1];
-                final Double value = results.getValueForMetric(metricInstance.getMetric(), name);
+                final Double value;
+                if (diff == null) {
+                    value = results.getValueForMetric(metricInstance.getMetric(), measuredObjects[i]);
+                } else {
+                    value = metric >= 0 && diff.hasValue(metric, i) ? Double.valueOf(diff.getValue(metric, i)) : null;
+                }
                 tempArray[i] = Pair.create(Integer.valueOf(i), value);
             }
         }
@@ -290,15 +334,13 @@ class MetricTableModel extends AbstractTableModel {
         }
     }
 
+    private void computeDiff() {
+        // only joins the rows, the values of a metric are read when its column is shown or sorted on
+        diff = prevResults == null ? null : MetricsDiff.compute(results, prevResults);
+    }
+
     private void tabulateMeasuredObjects() {
-        final String[] resultObjects = results.getMeasuredObjects();
-        final Set<String> allObjects = new HashSet<String>(resultObjects.length);
-        if (prevResults != null) {
-            final String[] prevResultObjects = prevResults.getMeasuredObjects();
-            Collections.addAll(allObjects, prevResultObjects);
-        }
-        Collections.addAll(allObjects, resultObjects);
-        measuredObjects = allObjects.toArray(new String[allObjects.size()]);
+        measuredObjects = diff == null ? results.getMeasuredObjects() : diff.getMeasuredObjects();
     }
 
     private void tabulateMetrics() {
@@ -312,6 +354,14 @@ class MetricTableModel extends AbstractTableModel {
         }
         metricsInstances = allMetrics.toArray(new MetricInstance[allMetrics.size()]);
         Arrays.sort(metricsInstances, new MetricInstanceAbbreviationComparator());
+        if (diff == null) {
+            diffMetrics = null;
+        } else {
+            diffMetrics = new int[metricsInstances.length];
+            for (int i = 0; i < metricsInstances.length; i++) {
+                diffMetrics[i] = diff.indexOf(metricsInstances[i].getMetric());
+            }
+        }
     }
 
     private static class PairComparator implements Comparator<Pair> {
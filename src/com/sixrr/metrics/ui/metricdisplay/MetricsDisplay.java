@@ -105,6 +105,10 @@ public class MetricsDisplay {
                     displaySpecification.getSpecification(category);
             final MetricsResult results = run.getResultsForCategory(category);
             final MetricTableModel model = new MetricTableModel(results, type, tableSpecification);
+            final TableModel oldModel = table.getModel();
+            if (oldModel instanceof MetricTableModel) {
+                ((MetricTableModel) oldModel).dispose();
+            }
             table.setModel(model);
             final Container tab = table.getParent().getParent();
             if (model.getRowCount() == 0) {
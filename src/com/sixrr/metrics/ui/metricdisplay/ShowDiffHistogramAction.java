@@ -17,10 +17,10 @@
 package com.sixrr.metrics.ui.metricdisplay;
 
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Pair;
 import com.sixrr.metrics.Metric;
 import com.sixrr.metrics.MetricCategory;
 import com.sixrr.metrics.MetricType;
+import com.sixrr.metrics.metricModel.MetricsDiff;
 import com.sixrr.metrics.utils.MetricsCategoryNameUtil;
 import com.sixrr.metrics.ui.charts.DiffHistogramDialog;
 import com.sixrr.metrics.utils.MetricsReloadedBundle;
@@ -42,21 +42,14 @@ class ShowDiffHistogramAction extends AbstractAction {
 
     @Override
     public void actionPerformed(ActionEvent e) {
-        int numRows = model.getRowCount();
-        if (numRows > 1) {
-            numRows -= 2;
-        }
-        final Double[] values = new Double[numRows];
-        final Double[] prevValues = new Double[numRows];
         final int selectedColumn = table.getSelectedColumn();
         final int modelColumn = table.convertColumnIndexToModel(selectedColumn);
-        for (int i = 0; i < numRows; i++) {
-            final Pair<Double, Double> value = (Pair<Double, Double>) model.getValueAt(i, modelColumn);
-            assert value != null;
-            values[i] = value.getFirst();
-            prevValues[i] = value.getSecond();
-        }
         final Metric metric = model.getMetricForColumn(modelColumn).getMetric();
+        final MetricsDiff diff = model.getDiff();
+        assert diff != null;
+        final int index = diff.indexOf(metric);
+        final double[] values = index < 0 ? new double[0] : diff.getValues(index);
+        final double[] prevValues = index < 0 ? new double[0] : diff.getPreviousValues(index);
         final String name = metric.getDisplayName();
         final MetricCategory category = metric.getCategory();
         final String categoryName = MetricsCategoryNameUtil.getShortNameForCategory(category);
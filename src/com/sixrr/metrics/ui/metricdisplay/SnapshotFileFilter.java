@@ -16,24 +16,59 @@
 
 package com.sixrr.metrics.ui.metricdisplay;
 
+import com.sixrr.metrics.metricModel.BinarySnapshot;
 import com.sixrr.metrics.utils.MetricsReloadedBundle;
 import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.filechooser.FileFilter;
 import java.io.File;
 
 public class SnapshotFileFilter extends FileFilter {
+
+    @NonNls public static final String EXTENSION = ".met";
+
+    @Nullable @NonNls private final String extension;
+
+    /**
+     * Creates a filter accepting both XML and binary snapshots.
+     */
+    public SnapshotFileFilter() {
+        this(null);
+    }
+
+    /**
+     * Creates a filter accepting only snapshots with the specified extension, either {@link #EXTENSION} or
+     * {@link BinarySnapshot#EXTENSION}.
+     */
+    public SnapshotFileFilter(@Nullable @NonNls String extension) {
+        this.extension = extension;
+    }
+
+    @Nullable
+    public String getExtension() {
+        return extension;
+    }
+
     @Override
     public boolean accept(File f) {
         if (f.isDirectory()) {
             return true;
         }
         @NonNls final String fileName = f.getName();
-        return fileName.endsWith(".met");
+        if (extension != null) {
+            return fileName.endsWith(extension);
+        }
+        return fileName.endsWith(EXTENSION) || fileName.endsWith(BinarySnapshot.EXTENSION);
     }
 
     @Override
     public String getDescription() {
+        if (extension == null) {
+            return MetricsReloadedBundle.message("all.snapshot.files.description");
+        } else if (BinarySnapshot.EXTENSION.equals(extension)) {
+            return MetricsReloadedBundle.message("binary.snapshot.files.description");
+        }
         return MetricsReloadedBundle.message("snapshot.files.description");
     }
 }
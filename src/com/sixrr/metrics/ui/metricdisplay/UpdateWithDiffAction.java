@@ -21,6 +21,7 @@ import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.project.Project;
 import com.sixrr.metrics.metricModel.MetricsExecutionContextImpl;
+import com.sixrr.metrics.metricModel.MetricsRun;
 import com.sixrr.metrics.metricModel.MetricsRunImpl;
 import com.sixrr.metrics.metricModel.TimeStamp;
 import com.sixrr.metrics.profile.MetricsProfile;
@@ -43,6 +44,11 @@ class UpdateWithDiffAction extends AnAction {
         final AnalysisScope scope = toolWindow.getCurrentScope();
         final MetricsProfile currentProfile = toolWindow.getCurrentProfile();
         final MetricsRunImpl metricsRun = new MetricsRunImpl();
+        final MetricsRun currentRun = toolWindow.getCurrentRun();
+        if (currentRun instanceof MetricsRunImpl) {
+            // only recalculate the file local metrics of files changed since the current run
+            metricsRun.setFileContributions(((MetricsRunImpl) currentRun).getFileContributions());
+        }
         new MetricsExecutionContextImpl(project, scope) {
 
             @Override
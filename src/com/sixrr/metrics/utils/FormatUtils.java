@@ -19,17 +19,13 @@ package com.sixrr.metrics.utils;
 import com.sixrr.metrics.Metric;
 import com.sixrr.metrics.MetricType;
 
+import java.text.FieldPosition;
 import java.text.NumberFormat;
 
 public final class FormatUtils {
 
-    private static final NumberFormat numberFormatter = NumberFormat.getNumberInstance();
-    private static final NumberFormat intFormatter = NumberFormat.getIntegerInstance();
-
-    static {
-        numberFormatter.setMaximumFractionDigits(2);
-        numberFormatter.setMinimumFractionDigits(2);
-    }
+    // the number formats are not thread safe, so all access is synchronized on this format
+    private static final ValueFormat valueFormat = new ValueFormat();
 
     private FormatUtils() {}
 
@@ -41,14 +37,46 @@ public final class FormatUtils {
         if (value == null) {
             return "";
         }
-        final MetricType metricType = metric.getType();
-        if (metricType == MetricType.Count || metricType == MetricType.Score ||
-                metricType == MetricType.RecursiveCount) {
-            return average ? numberFormatter.format(value.doubleValue()) : intFormatter.format(value.longValue());
-        }  else if(metricType == MetricType.Average) {
-            return numberFormatter.format(value) ;
-        } else { //it's a ratio or recursive ratio
-            return numberFormatter.format(value.doubleValue() * 100.0) + '%';
+        synchronized (valueFormat) {
+            return valueFormat.format(metric.getType(), value.doubleValue(), average).toString();
+        }
+    }
+
+    /**
+     * Formats values into a buffer which is reused for every value, so formatting allocates nothing.  Not thread
+     * safe, every thread needs a format of its own.
+     */
+    public static final class ValueFormat {
+
+        private final NumberFormat numberFormatter = NumberFormat.getNumberInstance();
+        private final NumberFormat intFormatter = NumberFormat.getIntegerInstance();
+        private final StringBuffer buffer = new StringBuffer(32);
+        private final FieldPosition fieldPosition = new FieldPosition(0);
+
+        public ValueFormat() {
+            numberFormatter.setMaximumFractionDigits(2);
+            numberFormatter.setMinimumFractionDigits(2);
+        }
+
+        /**
+         * Returns the formatted value, in a buffer which is overwritten by the next call.
+         */
+        public StringBuffer format(MetricType metricType, double value, boolean average) {
+            buffer.setLength(0);
+            if (metricType == MetricType.Count || metricType == MetricType.Score ||
+                    metricType == MetricType.RecursiveCount) {
+                if (average) {
+                    numberFormatter.format(value, buffer, fieldPosition);
+                } else {
+                    intFormatter.format((long) value, buffer, fieldPosition);
+                }
+            } else if (metricType == MetricType.Average) {
+                numberFormatter.format(value, buffer, fieldPosition);
+            } else { //it's a ratio or recursive ratio
+                numberFormatter.format(value * 100.0, buffer, fieldPosition);
+                buffer.append('%');
+            }
+            return buffer;
         }
     }
 }
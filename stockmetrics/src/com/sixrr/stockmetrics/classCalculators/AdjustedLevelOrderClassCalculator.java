@@ -17,8 +17,8 @@ package com.sixrr.stockmetrics.classCalculators;
 
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
-import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.sixrr.stockmetrics.dependency.DependencyMap;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public class AdjustedLevelOrderClassCalculator extends ClassCalculator {
 
@@ -27,7 +27,7 @@ public class AdjustedLevelOrderClassCalculator extends ClassCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitClass(PsiClass aClass) {
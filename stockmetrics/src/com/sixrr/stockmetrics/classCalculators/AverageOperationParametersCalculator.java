@@ -17,6 +17,7 @@
 package com.sixrr.stockmetrics.classCalculators;
 
 import com.intellij.psi.*;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public class AverageOperationParametersCalculator extends ClassCalculator {
 
@@ -25,7 +26,7 @@ public class AverageOperationParametersCalculator extends ClassCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitClass(PsiClass aClass) {
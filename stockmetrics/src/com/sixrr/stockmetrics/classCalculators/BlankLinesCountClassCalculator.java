@@ -16,9 +16,9 @@
 
 package com.sixrr.stockmetrics.classCalculators;
 
-import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 import com.sixrr.stockmetrics.utils.LineUtil;
 
 public class BlankLinesCountClassCalculator extends ClassCalculator {
@@ -27,7 +27,7 @@ public class BlankLinesCountClassCalculator extends ClassCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
         @Override
         public void visitClass(PsiClass aClass) {
             super.visitClass(aClass);
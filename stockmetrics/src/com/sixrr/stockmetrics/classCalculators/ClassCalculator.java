@@ -17,11 +17,31 @@
 package com.sixrr.stockmetrics.classCalculators;
 
 import com.intellij.psi.PsiClass;
+import com.sixrr.metrics.FileAnalysis;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.ClassUtils;
 import com.sixrr.stockmetrics.execution.BaseMetricsCalculator;
+import com.sixrr.stockmetrics.utils.CohesionModel;
+import org.jetbrains.annotations.NotNull;
 
 public abstract class ClassCalculator extends BaseMetricsCalculator {
 
+    private static final FileAnalysis<PsiClass, CohesionModel> COHESION_MODEL =
+            new FileAnalysis<PsiClass, CohesionModel>("cohesionModel") {
+                @NotNull
+                @Override
+                public CohesionModel compute(@NotNull PsiClass aClass) {
+                    return CohesionModel.build(aClass);
+                }
+            };
+
+    /**
+     * Does nothing, as class calculators post the value of every class while visiting it.  Calculators which
+     * accumulate results over multiple files and post them in {@link #endMetricsRun()} must override this method.
+     */
+    @Override
+    public void merge(MetricCalculator other) {}
+
     protected void postMetric(PsiClass aClass, int numerator, int denominator) {
         resultsHolder.postClassMetric(metric, aClass, (double) numerator, (double) denominator);
     }
@@ -34,6 +54,13 @@ public abstract class ClassCalculator extends BaseMetricsCalculator {
         resultsHolder.postClassMetric(metric, aClass, value);
     }
 
+    /**
+     * Returns the cohesion model of a class, which is built once per file and shared by all cohesion metrics.
+     */
+    protected CohesionModel getCohesionModel(PsiClass aClass) {
+        return executionContext.getFileAnalysis(COHESION_MODEL, aClass);
+    }
+
     protected static boolean isConcreteClass(PsiClass aClass) {
         return !(aClass.isInterface() || ClassUtils.isAnonymous(aClass));
     }
@@ -33,14 +33,8 @@ public class DepthOfInheritanceCalculator extends ClassCalculator {
         public void visitClass(PsiClass aClass) {
             super.visitClass(aClass);
             if (isConcreteClass(aClass) && !aClass.isEnum()) {
-                final int depth = getInheritanceDepth(aClass);
-                postMetric(aClass, depth);
+                postMetric(aClass, getInheritanceCache().getDepth(aClass));
             }
         }
-
-        private int getInheritanceDepth(PsiClass aClass) {
-            final PsiClass superClass = aClass.getSuperClass();
-            return superClass == null ? 0 : getInheritanceDepth(superClass) + 1;
-        }
     }
 }
@@ -19,10 +19,11 @@ package com.sixrr.stockmetrics.classCalculators;
 import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
-import com.sixrr.stockmetrics.halstead.HalsteadVisitor;
+import com.sixrr.metrics.FileLocalMetricCalculator;
+import com.sixrr.stockmetrics.halstead.HalsteadCounts;
 
-public abstract class HalsteadClassCalculator extends ClassCalculator {
-    protected abstract double calculateValue(HalsteadVisitor visitor);
+public abstract class HalsteadClassCalculator extends ClassCalculator implements FileLocalMetricCalculator {
+    protected abstract double calculateValue(HalsteadCounts counts);
 
     @Override
     protected PsiElementVisitor createVisitor() {
@@ -35,9 +36,7 @@ public abstract class HalsteadClassCalculator extends ClassCalculator {
         public void visitClass(PsiClass aClass) {
             super.visitClass(aClass);
             if (isConcreteClass(aClass)) {
-                final HalsteadVisitor visitor = new HalsteadVisitor();
-                aClass.accept(visitor);
-                final double value = calculateValue(visitor);
+                final double value = calculateValue(getHalsteadCounts(aClass));
                 postMetric(aClass, value);
             }
         }
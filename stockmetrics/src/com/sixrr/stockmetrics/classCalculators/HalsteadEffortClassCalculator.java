@@ -16,12 +16,12 @@
 
 package com.sixrr.stockmetrics.classCalculators;
 
-import com.sixrr.stockmetrics.halstead.HalsteadVisitor;
+import com.sixrr.stockmetrics.halstead.HalsteadCounts;
 
 public class HalsteadEffortClassCalculator extends HalsteadClassCalculator {
 
     @Override
-    protected double calculateValue(HalsteadVisitor visitor) {
-        return visitor.getEffort();
+    protected double calculateValue(HalsteadCounts counts) {
+        return counts.getEffort();
     }
 }
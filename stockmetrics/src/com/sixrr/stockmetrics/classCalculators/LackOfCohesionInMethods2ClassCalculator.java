@@ -17,14 +17,7 @@
 package com.sixrr.stockmetrics.classCalculators;
 
 import com.intellij.psi.*;
-
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-
-import static com.sixrr.stockmetrics.utils.MethodsCohesionUtils.calculateFieldToMethodUsage;
-import static com.sixrr.stockmetrics.utils.MethodsCohesionUtils.getApplicableMethods;
+import com.sixrr.stockmetrics.utils.CohesionModel;
 
 public class LackOfCohesionInMethods2ClassCalculator extends ClassCalculator {
     @Override
@@ -40,20 +33,18 @@ public class LackOfCohesionInMethods2ClassCalculator extends ClassCalculator {
                 return;
             }
 
-            final Set<PsiMethod> applicableMethods = getApplicableMethods(aClass);
-            final int n = applicableMethods.size();
+            final CohesionModel model = getCohesionModel(aClass);
+            final int n = model.getNumMethods();
             if (n <= 1) {
                 postMetric(aClass, 0);
                 return;
             }
 
-            final Set<PsiField> fields = new HashSet<PsiField>(Arrays.asList(aClass.getFields()));
-            final int fieldsNumber = fields.size();
-            final Map<PsiField, Set<PsiMethod>> fieldToMethods =
-                    calculateFieldToMethodUsage(fields, applicableMethods);
+            final PsiField[] fields = aClass.getFields();
+            final int fieldsNumber = fields.length;
             int fieldsUsagesSum = 0;
-            for (final Map.Entry<PsiField, Set<PsiMethod>> e : fieldToMethods.entrySet()) {
-                fieldsUsagesSum += e.getValue().size();
+            for (final PsiField field : fields) {
+                fieldsUsagesSum += model.getNumMethodsUsing(field);
             }
 
             final double averageFieldUsage = fieldsNumber == 0 ? 0.0 : (double) fieldsUsagesSum / fieldsNumber;
@@ -16,16 +16,11 @@
 
 package com.sixrr.stockmetrics.classCalculators;
 
-import com.intellij.psi.*;
-import com.sixrr.stockmetrics.utils.SetUtil;
-
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-
-import static com.sixrr.stockmetrics.utils.MethodsCohesionUtils.calculateFieldToMethodUsage;
-import static com.sixrr.stockmetrics.utils.MethodsCohesionUtils.getApplicableMethods;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElementVisitor;
+import com.intellij.psi.PsiField;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
+import com.sixrr.stockmetrics.utils.CohesionModel;
 
 public class LackOfCohesionInMethods5ClassCalculator extends ClassCalculator {
     @Override
@@ -33,7 +28,7 @@ public class LackOfCohesionInMethods5ClassCalculator extends ClassCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
         @Override
         public void visitClass(PsiClass aClass) {
             super.visitClass(aClass);
@@ -41,20 +36,17 @@ public class LackOfCohesionInMethods5ClassCalculator extends ClassCalculator {
                 return;
             }
 
-            final Map<PsiField, Set<PsiMethod>> fieldToMethods = calculateFieldToMethodUsage(
-                            new HashSet<PsiField>(Arrays.asList(aClass.getFields())), getApplicableMethods(aClass));
             final PsiField[] fields = aClass.getFields();
             if (fields.length < 2) {
                 postMetric(aClass, 0);
                 return;
             }
 
+            final CohesionModel model = getCohesionModel(aClass);
             double sumOfJaccardDistances = 0.0;
             for (int i = 0; i < fields.length; i++) {
                 for (int j = i + 1; j < fields.length; j++) {
-                    final Set<PsiMethod> a = fieldToMethods.get(fields[i]);
-                    final Set<PsiMethod> b = fieldToMethods.get(fields[j]);
-                    sumOfJaccardDistances += SetUtil.jaccardDistance(a, b);
+                    sumOfJaccardDistances += model.getJaccardDistance(fields[i], fields[j]);
                 }
             }
 
@@ -16,12 +16,9 @@
 
 package com.sixrr.stockmetrics.classCalculators;
 
-import com.intellij.psi.*;
-
-import java.util.Map;
-import java.util.Set;
-
-import static com.sixrr.stockmetrics.utils.MethodsCohesionUtils.*;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElementVisitor;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public class LackOfCohesionOfMethodsClassCalculator extends ClassCalculator {
     @Override
@@ -29,18 +26,13 @@ public class LackOfCohesionOfMethodsClassCalculator extends ClassCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitClass(PsiClass aClass) {
             super.visitClass(aClass);
             if (isConcreteClass(aClass)) {
-                final Set<PsiMethod> applicableMethods = getApplicableMethods(aClass);
-                final Map<PsiMethod, Set<PsiField>> fieldsPerMethod = calculateFieldUsage(applicableMethods);
-                final Map<PsiMethod, Set<PsiMethod>> linkedMethods = calculateMethodLinkage(applicableMethods);
-                final Set<Set<PsiMethod>> components =
-                        calculateComponents(applicableMethods, fieldsPerMethod, linkedMethods);
-                final int numComponents = components.size();
+                final int numComponents = getCohesionModel(aClass).getComponentSizes(true).length;
                 postMetric(aClass, numComponents);
             }
         }
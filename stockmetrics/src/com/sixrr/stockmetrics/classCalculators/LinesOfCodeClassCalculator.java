@@ -16,19 +16,20 @@
 
 package com.sixrr.stockmetrics.classCalculators;
 
-import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
+import com.sixrr.metrics.FileLocalMetricCalculator;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 import com.sixrr.stockmetrics.utils.LineUtil;
 
-public class LinesOfCodeClassCalculator extends ClassCalculator {
+public class LinesOfCodeClassCalculator extends ClassCalculator implements FileLocalMetricCalculator {
 
     @Override
     protected PsiElementVisitor createVisitor() {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitClass(PsiClass aClass) {
@@ -16,13 +16,10 @@
 
 package com.sixrr.stockmetrics.classCalculators;
 
-import com.intellij.psi.*;
-
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
-
-import static com.sixrr.stockmetrics.utils.MethodsCohesionUtils.*;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElementVisitor;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
+import com.sixrr.stockmetrics.utils.CohesionModel;
 
 public class LooseClassCouplingCalculator extends ClassCalculator {
     @Override
@@ -30,7 +27,7 @@ public class LooseClassCouplingCalculator extends ClassCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
         @Override
         public void visitClass(PsiClass aClass) {
             super.visitClass(aClass);
@@ -38,15 +35,11 @@ public class LooseClassCouplingCalculator extends ClassCalculator {
                 return;
             }
 
-            final Set<PsiMethod> applicableMethods = getApplicableMethods(aClass);
-            final int allPairs = applicableMethods.size() * (applicableMethods.size() - 1) / 2;
-            final Map<PsiMethod, Set<PsiField>> fieldsPerMethod = calculateFieldUsage(applicableMethods);
-            final Set<Set<PsiMethod>> components = calculateComponents(applicableMethods, fieldsPerMethod,
-                    new HashMap<PsiMethod, Set<PsiMethod>>());
+            final CohesionModel model = getCohesionModel(aClass);
+            final int allPairs = model.getNumMethods() * (model.getNumMethods() - 1) / 2;
 
             int metric = 0;
-            for (final Set<PsiMethod> methods : components) {
-                final int n = methods.size();
+            for (final int n : model.getComponentSizes(false)) {
                 metric += n * (n - 1) / 2;
             }
 
@@ -16,10 +16,10 @@
 
 package com.sixrr.stockmetrics.classCalculators;
 
-import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiField;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public class NumAttributesAddedCalculator extends ClassCalculator {
     @Override
@@ -27,7 +27,7 @@ public class NumAttributesAddedCalculator extends ClassCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitClass(PsiClass aClass) {
@@ -16,7 +16,9 @@
 
 package com.sixrr.stockmetrics.classCalculators;
 
-import com.intellij.psi.*;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElementVisitor;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public class NumAttributesInheritedCalculator extends ClassCalculator {
 
@@ -25,23 +27,13 @@ public class NumAttributesInheritedCalculator extends ClassCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitClass(PsiClass aClass) {
             super.visitClass(aClass);
             if (isConcreteClass(aClass)) {
-                final PsiField[] allFields = aClass.getAllFields();
-                int numInheritedFields = 0;
-                for (final PsiField field : allFields) {
-                    final PsiClass containingClass = field.getContainingClass();
-                    if (containingClass != null && !containingClass.equals(aClass) &&
-                            !field.hasModifierProperty(PsiModifier.STATIC)) {
-                        numInheritedFields++;
-                    }
-                }
-
-                postMetric(aClass, numInheritedFields);
+                postMetric(aClass, getInheritanceCache().getNumInheritedInstanceFields(aClass));
             }
         }
     }
@@ -16,9 +16,9 @@
 
 package com.sixrr.stockmetrics.classCalculators;
 
-import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public class NumMethodsClassCalculator extends ClassCalculator {
     @Override
@@ -26,7 +26,7 @@ public class NumMethodsClassCalculator extends ClassCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
         @Override
         public void visitClass(PsiClass aClass) {
             super.visitClass(aClass);
@@ -16,7 +16,10 @@
 
 package com.sixrr.stockmetrics.classCalculators;
 
-import com.intellij.psi.*;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElementVisitor;
+import com.intellij.psi.PsiMethod;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public class NumOperationsInheritedCalculator extends ClassCalculator {
 
@@ -25,7 +28,7 @@ public class NumOperationsInheritedCalculator extends ClassCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitClass(PsiClass aClass) {
@@ -33,18 +36,8 @@ public class NumOperationsInheritedCalculator extends ClassCalculator {
             if (!isConcreteClass(aClass)) {
                 return;
             }
-            final PsiMethod[] allMethods = aClass.getAllMethods();
             int numInheritedMethods = 0;
-            for (final PsiMethod method : allMethods) {
-                if (method.isConstructor() || method.hasModifierProperty(PsiModifier.PRIVATE) ||
-                        method.hasModifierProperty(PsiModifier.STATIC) ||
-                        method.hasModifierProperty(PsiModifier.ABSTRACT)) {
-                    continue;
-                }
-                final PsiClass containingClass = method.getContainingClass();
-                if (containingClass == null || containingClass.equals(aClass)) {
-                    continue;
-                }
+            for (final PsiMethod method : getInheritanceCache().getInheritableMethods(aClass)) {
                 final PsiMethod localMethod = aClass.findMethodBySignature(method, false);
                 if (localMethod == null) {
                     numInheritedMethods++;
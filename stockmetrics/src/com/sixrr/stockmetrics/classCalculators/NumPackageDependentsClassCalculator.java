@@ -16,11 +16,11 @@
 
 package com.sixrr.stockmetrics.classCalculators;
 
-import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiPackage;
 import com.sixrr.stockmetrics.dependency.DependentsMap;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 import java.util.Set;
 
@@ -31,7 +31,7 @@ public class NumPackageDependentsClassCalculator extends ClassCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitClass(PsiClass aClass) {
@@ -19,7 +19,6 @@ package com.sixrr.stockmetrics.classCalculators;
 import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
-import com.sixrr.metrics.utils.ClassUtils;
 
 public class NumSubclassesCalculator extends ClassCalculator {
 
@@ -36,7 +35,7 @@ public class NumSubclassesCalculator extends ClassCalculator {
             if (!isConcreteClass(aClass) || aClass.isEnum()) {
                 return;
             }
-            postMetric(aClass, ClassUtils.calculateSubclassCount(aClass));
+            postMetric(aClass, getTypeHierarchy().getNumInheritors(aClass));
         }
     }
 }
@@ -16,12 +16,10 @@
 
 package com.sixrr.stockmetrics.classCalculators;
 
-import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
 import com.sixrr.stockmetrics.dependency.DependencyMap;
-
-import java.util.Set;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public class NumTransitiveDependenciesClassCalculator extends ClassCalculator {
 
@@ -30,15 +28,14 @@ public class NumTransitiveDependenciesClassCalculator extends ClassCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitClass(PsiClass aClass) {
             super.visitClass(aClass);
             if (isConcreteClass(aClass)) {
                 final DependencyMap dependencyMap = getDependencyMap();
-                final Set<PsiClass> dependencies = dependencyMap.calculateTransitiveDependencies(aClass);
-                final int numDependencies = dependencies.size() - 1;
+                final int numDependencies = dependencyMap.countTransitiveDependencies(aClass) - 1;
                 postMetric(aClass, numDependencies);
             }
         }
@@ -16,12 +16,10 @@
 
 package com.sixrr.stockmetrics.classCalculators;
 
-import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
 import com.sixrr.stockmetrics.dependency.DependentsMap;
-
-import java.util.Set;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public class NumTransitiveDependentsClassCalculator extends ClassCalculator {
 
@@ -30,15 +28,14 @@ public class NumTransitiveDependentsClassCalculator extends ClassCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitClass(PsiClass aClass) {
             super.visitClass(aClass);
             if (isConcreteClass(aClass)) {
                 final DependentsMap dependentsMap = getDependentsMap();
-                final Set<PsiClass> dependents = dependentsMap.calculateTransitiveDependents(aClass);
-                final int numDependents = dependents.size() - 1;
+                final int numDependents = dependentsMap.countTransitiveDependents(aClass) - 1;
                 postMetric(aClass, numDependents);
             }
         }
@@ -18,6 +18,7 @@ package com.sixrr.stockmetrics.classCalculators;
 
 import com.intellij.psi.*;
 import com.sixrr.metrics.utils.ClassUtils;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public class NumTypeParametersClassCalculator extends ClassCalculator {
     @Override
@@ -25,7 +26,7 @@ public class NumTypeParametersClassCalculator extends ClassCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitClass(PsiClass aClass) {
@@ -16,15 +16,10 @@
 
 package com.sixrr.stockmetrics.classCalculators;
 
-import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
-import com.intellij.psi.PsiMethod;
-
-import java.util.Set;
-
-import static com.sixrr.stockmetrics.utils.MethodsCohesionUtils.calculateConnectedMethods;
-import static com.sixrr.stockmetrics.utils.MethodsCohesionUtils.getApplicableMethods;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
+import com.sixrr.stockmetrics.utils.CohesionModel;
 
 public class TightClassCouplingCalculator extends ClassCalculator {
     @Override
@@ -32,7 +27,7 @@ public class TightClassCouplingCalculator extends ClassCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
         @Override
         public void visitClass(PsiClass aClass) {
             super.visitClass(aClass);
@@ -40,9 +35,9 @@ public class TightClassCouplingCalculator extends ClassCalculator {
                 return;
             }
 
-            final Set<PsiMethod> applicableMethods = getApplicableMethods(aClass);
-            final int allPairs = applicableMethods.size() * (applicableMethods.size() - 1) / 2;
-            final int connectedPairs = calculateConnectedMethods(applicableMethods);
+            final CohesionModel model = getCohesionModel(aClass);
+            final int allPairs = model.getNumMethods() * (model.getNumMethods() - 1) / 2;
+            final int connectedPairs = model.getNumConnectedMethodPairs();
 
             postMetric(aClass, connectedPairs, allPairs);
         }
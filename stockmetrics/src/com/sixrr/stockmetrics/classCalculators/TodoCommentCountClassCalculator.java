@@ -16,10 +16,10 @@
 
 package com.sixrr.stockmetrics.classCalculators;
 
-import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
 import com.sixrr.metrics.utils.ClassUtils;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 import com.sixrr.stockmetrics.utils.TodoUtil;
 
 public class TodoCommentCountClassCalculator extends ClassCalculator {
@@ -29,7 +29,7 @@ public class TodoCommentCountClassCalculator extends ClassCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitClass(PsiClass aClass) {
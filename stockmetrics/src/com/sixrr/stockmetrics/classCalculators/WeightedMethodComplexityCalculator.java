@@ -17,8 +17,9 @@
 package com.sixrr.stockmetrics.classCalculators;
 
 import com.intellij.psi.*;
+import com.sixrr.metrics.FileLocalMetricCalculator;
 
-public class WeightedMethodComplexityCalculator extends ClassCalculator {
+public class WeightedMethodComplexityCalculator extends ClassCalculator implements FileLocalMetricCalculator {
     private int complexity = 0;
 
     @Override
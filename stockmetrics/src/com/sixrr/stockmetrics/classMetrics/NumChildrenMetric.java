@@ -19,8 +19,6 @@ package com.sixrr.stockmetrics.classMetrics;
 import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
-import com.intellij.psi.PsiModifier;
-import com.intellij.psi.search.searches.ClassInheritorsSearch;
 import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.MetricType;
 import com.sixrr.stockmetrics.classCalculators.ClassCalculator;
@@ -50,6 +48,11 @@ public class NumChildrenMetric extends ClassMetric {
         return MetricType.Score;
     }
 
+    @Override
+    public boolean requiresTypeHierarchy() {
+        return true;
+    }
+
     @NotNull
     @Override
     public MetricCalculator createCalculator() {
@@ -71,15 +74,7 @@ public class NumChildrenMetric extends ClassMetric {
                 if (!isConcreteClass(aClass) || aClass.isEnum()) {
                     return;
                 }
-                final int numberOfChildren = getNumberOfChildren(aClass);
-                postMetric(aClass, numberOfChildren);
-            }
-
-            int getNumberOfChildren(final PsiClass aClass) {
-                if (aClass.hasModifierProperty(PsiModifier.FINAL)) {
-                    return 0;
-                }
-                return ClassInheritorsSearch.search(aClass, false).findAll().size();
+                postMetric(aClass, getTypeHierarchy().getNumDirectInheritors(aClass));
             }
         }
     }
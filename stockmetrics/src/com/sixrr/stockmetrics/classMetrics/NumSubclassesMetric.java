@@ -42,6 +42,11 @@ public class NumSubclassesMetric extends ClassMetric {
         return MetricType.Score;
     }
 
+    @Override
+    public boolean requiresTypeHierarchy() {
+        return true;
+    }
+
     @NotNull
     @Override
     public MetricCalculator createCalculator() {
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.sixrr.stockmetrics.dependency;
+
+import java.util.Arrays;
+
+/**
+ * Weighted graph edges in compressed sparse row form.  The targets of node {@code n} are stored, sorted and
+ * without duplicates, from {@code start(n)} up to {@code end(n)}.
+ */
+final class Adjacency {
+
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] weights;
+
+    Adjacency(int[] offsets, int[] targets, int[] weights) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    int numNodes() {
+        return offsets.length - 1;
+    }
+
+    int start(int node) {
+        return node < 0 || node >= offsets.length - 1 ? 0 : offsets[node];
+    }
+
+    int end(int node) {
+        return node < 0 || node >= offsets.length - 1 ? 0 : offsets[node + 1];
+    }
+
+    int target(int index) {
+        return targets[index];
+    }
+
+    /**
+     * @return  the index of the edge from source to target, or a negative value if there is no such edge.
+     */
+    int indexOf(int source, int target) {
+        final int start = start(source);
+        final int end = end(source);
+        if (start == end) {
+            return -1;
+        }
+        return Arrays.binarySearch(targets, start, end, target);
+    }
+
+    /**
+     * @return  the weight of the edge from source to target, or 0 if there is no such edge.
+     */
+    int weight(int source, int target) {
+        final int index = indexOf(source, target);
+        return index < 0 ? 0 : weights[index];
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.stockmetrics.dependency;
+
+import com.intellij.psi.*;
+import com.sixrr.metrics.utils.TestUtils;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * The method calls of a project, built in one pass over all files by resolving every call once.  Methods are
+ * interned into a node table, and every call is stored as an int callee and flags.  On the first query the
+ * calls are counted per callee, so the number of calls of a method is a lookup.
+ * <p>
+ * A call is a method call, an object creation or a method reference.  Calls outside a class, like in a
+ * package-info file, are ignored.  Only Java files are visited, so calls from Kotlin, Groovy or other JVM languages
+ * are not counted, and a method which is only called from such files has no calls.
+ */
+public final class CallGraph {
+
+    /** The call is a call expression, and not a method reference or the creation of an anonymous class. */
+    private static final int CALL_EXPRESSION = 1;
+    /** The call is made from test code. */
+    private static final int TEST = 2;
+    /** The call is made from production code. */
+    private static final int PRODUCTION = 4;
+    /** The call is a method call inside the body of the called method, including nested classes. */
+    private static final int RECURSIVE = 8;
+
+    private final NodeTable<PsiMethod> methods = new NodeTable<PsiMethod>();
+    private int[] callees = new int[64];
+    private byte[] flags = new byte[64];
+    private int size = 0;
+
+    private volatile boolean frozen = false;
+    private int[] numCalls = null;
+    private int[] numTestCalls = null;
+    private int[] numProductionCalls = null;
+    private int[] fanIn = null;
+
+    /**
+     * Adds the calls made in a Java file.
+     */
+    public void build(PsiJavaFile file) {
+        if (frozen) {
+            throw new IllegalStateException("call graph already in use");
+        }
+        int fileFlags = 0;
+        if (TestUtils.isTest(file)) {
+            fileFlags |= TEST;
+        } else if (TestUtils.isProduction(file)) {
+            fileFlags |= PRODUCTION;
+        }
+        file.accept(new CallVisitor(fileFlags));
+    }
+
+    private void add(int callee, int callFlags) {
+        if (size == callees.length) {
+            callees = Arrays.copyOf(callees, size << 1);
+            flags = Arrays.copyOf(flags, size << 1);
+        }
+        callees[size] = callee;
+        flags[size] = (byte) callFlags;
+        size++;
+    }
+
+    /**
+     * Adds all calls of a graph built from other files.
+     */
+    public void merge(CallGraph other) {
+        if (frozen) {
+            throw new IllegalStateException("call graph already in use");
+        }
+        final int[] methodIds = new int[other.methods.size()];
+        for (int i = 0; i < methodIds.length; i++) {
+            methodIds[i] = methods.intern(other.methods.get(i));
+        }
+        for (int i = 0; i < other.size; i++) {
+            add(methodIds[other.callees[i]], other.flags[i]);
+        }
+    }
+
+    private void freeze() {
+        if (frozen) {
+            return;
+        }
+        synchronized (this) {
+            if (frozen) {
+                return;
+            }
+            final int numMethods = methods.size();
+            numCalls = new int[numMethods];
+            numTestCalls = new int[numMethods];
+            numProductionCalls = new int[numMethods];
+            fanIn = new int[numMethods];
+            for (int i = 0; i < size; i++) {
+                final int callee = callees[i];
+                final int callFlags = flags[i];
+                numCalls[callee]++;
+                if ((callFlags & TEST) != 0) {
+                    numTestCalls[callee]++;
+                } else if ((callFlags & PRODUCTION) != 0) {
+                    numProductionCalls[callee]++;
+                }
+                if ((callFlags & (CALL_EXPRESSION | RECURSIVE)) == CALL_EXPRESSION) {
+                    fanIn[callee]++;
+                }
+            }
+            frozen = true;
+        }
+    }
+
+    /**
+     * Returns the number of call expressions calling the specified method, not counting recursive calls.
+     */
+    public int getFanIn(PsiMethod method) {
+        freeze();
+        final int id = methods.indexOf(method);
+        return id < 0 ? 0 : fanIn[id];
+    }
+
+    /**
+     * Returns the number of calls of the specified method, including calls of the methods it overrides.
+     */
+    public int getNumCalls(PsiMethod method) {
+        freeze();
+        return sum(numCalls, method);
+    }
+
+    /**
+     * Returns the number of calls from test code of the specified method, including calls of the methods it
+     * overrides.
+     */
+    public int getNumTestCalls(PsiMethod method) {
+        freeze();
+        return sum(numTestCalls, method);
+    }
+
+    /**
+     * Returns the number of calls from production code of the specified method, including calls of the methods it
+     * overrides.
+     */
+    public int getNumProductionCalls(PsiMethod method) {
+        freeze();
+        return sum(numProductionCalls, method);
+    }
+
+    private int sum(int[] counts, PsiMethod method) {
+        final Set<PsiMethod> visited = new HashSet<PsiMethod>();
+        final List<PsiMethod> todo = new ArrayList<PsiMethod>();
+        todo.add(method);
+        int total = 0;
+        while (!todo.isEmpty()) {
+            final PsiMethod current = todo.remove(todo.size() - 1);
+            if (!visited.add(current)) {
+                continue;
+            }
+            final int id = methods.indexOf(current);
+            if (id >= 0) {
+                total += counts[id];
+            }
+            Collections.addAll(todo, current.findSuperMethods());
+        }
+        return total;
+    }
+
+    private class CallVisitor extends JavaRecursiveElementVisitor {
+
+        private final int fileFlags;
+        private final Stack<PsiMethod> methodStack = new Stack<PsiMethod>();
+        private int classDepth = 0;
+
+        CallVisitor(int fileFlags) {
+            this.fileFlags = fileFlags;
+        }
+
+        @Override
+        public void visitClass(PsiClass aClass) {
+            classDepth++;
+            super.visitClass(aClass);
+            classDepth--;
+        }
+
+        @Override
+        public void visitMethod(PsiMethod method) {
+            methodStack.push(method);
+            super.visitMethod(method);
+            methodStack.pop();
+        }
+
+        @Override
+        public void visitMethodCallExpression(PsiMethodCallExpression expression) {
+            super.visitMethodCallExpression(expression);
+            final PsiMethod method = expression.resolveMethod();
+            int callFlags = CALL_EXPRESSION;
+            if (method != null && !methodStack.isEmpty() && method.equals(methodStack.get(0))) {
+                callFlags |= RECURSIVE;
+            }
+            addCall(method, callFlags);
+        }
+
+        @Override
+        public void visitNewExpression(PsiNewExpression expression) {
+            super.visitNewExpression(expression);
+            addCall(expression.resolveConstructor(),
+                    expression.getAnonymousClass() == null ? CALL_EXPRESSION : 0);
+        }
+
+        @Override
+        public void visitEnumConstant(PsiEnumConstant enumConstant) {
+            super.visitEnumConstant(enumConstant);
+            addCall(enumConstant.resolveConstructor(), 0);
+        }
+
+        @Override
+        public void visitMethodReferenceExpression(PsiMethodReferenceExpression expression) {
+            super.visitMethodReferenceExpression(expression);
+            final PsiElement target = expression.resolve();
+            if (target instanceof PsiMethod) {
+                addCall((PsiMethod) target, 0);
+            }
+        }
+
+        private void addCall(@Nullable PsiMethod method, int callFlags) {
+            if (method == null || method instanceof PsiCompiledElement || classDepth == 0) {
+                return;
+            }
+            add(methods.intern(method), callFlags | fileFlags);
+        }
+    }
+}
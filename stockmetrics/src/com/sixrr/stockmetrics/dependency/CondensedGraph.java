@@ -0,0 +1,302 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.sixrr.stockmetrics.dependency;
+
+import java.util.*;
+
+/**
+ * A dependency graph condensed into its strongly connected components.  The components are numbered in reverse
+ * topological order, so every edge between two different components points to a lower numbered component.  That
+ * allows level orders and transitive closures to be calculated in a single pass over the components, with the
+ * transitive closures stored as one bit set per component instead of one set of elements per element.
+ */
+final class CondensedGraph<T> {
+
+    private final NodeTable<T> nodes;
+    private final int[] componentOfNode;
+    private final int[][] componentMembers;
+    private final int[][] componentSuccessors;
+    private final int[] levelOrders;
+    private final int[] adjustedLevelOrders;
+
+    private BitSet[] reachableComponents = null;
+    private BitSet[] reachingComponents = null;
+    private int[] reachableCounts = null;
+    private int[] reachingCounts = null;
+
+    CondensedGraph(NodeTable<T> nodes, Adjacency adjacency) {
+        this.nodes = nodes;
+        final int numNodes = nodes.size();
+        componentOfNode = new int[numNodes];
+        final int numComponents = findComponents(adjacency, numNodes, componentOfNode);
+        componentMembers = collectMembers(componentOfNode, numComponents);
+        componentSuccessors = collectSuccessors(adjacency, componentOfNode, componentMembers);
+        levelOrders = new int[numComponents];
+        adjustedLevelOrders = new int[numComponents];
+        for (int component = 0; component < numComponents; component++) {
+            int levelOrder = 0;
+            int adjustedLevelOrder = 0;
+            for (int successor : componentSuccessors[component]) {
+                levelOrder = Math.max(levelOrder, levelOrders[successor]);
+                adjustedLevelOrder = Math.max(adjustedLevelOrder, adjustedLevelOrders[successor]);
+            }
+            levelOrders[component] = levelOrder + 1;
+            adjustedLevelOrders[component] = adjustedLevelOrder + componentMembers[component].length;
+        }
+    }
+
+    /**
+     * Tarjan's algorithm, iterative so that long dependency chains can't overflow the stack.
+     * @return  the number of components found.
+     */
+    private static int findComponents(Adjacency adjacency, int numNodes, int[] componentOfNode) {
+        final int[] order = new int[numNodes];
+        final int[] lowLink = new int[numNodes];
+        final boolean[] onStack = new boolean[numNodes];
+        final int[] stack = new int[numNodes];
+        final int[] callStack = new int[numNodes];
+        final int[] nextEdge = new int[numNodes];
+        Arrays.fill(order, -1);
+        int stackSize = 0;
+        int counter = 0;
+        int numComponents = 0;
+        for (int root = 0; root < numNodes; root++) {
+            if (order[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            callStack[0] = root;
+            nextEdge[0] = adjacency.start(root);
+            order[root] = lowLink[root] = counter++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            while (depth >= 0) {
+                final int node = callStack[depth];
+                if (nextEdge[depth] < adjacency.end(node)) {
+                    final int successor = adjacency.target(nextEdge[depth]++);
+                    if (order[successor] < 0) {
+                        depth++;
+                        callStack[depth] = successor;
+                        nextEdge[depth] = adjacency.start(successor);
+                        order[successor] = lowLink[successor] = counter++;
+                        stack[stackSize++] = successor;
+                        onStack[successor] = true;
+                    } else if (onStack[successor]) {
+                        lowLink[node] = Math.min(lowLink[node], order[successor]);
+                    }
+                    continue;
+                }
+                if (lowLink[node] == order[node]) {
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack[member] = false;
+                        componentOfNode[member] = numComponents;
+                    } while (member != node);
+                    numComponents++;
+                }
+                depth--;
+                if (depth >= 0) {
+                    final int parent = callStack[depth];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+            }
+        }
+        return numComponents;
+    }
+
+    private static int[][] collectMembers(int[] componentOfNode, int numComponents) {
+        final int[] sizes = new int[numComponents];
+        for (int component : componentOfNode) {
+            sizes[component]++;
+        }
+        final int[][] members = new int[numComponents][];
+        for (int component = 0; component < numComponents; component++) {
+            members[component] = new int[sizes[component]];
+        }
+        Arrays.fill(sizes, 0);
+        for (int node = 0; node < componentOfNode.length; node++) {
+            final int component = componentOfNode[node];
+            members[component][sizes[component]++] = node;
+        }
+        return members;
+    }
+
+    private static int[][] collectSuccessors(Adjacency adjacency, int[] componentOfNode, int[][] componentMembers) {
+        final int numComponents = componentMembers.length;
+        final int[][] successors = new int[numComponents][];
+        final int[] lastSeenBy = new int[numComponents];
+        Arrays.fill(lastSeenBy, -1);
+        final int[] buffer = new int[numComponents];
+        for (int component = 0; component < numComponents; component++) {
+            int count = 0;
+            lastSeenBy[component] = component;
+            for (int node : componentMembers[component]) {
+                for (int i = adjacency.start(node), end = adjacency.end(node); i < end; i++) {
+                    final int successorComponent = componentOfNode[adjacency.target(i)];
+                    if (lastSeenBy[successorComponent] != component) {
+                        lastSeenBy[successorComponent] = component;
+                        buffer[count++] = successorComponent;
+                    }
+                }
+            }
+            successors[component] = Arrays.copyOf(buffer, count);
+        }
+        return successors;
+    }
+
+    private int componentOf(T node) {
+        final int index = nodes.indexOf(node);
+        return index < 0 ? -1 : componentOfNode[index];
+    }
+
+    /**
+     * @return  the strongly connected component containing the node, which always contains the node itself.
+     */
+    Set<T> getComponent(T node) {
+        final int component = componentOf(node);
+        if (component < 0) {
+            return Collections.singleton(node);
+        }
+        final int[] members = componentMembers[component];
+        final Set<T> result = new HashSet<T>(members.length);
+        for (int member : members) {
+            result.add(nodes.get(member));
+        }
+        return result;
+    }
+
+    int getLevelOrder(T node) {
+        final int component = componentOf(node);
+        return component < 0 ? 1 : levelOrders[component];
+    }
+
+    int getAdjustedLevelOrder(T node) {
+        final int component = componentOf(node);
+        return component < 0 ? 1 : adjustedLevelOrders[component];
+    }
+
+    /**
+     * @return  all nodes reachable from the node, including the node itself.
+     */
+    Set<T> getReachable(T node) {
+        final int component = componentOf(node);
+        if (component < 0) {
+            return Collections.singleton(node);
+        }
+        return collectNodes(getReachableComponents()[component]);
+    }
+
+    /**
+     * @return  all nodes from which the node can be reached, including the node itself.
+     */
+    Set<T> getReaching(T node) {
+        final int component = componentOf(node);
+        if (component < 0) {
+            return Collections.singleton(node);
+        }
+        return collectNodes(getReachingComponents()[component]);
+    }
+
+    /**
+     * @return  the number of nodes in {@link #getReachable(Object)}.
+     */
+    synchronized int countReachable(T node) {
+        final int component = componentOf(node);
+        if (component < 0) {
+            return 1;
+        }
+        if (reachableCounts == null) {
+            reachableCounts = countNodes(getReachableComponents());
+        }
+        return reachableCounts[component];
+    }
+
+    /**
+     * @return  the number of nodes in {@link #getReaching(Object)}.
+     */
+    synchronized int countReaching(T node) {
+        final int component = componentOf(node);
+        if (component < 0) {
+            return 1;
+        }
+        if (reachingCounts == null) {
+            reachingCounts = countNodes(getReachingComponents());
+        }
+        return reachingCounts[component];
+    }
+
+    private synchronized BitSet[] getReachableComponents() {
+        if (reachableComponents == null) {
+            final int numComponents = componentMembers.length;
+            final BitSet[] reachable = new BitSet[numComponents];
+            // successors always have a lower number, so their closure is complete when it is needed
+            for (int component = 0; component < numComponents; component++) {
+                final BitSet bits = new BitSet(component + 1);
+                bits.set(component);
+                for (int successor : componentSuccessors[component]) {
+                    bits.or(reachable[successor]);
+                }
+                reachable[component] = bits;
+            }
+            reachableComponents = reachable;
+        }
+        return reachableComponents;
+    }
+
+    private synchronized BitSet[] getReachingComponents() {
+        if (reachingComponents == null) {
+            final int numComponents = componentMembers.length;
+            final BitSet[] reaching = new BitSet[numComponents];
+            for (int component = 0; component < numComponents; component++) {
+                reaching[component] = new BitSet();
+            }
+            // predecessors always have a higher number, so they have been propagated when a component is reached
+            for (int component = numComponents - 1; component >= 0; component--) {
+                final BitSet bits = reaching[component];
+                bits.set(component);
+                for (int successor : componentSuccessors[component]) {
+                    reaching[successor].or(bits);
+                }
+            }
+            reachingComponents = reaching;
+        }
+        return reachingComponents;
+    }
+
+    private int[] countNodes(BitSet[] componentSets) {
+        final int[] counts = new int[componentSets.length];
+        for (int component = 0; component < componentSets.length; component++) {
+            final BitSet bits = componentSets[component];
+            int count = 0;
+            for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+                count += componentMembers[i].length;
+            }
+            counts[component] = count;
+        }
+        return counts;
+    }
+
+    private Set<T> collectNodes(BitSet components) {
+        final Set<T> result = new HashSet<T>();
+        for (int i = components.nextSetBit(0); i >= 0; i = components.nextSetBit(i + 1)) {
+            for (int member : componentMembers[i]) {
+                result.add(nodes.get(member));
+            }
+        }
+        return result;
+    }
+}
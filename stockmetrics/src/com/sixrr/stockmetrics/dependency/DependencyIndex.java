@@ -0,0 +1,264 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.sixrr.stockmetrics.dependency;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.OrderEnumerator;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.JarFileSystem;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiJavaFile;
+import org.jetbrains.annotations.NonNls;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores the class dependencies of every Java file of a project between metrics runs, so only the files affected
+ * by the changes since the previous run need to be analyzed again.
+ * <p>
+ * A file is analyzed again when its time stamp or length on disk changed, or it has unsaved changes.  Dependencies
+ * found through resolving a reference can also change when another file changes, for example when a method is added
+ * to a superclass.  Every file therefore records the classes it declares, their supertypes, and the classes its
+ * references were resolved in, and a file is analyzed again as well when one of those classes is declared in a
+ * changed or removed file, or is a subtype of such a class.  A new file can hide classes of the same name for the
+ * other files of its package, so those are analyzed again too.  When a library jar changes, all stored dependencies
+ * are dropped.
+ */
+public final class DependencyIndex {
+
+    private static final Logger LOG = Logger.getInstance("MetricsReloaded");
+    private static final int VERSION = 3;
+
+    private final File indexFile;
+    private final long libraryStamp;
+    private final Map<String, FileDependencies> entries;
+
+    private DependencyIndex(File indexFile, long libraryStamp, Map<String, FileDependencies> entries) {
+        this.indexFile = indexFile;
+        this.libraryStamp = libraryStamp;
+        this.entries = entries;
+    }
+
+    /**
+     * Loads the index of the project, and drops the entries of the files which need to be analyzed again.
+     * @param files  the Java files the dependencies are built for.
+     */
+    public static DependencyIndex load(final Project project, final List<VirtualFile> files) {
+        @NonNls final String fileName = PathManager.getSystemPath() + File.separator + "metrics" + File.separator +
+                project.getLocationHash() + ".dependencies";
+        final File indexFile = new File(fileName);
+        final Map<String, FileDependencies> entries = new ConcurrentHashMap<String, FileDependencies>();
+        final long libraryStamp = ApplicationManager.getApplication().runReadAction(new Computable<Long>() {
+            @Override
+            public Long compute() {
+                return Long.valueOf(calculateLibraryStamp(project));
+            }
+        }).longValue();
+        if (indexFile.exists()) {
+            try {
+                final DataInputStream in =
+                        new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+                try {
+                    if (in.readInt() == VERSION && in.readLong() == libraryStamp) {
+                        final int numEntries = in.readInt();
+                        for (int i = 0; i < numEntries; i++) {
+                            final String path = in.readUTF();
+                            entries.put(path, FileDependencies.read(in));
+                        }
+                    }
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                LOG.info("Could not read dependency index, rebuilding it", e);
+                entries.clear();
+            }
+        }
+        if (!entries.isEmpty()) {
+            ApplicationManager.getApplication().runReadAction(new Runnable() {
+                @Override
+                public void run() {
+                    dropAffectedEntries(entries, files);
+                }
+            });
+        }
+        return new DependencyIndex(indexFile, libraryStamp, entries);
+    }
+
+    /**
+     * Drops the entries of changed and removed files, and of the files whose dependencies may have changed because
+     * of them.  Only the metadata of the files in the index is read.
+     */
+    private static void dropAffectedEntries(Map<String, FileDependencies> entries, List<VirtualFile> files) {
+        final Set<String> newDirectories = new HashSet<String>();
+        for (VirtualFile file : files) {
+            final String path = file.getPath();
+            if (!entries.containsKey(path)) {
+                newDirectories.add(getDirectory(path));
+            }
+        }
+        final LocalFileSystem fileSystem = LocalFileSystem.getInstance();
+        final FileDocumentManager documentManager = FileDocumentManager.getInstance();
+        final Set<String> changedClasses = new HashSet<String>();
+        for (Iterator<Map.Entry<String, FileDependencies>> iterator = entries.entrySet().iterator();
+             iterator.hasNext(); ) {
+            final Map.Entry<String, FileDependencies> entry = iterator.next();
+            final VirtualFile file = fileSystem.findFileByPath(entry.getKey());
+            final FileDependencies dependencies = entry.getValue();
+            if (file == null || !dependencies.isUpToDate(file.getTimeStamp(), file.getLength()) ||
+                    documentManager.isFileModified(file)) {
+                dependencies.addDeclaredClassNames(changedClasses);
+                iterator.remove();
+            }
+        }
+        if (changedClasses.isEmpty() && newDirectories.isEmpty()) {
+            return;
+        }
+        // the inherited members of the subtypes of a changed class may have changed as well
+        final Map<String, List<String>> subtypesByName = new HashMap<String, List<String>>();
+        for (FileDependencies dependencies : entries.values()) {
+            dependencies.addSubtypes(subtypesByName);
+        }
+        final Deque<String> queue = new ArrayDeque<String>(changedClasses);
+        while (!queue.isEmpty()) {
+            final List<String> subtypes = subtypesByName.get(queue.poll());
+            if (subtypes == null) {
+                continue;
+            }
+            for (String subtype : subtypes) {
+                if (changedClasses.add(subtype)) {
+                    queue.add(subtype);
+                }
+            }
+        }
+        for (Iterator<Map.Entry<String, FileDependencies>> iterator = entries.entrySet().iterator();
+             iterator.hasNext(); ) {
+            final Map.Entry<String, FileDependencies> entry = iterator.next();
+            if (newDirectories.contains(getDirectory(entry.getKey())) || entry.getValue().recordsAny(changedClasses)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static String getDirectory(String path) {
+        final int index = path.lastIndexOf('/');
+        return index < 0 ? "" : path.substring(0, index);
+    }
+
+    /**
+     * Combines the paths, time stamps and lengths of the library jars of the project into a single value, which
+     * changes when any of them is changed, added or removed.  Only the metadata of the jars is read.
+     */
+    private static long calculateLibraryStamp(Project project) {
+        long stamp = 0L;
+        final JarFileSystem jarFileSystem = JarFileSystem.getInstance();
+        final OrderEnumerator enumerator =
+                OrderEnumerator.orderEntries(project).withoutModuleSourceEntries().withoutDepModules();
+        for (VirtualFile root : enumerator.getClassesRoots()) {
+            final VirtualFile jarFile = jarFileSystem.getVirtualFileForJar(root);
+            // a sum does not depend on the order in which the roots are found
+            stamp += stampOf(jarFile == null ? root : jarFile);
+        }
+        return stamp;
+    }
+
+    private static long stampOf(VirtualFile file) {
+        long hash = file.getPath().hashCode();
+        hash = hash * 1000003L + file.getTimeStamp();
+        hash = hash * 1000003L + file.getLength();
+        // spread the bits, so the sum of the stamps of different files does not cancel out easily
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Adds the dependencies of the file to the dependency map, from this index if the file hasn't changed, and by
+     * analyzing the file otherwise.  May be called from several threads at once, for different dependency maps.
+     */
+    public void build(DependencyMapImpl dependencyMap, PsiJavaFile file) {
+        final VirtualFile virtualFile = file.getVirtualFile();
+        if (virtualFile == null || !virtualFile.isInLocalFileSystem()) {
+            dependencyMap.build(file);
+            return;
+        }
+        final String path = virtualFile.getPath();
+        final long timeStamp = virtualFile.getTimeStamp();
+        final long length = virtualFile.getLength();
+        final FileDependencies existing = entries.get(path);
+        if (existing != null && existing.isStorable() && existing.isUpToDate(timeStamp, length) &&
+                dependencyMap.addDependencies(existing, file.getProject())) {
+            return;
+        }
+        final FileDependencies dependencies;
+        if (FileDocumentManager.getInstance().isFileModified(virtualFile)) {
+            // the stamps on disk don't belong to the text analyzed, so use stamps which never match, which makes
+            // the next run analyze the file and the files depending on its classes again
+            dependencies = new FileDependencies(-1L, -1L);
+        } else {
+            dependencies = new FileDependencies(timeStamp, length);
+        }
+        dependencyMap.build(file, dependencies);
+        entries.put(path, dependencies);
+    }
+
+    /**
+     * Writes the index to disk.  Failure to write the index is logged, but otherwise ignored, because the next run
+     * can always rebuild it.
+     */
+    public void save() {
+        final File directory = indexFile.getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            LOG.info("Could not create directory " + directory);
+            return;
+        }
+        try {
+            final DataOutputStream out =
+                    new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+            try {
+                out.writeInt(VERSION);
+                out.writeLong(libraryStamp);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, FileDependencies> entry : entries.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    entry.getValue().write(out);
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            LOG.info("Could not write dependency index", e);
+            if (!indexFile.delete()) {
+                LOG.info("Could not delete " + indexFile);
+            }
+        }
+    }
+}
@@ -27,6 +27,11 @@ public interface DependencyMap {
 
     Set<PsiClass> calculateTransitiveDependencies(PsiClass aClass);
 
+    /**
+     * @return  the size of the set returned by {@link #calculateTransitiveDependencies(PsiClass)}, without creating it.
+     */
+    int countTransitiveDependencies(PsiClass aClass);
+
     Set<PsiClass> calculateStronglyConnectedComponents(PsiClass aClass);
 
     int calculateLevelOrder(PsiClass aClass);
@@ -37,6 +42,8 @@ public interface DependencyMap {
 
     Set<PsiPackage> calculateTransitivePackageDependencies(PsiPackage aPackage);
 
+    int countTransitivePackageDependencies(PsiPackage aPackage);
+
     Set<PsiPackage> calculateStronglyConnectedPackageComponents(PsiPackage aPackage);
 
     int calculatePackageLevelOrder(PsiPackage aPackage);
@@ -16,375 +16,334 @@
 
 package com.sixrr.stockmetrics.dependency;
 
+import com.intellij.openapi.project.Project;
 import com.intellij.psi.*;
-import com.sixrr.metrics.utils.Bag;
+import com.intellij.psi.search.GlobalSearchScope;
 import com.sixrr.metrics.utils.ClassUtils;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 
+/**
+ * Class and package dependencies of a project.  Classes and packages are interned into node tables, and every
+ * dependency is stored as a pair of ints until the first query, when the edges are frozen into compact adjacency
+ * arrays for both directions.
+ */
 public class DependencyMapImpl implements DependencyMap, DependentsMap {
 
-    private final Map<PsiClass, Bag<PsiClass>> dependencies = new HashMap<PsiClass, Bag<PsiClass>>();
-    private final Map<PsiClass, Set<PsiClass>> transitiveDependencies = new HashMap<PsiClass, Set<PsiClass>>();
-    private final Map<PsiPackage, Set<PsiPackage>> transitivePackageDependencies =
-            new HashMap<PsiPackage, Set<PsiPackage>>();
-    private final Map<PsiClass, Set<PsiClass>> stronglyConnectedComponents = new HashMap<PsiClass, Set<PsiClass>>();
-    private final Map<PsiClass, Integer> levelOrders = new HashMap<PsiClass, Integer>();
-    private final Map<PsiClass, Integer> adjustedLevelOrders = new HashMap<PsiClass, Integer>();
-    private final Map<PsiClass, Bag<PsiPackage>> packageDependencies = new HashMap<PsiClass, Bag<PsiPackage>>();
-    private final Map<PsiPackage, Bag<PsiPackage>> packageToPackageDependencies =
-            new HashMap<PsiPackage, Bag<PsiPackage>>();
-    private final Map<PsiPackage, Set<PsiPackage>> stronglyConnectedPackageComponents =
-            new HashMap<PsiPackage, Set<PsiPackage>>();
-    private final Map<PsiPackage, Integer> packageLevelOrders = new HashMap<PsiPackage, Integer>();
-    private final Map<PsiPackage, Integer> packageAdjustedLevelOrders = new HashMap<PsiPackage, Integer>();
-
-    private final Map<PsiClass, Bag<PsiClass>> dependents = new HashMap<PsiClass, Bag<PsiClass>>();
-    private final Map<PsiClass, Bag<PsiPackage>> packageDependents = new HashMap<PsiClass, Bag<PsiPackage>>();
-    private final Map<PsiPackage, Bag<PsiPackage>> packageToPackageDependents =
-            new HashMap<PsiPackage, Bag<PsiPackage>>();
-    private final Map<PsiClass, Set<PsiClass>> transitiveDependents = new HashMap<PsiClass, Set<PsiClass>>();
-    private final Map<PsiPackage, Set<PsiPackage>> transitivePackageDependents =
-            new HashMap<PsiPackage, Set<PsiPackage>>();
+    private final NodeTable<PsiClass> classes = new NodeTable<PsiClass>();
+    private final NodeTable<PsiPackage> packages = new NodeTable<PsiPackage>();
+
+    // class to referenced class
+    private final EdgeBuffer classEdges = new EdgeBuffer();
+    // class to package of referenced class
+    private final EdgeBuffer classToPackageEdges = new EdgeBuffer();
+    // referenced class to package of referencing class
+    private final EdgeBuffer packageToClassEdges = new EdgeBuffer();
+    // package to referenced package
+    private final EdgeBuffer packageEdges = new EdgeBuffer();
+
+    // classes found by name, for dependencies added from a dependency index
+    private final Map<String, PsiClass> classesByName = new HashMap<String, PsiClass>();
+
+    private volatile boolean frozen = false;
+    private Adjacency dependencies = null;
+    private Adjacency dependents = null;
+    private Adjacency packageDependencies = null;
+    private Adjacency packageDependents = null;
+    private Adjacency packageToPackageDependencies = null;
+    private Adjacency packageToPackageDependents = null;
+    private CondensedGraph<PsiClass> classGraph = null;
+    private CondensedGraph<PsiPackage> packageGraph = null;
 
     @Override
     public Set<PsiClass> calculateDependents(PsiClass aClass) {
-        final Bag<PsiClass> existing = dependents.get(aClass);
-        if (existing != null) {
-            return existing.getContents();
-        }
-        return Collections.emptySet();
+        freeze();
+        return classSet(dependents, aClass);
     }
 
     @Override
     public int getStrengthForDependent(PsiClass aClass, PsiClass dependentClass) {
-        final Bag<PsiClass> dependentsForClass = dependents.get(aClass);
-        return dependentsForClass.getCountForObject(dependentClass);
+        freeze();
+        return dependents.weight(classes.indexOf(aClass), classes.indexOf(dependentClass));
     }
 
     @Override
     public Set<PsiPackage> calculatePackageDependents(PsiClass aClass) {
-        final Bag<PsiPackage> existing = packageDependents.get(aClass);
-        if (existing == null) {
-            return Collections.emptySet();
-        }
-        return existing.getContents();
+        freeze();
+        return packageSet(packageDependents, classes.indexOf(aClass));
     }
 
     @Override
     public Set<PsiPackage> calculatePackageToPackageDependents(PsiPackage aPackage) {
-        final Bag<PsiPackage> existing = packageToPackageDependents.get(aPackage);
-        if (existing == null) {
-            return Collections.emptySet();
-        }
-        return existing.getContents();
+        freeze();
+        return packageSet(packageToPackageDependents, packages.indexOf(aPackage));
     }
 
     @Override
     public int getStrengthForPackageDependent(PsiClass aClass, PsiPackage dependentPackage) {
-        final Bag<PsiPackage> dependentsForClass = packageDependents.get(aClass);
-        return dependentsForClass.getCountForObject(dependentPackage);
+        freeze();
+        return packageDependents.weight(classes.indexOf(aClass), packages.indexOf(dependentPackage));
     }
 
     @Override
     public Set<PsiClass> calculateTransitiveDependents(PsiClass aClass) {
-        final Set<PsiClass> out = transitiveDependents.get(aClass);
-        if (out != null) {
-            return out;
-        }
+        return getClassGraph().getReaching(aClass);
+    }
 
-        final List<PsiClass> pendingClasses = new ArrayList<PsiClass>();
-        pendingClasses.add(aClass);
-        final Set<PsiClass> allDependents = new HashSet<PsiClass>();
-        while (!pendingClasses.isEmpty()) {
-            final PsiClass dependentClass = pendingClasses.get(0);
-            pendingClasses.remove(0);
-            if (!allDependents.contains(dependentClass)) {
-                if (transitiveDependents.containsKey(dependentClass)) {
-                    allDependents.addAll(transitiveDependents.get(dependentClass));
-                } else {
-                    allDependents.add(dependentClass);
-                    if (dependentClass != null) {
-                        final Set<PsiClass> indirectDependents = calculateDependents(dependentClass);
-                        pendingClasses.addAll(indirectDependents);
-                    }
-                }
-            }
-        }
-        transitiveDependents.put(aClass, allDependents);
-        return allDependents;
+    @Override
+    public int countTransitiveDependents(PsiClass aClass) {
+        return getClassGraph().countReaching(aClass);
     }
 
     @Override
     public Set<PsiPackage> calculateTransitivePackageDependents(PsiPackage aPackage) {
-        final Set<PsiPackage> out = transitivePackageDependents.get(aPackage);
-        if (out != null) {
-            return out;
-        }
-        final List<PsiPackage> pendingPackages = new ArrayList<PsiPackage>();
-        pendingPackages.add(aPackage);
-        final Set<PsiPackage> allDependents = new HashSet<PsiPackage>();
-        while (!pendingPackages.isEmpty()) {
-            final PsiPackage dependentPackage = pendingPackages.get(0);
-            pendingPackages.remove(0);
-            if (!allDependents.contains(dependentPackage)) {
-                if (transitivePackageDependents.containsKey(dependentPackage)) {
-                    allDependents.addAll(transitivePackageDependents.get(dependentPackage));
-                } else {
-                    allDependents.add(dependentPackage);
-                    final Set<PsiPackage> indirectDependents = calculatePackageToPackageDependents(dependentPackage);
-                    pendingPackages.addAll(indirectDependents);
-                }
-            }
-        }
-        transitivePackageDependents.put(aPackage, allDependents);
-        return allDependents;
+        return getPackageGraph().getReaching(aPackage);
+    }
+
+    @Override
+    public int countTransitivePackageDependents(PsiPackage aPackage) {
+        return getPackageGraph().countReaching(aPackage);
     }
 
     @Override
     public Set<PsiClass> calculateDependencies(PsiClass aClass) {
-        if (dependencies.containsKey(aClass)) {
-            final Bag<PsiClass> dependenciesForClass = dependencies.get(aClass);
-            return dependenciesForClass.getContents();
-        } else {
-            return Collections.emptySet();
-        }
+        freeze();
+        return classSet(dependencies, aClass);
     }
 
     @Override
     public Set<PsiClass> calculateTransitiveDependencies(PsiClass aClass) {
-        final Set<PsiClass> out = transitiveDependencies.get(aClass);
-        if (out != null) {
-            return out;
-        }
+        return getClassGraph().getReachable(aClass);
+    }
 
-        final List<PsiClass> pendingClasses = new ArrayList<PsiClass>();
-        pendingClasses.add(aClass);
-        final Set<PsiClass> allDependencies = new HashSet<PsiClass>();
-        while (!pendingClasses.isEmpty()) {
-            final PsiClass pendingClass = pendingClasses.get(0);
-            pendingClasses.remove(0);
-            if (!allDependencies.contains(pendingClass)) {
-                if (transitiveDependencies.containsKey(pendingClass)) {
-                    allDependencies.addAll(transitiveDependencies.get(pendingClass));
-                } else {
-                    allDependencies.add(pendingClass);
-                    if (pendingClass != null) {
-                        final Set<PsiClass> indirectDependencies = calculateDependencies(pendingClass);
-                        pendingClasses.addAll(indirectDependencies);
-                    }
-                }
-            }
-        }
-        transitiveDependencies.put(aClass, allDependencies);
-        return allDependencies;
+    @Override
+    public int countTransitiveDependencies(PsiClass aClass) {
+        return getClassGraph().countReachable(aClass);
     }
 
     @Override
     public Set<PsiClass> calculateStronglyConnectedComponents(PsiClass aClass) {
-        final Set<PsiClass> out = stronglyConnectedComponents.get(aClass);
-        if (out != null) {
-            return out;
-        }
-        final Set<PsiClass> transitiveDeps = calculateTransitiveDependencies(aClass);
-        final Set<PsiClass> component = new HashSet<PsiClass>();
-        component.add(aClass);
-        for (final PsiClass dependencyClass : transitiveDeps) {
-            if (dependencyClass != null) {
-                final Set<PsiClass> dependencyDependencies = calculateTransitiveDependencies(dependencyClass);
-                if (transitiveDeps.size() == dependencyDependencies.size()) {
-                    component.add(dependencyClass);
-                }
-            }
-        }
-        for (final PsiClass componentElement : component) {
-            stronglyConnectedComponents.put(componentElement, component);
-        }
-        return component;
+        return getClassGraph().getComponent(aClass);
     }
 
     @Override
     public int calculateLevelOrder(PsiClass aClass) {
-        final Integer out = levelOrders.get(aClass);
-        if (out != null) {
-            return out.intValue();
-        }
-        final Set<PsiClass> dependentClasses = calculateDependencies(aClass);
-        final Set<PsiClass> mutuallyDependentClasses = calculateStronglyConnectedComponents(aClass);
-        int levelOrder = 0;
-        for (final PsiClass dependentClass : dependentClasses) {
-            if (!mutuallyDependentClasses.contains(dependentClass)) {
-                if (dependentClass != null) {
-                    final int dependentLevelOrder = calculateLevelOrder(dependentClass);
-                    levelOrder = Math.max(levelOrder, dependentLevelOrder);
-                }
-            }
-        }
-        levelOrder += 1;
-        for (final PsiClass stronglyConnectedClass : mutuallyDependentClasses) {
-            levelOrders.put(stronglyConnectedClass, Integer.valueOf(levelOrder));
-        }
-        return levelOrder;
+        return getClassGraph().getLevelOrder(aClass);
     }
 
     @Override
     public int calculateAdjustedLevelOrder(PsiClass aClass) {
-        final Integer out = adjustedLevelOrders.get(aClass);
-        if (out != null) {
-            return out.intValue();
-        }
-        final Set<PsiClass> dependentClasses = calculateDependencies(aClass);
-        final Set<PsiClass> mutuallyDependentClasses = calculateStronglyConnectedComponents(aClass);
-        int levelOrder = 0;
-        for (final PsiClass dependentClass : dependentClasses) {
-            if (!mutuallyDependentClasses.contains(dependentClass)) {
-                if (dependentClass != null) {
-                    final int dependentLevelOrder = calculateAdjustedLevelOrder(dependentClass);
-                    levelOrder = Math.max(levelOrder, dependentLevelOrder);
-                }
-            }
-        }
-        levelOrder += mutuallyDependentClasses.size();
-        for (final PsiClass stronglyConnectedClass : mutuallyDependentClasses) {
-            adjustedLevelOrders.put(stronglyConnectedClass, Integer.valueOf(levelOrder));
-        }
-        return levelOrder;
+        return getClassGraph().getAdjustedLevelOrder(aClass);
     }
 
     @Override
     public Set<PsiPackage> calculatePackageDependencies(PsiClass aClass) {
-        final Bag<PsiPackage> existing = packageDependencies.get(aClass);
-        if (existing != null) {
-            return existing.getContents();
-        }
-        return Collections.emptySet();
+        freeze();
+        return packageSet(packageDependencies, classes.indexOf(aClass));
     }
 
     @Override
     public Set<PsiPackage> calculateTransitivePackageDependencies(PsiPackage aPackage) {
-        final Set<PsiPackage> out = transitivePackageDependencies.get(aPackage);
-        if (out != null) {
-            return out;
-        }
-        final List<PsiPackage> pendingPackages = new ArrayList<PsiPackage>();
-        pendingPackages.add(aPackage);
-        final Set<PsiPackage> allDependencies = new HashSet<PsiPackage>();
-        while (!pendingPackages.isEmpty()) {
-            final PsiPackage dependencyPackageName = pendingPackages.get(0);
-            pendingPackages.remove(0);
-            if (!allDependencies.contains(dependencyPackageName)) {
-                if (transitivePackageDependencies.containsKey(dependencyPackageName)) {
-                    allDependencies.addAll(transitivePackageDependencies.get(dependencyPackageName));
-                } else {
-                    allDependencies.add(dependencyPackageName);
-                    final Set<PsiPackage> indirectDependencies =
-                            calculatePackageToPackageDependencies(dependencyPackageName);
-                    pendingPackages.addAll(indirectDependencies);
-                }
-            }
-        }
-        transitivePackageDependencies.put(aPackage, allDependencies);
-        return allDependencies;
+        return getPackageGraph().getReachable(aPackage);
+    }
+
+    @Override
+    public int countTransitivePackageDependencies(PsiPackage aPackage) {
+        return getPackageGraph().countReachable(aPackage);
     }
 
     @Override
     public Set<PsiPackage> calculateStronglyConnectedPackageComponents(PsiPackage aPackage) {
-        final Set<PsiPackage> out = stronglyConnectedPackageComponents.get(aPackage);
-        if (out != null) {
-            return out;
-        }
-        final Set<PsiPackage> transitiveDeps = calculateTransitivePackageDependencies(aPackage);
-        final Set<PsiPackage> component = new HashSet<PsiPackage>();
-        component.add(aPackage);
-        for (final PsiPackage dependencyPackage : transitiveDeps) {
-            final Set<PsiPackage> dependencyDependencies = calculateTransitivePackageDependencies(dependencyPackage);
-            if (transitiveDeps.size() == dependencyDependencies.size()) {
-                component.add(dependencyPackage);
-            }
-        }
-        for (final PsiPackage componentElement : component) {
-            stronglyConnectedPackageComponents.put(componentElement, component);
-        }
-        return component;
+        return getPackageGraph().getComponent(aPackage);
     }
 
     @Override
     public int calculatePackageLevelOrder(PsiPackage aPackage) {
-        final Integer out = packageLevelOrders.get(aPackage);
-        if (out != null) {
-            return out.intValue();
-        }
-        final Set<PsiPackage> dependentPackages = calculatePackageToPackageDependencies(aPackage);
-        final Set<PsiPackage> mutuallyDependentPackages = calculateStronglyConnectedPackageComponents(aPackage);
-        int levelOrder = 0;
-        for (final PsiPackage dependentPackage : dependentPackages) {
-            if (!mutuallyDependentPackages.contains(dependentPackage)) {
-                final int dependentLevelOrder = calculatePackageLevelOrder(dependentPackage);
-                levelOrder = Math.max(levelOrder, dependentLevelOrder);
-            }
-        }
-        levelOrder += 1;
-        for (final PsiPackage mutuallyDependentPackage : mutuallyDependentPackages) {
-            packageLevelOrders.put(mutuallyDependentPackage, Integer.valueOf(levelOrder));
-        }
-        return levelOrder;
+        return getPackageGraph().getLevelOrder(aPackage);
     }
 
     @Override
     public int calculatePackageAdjustedLevelOrder(PsiPackage aPackage) {
-        final Integer out = packageAdjustedLevelOrders.get(aPackage);
-        if (out != null) {
-            return out.intValue();
-        }
-        final Set<PsiPackage> dependentPackages = calculatePackageToPackageDependencies(aPackage);
-        final Set<PsiPackage> mutuallyDependentPackages = calculateStronglyConnectedPackageComponents(aPackage);
-        int levelOrder = 0;
-        for (final PsiPackage dependentPackage : dependentPackages) {
-            if (!mutuallyDependentPackages.contains(dependentPackage)) {
-                final int dependentLevelOrder = calculatePackageAdjustedLevelOrder(dependentPackage);
-                levelOrder = Math.max(levelOrder, dependentLevelOrder);
-            }
-        }
-        levelOrder += mutuallyDependentPackages.size();
-        for (final PsiPackage stronglyConnectedPackage : mutuallyDependentPackages) {
-            packageAdjustedLevelOrders.put(stronglyConnectedPackage, Integer.valueOf(levelOrder));
-        }
-        return levelOrder;
+        return getPackageGraph().getAdjustedLevelOrder(aPackage);
     }
 
     @Override
     public int getStrengthForDependency(PsiClass aClass, PsiClass dependencyClass) {
-        final Bag<PsiClass> dependenciesForClass = dependencies.get(aClass);
-        return dependenciesForClass.getCountForObject(dependencyClass);
+        freeze();
+        return dependencies.weight(classes.indexOf(aClass), classes.indexOf(dependencyClass));
     }
 
     @Override
     public int getStrengthForPackageDependency(PsiClass aClass, PsiPackage dependencyPackage) {
-        final Bag<PsiPackage> dependenciesForClass = packageDependencies.get(aClass);
-        return dependenciesForClass.getCountForObject(dependencyPackage);
+        freeze();
+        return packageDependencies.weight(classes.indexOf(aClass), packages.indexOf(dependencyPackage));
     }
 
     @Override
     public Set<PsiPackage> calculatePackageToPackageDependencies(PsiPackage aPackage) {
-        if (packageToPackageDependencies.containsKey(aPackage)) {
-            final Bag<PsiPackage> dependenciesForPackage = packageToPackageDependencies.get(aPackage);
-            return dependenciesForPackage.getContents();
-        } else {
+        freeze();
+        return packageSet(packageToPackageDependencies, packages.indexOf(aPackage));
+    }
+
+    private Set<PsiClass> classSet(Adjacency adjacency, PsiClass aClass) {
+        final int id = classes.indexOf(aClass);
+        if (id < 0) {
+            return Collections.emptySet();
+        }
+        return new NodeSet<PsiClass>(classes, adjacency, id);
+    }
+
+    private Set<PsiPackage> packageSet(Adjacency adjacency, int id) {
+        if (id < 0) {
             return Collections.emptySet();
         }
+        return new NodeSet<PsiPackage>(packages, adjacency, id);
+    }
+
+    /**
+     * Converts the edges collected by {@link #build(PsiElement)} into adjacency arrays.  No dependencies may be
+     * added afterwards.
+     */
+    private void freeze() {
+        if (frozen) {
+            return;
+        }
+        synchronized (this) {
+            if (frozen) {
+                return;
+            }
+            final int numClasses = classes.size();
+            final int numPackages = packages.size();
+            dependencies = classEdges.toAdjacency(numClasses, false);
+            dependents = classEdges.toAdjacency(numClasses, true);
+            packageDependencies = classToPackageEdges.toAdjacency(numClasses, false);
+            packageDependents = packageToClassEdges.toAdjacency(numClasses, false);
+            packageToPackageDependencies = packageEdges.toAdjacency(numPackages, false);
+            packageToPackageDependents = packageEdges.toAdjacency(numPackages, true);
+            classGraph = new CondensedGraph<PsiClass>(classes, dependencies);
+            packageGraph = new CondensedGraph<PsiPackage>(packages, packageToPackageDependencies);
+            frozen = true;
+        }
+    }
+
+    private CondensedGraph<PsiClass> getClassGraph() {
+        freeze();
+        return classGraph;
+    }
+
+    private CondensedGraph<PsiPackage> getPackageGraph() {
+        freeze();
+        return packageGraph;
     }
 
     public void build(PsiElement element) {
-        final DependenciesVisitor visitor = new DependenciesVisitor();
+        build(element, null);
+    }
+
+    /**
+     * Adds the dependencies found in the element, also recording them in the specified file dependencies if not null.
+     */
+    void build(PsiElement element, @Nullable FileDependencies recorder) {
+        if (frozen) {
+            throw new IllegalStateException("dependency map already in use");
+        }
+        final DependenciesVisitor visitor = new DependenciesVisitor(recorder);
         element.accept(visitor);
     }
 
+    /**
+     * Adds previously recorded dependencies, finding the classes by name.  Nothing is added when one of the classes
+     * can't be found anymore, in which case the dependencies of the file should be built again.
+     * @return true, if the dependencies were added, false otherwise.
+     */
+    boolean addDependencies(FileDependencies fileDependencies, Project project) {
+        if (frozen) {
+            throw new IllegalStateException("dependency map already in use");
+        }
+        final List<String> classNames = fileDependencies.getClassNames();
+        final PsiClass[] resolved = new PsiClass[classNames.size()];
+        final JavaPsiFacade psiFacade = JavaPsiFacade.getInstance(project);
+        final GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+        final int numEdges = fileDependencies.getNumEdges();
+        // only the classes of the dependencies are needed, the other recorded classes are for invalidation
+        for (int i = 0; i < numEdges << 1; i++) {
+            final int index = (i & 1) == 0 ? fileDependencies.getSource(i >> 1) : fileDependencies.getTarget(i >> 1);
+            if (resolved[index] != null) {
+                continue;
+            }
+            final String className = classNames.get(index);
+            PsiClass aClass = classesByName.get(className);
+            if (aClass == null) {
+                aClass = psiFacade.findClass(className, scope);
+                if (aClass == null) {
+                    return false;
+                }
+                classesByName.put(className, aClass);
+            }
+            resolved[index] = aClass;
+        }
+        for (int i = 0; i < numEdges; i++) {
+            addDependency(resolved[fileDependencies.getSource(i)], resolved[fileDependencies.getTarget(i)]);
+        }
+        return true;
+    }
+
+    private void addDependency(PsiClass aClass, PsiClass referencedClass) {
+        final int classId = classes.intern(aClass);
+        final int referencedClassId = classes.intern(referencedClass);
+        classEdges.add(classId, referencedClassId);
+
+        final PsiPackage dependencyPackage = ClassUtils.findPackage(referencedClass);
+        final int dependencyPackageId = dependencyPackage == null ? -1 : packages.intern(dependencyPackage);
+        if (dependencyPackageId >= 0) {
+            classToPackageEdges.add(classId, dependencyPackageId);
+        }
+
+        final PsiPackage aPackage = ClassUtils.findPackage(aClass);
+        final int packageId = aPackage == null ? -1 : packages.intern(aPackage);
+        if (packageId >= 0) {
+            packageToClassEdges.add(referencedClassId, packageId);
+        }
+
+        if (packageId < 0 || dependencyPackageId < 0 || packageId == dependencyPackageId) {
+            return;
+        }
+        packageEdges.add(packageId, dependencyPackageId);
+    }
+
+    /**
+     * Adds all dependencies of another map, which was built from a different set of files.  This allows a
+     * dependency map to be built in parts on several threads.
+     */
+    public void merge(DependencyMapImpl other) {
+        if (frozen) {
+            throw new IllegalStateException("dependency map already in use");
+        }
+        final int[] classIds = new int[other.classes.size()];
+        for (int i = 0; i < classIds.length; i++) {
+            classIds[i] = classes.intern(other.classes.get(i));
+        }
+        final int[] packageIds = new int[other.packages.size()];
+        for (int i = 0; i < packageIds.length; i++) {
+            packageIds[i] = packages.intern(other.packages.get(i));
+        }
+        classEdges.addAll(other.classEdges, classIds, classIds);
+        classToPackageEdges.addAll(other.classToPackageEdges, classIds, packageIds);
+        packageToClassEdges.addAll(other.packageToClassEdges, classIds, packageIds);
+        packageEdges.addAll(other.packageEdges, packageIds, packageIds);
+    }
+
     private class DependenciesVisitor extends JavaRecursiveElementVisitor {
 
         private final Stack<PsiClass> classStack = new Stack<PsiClass>();
+        private final FileDependencies recorder;
         private PsiClass currentClass = null;
 
+        DependenciesVisitor(@Nullable FileDependencies recorder) {
+            this.recorder = recorder;
+        }
+
         @Override
         public void visitClass(PsiClass aClass) {
             if (!ClassUtils.isAnonymous(aClass)) {
@@ -392,6 +351,9 @@ public class DependencyMapImpl implements DependencyMap, DependentsMap {
                 currentClass = aClass;
                 addDependencyForTypes(aClass.getSuperTypes());
                 addDependencyForTypeParameters(aClass.getTypeParameters());
+                if (recorder != null) {
+                    recorder.addDeclaredClass(aClass);
+                }
             }
             super.visitClass(aClass);
             if (!ClassUtils.isAnonymous(aClass)) {
@@ -408,6 +370,8 @@ public class DependencyMapImpl implements DependencyMap, DependentsMap {
             }
             addDependencyForClass(method.getContainingClass());
             addDependencyForTypes(expression.getTypeArguments());
+            // the method chosen depends on the types of the arguments
+            recordResolvedIn(expression.getArgumentList().getExpressions());
         }
 
         @Override
@@ -415,8 +379,12 @@ public class DependencyMapImpl implements DependencyMap, DependentsMap {
             super.visitReferenceExpression(expression);
             final PsiElement element = expression.resolve();
             if (element == null) {
+                if (recorder != null) {
+                    recorder.addUnresolvedReference();
+                }
                 return;
             }
+            recordResolvedIn(expression.getQualifierExpression());
             if (element instanceof PsiField) {
                 final PsiField field = (PsiField) element;
                 addDependencyForClass(field.getContainingClass());
@@ -439,6 +407,10 @@ public class DependencyMapImpl implements DependencyMap, DependentsMap {
             super.visitNewExpression(expression);
             addDependencyForType(expression.getType());
             addDependencyForTypes(expression.getTypeArguments());
+            final PsiExpressionList argumentList = expression.getArgumentList();
+            if (argumentList != null) {
+                recordResolvedIn(argumentList.getExpressions());
+            }
         }
 
         @Override
@@ -480,6 +452,30 @@ public class DependencyMapImpl implements DependencyMap, DependentsMap {
             addDependencyForType(expression.getFunctionalInterfaceType());
         }
 
+        /**
+         * Records the classes of the types of the expressions, in which a reference was resolved, so the file is
+         * analyzed again when the members or supertypes of one of them change.
+         */
+        private void recordResolvedIn(PsiExpression... expressions) {
+            if (recorder == null) {
+                return;
+            }
+            for (PsiExpression expression : expressions) {
+                if (expression == null) {
+                    continue;
+                }
+                final PsiType type = expression.getType();
+                if (!(type instanceof PsiClassType)) {
+                    continue;
+                }
+                final PsiClass aClass = ((PsiClassType) type).resolve();
+                if (aClass == null || aClass instanceof PsiCompiledElement || aClass instanceof PsiTypeParameter) {
+                    continue;
+                }
+                recorder.addResolvedIn(aClass);
+            }
+        }
+
         private void addDependencyForTypeParameters(PsiTypeParameter[] parameters) {
             for (PsiTypeParameter parameter : parameters) {
                 final PsiReferenceList extendsList = parameter.getExtendsList();
@@ -518,33 +514,10 @@ public class DependencyMapImpl implements DependencyMap, DependentsMap {
                     referencedClass instanceof PsiTypeParameter) {
                 return;
             }
-            add(currentClass, referencedClass, dependencies);
-            add(referencedClass, currentClass, dependents);
-
-            final PsiPackage dependencyPackage = ClassUtils.findPackage(referencedClass);
-            if (dependencyPackage != null) {
-                add(currentClass, dependencyPackage, packageDependencies);
-            }
-
-            final PsiPackage aPackage = ClassUtils.findPackage(currentClass);
-            if (aPackage != null) {
-                add(referencedClass, aPackage, packageDependents);
-            }
-
-            if (aPackage == null || dependencyPackage == null || aPackage.equals(dependencyPackage)) {
-                return;
-            }
-            add(aPackage, dependencyPackage, packageToPackageDependencies);
-            add(dependencyPackage, aPackage, packageToPackageDependents);
-        }
-
-        private <K, V> void add(K k, V v, Map<K, Bag<V>> map) {
-            Bag<V> bag = map.get(k);
-            if (bag == null) {
-                bag = new Bag<V>();
-                map.put(k, bag);
+            addDependency(currentClass, referencedClass);
+            if (recorder != null) {
+                recorder.add(currentClass, referencedClass);
             }
-            bag.add(v);
         }
     }
 }
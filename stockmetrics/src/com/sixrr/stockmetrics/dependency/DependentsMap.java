@@ -35,5 +35,12 @@ public interface DependentsMap {
 
     Set<PsiClass> calculateTransitiveDependents(PsiClass aClass);
 
+    /**
+     * @return  the size of the set returned by {@link #calculateTransitiveDependents(PsiClass)}, without creating it.
+     */
+    int countTransitiveDependents(PsiClass aClass);
+
     Set<PsiPackage> calculateTransitivePackageDependents(PsiPackage aPackage);
+
+    int countTransitivePackageDependents(PsiPackage aPackage);
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.sixrr.stockmetrics.dependency;
+
+import java.util.Arrays;
+
+/**
+ * An append-only list of edges, which may contain the same edge several times.  Converted to an {@link Adjacency}
+ * once all edges are known.
+ */
+final class EdgeBuffer {
+
+    private int[] sources = new int[64];
+    private int[] targets = new int[64];
+    private int size = 0;
+
+    void add(int source, int target) {
+        if (size == sources.length) {
+            sources = Arrays.copyOf(sources, size << 1);
+            targets = Arrays.copyOf(targets, size << 1);
+        }
+        sources[size] = source;
+        targets[size] = target;
+        size++;
+    }
+
+    /**
+     * Adds all edges of another buffer, whose node ids are translated with the specified arrays.
+     */
+    void addAll(EdgeBuffer other, int[] sourceIds, int[] targetIds) {
+        for (int i = 0; i < other.size; i++) {
+            add(sourceIds[other.sources[i]], targetIds[other.targets[i]]);
+        }
+    }
+
+    /**
+     * @param reversed  true to build the adjacency of the reversed graph.
+     * @return  the adjacency of the edges in this buffer, where the weight of an edge is the number of times it
+     * was added.
+     */
+    Adjacency toAdjacency(int numNodes, boolean reversed) {
+        final int[] from = reversed ? targets : sources;
+        final int[] to = reversed ? sources : targets;
+        final int[] offsets = new int[numNodes + 1];
+        for (int i = 0; i < size; i++) {
+            offsets[from[i] + 1]++;
+        }
+        for (int node = 0; node < numNodes; node++) {
+            offsets[node + 1] += offsets[node];
+        }
+        final int[] position = Arrays.copyOf(offsets, numNodes);
+        final int[] sorted = new int[size];
+        for (int i = 0; i < size; i++) {
+            sorted[position[from[i]]++] = to[i];
+        }
+
+        // sort every row and collapse duplicate edges into weights
+        final int[] compactOffsets = new int[numNodes + 1];
+        final int[] compactTargets = new int[size];
+        final int[] weights = new int[size];
+        int count = 0;
+        for (int node = 0; node < numNodes; node++) {
+            final int start = offsets[node];
+            final int end = offsets[node + 1];
+            Arrays.sort(sorted, start, end);
+            for (int i = start; i < end; i++) {
+                if (i > start && sorted[i] == sorted[i - 1]) {
+                    weights[count - 1]++;
+                } else {
+                    compactTargets[count] = sorted[i];
+                    weights[count] = 1;
+                    count++;
+                }
+            }
+            compactOffsets[node + 1] = count;
+        }
+        return new Adjacency(compactOffsets, Arrays.copyOf(compactTargets, count), Arrays.copyOf(weights, count));
+    }
+}
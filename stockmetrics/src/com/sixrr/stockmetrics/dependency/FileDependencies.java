@@ -0,0 +1,258 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.sixrr.stockmetrics.dependency;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiCompiledElement;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The class dependencies found in a single file, with classes identified by qualified name so they can be stored
+ * between runs.  Besides the dependencies, the classes declared in the file with their direct supertypes, and the
+ * classes in which references of the file were resolved are recorded, so the file can be analyzed again when one of
+ * those classes changes.  Dependencies of a file containing dependencies of local classes, which have no qualified
+ * name, or references which can't be resolved, can't be stored.
+ */
+final class FileDependencies {
+
+    private final long timeStamp;
+    private final long length;
+    private final List<String> classNames;
+    private int[] edges; // pairs of indices into classNames
+    private int numEdges;
+    private int[] declaredClasses; // indices into classNames
+    private int numDeclaredClasses;
+    private int[] supertypes; // pairs of indices into classNames, of a declared class and one of its direct supertypes
+    private int numSupertypes;
+    private boolean storable;
+
+    FileDependencies(long timeStamp, long length) {
+        this.timeStamp = timeStamp;
+        this.length = length;
+        classNames = new ArrayList<String>();
+        edges = new int[32];
+        numEdges = 0;
+        declaredClasses = new int[4];
+        numDeclaredClasses = 0;
+        supertypes = new int[8];
+        numSupertypes = 0;
+        storable = true;
+    }
+
+    private FileDependencies(long timeStamp, long length, List<String> classNames, int[] edges,
+                             int[] declaredClasses, int[] supertypes, boolean storable) {
+        this.timeStamp = timeStamp;
+        this.length = length;
+        this.classNames = classNames;
+        this.edges = edges;
+        numEdges = edges.length >> 1;
+        this.declaredClasses = declaredClasses;
+        numDeclaredClasses = declaredClasses.length;
+        this.supertypes = supertypes;
+        numSupertypes = supertypes.length >> 1;
+        this.storable = storable;
+    }
+
+    boolean isUpToDate(long timeStamp, long length) {
+        return this.timeStamp == timeStamp && this.length == length;
+    }
+
+    /**
+     * Returns true if the dependencies can be added to a dependency map without analyzing the file again.
+     */
+    boolean isStorable() {
+        return storable;
+    }
+
+    void add(PsiClass aClass, PsiClass referencedClass) {
+        if (!storable) {
+            return;
+        }
+        final String className = aClass.getQualifiedName();
+        final String referencedClassName = referencedClass.getQualifiedName();
+        if (className == null || referencedClassName == null) {
+            storable = false;
+            return;
+        }
+        if (numEdges << 1 == edges.length) {
+            edges = Arrays.copyOf(edges, edges.length << 1);
+        }
+        edges[numEdges << 1] = indexOf(className);
+        edges[(numEdges << 1) + 1] = indexOf(referencedClassName);
+        numEdges++;
+    }
+
+    /**
+     * Records a class declared in the file, with its direct supertypes from the project.  Local classes are not
+     * recorded, as they can't be referenced from other files.
+     */
+    void addDeclaredClass(PsiClass aClass) {
+        final String className = aClass.getQualifiedName();
+        if (className == null) {
+            return;
+        }
+        final int index = indexOf(className);
+        if (numDeclaredClasses == declaredClasses.length) {
+            declaredClasses = Arrays.copyOf(declaredClasses, declaredClasses.length << 1);
+        }
+        declaredClasses[numDeclaredClasses++] = index;
+        for (PsiClass supertype : aClass.getSupers()) {
+            final String supertypeName = supertype.getQualifiedName();
+            if (supertypeName == null || supertype instanceof PsiCompiledElement) {
+                continue;
+            }
+            if (numSupertypes << 1 == supertypes.length) {
+                supertypes = Arrays.copyOf(supertypes, supertypes.length << 1);
+            }
+            supertypes[numSupertypes << 1] = index;
+            supertypes[(numSupertypes << 1) + 1] = indexOf(supertypeName);
+            numSupertypes++;
+        }
+    }
+
+    /**
+     * Records a class in which a reference of the file was resolved, like the type of the qualifier of a method
+     * call, without adding a dependency on it.
+     */
+    void addResolvedIn(PsiClass aClass) {
+        final String className = aClass.getQualifiedName();
+        if (className != null) {
+            indexOf(className);
+        }
+    }
+
+    /**
+     * Records that a reference of the file could not be resolved.  It may resolve once another file changes, which
+     * leaves no trace in the recorded classes.
+     */
+    void addUnresolvedReference() {
+        storable = false;
+    }
+
+    private int indexOf(String className) {
+        // files reference few classes, so a linear search is fast enough
+        final int index = classNames.indexOf(className);
+        if (index >= 0) {
+            return index;
+        }
+        classNames.add(className);
+        return classNames.size() - 1;
+    }
+
+    List<String> getClassNames() {
+        return classNames;
+    }
+
+    int getNumEdges() {
+        return numEdges;
+    }
+
+    int getSource(int edge) {
+        return edges[edge << 1];
+    }
+
+    int getTarget(int edge) {
+        return edges[(edge << 1) + 1];
+    }
+
+    /**
+     * Adds the names of the classes declared in the file to the specified set.
+     */
+    void addDeclaredClassNames(Set<String> result) {
+        for (int i = 0; i < numDeclaredClasses; i++) {
+            result.add(classNames.get(declaredClasses[i]));
+        }
+    }
+
+    /**
+     * Adds the classes declared in the file to the lists of direct subtypes of their supertypes.
+     */
+    void addSubtypes(Map<String, List<String>> subtypesByName) {
+        for (int i = 0; i < numSupertypes; i++) {
+            final String supertypeName = classNames.get(supertypes[(i << 1) + 1]);
+            List<String> subtypes = subtypesByName.get(supertypeName);
+            if (subtypes == null) {
+                subtypes = new ArrayList<String>(2);
+                subtypesByName.put(supertypeName, subtypes);
+            }
+            subtypes.add(classNames.get(supertypes[i << 1]));
+        }
+    }
+
+    /**
+     * Returns true if any of the classes recorded for the file is one of the specified classes.
+     */
+    boolean recordsAny(Collection<String> classNames) {
+        for (String className : this.classNames) {
+            if (classNames.contains(className)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeLong(timeStamp);
+        out.writeLong(length);
+        out.writeBoolean(storable);
+        out.writeInt(classNames.size());
+        for (String className : classNames) {
+            out.writeUTF(className);
+        }
+        writeInts(out, edges, numEdges << 1);
+        writeInts(out, declaredClasses, numDeclaredClasses);
+        writeInts(out, supertypes, numSupertypes << 1);
+    }
+
+    private static void writeInts(DataOutput out, int[] values, int count) throws IOException {
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeInt(values[i]);
+        }
+    }
+
+    static FileDependencies read(DataInput in) throws IOException {
+        final long timeStamp = in.readLong();
+        final long length = in.readLong();
+        final boolean storable = in.readBoolean();
+        final int numClassNames = in.readInt();
+        final List<String> classNames = new ArrayList<String>(numClassNames);
+        for (int i = 0; i < numClassNames; i++) {
+            classNames.add(in.readUTF());
+        }
+        final int[] edges = readInts(in);
+        final int[] declaredClasses = readInts(in);
+        final int[] supertypes = readInts(in);
+        return new FileDependencies(timeStamp, length, classNames, edges, declaredClasses, supertypes, storable);
+    }
+
+    private static int[] readInts(DataInput in) throws IOException {
+        final int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+}
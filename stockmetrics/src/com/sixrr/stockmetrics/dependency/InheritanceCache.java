@@ -0,0 +1,162 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.stockmetrics.dependency;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiModifier;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memoizes values computed by walking up the supertypes of a class, including library classes, so every class is
+ * resolved and walked once per run and classes with a common superclass share the results for it.  The super methods
+ * of methods are memoized as well, as the same inherited methods are checked for every subclass.  Safe to use from
+ * several threads: a value computed by two threads at once is the same, so the last one stored wins.
+ */
+public final class InheritanceCache {
+
+    private static final PsiMethod[] NO_METHODS = new PsiMethod[0];
+
+    private final ChainSum depths = new ChainSum() {
+        @Override
+        int getOwnValue(PsiClass aClass) {
+            return 1;
+        }
+    };
+    private final ChainSum instanceFieldCounts = new ChainSum() {
+        @Override
+        int getOwnValue(PsiClass aClass) {
+            int count = 0;
+            for (PsiField field : aClass.getFields()) {
+                if (!field.hasModifierProperty(PsiModifier.STATIC)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    };
+    private final Map<PsiClass, PsiMethod[]> inheritableMethods = new ConcurrentHashMap<PsiClass, PsiMethod[]>();
+    private final Map<PsiMethod, PsiMethod[]> superMethods = new ConcurrentHashMap<PsiMethod, PsiMethod[]>();
+
+    /**
+     * Returns the number of superclasses of the specified class, which is 0 for {@code java.lang.Object}.
+     */
+    public int getDepth(PsiClass aClass) {
+        return depths.get(aClass) - 1;
+    }
+
+    /**
+     * Returns the number of instance fields declared in the superclasses of the specified class.
+     */
+    public int getNumInheritedInstanceFields(PsiClass aClass) {
+        final PsiClass superClass = aClass.getSuperClass();
+        return superClass == null || superClass.equals(aClass) ? 0 : instanceFieldCounts.get(superClass);
+    }
+
+    /**
+     * Returns the methods of all supertypes of the specified class which are inherited unless overridden: the
+     * methods which are not constructors, private, static or abstract.  Every supertype contributes once, also when it
+     * is reached along several paths, and overridden methods of supertypes are included.
+     */
+    public PsiMethod[] getInheritableMethods(PsiClass aClass) {
+        return getInheritableMethods(aClass, new HashSet<PsiClass>());
+    }
+
+    private PsiMethod[] getInheritableMethods(PsiClass aClass, Set<PsiClass> inProgress) {
+        final PsiMethod[] cached = inheritableMethods.get(aClass);
+        if (cached != null) {
+            return cached;
+        }
+        inProgress.add(aClass);
+        final Set<PsiMethod> result = new LinkedHashSet<PsiMethod>();
+        for (PsiClass superClass : aClass.getSupers()) {
+            // cyclic hierarchies only occur in code with errors
+            if (inProgress.contains(superClass)) {
+                continue;
+            }
+            for (PsiMethod method : superClass.getMethods()) {
+                if (!method.isConstructor() && !method.hasModifierProperty(PsiModifier.PRIVATE) &&
+                        !method.hasModifierProperty(PsiModifier.STATIC) &&
+                        !method.hasModifierProperty(PsiModifier.ABSTRACT)) {
+                    result.add(method);
+                }
+            }
+            Collections.addAll(result, getInheritableMethods(superClass, inProgress));
+        }
+        inProgress.remove(aClass);
+        final PsiMethod[] methods = result.isEmpty() ? NO_METHODS : result.toArray(new PsiMethod[result.size()]);
+        inheritableMethods.put(aClass, methods);
+        return methods;
+    }
+
+    /**
+     * Returns the methods directly overridden or implemented by the specified method, like
+     * {@link PsiMethod#findSuperMethods()}, which is called once per method and run.
+     */
+    public PsiMethod[] findSuperMethods(PsiMethod method) {
+        final PsiMethod[] cached = superMethods.get(method);
+        if (cached != null) {
+            return cached;
+        }
+        final PsiMethod[] result = method.findSuperMethods();
+        superMethods.put(method, result);
+        return result;
+    }
+
+    /**
+     * The sum of a value over a class and its superclasses, memoized for every class on the way.
+     */
+    private abstract static class ChainSum {
+
+        private final Map<PsiClass, Integer> sums = new ConcurrentHashMap<PsiClass, Integer>();
+
+        abstract int getOwnValue(PsiClass aClass);
+
+        int get(PsiClass aClass) {
+            final Integer cached = sums.get(aClass);
+            if (cached != null) {
+                return cached.intValue();
+            }
+            // walk up to the first superclass with a known sum, and fill in the classes below it on the way down
+            final List<PsiClass> chain = new ArrayList<PsiClass>();
+            int sum = 0;
+            PsiClass current = aClass;
+            while (current != null) {
+                final Integer known = sums.get(current);
+                if (known != null) {
+                    sum = known.intValue();
+                    break;
+                }
+                if (chain.contains(current)) {
+                    // cyclic hierarchies only occur in code with errors
+                    break;
+                }
+                chain.add(current);
+                current = current.getSuperClass();
+            }
+            for (int i = chain.size() - 1; i >= 0; i--) {
+                final PsiClass chainClass = chain.get(i);
+                sum += getOwnValue(chainClass);
+                sums.put(chainClass, Integer.valueOf(sum));
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.sixrr.stockmetrics.dependency;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only view of the targets of a single node in an {@link Adjacency}.
+ */
+final class NodeSet<T> extends AbstractSet<T> {
+
+    private final NodeTable<T> nodes;
+    private final Adjacency adjacency;
+    private final int source;
+
+    NodeSet(NodeTable<T> nodes, Adjacency adjacency, int source) {
+        this.nodes = nodes;
+        this.adjacency = adjacency;
+        this.source = source;
+    }
+
+    @Override
+    public int size() {
+        return adjacency.end(source) - adjacency.start(source);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        final int target = nodes.indexOf((T) o);
+        return target >= 0 && adjacency.indexOf(source, target) >= 0;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int index = adjacency.start(source);
+            private final int end = adjacency.end(source);
+
+            @Override
+            public boolean hasNext() {
+                return index < end;
+            }
+
+            @Override
+            public T next() {
+                if (index >= end) {
+                    throw new NoSuchElementException();
+                }
+                return nodes.get(adjacency.target(index++));
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.sixrr.stockmetrics.dependency;
+
+import gnu.trove.TObjectIntHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Assigns consecutive int ids to the nodes of a dependency graph, so edges can be stored as pairs of ints.
+ * <p>
+ * Every node is referenced once, however many edges it has.  The nodes are kept strongly for the lifetime of the
+ * table, because the graphs are queried with and return PSI elements, so a table of PSI elements keeps them in memory
+ * until the run it was built for ends.
+ */
+final class NodeTable<T> {
+
+    // ids are stored plus one, because the map returns zero for absent keys
+    private final TObjectIntHashMap<T> ids = new TObjectIntHashMap<T>();
+    private final List<T> nodes = new ArrayList<T>();
+
+    int intern(T node) {
+        final int id = ids.get(node) - 1;
+        if (id >= 0) {
+            return id;
+        }
+        final int newId = nodes.size();
+        nodes.add(node);
+        ids.put(node, newId + 1);
+        return newId;
+    }
+
+    /**
+     * @return  the id of the node, or -1 if the node is not in this table.
+     */
+    int indexOf(T node) {
+        return ids.get(node) - 1;
+    }
+
+    T get(int id) {
+        return nodes.get(id);
+    }
+
+    int size() {
+        return nodes.size();
+    }
+}
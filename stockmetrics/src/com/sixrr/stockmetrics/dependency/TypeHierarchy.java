@@ -0,0 +1,325 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.stockmetrics.dependency;
+
+import com.intellij.psi.*;
+import com.sixrr.metrics.utils.MethodUtils;
+
+import java.util.Arrays;
+
+/**
+ * The inheritance relations between the classes and methods of a project, built in one pass over all files from
+ * the direct supertypes of every class and the direct super methods of every method.  On the first query the
+ * inheritors of every class and the overriding methods of every method are counted by walking up from every node
+ * once, so the queries which used to run an inheritors search are lookups.
+ * <p>
+ * Inheritors include interfaces, anonymous classes and enum constant bodies, like the results of
+ * {@link com.intellij.psi.search.searches.ClassInheritorsSearch}.  Supertypes and super methods from libraries are not
+ * recorded, as library classes never inherit from project classes and only project classes are measured.  A method
+ * inherited from a superclass implements the methods of the interfaces of a subclass, like the results of
+ * {@link com.intellij.psi.search.searches.OverridingMethodsSearch}.
+ * <p>
+ * Only Java files are visited.  Unlike the inheritors search, classes and methods declared in Kotlin, Groovy or other
+ * JVM languages are not found, so a Java class or method which is only extended or overridden in such files has no
+ * inheritors or overriding methods.
+ */
+public final class TypeHierarchy {
+
+    private static final byte INTERFACE = 1;
+    private static final byte ABSTRACT = 1;
+
+    private final NodeTable<PsiClass> classes = new NodeTable<PsiClass>();
+    private byte[] classFlags = new byte[64];
+    // from subtype to direct supertype
+    private final EdgeBuffer supertypes = new EdgeBuffer();
+    private final NodeTable<PsiMethod> methods = new NodeTable<PsiMethod>();
+    private byte[] methodFlags = new byte[64];
+    // from overriding method to directly overridden method
+    private final EdgeBuffer superMethods = new EdgeBuffer();
+
+    private volatile boolean frozen = false;
+    private int[] numDirectInheritors = null;
+    private int[] numClassInheritors = null;
+    private int[] numInterfaceInheritors = null;
+    private int[] numOverridingMethods = null;
+    private int[] numImplementingMethods = null;
+
+    /**
+     * Adds the classes and methods declared in a Java file.
+     */
+    public void build(PsiJavaFile file) {
+        if (frozen) {
+            throw new IllegalStateException("type hierarchy already in use");
+        }
+        file.accept(new HierarchyVisitor());
+    }
+
+    private int internClass(PsiClass aClass, byte flags) {
+        final int id = classes.intern(aClass);
+        if (id == classFlags.length) {
+            classFlags = Arrays.copyOf(classFlags, id << 1);
+        }
+        classFlags[id] = flags;
+        return id;
+    }
+
+    private int internMethod(PsiMethod method, byte flags) {
+        final int id = methods.intern(method);
+        if (id == methodFlags.length) {
+            methodFlags = Arrays.copyOf(methodFlags, id << 1);
+        }
+        methodFlags[id] = flags;
+        return id;
+    }
+
+    /**
+     * Adds the classes and methods of a hierarchy built from other files.
+     */
+    public void merge(TypeHierarchy other) {
+        if (frozen) {
+            throw new IllegalStateException("type hierarchy already in use");
+        }
+        final int[] classIds = new int[other.classes.size()];
+        for (int i = 0; i < classIds.length; i++) {
+            classIds[i] = internClass(other.classes.get(i), other.classFlags[i]);
+        }
+        supertypes.addAll(other.supertypes, classIds, classIds);
+        final int[] methodIds = new int[other.methods.size()];
+        for (int i = 0; i < methodIds.length; i++) {
+            methodIds[i] = internMethod(other.methods.get(i), other.methodFlags[i]);
+        }
+        superMethods.addAll(other.superMethods, methodIds, methodIds);
+    }
+
+    private void freeze() {
+        if (frozen) {
+            return;
+        }
+        synchronized (this) {
+            if (frozen) {
+                return;
+            }
+            final int numClasses = classes.size();
+            numDirectInheritors = new int[numClasses];
+            numClassInheritors = new int[numClasses];
+            numInterfaceInheritors = new int[numClasses];
+            final Adjacency classAdjacency = supertypes.toAdjacency(numClasses, false);
+            final AncestorWalker classWalker = new AncestorWalker(classAdjacency);
+            for (int id = 0; id < numClasses; id++) {
+                for (int i = classAdjacency.start(id); i < classAdjacency.end(id); i++) {
+                    numDirectInheritors[classAdjacency.target(i)]++;
+                }
+                final int[] counts = (classFlags[id] & INTERFACE) != 0 ? numInterfaceInheritors : numClassInheritors;
+                final int numAncestors = classWalker.walk(id);
+                for (int i = 0; i < numAncestors; i++) {
+                    counts[classWalker.ancestor(i)]++;
+                }
+            }
+
+            final int numMethods = methods.size();
+            numOverridingMethods = new int[numMethods];
+            numImplementingMethods = new int[numMethods];
+            final AncestorWalker methodWalker = new AncestorWalker(superMethods.toAdjacency(numMethods, false));
+            for (int id = 0; id < numMethods; id++) {
+                final boolean implementing = (methodFlags[id] & ABSTRACT) == 0;
+                final int numAncestors = methodWalker.walk(id);
+                for (int i = 0; i < numAncestors; i++) {
+                    final int ancestor = methodWalker.ancestor(i);
+                    numOverridingMethods[ancestor]++;
+                    if (implementing) {
+                        numImplementingMethods[ancestor]++;
+                    }
+                }
+            }
+            frozen = true;
+        }
+    }
+
+    /**
+     * Returns the number of classes and interfaces directly extending or implementing the specified class.
+     */
+    public int getNumDirectInheritors(PsiClass aClass) {
+        freeze();
+        final int id = classes.indexOf(aClass);
+        return id < 0 ? 0 : numDirectInheritors[id];
+    }
+
+    /**
+     * Returns the number of classes and interfaces directly or indirectly extending or implementing the specified
+     * class.
+     */
+    public int getNumInheritors(PsiClass aClass) {
+        freeze();
+        final int id = classes.indexOf(aClass);
+        return id < 0 ? 0 : numClassInheritors[id] + numInterfaceInheritors[id];
+    }
+
+    /**
+     * Returns the number of classes, and not interfaces, directly or indirectly extending or implementing the
+     * specified class.
+     */
+    public int getNumClassInheritors(PsiClass aClass) {
+        freeze();
+        final int id = classes.indexOf(aClass);
+        return id < 0 ? 0 : numClassInheritors[id];
+    }
+
+    /**
+     * Returns the number of interfaces directly or indirectly extending the specified interface.
+     */
+    public int getNumInterfaceInheritors(PsiClass aClass) {
+        freeze();
+        final int id = classes.indexOf(aClass);
+        return id < 0 ? 0 : numInterfaceInheritors[id];
+    }
+
+    /**
+     * Returns true if the specified class is not an interface and is not extended by any class.
+     */
+    public boolean isLeaf(PsiClass aClass) {
+        return !aClass.isInterface() && getNumDirectInheritors(aClass) == 0;
+    }
+
+    /**
+     * Returns the number of methods directly or indirectly overriding or implementing the specified method.
+     */
+    public int getNumOverridingMethods(PsiMethod method) {
+        freeze();
+        final int id = methods.indexOf(method);
+        return id < 0 ? 0 : numOverridingMethods[id];
+    }
+
+    /**
+     * Returns the number of methods which are not abstract and directly or indirectly override or implement the
+     * specified method.
+     */
+    public int getNumImplementingMethods(PsiMethod method) {
+        freeze();
+        final int id = methods.indexOf(method);
+        return id < 0 ? 0 : numImplementingMethods[id];
+    }
+
+    /**
+     * Finds the ancestors of a node, each of them once even when they are reached along several paths, without
+     * allocating per walk.
+     */
+    private static final class AncestorWalker {
+
+        private final Adjacency adjacency;
+        private final int[] visited;
+        private final int[] queue;
+        private int stamp = 0;
+
+        AncestorWalker(Adjacency adjacency) {
+            this.adjacency = adjacency;
+            visited = new int[adjacency.numNodes()];
+            queue = new int[adjacency.numNodes()];
+        }
+
+        /**
+         * @return  the number of ancestors of the node, which are available from {@link #ancestor(int)}.
+         */
+        int walk(int node) {
+            stamp++;
+            visited[node] = stamp;
+            int size = 0;
+            int next = -1;
+            int current = node;
+            while (true) {
+                for (int i = adjacency.start(current); i < adjacency.end(current); i++) {
+                    final int target = adjacency.target(i);
+                    if (visited[target] != stamp) {
+                        visited[target] = stamp;
+                        queue[size++] = target;
+                    }
+                }
+                next++;
+                if (next == size) {
+                    return size;
+                }
+                current = queue[next];
+            }
+        }
+
+        int ancestor(int index) {
+            return queue[index];
+        }
+    }
+
+    private class HierarchyVisitor extends JavaRecursiveElementVisitor {
+
+        @Override
+        public void visitClass(PsiClass aClass) {
+            super.visitClass(aClass);
+            if (aClass instanceof PsiTypeParameter) {
+                return;
+            }
+            final int id = internClass(aClass, aClass.isInterface() ? INTERFACE : 0);
+            for (PsiClass superClass : aClass.getSupers()) {
+                if (superClass instanceof PsiCompiledElement || superClass.equals(aClass)) {
+                    continue;
+                }
+                supertypes.add(id, internClass(superClass, superClass.isInterface() ? INTERFACE : 0));
+            }
+            if (!aClass.isInterface() && aClass.getInterfaces().length > 0) {
+                addInheritedImplementations(aClass);
+            }
+        }
+
+        /**
+         * Adds the methods a class inherits from a superclass which implement a method of an interface of the class,
+         * when the superclass does not implement that interface itself.  {@link PsiMethod#findSuperMethods()} of
+         * such a method does not find the interface method, as it only searches the supertypes of the superclass.
+         */
+        private void addInheritedImplementations(PsiClass aClass) {
+            for (HierarchicalMethodSignature signature : aClass.getVisibleSignatures()) {
+                final PsiMethod method = signature.getMethod();
+                final PsiClass containingClass = method.getContainingClass();
+                if (containingClass == null || containingClass.equals(aClass) || containingClass.isInterface() ||
+                        method instanceof PsiCompiledElement || method.hasModifierProperty(PsiModifier.STATIC)) {
+                    continue;
+                }
+                for (HierarchicalMethodSignature superSignature : signature.getSuperSignatures()) {
+                    final PsiMethod superMethod = superSignature.getMethod();
+                    final PsiClass superClass = superMethod.getContainingClass();
+                    if (superMethod instanceof PsiCompiledElement || superClass == null || !superClass.isInterface() ||
+                            containingClass.isInheritor(superClass, true)) {
+                        continue;
+                    }
+                    superMethods.add(internMethod(method, MethodUtils.isAbstract(method) ? ABSTRACT : 0),
+                            internMethod(superMethod, MethodUtils.isAbstract(superMethod) ? ABSTRACT : 0));
+                }
+            }
+        }
+
+        @Override
+        public void visitMethod(PsiMethod method) {
+            super.visitMethod(method);
+            final PsiMethod[] methodSuperMethods = method.findSuperMethods();
+            if (methodSuperMethods.length == 0) {
+                return;
+            }
+            final int id = internMethod(method, MethodUtils.isAbstract(method) ? ABSTRACT : 0);
+            for (PsiMethod superMethod : methodSuperMethods) {
+                if (superMethod instanceof PsiCompiledElement) {
+                    continue;
+                }
+                superMethods.add(id, internMethod(superMethod, MethodUtils.isAbstract(superMethod) ? ABSTRACT : 0));
+            }
+        }
+    }
+}
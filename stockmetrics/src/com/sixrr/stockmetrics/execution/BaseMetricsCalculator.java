@@ -18,33 +18,91 @@ package com.sixrr.stockmetrics.execution;
 
 import com.intellij.analysis.AnalysisScope;
 import com.intellij.ide.highlighter.JavaFileType;
-import com.intellij.openapi.application.AccessToken;
 import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.progress.EmptyProgressIndicator;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiJavaFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.util.Processor;
+import com.sixrr.metrics.FileAnalysis;
+import com.sixrr.metrics.MergeableMetricCalculator;
 import com.sixrr.metrics.Metric;
-import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.MetricsExecutionContext;
 import com.sixrr.metrics.MetricsResultsHolder;
+import com.sixrr.metrics.SharedAnalysis;
+import com.sixrr.metrics.SharedTraversal;
+import com.sixrr.metrics.SharedTraversalMetricCalculator;
+import com.sixrr.metrics.utils.ParallelUtils;
+import com.sixrr.stockmetrics.dependency.CallGraph;
+import com.sixrr.stockmetrics.dependency.DependencyIndex;
 import com.sixrr.stockmetrics.dependency.DependencyMap;
 import com.sixrr.stockmetrics.dependency.DependencyMapImpl;
 import com.sixrr.stockmetrics.dependency.DependentsMap;
+import com.sixrr.stockmetrics.dependency.InheritanceCache;
+import com.sixrr.stockmetrics.dependency.TypeHierarchy;
+import com.sixrr.stockmetrics.halstead.HalsteadCounts;
 import com.sixrr.stockmetrics.i18n.StockMetricsBundle;
 import com.sixrr.stockmetrics.metricModel.BaseMetric;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-public abstract class BaseMetricsCalculator implements MetricCalculator {
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
-    private static final Key<DependencyMapImpl> dependencyMapKey = new Key<DependencyMapImpl>("dependencyMap");
+public abstract class BaseMetricsCalculator implements MergeableMetricCalculator, SharedTraversalMetricCalculator {
+
+    private static final SharedAnalysis<DependencyMapImpl> DEPENDENCY_MAP =
+            new SharedAnalysis<DependencyMapImpl>("dependencyMap") {
+                @NotNull
+                @Override
+                public DependencyMapImpl create(@NotNull MetricsExecutionContext executionContext) {
+                    return calculateDependencies(executionContext);
+                }
+            };
+
+    private static final SharedAnalysis<CallGraph> CALL_GRAPH = new SharedAnalysis<CallGraph>("callGraph") {
+        @NotNull
+        @Override
+        public CallGraph create(@NotNull MetricsExecutionContext executionContext) {
+            return calculateCallGraph(executionContext);
+        }
+    };
+
+    private static final SharedAnalysis<TypeHierarchy> TYPE_HIERARCHY =
+            new SharedAnalysis<TypeHierarchy>("typeHierarchy") {
+                @NotNull
+                @Override
+                public TypeHierarchy create(@NotNull MetricsExecutionContext executionContext) {
+                    return calculateTypeHierarchy(executionContext);
+                }
+            };
+
+    private static final SharedAnalysis<InheritanceCache> INHERITANCE_CACHE =
+            new SharedAnalysis<InheritanceCache>("inheritanceCache") {
+                @NotNull
+                @Override
+                public InheritanceCache create(@NotNull MetricsExecutionContext executionContext) {
+                    return new InheritanceCache();
+                }
+            };
+
+    private static final FileAnalysis<PsiElement, HalsteadCounts> HALSTEAD_COUNTS =
+            new FileAnalysis<PsiElement, HalsteadCounts>("halsteadCounts") {
+                @NotNull
+                @Override
+                public HalsteadCounts compute(@NotNull PsiElement element) {
+                    return HalsteadCounts.compute(element);
+                }
+            };
 
     protected Metric metric = null;
     protected MetricsResultsHolder resultsHolder = null;
@@ -57,8 +115,15 @@ public abstract class BaseMetricsCalculator implements MetricCalculator {
         this.metric = metric;
         this.resultsHolder = resultsHolder;
         this.executionContext = executionContext;
-        if (((BaseMetric)metric).requiresDependents() && getDependencyMap() == null) {
-            calculateDependencies();
+        if (((BaseMetric)metric).requiresDependents()) {
+            // build the dependency map up front, so it is not built by one of the worker threads of a parallel run
+            executionContext.getSharedAnalysis(DEPENDENCY_MAP);
+        }
+        if (((BaseMetric)metric).requiresCallGraph()) {
+            executionContext.getSharedAnalysis(CALL_GRAPH);
+        }
+        if (((BaseMetric)metric).requiresTypeHierarchy()) {
+            executionContext.getSharedAnalysis(TYPE_HIERARCHY);
         }
         visitor = createVisitor();
     }
@@ -68,62 +133,217 @@ public abstract class BaseMetricsCalculator implements MetricCalculator {
         ProgressManager.getInstance().runProcess(new Runnable() {
             @Override
             public void run() {
-                file.accept(visitor);
+                if (visitor instanceof TraversalVisitor) {
+                    new SharedTraversal(Collections.singletonList(visitor)).walk(file);
+                } else {
+                    file.accept(visitor);
+                }
             }
         }, new EmptyProgressIndicator());
     }
 
     protected abstract PsiElementVisitor createVisitor();
 
+    /**
+     * Returns the visitor of this calculator if it is a {@link TraversalVisitor}.  Recursive visitors walk
+     * the file themselves in {@link #processFile(PsiFile)}.
+     */
+    @Nullable
+    @Override
+    public PsiElementVisitor getTraversalVisitor() {
+        return visitor instanceof TraversalVisitor ? visitor : null;
+    }
+
     @Override
     public void endMetricsRun() {}
 
     public DependencyMap getDependencyMap() {
-        return executionContext.getUserData(dependencyMapKey);
+        return executionContext.getSharedAnalysis(DEPENDENCY_MAP);
     }
 
     public DependentsMap getDependentsMap() {
-        return executionContext.getUserData(dependencyMapKey);
+        return executionContext.getSharedAnalysis(DEPENDENCY_MAP);
+    }
+
+    /**
+     * The calls of all methods of the project, shared by all calculators of the run.
+     */
+    public CallGraph getCallGraph() {
+        return executionContext.getSharedAnalysis(CALL_GRAPH);
+    }
+
+    /**
+     * The inheritance relations of all classes and methods of the project, shared by all calculators of the run.
+     */
+    public TypeHierarchy getTypeHierarchy() {
+        return executionContext.getSharedAnalysis(TYPE_HIERARCHY);
+    }
+
+    /**
+     * Values computed from the supertypes of classes, memoized for all calculators of the run.
+     */
+    public InheritanceCache getInheritanceCache() {
+        return executionContext.getSharedAnalysis(INHERITANCE_CACHE);
+    }
+
+    /**
+     * The operator and operand counts of a class or method, memoized for all Halstead calculators of the file.
+     */
+    protected HalsteadCounts getHalsteadCounts(PsiElement element) {
+        return executionContext.getFileAnalysis(HALSTEAD_COUNTS, element);
+    }
+
+    private static DependencyMapImpl calculateDependencies(MetricsExecutionContext executionContext) {
+        final Project project = executionContext.getProject();
+        final List<VirtualFile> files = collectJavaFiles(executionContext.getScope());
+        final int numWorkers = Math.max(1, Math.min(executionContext.getParallelism(), files.size()));
+        final DependencyIndex dependencyIndex = DependencyIndex.load(project, files);
+
+        // every worker builds a map of its own, which are merged afterwards
+        final DependencyMapImpl[] dependencyMaps = new DependencyMapImpl[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            dependencyMaps[i] = new DependencyMapImpl();
+        }
+        processJavaFiles(project, files, numWorkers, new JavaFileProcessor() {
+            @Override
+            public void process(int worker, PsiJavaFile file, ProgressIndicator progressIndicator) {
+                progressIndicator.setText(StockMetricsBundle.message(
+                        "building.dependency.structure.progress.string", file.getName()));
+                dependencyIndex.build(dependencyMaps[worker], file);
+            }
+        });
+        final ProgressIndicator progressIndicator = ProgressManager.getInstance().getProgressIndicator();
+        final DependencyMapImpl dependencyMap = dependencyMaps[0];
+        for (int i = 1; i < numWorkers; i++) {
+            progressIndicator.checkCanceled();
+            dependencyMap.merge(dependencyMaps[i]);
+        }
+        dependencyIndex.save();
+        return dependencyMap;
     }
 
-    private void calculateDependencies() {
-        final DependencyMapImpl dependencyMap = new DependencyMapImpl();
-        final ProgressManager progressManager = ProgressManager.getInstance();
-        final ProgressIndicator progressIndicator = progressManager.getProgressIndicator();
+    /**
+     * Builds the call graph from all files of the project, and not only the files of the analysis scope, so calls
+     * from outside the scope are counted as well.
+     */
+    private static CallGraph calculateCallGraph(MetricsExecutionContext executionContext) {
+        final Project project = executionContext.getProject();
+        final List<VirtualFile> files = collectJavaFiles(new AnalysisScope(project));
+        final int numWorkers = Math.max(1, Math.min(executionContext.getParallelism(), files.size()));
+        final CallGraph[] callGraphs = new CallGraph[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            callGraphs[i] = new CallGraph();
+        }
+        processJavaFiles(project, files, numWorkers, new JavaFileProcessor() {
+            @Override
+            public void process(int worker, PsiJavaFile file, ProgressIndicator progressIndicator) {
+                progressIndicator.setText(StockMetricsBundle.message(
+                        "building.call.graph.progress.string", file.getName()));
+                callGraphs[worker].build(file);
+            }
+        });
+        final ProgressIndicator progressIndicator = ProgressManager.getInstance().getProgressIndicator();
+        final CallGraph callGraph = callGraphs[0];
+        for (int i = 1; i < numWorkers; i++) {
+            progressIndicator.checkCanceled();
+            callGraph.merge(callGraphs[i]);
+        }
+        return callGraph;
+    }
 
+    /**
+     * Builds the type hierarchy from all files of the project, so inheritors outside the analysis scope are counted
+     * as well.
+     */
+    private static TypeHierarchy calculateTypeHierarchy(MetricsExecutionContext executionContext) {
         final Project project = executionContext.getProject();
-        final AnalysisScope analysisScope = new AnalysisScope(project);
-        final int allFilesCount = analysisScope.getFileCount();
+        final List<VirtualFile> files = collectJavaFiles(new AnalysisScope(project));
+        final int numWorkers = Math.max(1, Math.min(executionContext.getParallelism(), files.size()));
+        final TypeHierarchy[] typeHierarchies = new TypeHierarchy[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            typeHierarchies[i] = new TypeHierarchy();
+        }
+        processJavaFiles(project, files, numWorkers, new JavaFileProcessor() {
+            @Override
+            public void process(int worker, PsiJavaFile file, ProgressIndicator progressIndicator) {
+                progressIndicator.setText(StockMetricsBundle.message(
+                        "building.type.hierarchy.progress.string", file.getName()));
+                typeHierarchies[worker].build(file);
+            }
+        });
+        final ProgressIndicator progressIndicator = ProgressManager.getInstance().getProgressIndicator();
+        final TypeHierarchy typeHierarchy = typeHierarchies[0];
+        for (int i = 1; i < numWorkers; i++) {
+            progressIndicator.checkCanceled();
+            typeHierarchy.merge(typeHierarchies[i]);
+        }
+        return typeHierarchy;
+    }
+
+    private interface JavaFileProcessor {
+        void process(int worker, PsiJavaFile file, ProgressIndicator progressIndicator);
+    }
+
+    /**
+     * Processes the Java files on the specified number of threads, in read actions.  Every worker has an index of
+     * its own, so workers can fill separate structures which are merged afterwards.
+     */
+    private static void processJavaFiles(Project project, final List<VirtualFile> files, int numWorkers,
+                                         final JavaFileProcessor processor) {
+        final ProgressIndicator progressIndicator = ProgressManager.getInstance().getProgressIndicator();
+        final int numFiles = files.size();
         final PsiManager psiManager = PsiManager.getInstance(project);
         final Application application = ApplicationManager.getApplication();
+        final AtomicInteger nextFile = new AtomicInteger(0);
+        final AtomicInteger filesProcessed = new AtomicInteger(0);
+        final List<Runnable> tasks = new ArrayList<Runnable>(numWorkers);
+        for (int i = 0; i < numWorkers; i++) {
+            final int worker = i;
+            tasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    while (true) {
+                        progressIndicator.checkCanceled();
+                        final int index = nextFile.getAndIncrement();
+                        if (index >= numFiles) {
+                            return;
+                        }
+                        final VirtualFile virtualFile = files.get(index);
+                        application.runReadAction(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (!virtualFile.isValid()) {
+                                    return;
+                                }
+                                final PsiFile file = psiManager.findFile(virtualFile);
+                                if (file instanceof PsiJavaFile) {
+                                    processor.process(worker, (PsiJavaFile) file, progressIndicator);
+                                }
+                            }
+                        });
+                        progressIndicator.setFraction((double) filesProcessed.incrementAndGet() / (double) numFiles);
+                    }
+                }
+            });
+        }
+        if (numWorkers == 1) {
+            tasks.get(0).run();
+        } else {
+            ParallelUtils.runInParallel(tasks, progressIndicator);
+        }
+    }
 
+    private static List<VirtualFile> collectJavaFiles(AnalysisScope analysisScope) {
+        final List<VirtualFile> files = new ArrayList<VirtualFile>();
         analysisScope.accept(new Processor<VirtualFile>() {
-
-            private int dependencyProgress = 0;
-
             @Override
             public boolean process(VirtualFile virtualFile) {
-                final String fileName = virtualFile.getName();
-                progressIndicator.setText(
-                        StockMetricsBundle.message("building.dependency.structure.progress.string", fileName));
-                progressIndicator.setFraction((double) dependencyProgress / (double) allFilesCount);
-                dependencyProgress++;
-                if (virtualFile.getFileType() != JavaFileType.INSTANCE) {
-                    return true;
-                }
-                final AccessToken token = application.acquireReadActionLock();
-                try {
-                    final PsiFile file = psiManager.findFile(virtualFile);
-                    if (!(file instanceof PsiJavaFile)) {
-                        return true;
-                    }
-                    dependencyMap.build(file);
-                } finally {
-                    token.finish();
+                if (virtualFile.getFileType() == JavaFileType.INSTANCE) {
+                    files.add(virtualFile);
                 }
                 return true;
             }
         });
-        executionContext.putUserData(dependencyMapKey, dependencyMap);
+        return files;
     }
 }
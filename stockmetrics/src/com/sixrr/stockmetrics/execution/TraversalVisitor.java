@@ -0,0 +1,32 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.sixrr.stockmetrics.execution;
+
+import com.intellij.psi.JavaElementVisitor;
+import com.intellij.psi.PsiElement;
+import com.sixrr.metrics.TraversalListener;
+
+/**
+ * Base class for calculator visitors which handle one element at a time and leave walking the file to the metrics
+ * run, so that a single walk of every file can be shared by many calculators.  Unlike a recursive visitor, an
+ * element is visited before its children, so results depending on the children should be posted from
+ * {@link #elementFinished(PsiElement)}.
+ */
+public abstract class TraversalVisitor extends JavaElementVisitor implements TraversalListener {
+
+    @Override
+    public void elementFinished(PsiElement element) {}
+}
@@ -18,6 +18,7 @@ package com.sixrr.stockmetrics.fileTypeMetrics;
 
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.psi.PsiElement;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.BucketedCount;
 import com.sixrr.metrics.utils.ClassUtils;
 import org.jetbrains.annotations.NotNull;
@@ -28,6 +29,12 @@ public abstract class ElementCountFileTypeCalculator extends FileTypeCalculator
 
     private final BucketedCount<FileType> elementCountsPerFileType = new BucketedCount<FileType>();
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final ElementCountFileTypeCalculator calculator = (ElementCountFileTypeCalculator) other;
+        elementCountsPerFileType.merge(calculator.elementCountsPerFileType);
+    }
+
     @Override
     public void endMetricsRun() {
         final Set<FileType> fileTypes = elementCountsPerFileType.getBuckets();
@@ -35,6 +42,7 @@ public abstract class ElementCountFileTypeCalculator extends FileTypeCalculator
             final int count = elementCountsPerFileType.getBucketValue(fileType);
             postMetric(fileType, count);
         }
+        elementCountsPerFileType.clear();
     }
 
     public void createCount(@NotNull PsiElement element) {
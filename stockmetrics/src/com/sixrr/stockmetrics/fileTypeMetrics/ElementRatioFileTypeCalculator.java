@@ -18,6 +18,7 @@ package com.sixrr.stockmetrics.fileTypeMetrics;
 
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.psi.PsiElement;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.BucketedCount;
 import com.sixrr.metrics.utils.ClassUtils;
 
@@ -31,6 +32,13 @@ public abstract class ElementRatioFileTypeCalculator extends FileTypeCalculator
     private final BucketedCount<FileType> numeratorPerModule = new BucketedCount<FileType>();
     private final BucketedCount<FileType> denominatorPerModule = new BucketedCount<FileType>();
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final ElementRatioFileTypeCalculator calculator = (ElementRatioFileTypeCalculator) other;
+        numeratorPerModule.merge(calculator.numeratorPerModule);
+        denominatorPerModule.merge(calculator.denominatorPerModule);
+    }
+
     @Override
     public void endMetricsRun() {
         final Set<FileType> fileTypes = numeratorPerModule.getBuckets();
@@ -17,6 +17,7 @@ package com.sixrr.stockmetrics.fileTypeMetrics;
 
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiFile;
+import com.sixrr.metrics.FileLocalMetricCalculator;
 import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.MetricType;
 import com.sixrr.stockmetrics.i18n.StockMetricsBundle;
@@ -52,7 +53,8 @@ public class LinesOfCodeFileTypeMetric extends FileTypeMetric {
         return new LinesOfCodeFileTypeCalculator();
     }
 
-    private static class LinesOfCodeFileTypeCalculator extends ElementCountFileTypeCalculator {
+    private static class LinesOfCodeFileTypeCalculator extends ElementCountFileTypeCalculator
+            implements FileLocalMetricCalculator {
 
         @Override
         protected PsiElementVisitor createVisitor() {
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.stockmetrics.halstead;
+
+import com.intellij.lang.ASTNode;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The operator and operand counts of a class or method, from which all Halstead metrics are calculated.  Computed
+ * in one walk of the element, so every Halstead metric of the same element can share it.
+ */
+public final class HalsteadCounts {
+
+    private final int numOperators;
+    private final int numOperands;
+    private final int numDistinctOperators;
+    private final int numDistinctOperands;
+
+    HalsteadCounts(int numOperators, int numOperands, int numDistinctOperators, int numDistinctOperands) {
+        this.numOperators = numOperators;
+        this.numOperands = numOperands;
+        this.numDistinctOperators = numDistinctOperators;
+        this.numDistinctOperands = numDistinctOperands;
+    }
+
+    @NotNull
+    public static HalsteadCounts compute(@NotNull PsiElement element) {
+        // the text of the PSI, which the text ranges of the operands refer to, instead of the text of the document
+        // or of the file on disk, which may be ahead of it
+        final PsiFile file = element.getContainingFile();
+        final ASTNode node = file.getNode();
+        final CharSequence fileText = node == null ? file.getText() : node.getChars();
+        final HalsteadVisitor visitor = new HalsteadVisitor(fileText);
+        element.accept(visitor);
+        return visitor.getCounts();
+    }
+
+    public int getNumOperators() {
+        return numOperators;
+    }
+
+    public int getNumOperands() {
+        return numOperands;
+    }
+
+    public int getNumDistinctOperators() {
+        return numDistinctOperators;
+    }
+
+    public int getNumDistinctOperands() {
+        return numDistinctOperands;
+    }
+
+    public int getLength() {
+        return numOperands + numOperators;
+    }
+
+    public int getVocabulary() {
+        return numDistinctOperands + numDistinctOperators;
+    }
+
+    public double getDifficulty() {
+        final int N2 = numOperands;
+        final int n1 = numDistinctOperators;
+        final int n2 = numDistinctOperands;
+        return n2 == 0 ? 0.0 : ((double) n1 / 2.0) * ((double) N2 / (double) n2);
+    }
+
+    public double getVolume() {
+        final double vocabulary = (double) getVocabulary();
+        return (double) getLength() * Math.log(vocabulary) / Math.log(2.0);
+    }
+
+    public double getEffort() {
+        return getDifficulty() * getVolume();
+    }
+
+    public double getBugs() {
+        final double effort = getEffort();
+        return Math.pow(effort, 2.0 / 3.0) / 3000.0;
+    }
+
+    public double getLevel() {
+        return (2.0 * (double) numDistinctOperands)
+                / ((double) numDistinctOperators * (double) numOperands);
+    }
+}
@@ -16,81 +16,49 @@
 
 package com.sixrr.stockmetrics.halstead;
 
+import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.*;
 import com.sixrr.metrics.utils.MethodUtils;
 import com.sixrr.stockmetrics.utils.ExpressionUtils;
+import gnu.trove.TIntHashSet;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
-public class HalsteadVisitor extends JavaRecursiveElementVisitor {
+/**
+ * Counts the operators and operands of an element.  Token operators are told apart by the index of their token type
+ * and operands by their text, which is compared in the text of the file instead of being copied.
+ */
+class HalsteadVisitor extends JavaRecursiveElementVisitor {
     private int numOperands = 0;
     private int numOperators = 0;
-    private final Set<String> operators = new HashSet<String>(32);
-    private final Set<String> operands = new HashSet<String>(32);
+    private final TIntHashSet tokenOperators = new TIntHashSet(32);
+    // the signature of a called method is calculated only the first time it is called
+    private final Set<PsiMethod> calledMethods = new HashSet<PsiMethod>(16);
+    private final Set<String> methodOperators = new HashSet<String>(16);
+    private final OperandSet operands;
     private boolean inCompileTimeConstant = false;
 
+    HalsteadVisitor(CharSequence fileText) {
+        operands = new OperandSet(fileText);
+    }
+
+    HalsteadCounts getCounts() {
+        return new HalsteadCounts(numOperators, numOperands, tokenOperators.size() + methodOperators.size(),
+                operands.size());
+    }
+
     @Override
     public void visitReferenceExpression(PsiReferenceExpression expression) {
         super.visitReferenceExpression(expression);
 
         final PsiElement element = expression.resolve();
         if (element != null && element instanceof PsiVariable) {
-            final String expressionText = expression.getText();
-            registerOperand(expressionText);
+            registerOperand(expression);
         }
     }
 
-    public int getNumOperators() {
-        return numOperators;
-    }
-
-    public int getNumOperands() {
-        return numOperands;
-    }
-
-    public int getNumDistinctOperands() {
-        return operands.size();
-    }
-
-    public int getNumDistinctOperators() {
-        return operators.size();
-    }
-
-    public int getLength() {
-        return numOperands + numOperators;
-    }
-
-    public int getVocabulary() {
-        return operands.size() + operators.size();
-    }
-
-    public double getDifficulty() {
-        final int N2 = numOperands;
-        final int n1 = getNumDistinctOperators();
-        final int n2 = getNumDistinctOperands();
-        return n2 == 0 ? 0.0 : ((double) n1 / 2.0) * ((double) N2 / (double) n2);
-    }
-
-    public double getVolume() {
-        final double vocabulary = (double) getVocabulary();
-        return (double) getLength() * Math.log(vocabulary) / Math.log(2.0);
-    }
-
-    public double getEffort() {
-        return getDifficulty() * getVolume();
-    }
-
-    public double getBugs() {
-        final double effort = getEffort();
-        return Math.pow(effort, 2.0 / 3.0) / 3000.0;
-    }
-
-    public double getLevel() {
-        return (2.0 * (double) getNumDistinctOperands())
-                / ((double) getNumDistinctOperators() * (double) getNumOperands());
-    }
-
     @Override
     public void visitLiteralExpression(PsiLiteralExpression expression) {
         if (inCompileTimeConstant) {
@@ -100,8 +68,7 @@ public class HalsteadVisitor extends JavaRecursiveElementVisitor {
             inCompileTimeConstant = true;
         }
         super.visitLiteralExpression(expression);
-        final String text = expression.getText();
-        registerOperand(text);
+        registerOperand(expression);
         inCompileTimeConstant = false;
     }
 
@@ -112,8 +79,7 @@ public class HalsteadVisitor extends JavaRecursiveElementVisitor {
         }
         if (ExpressionUtils.isEvaluatedAtCompileTime(expression)) {
             inCompileTimeConstant = true;
-            final String text = expression.getText();
-            registerOperand(text);
+            registerOperand(expression);
         }
         super.visitBinaryExpression(expression);
         final PsiJavaToken sign = expression.getOperationSign();
@@ -128,8 +94,7 @@ public class HalsteadVisitor extends JavaRecursiveElementVisitor {
         }
         if (ExpressionUtils.isEvaluatedAtCompileTime(expression)) {
             inCompileTimeConstant = true;
-            final String text = expression.getText();
-            registerOperand(text);
+            registerOperand(expression);
         }
         super.visitPrefixExpression(expression);
         final PsiJavaToken sign = expression.getOperationSign();
@@ -145,8 +110,7 @@ public class HalsteadVisitor extends JavaRecursiveElementVisitor {
         }
         if (ExpressionUtils.isEvaluatedAtCompileTime(expression)) {
             inCompileTimeConstant = true;
-            final String text = expression.getText();
-            registerOperand(text);
+            registerOperand(expression);
         }
         super.visitPostfixExpression(expression);
         final PsiJavaToken sign = expression.getOperationSign();
@@ -165,23 +129,103 @@ public class HalsteadVisitor extends JavaRecursiveElementVisitor {
         super.visitMethodCallExpression(callExpression);
         final PsiMethod method = callExpression.resolveMethod();
         if (method != null) {
-            final String signature = MethodUtils.calculateSignature(method);
-            registerOperator(signature);
+            numOperators++;
+            if (calledMethods.add(method)) {
+                methodOperators.add(MethodUtils.calculateSignature(method));
+            }
         }
     }
 
     private void registerSign(PsiJavaToken sign) {
-        final String text = sign.getText();
-        registerOperator(text);
-    }
-
-    private void registerOperator(String operator) {
+        // every operator and keyword has a token type of its own, so equal types mean equal text
         numOperators++;
-        operators.add(operator);
+        tokenOperators.add(sign.getTokenType().getIndex());
     }
 
-    private void registerOperand(String operand) {
+    private void registerOperand(PsiElement operand) {
         numOperands++;
-        operands.add(operand);
+        final TextRange range = operand.getTextRange();
+        operands.add(range.getStartOffset(), range.getLength());
+    }
+
+    /**
+     * A set of ranges of the file text, two of which are equal when their text is.
+     */
+    private static final class OperandSet {
+
+        private final CharSequence text;
+        private int[] starts = new int[16];
+        private int[] lengths = new int[16];
+        private int[] hashes = new int[16];
+        private int size = 0;
+        // open addressing table of indices into the arrays above plus one, zero for a free slot
+        private int[] slots = new int[32];
+
+        OperandSet(CharSequence text) {
+            this.text = text;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void add(int start, int length) {
+            final int hash = hash(start, length);
+            final int mask = slots.length - 1;
+            int slot = hash & mask;
+            while (slots[slot] != 0) {
+                final int index = slots[slot] - 1;
+                if (hashes[index] == hash && lengths[index] == length && regionMatches(starts[index], start, length)) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size << 1);
+                lengths = Arrays.copyOf(lengths, size << 1);
+                hashes = Arrays.copyOf(hashes, size << 1);
+            }
+            starts[size] = start;
+            lengths[size] = length;
+            hashes[size] = hash;
+            size++;
+            slots[slot] = size;
+            if (size << 1 > slots.length) {
+                rehash();
+            }
+        }
+
+        private void rehash() {
+            slots = new int[slots.length << 1];
+            final int mask = slots.length - 1;
+            for (int index = 0; index < size; index++) {
+                int slot = hashes[index] & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = index + 1;
+            }
+        }
+
+        private int hash(int start, int length) {
+            int hash = 0;
+            for (int i = start, end = start + length; i < end; i++) {
+                hash = 31 * hash + text.charAt(i);
+            }
+            // spread the high bits, as the slot is taken from the low bits
+            return hash ^ (hash >>> 16);
+        }
+
+        private boolean regionMatches(int start1, int start2, int length) {
+            if (start1 == start2) {
+                return true;
+            }
+            for (int i = 0; i < length; i++) {
+                if (text.charAt(start1 + i) != text.charAt(start2 + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 }
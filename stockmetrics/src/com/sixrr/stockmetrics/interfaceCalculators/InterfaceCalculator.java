@@ -17,10 +17,18 @@
 package com.sixrr.stockmetrics.interfaceCalculators;
 
 import com.intellij.psi.PsiClass;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.stockmetrics.execution.BaseMetricsCalculator;
 
 public abstract class InterfaceCalculator extends BaseMetricsCalculator {
 
+    /**
+     * Does nothing, as interface calculators post the value of every interface while visiting it.  Calculators which
+     * accumulate results over multiple files and post them in {@link #endMetricsRun()} must override this method.
+     */
+    @Override
+    public void merge(MetricCalculator other) {}
+
     void postMetric(PsiClass aClass, int value) {
         resultsHolder.postInterfaceMetric(metric, aClass, (double) value);
     }
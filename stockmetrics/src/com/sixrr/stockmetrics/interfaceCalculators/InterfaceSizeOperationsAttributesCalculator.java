@@ -17,6 +17,7 @@
 package com.sixrr.stockmetrics.interfaceCalculators;
 
 import com.intellij.psi.*;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public class InterfaceSizeOperationsAttributesCalculator extends InterfaceCalculator {
     @Override
@@ -24,7 +25,7 @@ public class InterfaceSizeOperationsAttributesCalculator extends InterfaceCalcul
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitClass(PsiClass aClass) {
@@ -16,10 +16,10 @@
 
 package com.sixrr.stockmetrics.interfaceCalculators;
 
-import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiMethod;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public class InterfaceSizeOperationsCalculator extends InterfaceCalculator {
 
@@ -28,7 +28,7 @@ public class InterfaceSizeOperationsCalculator extends InterfaceCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitClass(PsiClass aClass) {
@@ -19,8 +19,6 @@ package com.sixrr.stockmetrics.interfaceCalculators;
 import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
-import com.intellij.psi.search.searches.ClassInheritorsSearch;
-import com.intellij.util.Query;
 
 public class NumImplementationsCalculator extends InterfaceCalculator {
 
@@ -37,14 +35,7 @@ public class NumImplementationsCalculator extends InterfaceCalculator {
             if (!isInterface(aClass)) {
                 return;
             }
-            final Query<PsiClass> query = ClassInheritorsSearch.search(aClass);
-            int numImplementations = 0;
-            for (final PsiClass inheritor : query) {
-                if (!inheritor.isInterface()) {
-                    numImplementations++;
-                }
-            }
-            postMetric(aClass, numImplementations);
+            postMetric(aClass, getTypeHierarchy().getNumClassInheritors(aClass));
         }
     }
 }
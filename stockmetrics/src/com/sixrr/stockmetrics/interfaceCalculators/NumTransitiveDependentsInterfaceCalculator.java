@@ -16,12 +16,10 @@
 
 package com.sixrr.stockmetrics.interfaceCalculators;
 
-import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
 import com.sixrr.stockmetrics.dependency.DependentsMap;
-
-import java.util.Set;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public class NumTransitiveDependentsInterfaceCalculator extends InterfaceCalculator {
     @Override
@@ -29,15 +27,14 @@ public class NumTransitiveDependentsInterfaceCalculator extends InterfaceCalcula
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitClass(PsiClass aClass) {
             super.visitClass(aClass);
             if (isInterface(aClass)) {
                 final DependentsMap dependentsMap = getDependentsMap();
-                final Set<PsiClass> dependents = dependentsMap.calculateTransitiveDependents(aClass);
-                final int numDependents = dependents.size() - 1;
+                final int numDependents = dependentsMap.countTransitiveDependents(aClass) - 1;
                 postMetric(aClass, numDependents);
             }
         }
@@ -17,6 +17,7 @@
 package com.sixrr.stockmetrics.methodCalculators;
 
 import com.intellij.psi.*;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 import com.sixrr.stockmetrics.utils.LineUtil;
 
 public class BlankLinesCountMethodCalculator extends MethodCalculator {
@@ -26,7 +27,7 @@ public class BlankLinesCountMethodCalculator extends MethodCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
         @Override
         public void visitMethod(PsiMethod method) {
             super.visitMethod(method);
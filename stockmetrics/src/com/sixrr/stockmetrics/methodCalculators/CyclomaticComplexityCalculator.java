@@ -17,8 +17,9 @@
 package com.sixrr.stockmetrics.methodCalculators;
 
 import com.intellij.psi.PsiElement;
+import com.sixrr.metrics.FileLocalMetricCalculator;
 
-public class CyclomaticComplexityCalculator extends ComplexityCalculator {
+public class CyclomaticComplexityCalculator extends ComplexityCalculator implements FileLocalMetricCalculator {
 
     @Override
     public boolean isReducible(PsiElement element) {
@@ -16,12 +16,12 @@
 
 package com.sixrr.stockmetrics.methodCalculators;
 
-import com.sixrr.stockmetrics.halstead.HalsteadVisitor;
+import com.sixrr.stockmetrics.halstead.HalsteadCounts;
 
 public class DistinctOperandsCountCalculator extends HalsteadMethodCalculator {
 
     @Override
-    protected double getValue(HalsteadVisitor visitor) {
-        return (double) visitor.getNumDistinctOperands();
+    protected double getValue(HalsteadCounts counts) {
+        return (double) counts.getNumDistinctOperands();
     }
 }
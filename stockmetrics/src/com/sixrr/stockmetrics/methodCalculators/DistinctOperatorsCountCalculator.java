@@ -16,12 +16,12 @@
 
 package com.sixrr.stockmetrics.methodCalculators;
 
-import com.sixrr.stockmetrics.halstead.HalsteadVisitor;
+import com.sixrr.stockmetrics.halstead.HalsteadCounts;
 
 public class DistinctOperatorsCountCalculator extends HalsteadMethodCalculator {
 
     @Override
-    protected double getValue(HalsteadVisitor visitor) {
-        return (double) visitor.getNumDistinctOperators();
+    protected double getValue(HalsteadCounts counts) {
+        return (double) counts.getNumDistinctOperators();
     }
 }
\ No newline at end of file
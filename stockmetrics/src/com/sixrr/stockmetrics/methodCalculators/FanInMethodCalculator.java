@@ -16,14 +16,12 @@
 
 package com.sixrr.stockmetrics.methodCalculators;
 
-import com.intellij.psi.*;
-import com.intellij.psi.search.searches.ReferencesSearch;
-import com.intellij.util.Query;
+import com.intellij.psi.JavaRecursiveElementVisitor;
+import com.intellij.psi.PsiElementVisitor;
+import com.intellij.psi.PsiMethod;
 
 public class FanInMethodCalculator extends MethodCalculator {
-    private PsiMethod currentMethod;
     private int methodNestingDepth = 0;
-    private int result = 0;
 
     @Override
     protected PsiElementVisitor createVisitor() {
@@ -34,33 +32,11 @@ public class FanInMethodCalculator extends MethodCalculator {
         @Override
         public void visitMethod(PsiMethod method) {
             if (methodNestingDepth == 0) {
-                result = 0;
-                currentMethod = method;
-                final Query<PsiReference> references = ReferencesSearch.search(method);
-                for (final PsiReference reference : references) {
-                    final PsiElement element = reference.getElement();
-                    if (element != null && element.getParent() instanceof PsiCallExpression) {
-                        result++;
-                    }
-                }
+                postMetric(method, getCallGraph().getFanIn(method));
             }
-
             methodNestingDepth++;
             super.visitMethod(method);
             methodNestingDepth--;
-
-            if (methodNestingDepth == 0) {
-                postMetric(method, result);
-            }
-        }
-
-        @Override
-        public void visitMethodCallExpression(PsiMethodCallExpression expression) {
-            final PsiMethod method = expression.resolveMethod();
-            if (currentMethod != null && currentMethod.equals(method)) {
-                result--;
-            }
-            super.visitMethodCallExpression(expression);
         }
     }
 }
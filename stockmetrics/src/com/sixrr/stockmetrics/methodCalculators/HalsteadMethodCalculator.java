@@ -19,10 +19,11 @@ package com.sixrr.stockmetrics.methodCalculators;
 import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiMethod;
-import com.sixrr.stockmetrics.halstead.HalsteadVisitor;
+import com.sixrr.metrics.FileLocalMetricCalculator;
+import com.sixrr.stockmetrics.halstead.HalsteadCounts;
 import com.sixrr.metrics.utils.MethodUtils;
 
-public abstract class HalsteadMethodCalculator extends MethodCalculator {
+public abstract class HalsteadMethodCalculator extends MethodCalculator implements FileLocalMetricCalculator {
     private int methodNestingDepth = 0;
 
     @Override
@@ -35,9 +36,7 @@ public abstract class HalsteadMethodCalculator extends MethodCalculator {
         @Override
         public void visitMethod(PsiMethod method) {
             if (methodNestingDepth == 0 && !MethodUtils.isAbstract(method)) {
-                final HalsteadVisitor visitor = new HalsteadVisitor();
-                method.accept(visitor);
-                final double value = getValue(visitor);
+                final double value = getValue(getHalsteadCounts(method));
                 postMetric(method, value);
             }
             methodNestingDepth++;
@@ -46,5 +45,5 @@ public abstract class HalsteadMethodCalculator extends MethodCalculator {
         }
     }
 
-    protected abstract double getValue(HalsteadVisitor visitor);
+    protected abstract double getValue(HalsteadCounts counts);
 }
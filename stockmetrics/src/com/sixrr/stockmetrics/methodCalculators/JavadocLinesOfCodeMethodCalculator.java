@@ -16,10 +16,11 @@
 
 package com.sixrr.stockmetrics.methodCalculators;
 
-import com.intellij.psi.JavaRecursiveElementVisitor;
+import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiMethod;
 import com.intellij.psi.javadoc.PsiDocComment;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 import com.sixrr.stockmetrics.utils.LineUtil;
 import com.sixrr.metrics.utils.MethodUtils;
 
@@ -32,7 +33,7 @@ public class JavadocLinesOfCodeMethodCalculator extends MethodCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitMethod(PsiMethod method) {
@@ -40,7 +41,14 @@ public class JavadocLinesOfCodeMethodCalculator extends MethodCalculator {
                 elementCount = 0;
             }
             methodNestingDepth++;
-            super.visitMethod(method);
+        }
+
+        @Override
+        public void elementFinished(PsiElement element) {
+            if (!(element instanceof PsiMethod)) {
+                return;
+            }
+            final PsiMethod method = (PsiMethod) element;
             methodNestingDepth--;
             if (methodNestingDepth == 0 && !MethodUtils.isAbstract(method)) {
                 postMetric(method, elementCount);
@@ -17,9 +17,18 @@
 package com.sixrr.stockmetrics.methodCalculators;
 
 import com.intellij.psi.PsiMethod;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.stockmetrics.execution.BaseMetricsCalculator;
 
 public abstract class MethodCalculator extends BaseMetricsCalculator {
+
+    /**
+     * Does nothing, as method calculators post the value of every method while visiting it.  Calculators which
+     * accumulate results over multiple files and post them in {@link #endMetricsRun()} must override this method.
+     */
+    @Override
+    public void merge(MetricCalculator other) {}
+
     void postMetric(PsiMethod method, int numerator, int denominator) {
         resultsHolder.postMethodMetric(metric, method, (double) numerator, (double) denominator);
     }
@@ -17,9 +17,10 @@
 package com.sixrr.stockmetrics.methodCalculators;
 
 import com.intellij.psi.*;
+import com.sixrr.metrics.FileLocalMetricCalculator;
 import com.sixrr.metrics.utils.MethodUtils;
 
-public class NestingDepthCalculator extends MethodCalculator {
+public class NestingDepthCalculator extends MethodCalculator implements FileLocalMetricCalculator {
 
     private int methodNestingCount = 0;
     private int maximumDepth = 0;
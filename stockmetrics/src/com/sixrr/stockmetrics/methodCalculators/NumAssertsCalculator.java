@@ -16,11 +16,12 @@
 
 package com.sixrr.stockmetrics.methodCalculators;
 
-import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiAssertStatement;
+import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiMethod;
 import com.sixrr.metrics.utils.MethodUtils;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public class NumAssertsCalculator extends MethodCalculator {
     private int methodNestingDepth = 0;
@@ -31,14 +32,21 @@ public class NumAssertsCalculator extends MethodCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
         @Override
         public void visitMethod(PsiMethod method) {
             if (methodNestingDepth == 0) {
                 elementCount = 0;
             }
             methodNestingDepth++;
-            super.visitMethod(method);
+        }
+
+        @Override
+        public void elementFinished(PsiElement element) {
+            if (!(element instanceof PsiMethod)) {
+                return;
+            }
+            final PsiMethod method = (PsiMethod) element;
             methodNestingDepth--;
             if (methodNestingDepth == 0 && !MethodUtils.isAbstract(method)) {
                 postMetric(method, elementCount);
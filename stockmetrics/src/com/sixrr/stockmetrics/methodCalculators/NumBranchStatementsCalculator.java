@@ -18,6 +18,7 @@ package com.sixrr.stockmetrics.methodCalculators;
 
 import com.intellij.psi.*;
 import com.sixrr.metrics.utils.MethodUtils;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public class NumBranchStatementsCalculator extends MethodCalculator {
     private int methodNestingDepth = 0;
@@ -28,7 +29,7 @@ public class NumBranchStatementsCalculator extends MethodCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitMethod(PsiMethod method) {
@@ -36,7 +37,14 @@ public class NumBranchStatementsCalculator extends MethodCalculator {
                 elementCount = 0;
             }
             methodNestingDepth++;
-            super.visitMethod(method);
+        }
+
+        @Override
+        public void elementFinished(PsiElement element) {
+            if (!(element instanceof PsiMethod)) {
+                return;
+            }
+            final PsiMethod method = (PsiMethod) element;
             methodNestingDepth--;
             if (methodNestingDepth == 0 && !MethodUtils.isAbstract(method)) {
                 postMetric(method, elementCount);
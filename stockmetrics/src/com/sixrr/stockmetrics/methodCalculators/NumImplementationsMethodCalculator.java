@@ -19,8 +19,6 @@ package com.sixrr.stockmetrics.methodCalculators;
 import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiMethod;
-import com.intellij.psi.search.searches.OverridingMethodsSearch;
-import com.intellij.util.Query;
 import com.sixrr.metrics.utils.MethodUtils;
 
 public class NumImplementationsMethodCalculator extends MethodCalculator {
@@ -39,15 +37,7 @@ public class NumImplementationsMethodCalculator extends MethodCalculator {
                 return;
             }
 
-            int numImplementations = 0;
-            final Query<PsiMethod> query = OverridingMethodsSearch.search(method);
-            for (final PsiMethod overridingMethod : query) {
-                if (!MethodUtils.isAbstract(overridingMethod)) {
-                    numImplementations++;
-                }
-            }
-
-            postMetric(method, numImplementations);
+            postMetric(method, getTypeHierarchy().getNumImplementingMethods(method));
         }
     }
 }
@@ -17,8 +17,6 @@
 package com.sixrr.stockmetrics.methodCalculators;
 
 import com.intellij.psi.*;
-import com.intellij.psi.search.searches.OverridingMethodsSearch;
-import com.intellij.util.Query;
 import com.sixrr.metrics.utils.MethodUtils;
 
 public class NumOverridesMethodCalculator extends MethodCalculator {
@@ -57,8 +55,7 @@ public class NumOverridesMethodCalculator extends MethodCalculator {
                     containingClass.hasModifierProperty(PsiModifier.FINAL)) {
                 return -1;
             }
-            final Query<PsiMethod> query = OverridingMethodsSearch.search(method);
-            return query.findAll().size();
+            return getTypeHierarchy().getNumOverridingMethods(method);
         }
     }
 }
@@ -16,15 +16,9 @@
 
 package com.sixrr.stockmetrics.methodCalculators;
 
-import com.intellij.openapi.util.Key;
 import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiMethod;
-import com.intellij.psi.PsiReference;
-import com.sixrr.stockmetrics.utils.MethodCallMap;
-import com.sixrr.stockmetrics.utils.MethodCallMapImpl;
-
-import java.util.Set;
 
 public class NumTimesCalledCalculator extends MethodCalculator {
     private int methodNestingDepth = 0;
@@ -39,17 +33,7 @@ public class NumTimesCalledCalculator extends MethodCalculator {
         @Override
         public void visitMethod(PsiMethod method) {
             if (methodNestingDepth == 0) {
-                final Key<MethodCallMap> key = new Key<MethodCallMap>("MethodCallMap");
-
-                MethodCallMap methodCallMap = executionContext.getUserData(key);
-                if(methodCallMap == null)
-                {
-                    methodCallMap = new MethodCallMapImpl();
-                    executionContext.putUserData(key, methodCallMap);
-                }
-                final Set<PsiReference> methodCalls = methodCallMap.calculateMethodCallPoints(method);
-                final int calls = methodCalls.size();
-                postMetric(method, calls);
+                postMetric(method, getCallGraph().getNumCalls(method));
             }
             methodNestingDepth++;
             super.visitMethod(method);
@@ -17,7 +17,7 @@
 package com.sixrr.stockmetrics.methodCalculators;
 
 import com.intellij.psi.*;
-import com.sixrr.stockmetrics.halstead.HalsteadVisitor;
+import com.sixrr.stockmetrics.halstead.HalsteadCounts;
 import com.sixrr.metrics.utils.MethodUtils;
 
 public class QCPCorrectnessCalculator extends MethodCalculator {
@@ -44,9 +44,8 @@ public class QCPCorrectnessCalculator extends MethodCalculator {
             super.visitMethod(method);
             methodNestingDepth--;
             if (methodNestingDepth == 0 && !MethodUtils.isAbstract(method)) {
-                final HalsteadVisitor visitor = new HalsteadVisitor();
-                method.accept(visitor);
-                final double D = visitor.getDifficulty();
+                final HalsteadCounts counts = getHalsteadCounts(method);
+                final double D = counts.getDifficulty();
                 final double value = D + (double) numControlStatements + (double) numExecutableStatements +
                         (double) (2 * complexity);
                 postMetric(method, value);
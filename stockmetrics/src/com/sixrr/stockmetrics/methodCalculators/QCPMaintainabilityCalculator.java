@@ -17,7 +17,7 @@
 package com.sixrr.stockmetrics.methodCalculators;
 
 import com.intellij.psi.*;
-import com.sixrr.stockmetrics.halstead.HalsteadVisitor;
+import com.sixrr.stockmetrics.halstead.HalsteadCounts;
 import com.sixrr.metrics.utils.MethodUtils;
 
 public class QCPMaintainabilityCalculator extends MethodCalculator {
@@ -50,9 +50,8 @@ public class QCPMaintainabilityCalculator extends MethodCalculator {
             super.visitMethod(method);
             methodNestingDepth--;
             if (methodNestingDepth == 0 && !MethodUtils.isAbstract(method)) {
-                final HalsteadVisitor visitor = new HalsteadVisitor();
-                method.accept(visitor);
-                final int N = visitor.getLength();
+                final HalsteadCounts counts = getHalsteadCounts(method);
+                final int N = counts.getLength();
                 final double value = (double) ((3 * N) + numExecutableStatements + numControlStatements +
                         maxNestingDepth + (2 * complexity) + numBranchStatements);
                 postMetric(method, value);
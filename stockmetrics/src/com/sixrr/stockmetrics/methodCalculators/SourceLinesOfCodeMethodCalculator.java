@@ -20,9 +20,10 @@ import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiComment;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiMethod;
+import com.sixrr.metrics.FileLocalMetricCalculator;
 import com.sixrr.stockmetrics.utils.LineUtil;
 
-public class SourceLinesOfCodeMethodCalculator extends MethodCalculator {
+public class SourceLinesOfCodeMethodCalculator extends MethodCalculator implements FileLocalMetricCalculator {
     private int methodNestingDepth = 0;
     private int commentLines = 0;
 
@@ -42,6 +42,11 @@ public class FanInMethodMetric extends MethodMetric {
         return MetricType.Count;
     }
 
+    @Override
+    public boolean requiresCallGraph() {
+        return true;
+    }
+
     @NotNull
     @Override
     public MetricCalculator createCalculator() {
@@ -42,6 +42,11 @@ public class NumImplementationsMethodMetric extends MethodMetric {
         return MetricType.Score;
     }
 
+    @Override
+    public boolean requiresTypeHierarchy() {
+        return true;
+    }
+
     @NotNull
     @Override
     public MetricCalculator createCalculator() {
@@ -42,6 +42,11 @@ public class NumTimesCalledProductMetric extends MethodMetric {
         return MetricType.Score;
     }
 
+    @Override
+    public boolean requiresCallGraph() {
+        return true;
+    }
+
     @NotNull
     @Override
     public MetricCalculator createCalculator() {
@@ -70,4 +70,12 @@ public abstract class BaseMetric implements Metric {
     public boolean requiresDependents() {
         return false;
     }
+
+    public boolean requiresCallGraph() {
+        return false;
+    }
+
+    public boolean requiresTypeHierarchy() {
+        return false;
+    }
 }
@@ -20,6 +20,8 @@ import com.intellij.openapi.module.Module;
 import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiMethod;
+import com.sixrr.metrics.FileLocalMetricCalculator;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.BucketedCount;
 import com.sixrr.metrics.utils.ClassUtils;
 import com.sixrr.metrics.utils.MethodUtils;
@@ -27,11 +29,19 @@ import com.sixrr.stockmetrics.utils.CyclomaticComplexityUtil;
 
 import java.util.Set;
 
-public class AverageCyclomaticComplexityModuleCalculator extends ModuleCalculator {
+public class AverageCyclomaticComplexityModuleCalculator extends ModuleCalculator
+        implements FileLocalMetricCalculator {
 
     private final BucketedCount<Module> totalComplexityPerModule = new BucketedCount<Module>();
     private final BucketedCount<Module> numMethodsPerModule = new BucketedCount<Module>();
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final AverageCyclomaticComplexityModuleCalculator calculator = (AverageCyclomaticComplexityModuleCalculator) other;
+        totalComplexityPerModule.merge(calculator.totalComplexityPerModule);
+        numMethodsPerModule.merge(calculator.numMethodsPerModule);
+    }
+
     @Override
     public void endMetricsRun() {
         final Set<Module> modules = numMethodsPerModule.getBuckets();
@@ -41,6 +51,8 @@ public class AverageCyclomaticComplexityModuleCalculator extends ModuleCalculato
 
             postMetric(module, totalComplexity, numMethods);
         }
+        totalComplexityPerModule.clear();
+        numMethodsPerModule.clear();
     }
 
     @Override
@@ -17,6 +17,7 @@
 package com.sixrr.stockmetrics.moduleCalculators;
 
 import com.intellij.psi.*;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public abstract class ClassCountingModuleCalculator extends ElementCountModuleCalculator {
 
@@ -27,7 +28,7 @@ public abstract class ClassCountingModuleCalculator extends ElementCountModuleCa
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitClass(PsiClass aClass) {
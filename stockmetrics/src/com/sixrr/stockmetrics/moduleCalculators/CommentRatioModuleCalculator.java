@@ -16,6 +16,7 @@
 package com.sixrr.stockmetrics.moduleCalculators;
 
 import com.intellij.psi.*;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 import com.sixrr.stockmetrics.utils.LineUtil;
 
 public class CommentRatioModuleCalculator extends ElementRatioModuleCalculator {
@@ -25,7 +26,7 @@ public class CommentRatioModuleCalculator extends ElementRatioModuleCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends PsiRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitFile(PsiFile file) {
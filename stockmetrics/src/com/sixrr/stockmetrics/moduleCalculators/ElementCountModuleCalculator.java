@@ -18,6 +18,7 @@ package com.sixrr.stockmetrics.moduleCalculators;
 
 import com.intellij.openapi.module.Module;
 import com.intellij.psi.PsiElement;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.BucketedCount;
 import com.sixrr.metrics.utils.ClassUtils;
 
@@ -27,6 +28,12 @@ public abstract class ElementCountModuleCalculator extends ModuleCalculator {
 
     private final BucketedCount<Module> elementCountPerModule = new BucketedCount<Module>();
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final ElementCountModuleCalculator calculator = (ElementCountModuleCalculator) other;
+        elementCountPerModule.merge(calculator.elementCountPerModule);
+    }
+
     @Override
     public final void endMetricsRun() {
         final Set<Module> modules = elementCountPerModule.getBuckets();
@@ -34,6 +41,7 @@ public abstract class ElementCountModuleCalculator extends ModuleCalculator {
             final int count = elementCountPerModule.getBucketValue(module);
             postMetric(module, count);
         }
+        elementCountPerModule.clear();
     }
 
     protected void createCount(PsiElement element) {
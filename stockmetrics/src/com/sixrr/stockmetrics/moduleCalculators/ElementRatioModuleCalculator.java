@@ -18,6 +18,7 @@ package com.sixrr.stockmetrics.moduleCalculators;
 
 import com.intellij.openapi.module.Module;
 import com.intellij.psi.PsiElement;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.BucketedCount;
 import com.sixrr.metrics.utils.ClassUtils;
 
@@ -28,6 +29,13 @@ public abstract class ElementRatioModuleCalculator extends ModuleCalculator {
     private final BucketedCount<Module> numeratorPerModule = new BucketedCount<Module>();
     private final BucketedCount<Module> denominatorPerModule = new BucketedCount<Module>();
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final ElementRatioModuleCalculator calculator = (ElementRatioModuleCalculator) other;
+        numeratorPerModule.merge(calculator.numeratorPerModule);
+        denominatorPerModule.merge(calculator.denominatorPerModule);
+    }
+
     @Override
     public void endMetricsRun() {
         final Set<Module> modules = numeratorPerModule.getBuckets();
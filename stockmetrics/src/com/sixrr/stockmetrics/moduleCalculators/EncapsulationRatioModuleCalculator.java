@@ -16,7 +16,6 @@
 
 package com.sixrr.stockmetrics.moduleCalculators;
 
-import com.intellij.openapi.util.Key;
 import com.intellij.psi.*;
 import com.sixrr.metrics.utils.ClassUtils;
 import com.sixrr.metrics.utils.TestUtils;
@@ -44,13 +43,8 @@ public class EncapsulationRatioModuleCalculator extends ElementRatioModuleCalcul
 
         private boolean isInternal(PsiClass aClass) {
             final String moduleName = ClassUtils.calculateModuleName(aClass);
-            final Key<ClassReferenceCache> key = new Key<ClassReferenceCache>("ClassReferenceCache");
-
-            ClassReferenceCache classReferenceCache = executionContext.getUserData(key);
-            if (classReferenceCache == null) {
-                classReferenceCache = new ClassReferenceCache();
-                executionContext.putUserData(key, classReferenceCache);
-            }
+            final ClassReferenceCache classReferenceCache =
+                    executionContext.getSharedAnalysis(ClassReferenceCache.ANALYSIS);
             for (final PsiReference reference : classReferenceCache.findClassReferences(aClass)) {
                 final PsiElement element = reference.getElement();
                 final PsiFile containingFile = element.getContainingFile();
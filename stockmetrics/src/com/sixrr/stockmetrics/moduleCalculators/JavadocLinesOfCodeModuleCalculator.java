@@ -16,10 +16,10 @@
 
 package com.sixrr.stockmetrics.moduleCalculators;
 
-import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiJavaFile;
 import com.intellij.psi.javadoc.PsiDocComment;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 import com.sixrr.stockmetrics.utils.LineUtil;
 
 public class JavadocLinesOfCodeModuleCalculator extends ElementCountModuleCalculator {
@@ -29,7 +29,7 @@ public class JavadocLinesOfCodeModuleCalculator extends ElementCountModuleCalcul
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitJavaFile(PsiJavaFile file) {
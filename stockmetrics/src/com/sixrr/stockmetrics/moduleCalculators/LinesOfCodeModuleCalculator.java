@@ -19,10 +19,11 @@ package com.sixrr.stockmetrics.moduleCalculators;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiFile;
-import com.intellij.psi.PsiRecursiveElementVisitor;
+import com.sixrr.metrics.FileLocalMetricCalculator;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 import com.sixrr.stockmetrics.utils.LineUtil;
 
-public class LinesOfCodeModuleCalculator extends ElementCountModuleCalculator {
+public class LinesOfCodeModuleCalculator extends ElementCountModuleCalculator implements FileLocalMetricCalculator {
 
     private final FileType fileType;
 
@@ -35,7 +36,7 @@ public class LinesOfCodeModuleCalculator extends ElementCountModuleCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends PsiRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitFile(PsiFile file) {
@@ -18,8 +18,8 @@ package com.sixrr.stockmetrics.moduleCalculators;
 
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiFile;
-import com.intellij.psi.PsiRecursiveElementVisitor;
 import com.sixrr.metrics.utils.TestUtils;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 import com.sixrr.stockmetrics.utils.LineUtil;
 
 public class LinesOfTestCodeModuleCalculator extends ElementCountModuleCalculator {
@@ -29,7 +29,7 @@ public class LinesOfTestCodeModuleCalculator extends ElementCountModuleCalculato
         return new Visitor();
     }
 
-    private class Visitor extends PsiRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitFile(PsiFile file) {
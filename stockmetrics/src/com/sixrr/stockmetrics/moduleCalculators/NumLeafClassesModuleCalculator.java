@@ -17,11 +17,10 @@
 package com.sixrr.stockmetrics.moduleCalculators;
 
 import com.intellij.psi.PsiClass;
-import com.sixrr.metrics.utils.ClassUtils;
 
 public class NumLeafClassesModuleCalculator extends ClassCountingModuleCalculator {
     @Override
     public boolean satisfies(PsiClass aClass) {
-        return ClassUtils.isLeaf(aClass);
+        return getTypeHierarchy().isLeaf(aClass);
     }
 }
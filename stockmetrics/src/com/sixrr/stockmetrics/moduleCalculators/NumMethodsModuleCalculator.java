@@ -16,10 +16,10 @@
 
 package com.sixrr.stockmetrics.moduleCalculators;
 
-import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiJavaFile;
 import com.intellij.psi.PsiMethod;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public class NumMethodsModuleCalculator extends ElementCountModuleCalculator {
 
@@ -28,7 +28,7 @@ public class NumMethodsModuleCalculator extends ElementCountModuleCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitMethod(PsiMethod method) {
@@ -16,11 +16,11 @@
 
 package com.sixrr.stockmetrics.moduleCalculators;
 
-import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiMethod;
 import com.sixrr.metrics.utils.JavaTestUtils;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public class NumTestMethodsModuleCalculator extends ElementCountModuleCalculator {
 
@@ -29,7 +29,7 @@ public class NumTestMethodsModuleCalculator extends ElementCountModuleCalculator
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitMethod(PsiMethod method) {
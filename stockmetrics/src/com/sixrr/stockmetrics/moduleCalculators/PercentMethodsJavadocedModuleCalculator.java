@@ -18,6 +18,7 @@ package com.sixrr.stockmetrics.moduleCalculators;
 
 import com.intellij.psi.*;
 import com.sixrr.metrics.utils.ClassUtils;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public class PercentMethodsJavadocedModuleCalculator extends ElementRatioModuleCalculator {
 
@@ -26,7 +27,7 @@ public class PercentMethodsJavadocedModuleCalculator extends ElementRatioModuleC
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitMethod(PsiMethod method) {
@@ -18,9 +18,11 @@ package com.sixrr.stockmetrics.moduleCalculators;
 
 import com.intellij.openapi.fileTypes.PlainTextFileType;
 import com.intellij.psi.*;
+import com.sixrr.metrics.FileLocalMetricCalculator;
 import com.sixrr.stockmetrics.utils.LineUtil;
 
-public class SourceLinesOfCodeModuleCalculator extends ElementCountModuleCalculator {
+public class SourceLinesOfCodeModuleCalculator extends ElementCountModuleCalculator
+        implements FileLocalMetricCalculator {
 
     @Override
     protected PsiElementVisitor createVisitor() {
@@ -18,7 +18,7 @@ package com.sixrr.stockmetrics.moduleCalculators;
 
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiFile;
-import com.intellij.psi.PsiRecursiveElementVisitor;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 import com.sixrr.stockmetrics.utils.TodoUtil;
 
 public class TodoCommentCountModuleCalculator extends ElementCountModuleCalculator {
@@ -28,7 +28,7 @@ public class TodoCommentCountModuleCalculator extends ElementCountModuleCalculat
         return new Visitor();
     }
 
-    private class Visitor extends PsiRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitFile(PsiFile file) {
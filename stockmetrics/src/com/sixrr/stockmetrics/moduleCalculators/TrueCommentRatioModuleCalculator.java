@@ -17,6 +17,7 @@
 package com.sixrr.stockmetrics.moduleCalculators;
 
 import com.intellij.psi.*;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 import com.sixrr.stockmetrics.utils.LineUtil;
 
 public class TrueCommentRatioModuleCalculator extends ElementRatioModuleCalculator {
@@ -26,7 +27,7 @@ public class TrueCommentRatioModuleCalculator extends ElementRatioModuleCalculat
         return new Visitor();
     }
 
-    private class Visitor extends PsiRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitFile(PsiFile file) {
@@ -42,6 +42,11 @@ public class NumLeafClassesModuleMetric extends ModuleMetric {
         return MetricType.Count;
     }
 
+    @Override
+    public boolean requiresTypeHierarchy() {
+        return true;
+    }
+
     @NotNull
     @Override
     public MetricCalculator createCalculator() {
@@ -17,8 +17,10 @@
 package com.sixrr.stockmetrics.packageCalculators;
 
 import com.intellij.psi.*;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.BucketedCount;
 import com.sixrr.metrics.utils.ClassUtils;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 import java.util.Set;
 
@@ -27,6 +29,13 @@ public class AbstractnessCalculator extends PackageCalculator {
     private final BucketedCount<PsiPackage> numAbstractClassesPerPackage = new BucketedCount<PsiPackage>();
     private final BucketedCount<PsiPackage> numClassesPerPackage = new BucketedCount<PsiPackage>();
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final AbstractnessCalculator calculator = (AbstractnessCalculator) other;
+        numAbstractClassesPerPackage.merge(calculator.numAbstractClassesPerPackage);
+        numClassesPerPackage.merge(calculator.numClassesPerPackage);
+    }
+
     @Override
     public void endMetricsRun() {
         final Set<PsiPackage> packages = numClassesPerPackage.getBuckets();
@@ -43,7 +52,7 @@ public class AbstractnessCalculator extends PackageCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
         
         @Override
         public void visitClass(PsiClass aClass) {
@@ -20,6 +20,7 @@ import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiJavaFile;
 import com.intellij.psi.PsiPackage;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.ClassUtils;
 import com.sixrr.stockmetrics.dependency.DependencyMap;
 
@@ -29,6 +30,12 @@ import java.util.Set;
 public class AdjustedLevelOrderPackageCalculator extends PackageCalculator {
     private final Set<PsiPackage> packages = new HashSet<PsiPackage>();
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final AdjustedLevelOrderPackageCalculator calculator = (AdjustedLevelOrderPackageCalculator) other;
+        packages.addAll(calculator.packages);
+    }
+
     @Override
     public void endMetricsRun() {
         for (final PsiPackage packageName : packages) {
@@ -16,13 +16,14 @@
 
 package com.sixrr.stockmetrics.packageCalculators;
 
-import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiPackage;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.BucketedCount;
 import com.sixrr.metrics.utils.ClassUtils;
 import com.sixrr.stockmetrics.dependency.DependentsMap;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 import java.util.Set;
 
@@ -30,6 +31,12 @@ public class AfferentCouplingCalculator extends PackageCalculator {
 
     private final BucketedCount<PsiPackage> numExternalDependentsPerPackage = new BucketedCount<PsiPackage>();
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final AfferentCouplingCalculator calculator = (AfferentCouplingCalculator) other;
+        numExternalDependentsPerPackage.merge(calculator.numExternalDependentsPerPackage);
+    }
+
     @Override
     public void endMetricsRun() {
         final Set<PsiPackage> packages = numExternalDependentsPerPackage.getBuckets();
@@ -44,7 +51,7 @@ public class AfferentCouplingCalculator extends PackageCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitClass(PsiClass aClass) {
@@ -20,6 +20,8 @@ import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiMethod;
 import com.intellij.psi.PsiPackage;
+import com.sixrr.metrics.FileLocalMetricCalculator;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.BucketedCount;
 import com.sixrr.metrics.utils.ClassUtils;
 import com.sixrr.metrics.utils.MethodUtils;
@@ -27,11 +29,19 @@ import com.sixrr.stockmetrics.utils.CyclomaticComplexityUtil;
 
 import java.util.Set;
 
-public class AverageCyclomaticComplexityPackageCalculator extends PackageCalculator {
+public class AverageCyclomaticComplexityPackageCalculator extends PackageCalculator
+        implements FileLocalMetricCalculator {
 
     private final BucketedCount<PsiPackage> totalComplexityPerPackage = new BucketedCount<PsiPackage>();
     private final BucketedCount<PsiPackage> numMethodsPerPackage = new BucketedCount<PsiPackage>();
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final AverageCyclomaticComplexityPackageCalculator calculator = (AverageCyclomaticComplexityPackageCalculator) other;
+        totalComplexityPerPackage.merge(calculator.totalComplexityPerPackage);
+        numMethodsPerPackage.merge(calculator.numMethodsPerPackage);
+    }
+
     @Override
     public void endMetricsRun() {
         final Set<PsiPackage> packages = numMethodsPerPackage.getBuckets();
@@ -41,6 +51,8 @@ public class AverageCyclomaticComplexityPackageCalculator extends PackageCalcula
 
             postMetric(aPackage, numAbstractClasses, numClasses);
         }
+        totalComplexityPerPackage.clear();
+        numMethodsPerPackage.clear();
     }
 
     @Override
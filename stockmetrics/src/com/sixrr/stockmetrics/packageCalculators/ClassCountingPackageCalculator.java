@@ -17,6 +17,7 @@
 package com.sixrr.stockmetrics.packageCalculators;
 
 import com.intellij.psi.*;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public abstract class ClassCountingPackageCalculator extends ElementCountPackageCalculator {
 
@@ -25,7 +26,7 @@ public abstract class ClassCountingPackageCalculator extends ElementCountPackage
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitClass(PsiClass aClass) {
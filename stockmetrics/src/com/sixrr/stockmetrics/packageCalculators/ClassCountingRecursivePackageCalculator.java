@@ -17,6 +17,7 @@
 package com.sixrr.stockmetrics.packageCalculators;
 
 import com.intellij.psi.*;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public abstract class ClassCountingRecursivePackageCalculator extends ElementCountPackageCalculator {
 
@@ -27,7 +28,7 @@ public abstract class ClassCountingRecursivePackageCalculator extends ElementCou
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitClass(PsiClass aClass) {
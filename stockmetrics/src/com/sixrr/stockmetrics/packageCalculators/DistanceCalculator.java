@@ -17,10 +17,12 @@
 package com.sixrr.stockmetrics.packageCalculators;
 
 import com.intellij.psi.*;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.BucketedCount;
 import com.sixrr.metrics.utils.ClassUtils;
 import com.sixrr.stockmetrics.dependency.DependencyMap;
 import com.sixrr.stockmetrics.dependency.DependentsMap;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 import java.util.Set;
 
@@ -31,6 +33,15 @@ public class DistanceCalculator extends PackageCalculator {
     private final BucketedCount<PsiPackage> numExternalDependentsPerPackage = new BucketedCount<PsiPackage>();
     private final BucketedCount<PsiPackage> numExternalDependenciesPerPackage = new BucketedCount<PsiPackage>();
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final DistanceCalculator calculator = (DistanceCalculator) other;
+        numClassesPerPackage.merge(calculator.numClassesPerPackage);
+        numAbstractClassesPerPackage.merge(calculator.numAbstractClassesPerPackage);
+        numExternalDependentsPerPackage.merge(calculator.numExternalDependentsPerPackage);
+        numExternalDependenciesPerPackage.merge(calculator.numExternalDependenciesPerPackage);
+    }
+
     @Override
     public void endMetricsRun() {
         final Set<PsiPackage> packages = numExternalDependentsPerPackage.getBuckets();
@@ -59,7 +70,7 @@ public class DistanceCalculator extends PackageCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitClass(PsiClass aClass) {
@@ -18,6 +18,7 @@ package com.sixrr.stockmetrics.packageCalculators;
 
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiPackage;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.BucketedCount;
 import com.sixrr.metrics.utils.ClassUtils;
 
@@ -30,6 +31,12 @@ public abstract class ElementCountPackageCalculator extends PackageCalculator {
 
     private final BucketedCount<PsiPackage> elementCountPerPackage = new BucketedCount<PsiPackage>();
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final ElementCountPackageCalculator calculator = (ElementCountPackageCalculator) other;
+        elementCountPerPackage.merge(calculator.elementCountPerPackage);
+    }
+
     @Override
     public final void endMetricsRun() {
         final Set<PsiPackage> packages = elementCountPerPackage.getBuckets();
@@ -37,6 +44,7 @@ public abstract class ElementCountPackageCalculator extends PackageCalculator {
             final int count = elementCountPerPackage.getBucketValue(aPackage);
             postMetric(aPackage, count);
         }
+        elementCountPerPackage.clear();
     }
 
     protected void createCount(PsiElement element) {
@@ -16,9 +16,9 @@
 
 package com.sixrr.stockmetrics.packageCalculators;
 
-import com.intellij.openapi.util.Key;
 import com.intellij.psi.*;
 import com.intellij.psi.util.PsiTreeUtil;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.BucketedCount;
 import com.sixrr.metrics.utils.ClassUtils;
 import com.sixrr.metrics.utils.TestUtils;
@@ -31,6 +31,13 @@ public class EncapsulationRatioPackageCalculator extends PackageCalculator {
     private final BucketedCount<PsiPackage> numClassesPerPackage = new BucketedCount<PsiPackage>();
     private final BucketedCount<PsiPackage> numInternalClassesPerPackage = new BucketedCount<PsiPackage>();
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final EncapsulationRatioPackageCalculator calculator = (EncapsulationRatioPackageCalculator) other;
+        numClassesPerPackage.merge(calculator.numClassesPerPackage);
+        numInternalClassesPerPackage.merge(calculator.numInternalClassesPerPackage);
+    }
+
     @Override
     public void endMetricsRun() {
         final Set<PsiPackage> packages = numClassesPerPackage.getBuckets();
@@ -69,13 +76,8 @@ public class EncapsulationRatioPackageCalculator extends PackageCalculator {
                 return true;
             }
             final String packageName = ClassUtils.calculatePackageName(aClass);
-            final Key<ClassReferenceCache> key = new Key<ClassReferenceCache>("ClassReferenceCache");
-
-            ClassReferenceCache classReferenceCache = executionContext.getUserData(key);
-            if (classReferenceCache == null) {
-                classReferenceCache = new ClassReferenceCache();
-                executionContext.putUserData(key, classReferenceCache);
-            }
+            final ClassReferenceCache classReferenceCache =
+                    executionContext.getSharedAnalysis(ClassReferenceCache.ANALYSIS);
             for (final PsiReference reference : classReferenceCache.findClassReferences(aClass)) {
                 final PsiElement element = reference.getElement();
                 final PsiClass referencingClass = PsiTreeUtil.getParentOfType(element, PsiClass.class);
@@ -18,17 +18,18 @@ package com.sixrr.stockmetrics.packageCalculators;
 
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiFile;
-import com.intellij.psi.PsiRecursiveElementVisitor;
+import com.sixrr.metrics.FileLocalMetricCalculator;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 import com.sixrr.stockmetrics.utils.LineUtil;
 
-public class LinesOfCodePackageCalculator extends ElementCountPackageCalculator {
+public class LinesOfCodePackageCalculator extends ElementCountPackageCalculator implements FileLocalMetricCalculator {
 
     @Override
     protected PsiElementVisitor createVisitor() {
         return new Visitor();
     }
 
-    private class Visitor extends PsiRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitFile(PsiFile file) {
@@ -18,7 +18,7 @@ package com.sixrr.stockmetrics.packageCalculators;
 
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiFile;
-import com.intellij.psi.PsiRecursiveElementVisitor;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 import com.sixrr.stockmetrics.utils.LineUtil;
 
 public class LinesOfCodeRecursivePackageCalculator extends ElementCountPackageCalculator {
@@ -28,7 +28,7 @@ public class LinesOfCodeRecursivePackageCalculator extends ElementCountPackageCa
         return new Visitor();
     }
 
-    private class Visitor extends PsiRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitFile(PsiFile file) {
@@ -20,6 +20,7 @@ import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiPackage;
 import com.intellij.psi.PsiRecursiveElementVisitor;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.ClassUtils;
 import com.sixrr.stockmetrics.dependency.DependencyMap;
 
@@ -29,6 +30,12 @@ import java.util.Set;
 public class NumDependencyPackagesPackageCalculator extends PackageCalculator {
     private final Set<PsiPackage> packages = new HashSet<PsiPackage>();
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final NumDependencyPackagesPackageCalculator calculator = (NumDependencyPackagesPackageCalculator) other;
+        packages.addAll(calculator.packages);
+    }
+
     @Override
     public void endMetricsRun() {
         for (PsiPackage aPackage : packages) {
@@ -17,6 +17,7 @@
 package com.sixrr.stockmetrics.packageCalculators;
 
 import com.intellij.psi.*;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 /**
  * @author Bas Leijdekkers
@@ -28,7 +29,7 @@ public class NumLambdasPackageCalculator extends ElementCountPackageCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitJavaFile(PsiJavaFile file) {
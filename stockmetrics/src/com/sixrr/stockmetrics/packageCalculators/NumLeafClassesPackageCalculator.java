@@ -17,12 +17,11 @@
 package com.sixrr.stockmetrics.packageCalculators;
 
 import com.intellij.psi.PsiClass;
-import com.sixrr.metrics.utils.ClassUtils;
 
 public class NumLeafClassesPackageCalculator extends ClassCountingPackageCalculator {
 
     @Override
     public boolean satisfies(PsiClass aClass) {
-        return ClassUtils.isLeaf(aClass);
+        return getTypeHierarchy().isLeaf(aClass);
     }
 }
@@ -17,13 +17,12 @@
 package com.sixrr.stockmetrics.packageCalculators;
 
 import com.intellij.psi.PsiClass;
-import com.sixrr.metrics.utils.ClassUtils;
 
 public class NumLeafClassesRecursivePackageCalculator
         extends ClassCountingRecursivePackageCalculator {
 
     @Override
     public boolean satisfies(PsiClass aClass) {
-        return ClassUtils.isLeaf(aClass);
+        return getTypeHierarchy().isLeaf(aClass);
     }
 }
\ No newline at end of file
@@ -16,11 +16,11 @@
 
 package com.sixrr.stockmetrics.packageCalculators;
 
-import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiJavaFile;
 import com.intellij.psi.PsiMethod;
 import com.sixrr.metrics.utils.JavaTestUtils;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public class NumTestMethodsPackageCalculator extends ElementCountPackageCalculator {
 
@@ -29,7 +29,7 @@ public class NumTestMethodsPackageCalculator extends ElementCountPackageCalculat
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitJavaFile(PsiJavaFile file) {
@@ -20,6 +20,7 @@ import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiJavaFile;
 import com.intellij.psi.PsiPackage;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.ClassUtils;
 import com.sixrr.stockmetrics.dependency.DependencyMap;
 
@@ -29,12 +30,17 @@ import java.util.Set;
 public class NumTransitiveDependencyPackagesPackageCalculator extends PackageCalculator {
     private final Set<PsiPackage> packages = new HashSet<PsiPackage>();
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final NumTransitiveDependencyPackagesPackageCalculator calculator = (NumTransitiveDependencyPackagesPackageCalculator) other;
+        packages.addAll(calculator.packages);
+    }
+
     @Override
     public void endMetricsRun() {
         for (final PsiPackage aPackage : packages) {
             final DependencyMap dependencyMap = getDependencyMap();
-            final Set<PsiPackage> dependentPackages = dependencyMap.calculateTransitivePackageDependencies(aPackage);
-            final int numDependencies = dependentPackages.size();
+            final int numDependencies = dependencyMap.countTransitivePackageDependencies(aPackage);
             postMetric(aPackage, numDependencies);
         }
     }
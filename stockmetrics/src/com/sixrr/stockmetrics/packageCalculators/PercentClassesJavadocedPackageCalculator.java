@@ -16,12 +16,13 @@
 
 package com.sixrr.stockmetrics.packageCalculators;
 
-import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiPackage;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.BucketedCount;
 import com.sixrr.metrics.utils.ClassUtils;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 import java.util.Set;
 
@@ -30,6 +31,13 @@ public class PercentClassesJavadocedPackageCalculator extends PackageCalculator
     private final BucketedCount<PsiPackage> numJavadocedClassesPerPackage = new BucketedCount<PsiPackage>();
     private final BucketedCount<PsiPackage> numClassesPerPackage = new BucketedCount<PsiPackage>();
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final PercentClassesJavadocedPackageCalculator calculator = (PercentClassesJavadocedPackageCalculator) other;
+        numJavadocedClassesPerPackage.merge(calculator.numJavadocedClassesPerPackage);
+        numClassesPerPackage.merge(calculator.numClassesPerPackage);
+    }
+
     @Override
     public void endMetricsRun() {
         final Set<PsiPackage> packages = numClassesPerPackage.getBuckets();
@@ -45,7 +53,7 @@ public class PercentClassesJavadocedPackageCalculator extends PackageCalculator
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
         
         @Override
         public void visitClass(PsiClass aClass) {
@@ -17,8 +17,10 @@
 package com.sixrr.stockmetrics.packageCalculators;
 
 import com.intellij.psi.*;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.BucketedCount;
 import com.sixrr.metrics.utils.ClassUtils;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 import java.util.Set;
 
@@ -27,6 +29,13 @@ public class PercentFieldsJavadocedRecursivePackageCalculator extends PackageCal
     private final BucketedCount<PsiPackage> numJavadocedFieldsPerPackage = new BucketedCount<PsiPackage>();
     private final BucketedCount<PsiPackage> numFieldsPerPackage = new BucketedCount<PsiPackage>();
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final PercentFieldsJavadocedRecursivePackageCalculator calculator = (PercentFieldsJavadocedRecursivePackageCalculator) other;
+        numJavadocedFieldsPerPackage.merge(calculator.numJavadocedFieldsPerPackage);
+        numFieldsPerPackage.merge(calculator.numFieldsPerPackage);
+    }
+
     @Override
     public void endMetricsRun() {
         final Set<PsiPackage> packages = numFieldsPerPackage.getBuckets();
@@ -43,7 +52,7 @@ public class PercentFieldsJavadocedRecursivePackageCalculator extends PackageCal
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitField(PsiField field) {
@@ -21,9 +21,11 @@ import com.intellij.psi.PsiComment;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiRecursiveElementVisitor;
+import com.sixrr.metrics.FileLocalMetricCalculator;
 import com.sixrr.stockmetrics.utils.LineUtil;
 
-public class SourceLinesOfCodePackageCalculator extends ElementCountPackageCalculator {
+public class SourceLinesOfCodePackageCalculator extends ElementCountPackageCalculator
+        implements FileLocalMetricCalculator {
 
     @Override
     protected PsiElementVisitor createVisitor() {
@@ -19,10 +19,11 @@ package com.sixrr.stockmetrics.packageCalculators;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiPackage;
-import com.intellij.psi.PsiRecursiveElementVisitor;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.BucketedCount;
 import com.sixrr.metrics.utils.ClassUtils;
 import com.sixrr.metrics.utils.TestUtils;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 import com.sixrr.stockmetrics.utils.LineUtil;
 
 import java.util.Set;
@@ -32,6 +33,13 @@ public class TestRatioPackageCalculator extends PackageCalculator {
     private final BucketedCount<PsiPackage> numLinesPerPackage = new BucketedCount<PsiPackage>();
     private final BucketedCount<PsiPackage> numTestLinesPerPackage = new BucketedCount<PsiPackage>();
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final TestRatioPackageCalculator calculator = (TestRatioPackageCalculator) other;
+        numLinesPerPackage.merge(calculator.numLinesPerPackage);
+        numTestLinesPerPackage.merge(calculator.numTestLinesPerPackage);
+    }
+
     @Override
     public void endMetricsRun() {
         final Set<PsiPackage> packages = numLinesPerPackage.getBuckets();
@@ -47,7 +55,7 @@ public class TestRatioPackageCalculator extends PackageCalculator {
         return new Visitor();
     }
 
-    private class Visitor extends PsiRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
         
         @Override
         public void visitFile(PsiFile file) {
@@ -19,10 +19,12 @@ package com.sixrr.stockmetrics.packageCalculators;
 import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiMethod;
+import com.sixrr.metrics.FileLocalMetricCalculator;
 import com.sixrr.metrics.utils.MethodUtils;
 import com.sixrr.stockmetrics.utils.CyclomaticComplexityUtil;
 
-public class TotalCyclomaticComplexityPackageCalculator extends ElementCountPackageCalculator {
+public class TotalCyclomaticComplexityPackageCalculator extends ElementCountPackageCalculator
+        implements FileLocalMetricCalculator {
 
     @Override
     protected PsiElementVisitor createVisitor() {
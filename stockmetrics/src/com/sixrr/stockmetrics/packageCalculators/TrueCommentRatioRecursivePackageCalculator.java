@@ -17,8 +17,10 @@
 package com.sixrr.stockmetrics.packageCalculators;
 
 import com.intellij.psi.*;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.BucketedCount;
 import com.sixrr.metrics.utils.ClassUtils;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 import com.sixrr.stockmetrics.utils.LineUtil;
 
 import java.util.Set;
@@ -28,6 +30,13 @@ public class TrueCommentRatioRecursivePackageCalculator extends PackageCalculato
     private final BucketedCount<PsiPackage> numLinesPerPackage = new BucketedCount<PsiPackage>();
     private final BucketedCount<PsiPackage> numCommentLinesPerPackage = new BucketedCount<PsiPackage>();
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final TrueCommentRatioRecursivePackageCalculator calculator = (TrueCommentRatioRecursivePackageCalculator) other;
+        numLinesPerPackage.merge(calculator.numLinesPerPackage);
+        numCommentLinesPerPackage.merge(calculator.numCommentLinesPerPackage);
+    }
+
     @Override
     public void endMetricsRun() {
         final Set<PsiPackage> packages = numLinesPerPackage.getBuckets();
@@ -43,7 +52,7 @@ public class TrueCommentRatioRecursivePackageCalculator extends PackageCalculato
         return new Visitor();
     }
 
-    private class Visitor extends PsiRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitFile(PsiFile file) {
@@ -42,6 +42,11 @@ public class NumLeafClassesRecursivePackageMetric extends PackageMetric {
         return MetricType.RecursiveCount;
     }
 
+    @Override
+    public boolean requiresTypeHierarchy() {
+        return true;
+    }
+
     @NotNull
     @Override
     public MetricCalculator createCalculator() {
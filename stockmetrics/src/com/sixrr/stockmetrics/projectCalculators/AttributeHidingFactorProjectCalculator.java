@@ -1,16 +1,10 @@
 package com.sixrr.stockmetrics.projectCalculators;
 
-import com.intellij.openapi.progress.ProgressManager;
-import com.intellij.openapi.project.Project;
 import com.intellij.psi.*;
-import com.intellij.psi.search.GlobalSearchScope;
-import com.intellij.psi.search.searches.ClassInheritorsSearch;
-import com.intellij.util.Query;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.Bag;
 import com.sixrr.metrics.utils.ClassUtils;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Set;
 
 public class AttributeHidingFactorProjectCalculator extends ProjectCalculator {
@@ -20,7 +14,6 @@ public class AttributeHidingFactorProjectCalculator extends ProjectCalculator {
     private int totalVisibility = 0;
     private Bag<String> classesPerPackage = new Bag<String>();
     private Bag<String> packageVisibleAttributesPerPackage = new Bag<String>();
-    private Map<PsiClass, Integer> subclassesPerClass = new HashMap<PsiClass, Integer>();
 
     @Override
     protected PsiElementVisitor createVisitor() {
@@ -47,7 +40,7 @@ public class AttributeHidingFactorProjectCalculator extends ProjectCalculator {
                 //dodn't do anythng
             } else if (field.hasModifierProperty(PsiModifier.PROTECTED) ||
                     containingClass.hasModifierProperty(PsiModifier.PROTECTED)) {
-                totalVisibility += getSubclassCount(containingClass);
+                totalVisibility += getTypeHierarchy().getNumClassInheritors(containingClass);
             } else if ((field.hasModifierProperty(PsiModifier.PUBLIC) || containingClass.isInterface()) &&
                     containingClass.hasModifierProperty(PsiModifier.PUBLIC)) {
                 numPublicAttributes++;
@@ -58,29 +51,15 @@ public class AttributeHidingFactorProjectCalculator extends ProjectCalculator {
         }
     }
 
-    private int getSubclassCount(final PsiClass aClass) {
-        if (subclassesPerClass.containsKey(aClass)) {
-            return subclassesPerClass.get(aClass);
-        }
-        final int[] numSubclasses = new int[1];
-        final Runnable runnable = new Runnable() {
-            @Override
-            public void run() {
-                final Project project = executionContext.getProject();
-                final GlobalSearchScope globalScope = GlobalSearchScope.allScope(project);
-                final Query<PsiClass> query = ClassInheritorsSearch.search(
-                        aClass, globalScope, true, true, true);
-                for (final PsiClass inheritor : query) {
-                    if (!inheritor.isInterface()) {
-                        numSubclasses[0]++;
-                    }
-                }
-            }
-        };
-        final ProgressManager progressManager = ProgressManager.getInstance();
-        progressManager.runProcess(runnable, null);
-        subclassesPerClass.put(aClass, numSubclasses[0]);
-        return numSubclasses[0];
+    @Override
+    public void merge(MetricCalculator other) {
+        final AttributeHidingFactorProjectCalculator calculator = (AttributeHidingFactorProjectCalculator) other;
+        numAttributes += calculator.numAttributes;
+        numPublicAttributes += calculator.numPublicAttributes;
+        numClasses += calculator.numClasses;
+        totalVisibility += calculator.totalVisibility;
+        classesPerPackage.merge(calculator.classesPerPackage);
+        packageVisibleAttributesPerPackage.merge(calculator.packageVisibleAttributesPerPackage);
     }
 
     @Override
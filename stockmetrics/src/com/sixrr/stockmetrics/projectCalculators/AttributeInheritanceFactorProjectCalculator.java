@@ -17,6 +17,7 @@
 package com.sixrr.stockmetrics.projectCalculators;
 
 import com.intellij.psi.*;
+import com.sixrr.metrics.MetricCalculator;
 
 public class AttributeInheritanceFactorProjectCalculator extends ProjectCalculator {
     private int availableFields = 0;
@@ -50,6 +51,13 @@ public class AttributeInheritanceFactorProjectCalculator extends ProjectCalculat
         }
     }
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final AttributeInheritanceFactorProjectCalculator calculator = (AttributeInheritanceFactorProjectCalculator) other;
+        availableFields += calculator.availableFields;
+        inheritedFields += calculator.inheritedFields;
+    }
+
     @Override
     public void endMetricsRun() {
         postMetric(inheritedFields, availableFields);
@@ -19,17 +19,29 @@ package com.sixrr.stockmetrics.projectCalculators;
 import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiMethod;
+import com.sixrr.metrics.FileLocalMetricCalculator;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.MethodUtils;
 import com.sixrr.stockmetrics.utils.CyclomaticComplexityUtil;
 
-public class AverageCyclomaticComplexityProjectCalculator extends ProjectCalculator {
+public class AverageCyclomaticComplexityProjectCalculator extends ProjectCalculator
+        implements FileLocalMetricCalculator {
 
     private int totalComplexity = 0;
     private int numMethods = 0;
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final AverageCyclomaticComplexityProjectCalculator calculator = (AverageCyclomaticComplexityProjectCalculator) other;
+        totalComplexity += calculator.totalComplexity;
+        numMethods += calculator.numMethods;
+    }
+
     @Override
     public void endMetricsRun() {
         postMetric(totalComplexity, numMethods);
+        totalComplexity = 0;
+        numMethods = 0;
     }
 
     @Override
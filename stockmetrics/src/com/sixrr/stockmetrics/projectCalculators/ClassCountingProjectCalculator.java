@@ -17,6 +17,7 @@
 package com.sixrr.stockmetrics.projectCalculators;
 
 import com.intellij.psi.*;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public abstract class ClassCountingProjectCalculator extends ElementCountProjectCalculator {
 
@@ -25,7 +26,7 @@ public abstract class ClassCountingProjectCalculator extends ElementCountProject
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitClass(PsiClass aClass) {
@@ -19,7 +19,7 @@ package com.sixrr.stockmetrics.projectCalculators;
 import com.intellij.psi.PsiComment;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiElementVisitor;
-import com.intellij.psi.PsiRecursiveElementVisitor;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 import com.sixrr.stockmetrics.utils.LineUtil;
 
 public class CommentLinesOfCodeProjectCalculator extends ElementCountProjectCalculator {
@@ -29,7 +29,7 @@ public class CommentLinesOfCodeProjectCalculator extends ElementCountProjectCalc
         return new Visitor();
     }
 
-    private class Visitor extends PsiRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitElement(PsiElement element) {
@@ -17,6 +17,7 @@
 package com.sixrr.stockmetrics.projectCalculators;
 
 import com.intellij.psi.*;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 import com.sixrr.stockmetrics.utils.LineUtil;
 
 public class CommentRatioProjectCalculator extends ElementRatioProjectCalculator {
@@ -26,7 +27,7 @@ public class CommentRatioProjectCalculator extends ElementRatioProjectCalculator
         return new Visitor();
     }
 
-    private class Visitor extends PsiRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitFile(PsiFile file) {
@@ -19,6 +19,7 @@ package com.sixrr.stockmetrics.projectCalculators;
 import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.stockmetrics.dependency.DependencyMap;
 
 import java.util.Set;
@@ -43,6 +44,13 @@ public class CouplingFactorProjectCalculator extends ProjectCalculator {
         }
     }
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final CouplingFactorProjectCalculator calculator = (CouplingFactorProjectCalculator) other;
+        totalCoupling += calculator.totalCoupling;
+        numClasses += calculator.numClasses;
+    }
+
     @Override
     public void endMetricsRun() {
         final int denominator = (numClasses * (numClasses - 1)) / 2;
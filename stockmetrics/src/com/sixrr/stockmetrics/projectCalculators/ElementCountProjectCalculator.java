@@ -16,13 +16,22 @@
 
 package com.sixrr.stockmetrics.projectCalculators;
 
+import com.sixrr.metrics.MetricCalculator;
+
 public abstract class ElementCountProjectCalculator extends ProjectCalculator {
 
     private int numElements = 0;
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final ElementCountProjectCalculator calculator = (ElementCountProjectCalculator) other;
+        numElements += calculator.numElements;
+    }
+
     @Override
     public final void endMetricsRun() {
         postMetric(numElements);
+        numElements = 0;
     }
 
     protected void incrementCount(int count) {
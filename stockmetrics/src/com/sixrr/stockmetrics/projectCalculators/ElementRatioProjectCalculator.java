@@ -16,11 +16,20 @@
 
 package com.sixrr.stockmetrics.projectCalculators;
 
+import com.sixrr.metrics.MetricCalculator;
+
 public abstract class ElementRatioProjectCalculator extends ProjectCalculator {
 
     protected int denominator = 0;
     protected int numerator = 0;
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final ElementRatioProjectCalculator calculator = (ElementRatioProjectCalculator) other;
+        denominator += calculator.denominator;
+        numerator += calculator.numerator;
+    }
+
     @Override
     public void endMetricsRun() {
         postMetric(numerator, denominator);
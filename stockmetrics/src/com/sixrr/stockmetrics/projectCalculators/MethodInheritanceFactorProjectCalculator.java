@@ -17,8 +17,11 @@
 package com.sixrr.stockmetrics.projectCalculators;
 
 import com.intellij.psi.*;
+import com.sixrr.metrics.MetricCalculator;
+import com.sixrr.stockmetrics.dependency.InheritanceCache;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -38,20 +41,16 @@ public class MethodInheritanceFactorProjectCalculator extends ProjectCalculator
         public void visitClass(PsiClass aClass) {
             super.visitClass(aClass);
             final PsiMethod[] allMethods = aClass.getAllMethods();
-            final Set<PsiMethod> nonOverriddenMethods = new HashSet<PsiMethod>();
+            final InheritanceCache inheritanceCache = getInheritanceCache();
+            // a method is overridden in this class when it is a super method of another method of the class
+            final Set<PsiMethod> overriddenMethods = new HashSet<PsiMethod>();
             for (PsiMethod method : allMethods) {
-                boolean overrideFound = false;
-                for (PsiMethod testMethod : allMethods) {
-                    if (overrides(testMethod, method)) {
-                        overrideFound = true;
-                        break;
-                    }
-                }
-                if (!overrideFound) {
-                    nonOverriddenMethods.add(method);
-                }
+                Collections.addAll(overriddenMethods, inheritanceCache.findSuperMethods(method));
             }
-            for (PsiMethod method : nonOverriddenMethods) {
+            for (PsiMethod method : allMethods) {
+                if (overriddenMethods.contains(method)) {
+                    continue;
+                }
                 final PsiClass containingClass = method.getContainingClass();
                 if (containingClass != null) {
                     if (containingClass.equals(aClass)) {
@@ -65,19 +64,13 @@ public class MethodInheritanceFactorProjectCalculator extends ProjectCalculator
                 }
             }
         }
+    }
 
-        private boolean overrides(PsiMethod testMethod, PsiMethod method) {
-            if (testMethod.equals(method)) {
-                return false;
-            }
-            final PsiMethod[] superMethods = testMethod.findSuperMethods();
-            for (PsiMethod superMethod : superMethods) {
-                if (superMethod.equals(method)) {
-                    return true;
-                }
-            }
-            return false;
-        }
+    @Override
+    public void merge(MetricCalculator other) {
+        final MethodInheritanceFactorProjectCalculator calculator = (MethodInheritanceFactorProjectCalculator) other;
+        availableMethods += calculator.availableMethods;
+        inheritedMethods += calculator.inheritedMethods;
     }
 
     @Override
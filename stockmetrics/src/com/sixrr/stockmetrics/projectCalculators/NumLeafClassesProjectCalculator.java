@@ -17,13 +17,12 @@
 package com.sixrr.stockmetrics.projectCalculators;
 
 import com.intellij.psi.PsiClass;
-import com.sixrr.metrics.utils.ClassUtils;
 
 public class NumLeafClassesProjectCalculator
         extends ClassCountingProjectCalculator {
 
     @Override
     public boolean satisfies(PsiClass aClass) {
-        return ClassUtils.isLeaf(aClass);
+        return getTypeHierarchy().isLeaf(aClass);
     }
 }
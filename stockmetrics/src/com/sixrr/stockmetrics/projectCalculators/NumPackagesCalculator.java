@@ -19,6 +19,7 @@ package com.sixrr.stockmetrics.projectCalculators;
 import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.ClassUtils;
 
 import java.util.HashSet;
@@ -28,6 +29,12 @@ public class NumPackagesCalculator extends ProjectCalculator {
 
     private final Set<String> packages = new HashSet<String>(20);
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final NumPackagesCalculator calculator = (NumPackagesCalculator) other;
+        packages.addAll(calculator.packages);
+    }
+
     @Override
     public void endMetricsRun() {
         final int numPackages = packages.size();
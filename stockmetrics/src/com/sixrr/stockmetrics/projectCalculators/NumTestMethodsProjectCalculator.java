@@ -16,10 +16,10 @@
 
 package com.sixrr.stockmetrics.projectCalculators;
 
-import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiMethod;
 import com.sixrr.metrics.utils.JavaTestUtils;
+import com.sixrr.stockmetrics.execution.TraversalVisitor;
 
 public class NumTestMethodsProjectCalculator extends ElementCountProjectCalculator {
 
@@ -28,7 +28,7 @@ public class NumTestMethodsProjectCalculator extends ElementCountProjectCalculat
         return new Visitor();
     }
 
-    private class Visitor extends JavaRecursiveElementVisitor {
+    private class Visitor extends TraversalVisitor {
 
         @Override
         public void visitMethod(PsiMethod method) {
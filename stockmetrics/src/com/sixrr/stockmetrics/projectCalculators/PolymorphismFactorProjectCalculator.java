@@ -16,21 +16,13 @@
 
 package com.sixrr.stockmetrics.projectCalculators;
 
-import com.intellij.openapi.progress.ProgressManager;
-import com.intellij.openapi.project.Project;
 import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiMethod;
-import com.intellij.psi.search.GlobalSearchScope;
-import com.intellij.psi.search.searches.ClassInheritorsSearch;
-import com.intellij.util.Query;
-
-import java.util.HashMap;
-import java.util.Map;
+import com.sixrr.metrics.MetricCalculator;
 
 public class PolymorphismFactorProjectCalculator extends ProjectCalculator {
-    private Map<PsiClass, Integer> subclassesPerClass = new HashMap<PsiClass, Integer>();
     private int numOverridingMethods = 0;
     private int numOverridePotentials = 0;
 
@@ -45,9 +37,9 @@ public class PolymorphismFactorProjectCalculator extends ProjectCalculator {
             super.visitClass(aClass);
             final PsiMethod[] methods = aClass.getMethods();
             for (PsiMethod method : methods) {
-                final PsiMethod[] superMethods = method.findSuperMethods();
+                final PsiMethod[] superMethods = getInheritanceCache().findSuperMethods(method);
                 if (superMethods.length == 0) {
-                    numOverridePotentials += getSubclassCount(aClass);
+                    numOverridePotentials += getTypeHierarchy().getNumClassInheritors(aClass);
                 } else {
                     numOverridingMethods++;
                 }
@@ -56,32 +48,14 @@ public class PolymorphismFactorProjectCalculator extends ProjectCalculator {
     }
 
     @Override
-    public void endMetricsRun() {
-        postMetric(numOverridingMethods, numOverridePotentials);
+    public void merge(MetricCalculator other) {
+        final PolymorphismFactorProjectCalculator calculator = (PolymorphismFactorProjectCalculator) other;
+        numOverridingMethods += calculator.numOverridingMethods;
+        numOverridePotentials += calculator.numOverridePotentials;
     }
 
-    private int getSubclassCount(final PsiClass aClass) {
-        if (subclassesPerClass.containsKey(aClass)) {
-            return subclassesPerClass.get(aClass);
-        }
-        final int[] numSubclasses = new int[1];
-        final Runnable runnable = new Runnable() {
-            @Override
-            public void run() {
-                final Project project = executionContext.getProject();
-                final GlobalSearchScope globalScope = GlobalSearchScope.allScope(project);
-                final Query<PsiClass> query = ClassInheritorsSearch.search(
-                        aClass, globalScope, true, true, true);
-                for (final PsiClass inheritor : query) {
-                    if (!inheritor.isInterface()) {
-                        numSubclasses[0]++;
-                    }
-                }
-            }
-        };
-        final ProgressManager progressManager = ProgressManager.getInstance();
-        progressManager.runProcess(runnable, null);
-        subclassesPerClass.put(aClass, numSubclasses[0]);
-        return numSubclasses[0];
+    @Override
+    public void endMetricsRun() {
+        postMetric(numOverridingMethods, numOverridePotentials);
     }
 }
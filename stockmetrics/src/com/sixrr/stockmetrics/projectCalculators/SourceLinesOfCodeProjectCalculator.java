@@ -18,9 +18,11 @@ package com.sixrr.stockmetrics.projectCalculators;
 
 import com.intellij.openapi.fileTypes.PlainTextFileType;
 import com.intellij.psi.*;
+import com.sixrr.metrics.FileLocalMetricCalculator;
 import com.sixrr.stockmetrics.utils.LineUtil;
 
-public class SourceLinesOfCodeProjectCalculator extends ElementCountProjectCalculator {
+public class SourceLinesOfCodeProjectCalculator extends ElementCountProjectCalculator
+        implements FileLocalMetricCalculator {
     @Override
     protected PsiElementVisitor createVisitor() {
         return new Visitor();
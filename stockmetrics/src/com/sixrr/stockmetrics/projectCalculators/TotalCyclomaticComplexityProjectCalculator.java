@@ -19,16 +19,26 @@ package com.sixrr.stockmetrics.projectCalculators;
 import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiMethod;
+import com.sixrr.metrics.FileLocalMetricCalculator;
+import com.sixrr.metrics.MetricCalculator;
 import com.sixrr.metrics.utils.MethodUtils;
 import com.sixrr.stockmetrics.utils.CyclomaticComplexityUtil;
 
-public class TotalCyclomaticComplexityProjectCalculator extends ProjectCalculator {
+public class TotalCyclomaticComplexityProjectCalculator extends ProjectCalculator
+        implements FileLocalMetricCalculator {
 
     private int totalComplexity = 0;
 
+    @Override
+    public void merge(MetricCalculator other) {
+        final TotalCyclomaticComplexityProjectCalculator calculator = (TotalCyclomaticComplexityProjectCalculator) other;
+        totalComplexity += calculator.totalComplexity;
+    }
+
     @Override
     public void endMetricsRun() {
         postMetric(totalComplexity);
+        totalComplexity = 0;
     }
 
     @Override
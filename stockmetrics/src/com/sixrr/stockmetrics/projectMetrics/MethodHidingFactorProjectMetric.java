@@ -53,6 +53,11 @@ public class MethodHidingFactorProjectMetric extends ProjectMetric {
         return HelpURLs.MOOD_DISPLAY_STRING;
     }
 
+    @Override
+    public boolean requiresTypeHierarchy() {
+        return true;
+    }
+
     @NotNull
     @Override
     public MetricCalculator createCalculator() {
@@ -42,6 +42,11 @@ public class NumLeafClassesProjectMetric extends ProjectMetric {
         return MetricType.Count;
     }
 
+    @Override
+    public boolean requiresTypeHierarchy() {
+        return true;
+    }
+
     @NotNull
     @Override
     public MetricCalculator createCalculator() {
@@ -22,26 +22,40 @@ import com.intellij.psi.SmartPointerManager;
 import com.intellij.psi.SmartPsiElementPointer;
 import com.intellij.psi.search.SearchScope;
 import com.intellij.psi.search.searches.ReferencesSearch;
+import com.sixrr.metrics.MetricsExecutionContext;
+import com.sixrr.metrics.SharedAnalysis;
+import org.jetbrains.annotations.NotNull;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.WeakHashMap;
 
 public class ClassReferenceCache {
 
+    public static final SharedAnalysis<ClassReferenceCache> ANALYSIS =
+            new SharedAnalysis<ClassReferenceCache>("ClassReferenceCache") {
+                @NotNull
+                @Override
+                public ClassReferenceCache create(@NotNull MetricsExecutionContext executionContext) {
+                    return new ClassReferenceCache();
+                }
+            };
+
     private final Map<SmartPsiElementPointer<PsiClass>, Collection<PsiReference>> cachedReferences =
-            new WeakHashMap<SmartPsiElementPointer<PsiClass>, Collection<PsiReference>>(256);
+            Collections.synchronizedMap(new WeakHashMap<SmartPsiElementPointer<PsiClass>, Collection<PsiReference>>(256));
 
     public Collection<PsiReference> findClassReferences(final PsiClass aClass) {
         final SmartPointerManager manager = SmartPointerManager.getInstance(aClass.getProject());
         final SmartPsiElementPointer<PsiClass> pointer = manager.createSmartPsiElementPointer(aClass);
 
         final Collection<PsiReference> references = cachedReferences.get(pointer);
-        if (references == null) {
-            final SearchScope scope = aClass.getUseScope();
-            final Collection<PsiReference> newReferences = ReferencesSearch.search(aClass, scope, false).findAll();
-            cachedReferences.put(pointer, newReferences);
+        if (references != null) {
+            return references;
         }
-        return cachedReferences.get(pointer);
+        final SearchScope scope = aClass.getUseScope();
+        final Collection<PsiReference> newReferences = ReferencesSearch.search(aClass, scope, false).findAll();
+        cachedReferences.put(pointer, newReferences);
+        return newReferences;
     }
 }
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.stockmetrics.utils;
+
+import com.intellij.psi.*;
+import gnu.trove.TObjectIntHashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.BitSet;
+import java.util.Set;
+
+/**
+ * The field usage and call links of the applicable methods of a class, from which all cohesion metrics are
+ * calculated.  Every method body is walked once, and methods and fields are numbered so the fields used by a method,
+ * the methods using a field and the methods linked by calls are bit sets.
+ * <p>
+ * All fields a method references are recorded, including fields of other classes, as sharing any field connects two
+ * methods.  The per field queries are meant for the fields of the class itself.
+ */
+public final class CohesionModel {
+
+    private final int numMethods;
+    // ids are stored plus one, because the map returns zero for absent keys
+    private final TObjectIntHashMap<PsiField> fieldIds;
+    private final BitSet[] fieldsPerMethod;
+    private final BitSet[] methodsPerField;
+    private final BitSet[] linkedMethods;
+
+    private CohesionModel(int numMethods, TObjectIntHashMap<PsiField> fieldIds, BitSet[] fieldsPerMethod,
+                          BitSet[] methodsPerField, BitSet[] linkedMethods) {
+        this.numMethods = numMethods;
+        this.fieldIds = fieldIds;
+        this.fieldsPerMethod = fieldsPerMethod;
+        this.methodsPerField = methodsPerField;
+        this.linkedMethods = linkedMethods;
+    }
+
+    @NotNull
+    public static CohesionModel build(@NotNull PsiClass aClass) {
+        final Set<PsiMethod> applicableMethods = MethodsCohesionUtils.getApplicableMethods(aClass);
+        final PsiMethod[] methods = applicableMethods.toArray(new PsiMethod[applicableMethods.size()]);
+        final TObjectIntHashMap<PsiMethod> methodIds = new TObjectIntHashMap<PsiMethod>(methods.length);
+        for (int i = 0; i < methods.length; i++) {
+            methodIds.put(methods[i], i + 1);
+        }
+        final TObjectIntHashMap<PsiField> fieldIds = new TObjectIntHashMap<PsiField>();
+        final BitSet[] fieldsPerMethod = new BitSet[methods.length];
+        final BitSet[] methodsCalled = new BitSet[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            final UsageVisitor visitor = new UsageVisitor(methodIds, fieldIds);
+            methods[i].accept(visitor);
+            fieldsPerMethod[i] = visitor.fieldsUsed;
+            methodsCalled[i] = visitor.methodsCalled;
+        }
+        return create(fieldIds, fieldsPerMethod, methodsCalled);
+    }
+
+    /**
+     * Creates the model from the ids of the fields used and of the methods called by each method.
+     */
+    @NotNull
+    static CohesionModel create(@NotNull TObjectIntHashMap<PsiField> fieldIds, @NotNull BitSet[] fieldsPerMethod,
+                                @NotNull BitSet[] methodsCalled) {
+        final int numMethods = fieldsPerMethod.length;
+        int numFields = fieldIds.size();
+        for (BitSet fields : fieldsPerMethod) {
+            numFields = Math.max(numFields, fields.length());
+        }
+        final BitSet[] methodsPerField = new BitSet[numFields];
+        for (int i = 0; i < numFields; i++) {
+            methodsPerField[i] = new BitSet(numMethods);
+        }
+        final BitSet[] linkedMethods = new BitSet[numMethods];
+        for (int i = 0; i < numMethods; i++) {
+            linkedMethods[i] = new BitSet(numMethods);
+        }
+        for (int i = 0; i < numMethods; i++) {
+            final BitSet fields = fieldsPerMethod[i];
+            for (int field = fields.nextSetBit(0); field >= 0; field = fields.nextSetBit(field + 1)) {
+                methodsPerField[field].set(i);
+            }
+            // links are undirected, so a call is recorded for both methods
+            final BitSet called = methodsCalled[i];
+            for (int method = called.nextSetBit(0); method >= 0; method = called.nextSetBit(method + 1)) {
+                linkedMethods[i].set(method);
+                linkedMethods[method].set(i);
+            }
+        }
+        return new CohesionModel(numMethods, fieldIds, fieldsPerMethod, methodsPerField, linkedMethods);
+    }
+
+    /**
+     * Returns the number of methods which are not constructors or boilerplate methods.
+     */
+    public int getNumMethods() {
+        return numMethods;
+    }
+
+    /**
+     * Returns the number of pairs of methods which use at least one common field.
+     */
+    public int getNumConnectedMethodPairs() {
+        int connectedPairs = 0;
+        for (int i = 0; i < numMethods; i++) {
+            for (int j = i + 1; j < numMethods; j++) {
+                if (fieldsPerMethod[i].intersects(fieldsPerMethod[j])) {
+                    connectedPairs++;
+                }
+            }
+        }
+        return connectedPairs;
+    }
+
+    /**
+     * Returns the sizes of the groups of methods connected by common fields, and by calls between them if specified.
+     * A method which is connected to no other method is a group by itself.
+     */
+    public int[] getComponentSizes(boolean connectCalls) {
+        final int[] parents = new int[numMethods];
+        for (int i = 0; i < numMethods; i++) {
+            parents[i] = i;
+        }
+        for (BitSet methods : methodsPerField) {
+            final int first = methods.nextSetBit(0);
+            for (int method = methods.nextSetBit(first + 1); method >= 0; method = methods.nextSetBit(method + 1)) {
+                union(parents, first, method);
+            }
+        }
+        if (connectCalls) {
+            for (int i = 0; i < numMethods; i++) {
+                final BitSet linked = linkedMethods[i];
+                for (int method = linked.nextSetBit(i + 1); method >= 0; method = linked.nextSetBit(method + 1)) {
+                    union(parents, i, method);
+                }
+            }
+        }
+        final int[] sizes = new int[numMethods];
+        int numComponents = 0;
+        for (int i = 0; i < numMethods; i++) {
+            if (sizes[find(parents, i)]++ == 0) {
+                numComponents++;
+            }
+        }
+        final int[] result = new int[numComponents];
+        int count = 0;
+        for (int size : sizes) {
+            if (size > 0) {
+                result[count++] = size;
+            }
+        }
+        return result;
+    }
+
+    private static int find(int[] parents, int node) {
+        while (parents[node] != node) {
+            parents[node] = parents[parents[node]];
+            node = parents[node];
+        }
+        return node;
+    }
+
+    private static void union(int[] parents, int a, int b) {
+        final int rootA = find(parents, a);
+        final int rootB = find(parents, b);
+        if (rootA != rootB) {
+            parents[rootB] = rootA;
+        }
+    }
+
+    /**
+     * Returns the number of methods using the specified field.
+     */
+    public int getNumMethodsUsing(PsiField field) {
+        final int id = fieldIds.get(field) - 1;
+        return id < 0 ? 0 : methodsPerField[id].cardinality();
+    }
+
+    /**
+     * Returns the Jaccard distance between the sets of methods using two fields, which is 0 if neither is used.
+     */
+    public double getJaccardDistance(PsiField field1, PsiField field2) {
+        final int id1 = fieldIds.get(field1) - 1;
+        final int id2 = fieldIds.get(field2) - 1;
+        final BitSet methods1 = id1 < 0 ? new BitSet(0) : methodsPerField[id1];
+        final BitSet methods2 = id2 < 0 ? new BitSet(0) : methodsPerField[id2];
+        final BitSet union = (BitSet) methods1.clone();
+        union.or(methods2);
+        final int unionSize = union.cardinality();
+        if (unionSize == 0) {
+            return 0.0;
+        }
+        final BitSet intersection = (BitSet) methods1.clone();
+        intersection.and(methods2);
+        return 1.0 - (double) intersection.cardinality() / (double) unionSize;
+    }
+
+    private static class UsageVisitor extends JavaRecursiveElementVisitor {
+
+        private final TObjectIntHashMap<PsiMethod> methodIds;
+        private final TObjectIntHashMap<PsiField> fieldIds;
+        final BitSet fieldsUsed = new BitSet();
+        final BitSet methodsCalled = new BitSet();
+
+        UsageVisitor(TObjectIntHashMap<PsiMethod> methodIds, TObjectIntHashMap<PsiField> fieldIds) {
+            this.methodIds = methodIds;
+            this.fieldIds = fieldIds;
+        }
+
+        @Override
+        public void visitReferenceExpression(PsiReferenceExpression expression) {
+            super.visitReferenceExpression(expression);
+            final PsiElement target = expression.resolve();
+            if (!(target instanceof PsiField)) {
+                return;
+            }
+            final PsiField field = (PsiField) target;
+            int id = fieldIds.get(field) - 1;
+            if (id < 0) {
+                id = fieldIds.size();
+                fieldIds.put(field, id + 1);
+            }
+            fieldsUsed.set(id);
+        }
+
+        @Override
+        public void visitMethodCallExpression(PsiMethodCallExpression expression) {
+            super.visitMethodCallExpression(expression);
+            final PsiMethod method = expression.resolveMethod();
+            if (method == null) {
+                return;
+            }
+            final int id = methodIds.get(method) - 1;
+            if (id >= 0) {
+                methodsCalled.set(id);
+            }
+        }
+    }
+}
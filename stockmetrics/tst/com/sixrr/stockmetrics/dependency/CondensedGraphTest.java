@@ -0,0 +1,94 @@
+/*
+ * Copyright 2005-2017 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.stockmetrics.dependency;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class CondensedGraphTest {
+
+    // a -> b -> c -> b, c -> d, e isolated
+    private static CondensedGraph<String> createGraph() {
+        final NodeTable<String> nodes = new NodeTable<String>();
+        final EdgeBuffer edges = new EdgeBuffer();
+        addEdge(nodes, edges, "a", "b");
+        addEdge(nodes, edges, "b", "c");
+        addEdge(nodes, edges, "c", "b");
+        addEdge(nodes, edges, "c", "d");
+        nodes.intern("e");
+        return new CondensedGraph<String>(nodes, edges.toAdjacency(nodes.size(), false));
+    }
+
+    private static void addEdge(NodeTable<String> nodes, EdgeBuffer edges, String from, String to) {
+        edges.add(nodes.intern(from), nodes.intern(to));
+    }
+
+    @Test
+    public void testComponents() {
+        final CondensedGraph<String> graph = createGraph();
+        assertEquals(new HashSet<String>(Arrays.asList("b", "c")), graph.getComponent("b"));
+        assertEquals(new HashSet<String>(Arrays.asList("b", "c")), graph.getComponent("c"));
+        assertEquals(new HashSet<String>(Arrays.asList("a")), graph.getComponent("a"));
+        assertEquals(new HashSet<String>(Arrays.asList("e")), graph.getComponent("e"));
+        // a node which is not in the graph is a component by itself as well
+        assertEquals(new HashSet<String>(Arrays.asList("f")), graph.getComponent("f"));
+    }
+
+    @Test
+    public void testLevelOrders() {
+        final CondensedGraph<String> graph = createGraph();
+        assertEquals(1, graph.getLevelOrder("d"));
+        assertEquals(2, graph.getLevelOrder("b"));
+        assertEquals(3, graph.getLevelOrder("a"));
+        assertEquals(1, graph.getLevelOrder("e"));
+        assertEquals(3, graph.getAdjustedLevelOrder("c"));
+        assertEquals(4, graph.getAdjustedLevelOrder("a"));
+    }
+
+    @Test
+    public void testTransitiveClosure() {
+        final CondensedGraph<String> graph = createGraph();
+        assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c", "d")), graph.getReachable("a"));
+        assertEquals(3, graph.countReachable("b"));
+        assertEquals(1, graph.countReachable("d"));
+        assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c", "d")), graph.getReaching("d"));
+        assertEquals(3, graph.countReaching("c"));
+        assertEquals(1, graph.countReaching("e"));
+    }
+
+    @Test
+    public void testAdjacencyWeights() {
+        final EdgeBuffer edges = new EdgeBuffer();
+        edges.add(0, 2);
+        edges.add(0, 1);
+        edges.add(0, 2);
+        edges.add(2, 0);
+        final Adjacency adjacency = edges.toAdjacency(3, false);
+        assertEquals(2, adjacency.end(0) - adjacency.start(0));
+        assertEquals(2, adjacency.weight(0, 2));
+        assertEquals(1, adjacency.weight(0, 1));
+        assertEquals(0, adjacency.weight(1, 0));
+        final Adjacency reversed = edges.toAdjacency(3, true);
+        assertEquals(2, reversed.weight(2, 0));
+        assertEquals(1, reversed.weight(0, 2));
+        assertEquals(0, reversed.weight(-1, 0));
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.stockmetrics.utils;
+
+import com.intellij.psi.PsiField;
+import gnu.trove.TObjectIntHashMap;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static org.junit.Assert.*;
+
+public class CohesionModelTest {
+
+    // methods 0, 1 and 2 are connected through fields 0 and 1, although 0 and 1 share no field, method 3 uses
+    // field 2 and is called by method 4, and method 5 uses no field
+    private static CohesionModel createModel() {
+        final BitSet[] fieldsPerMethod = {
+                bits(0), bits(1), bits(0, 1), bits(2), bits(), bits()
+        };
+        final BitSet[] methodsCalled = {
+                bits(), bits(), bits(), bits(), bits(3), bits()
+        };
+        return CohesionModel.create(new TObjectIntHashMap<PsiField>(), fieldsPerMethod, methodsCalled);
+    }
+
+    private static BitSet bits(int... indices) {
+        final BitSet result = new BitSet();
+        for (int index : indices) {
+            result.set(index);
+        }
+        return result;
+    }
+
+    private static int[] sorted(int[] sizes) {
+        final int[] result = sizes.clone();
+        Arrays.sort(result);
+        return result;
+    }
+
+    @Test
+    public void testMethodPairs() {
+        final CohesionModel model = createModel();
+        assertEquals(6, model.getNumMethods());
+        assertEquals(2, model.getNumConnectedMethodPairs());
+    }
+
+    @Test
+    public void testComponents() {
+        final CohesionModel model = createModel();
+        assertArrayEquals(new int[]{1, 1, 1, 3}, sorted(model.getComponentSizes(false)));
+        assertArrayEquals(new int[]{1, 2, 3}, sorted(model.getComponentSizes(true)));
+    }
+
+    @Test
+    public void testNoMethods() {
+        final CohesionModel model =
+                CohesionModel.create(new TObjectIntHashMap<PsiField>(), new BitSet[0], new BitSet[0]);
+        assertEquals(0, model.getNumMethods());
+        assertEquals(0, model.getNumConnectedMethodPairs());
+        assertEquals(0, model.getComponentSizes(true).length);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.sixrr.metrics.export;
+
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricCategory;
+import com.sixrr.metrics.metricModel.MetricsResult;
+import com.sixrr.metrics.metricModel.MetricsRunImpl;
+import com.sixrr.metrics.metricModel.TestMetric;
+import com.sixrr.metrics.metricModel.TimeStamp;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ColumnarExporterTest {
+
+    private static final Metric LINES = new TestMetric.Lines();
+    private static final Metric COMPLEXITY = new TestMetric.Complexity();
+    private static final Metric CLASS_COUNT = new TestMetric.ClassCount();
+    private static final Metric CLASS_SIZE = new TestMetric.ClassSize();
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("export", ColumnarExporter.EXTENSION);
+    }
+
+    @After
+    public void tearDown() {
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final MetricsRunImpl run = createRun();
+        final MetricsResult methods = run.getResultsForCategory(MetricCategory.Method);
+        methods.postValue(LINES, "a.B.n(int)", 3.0);
+        methods.postValue(LINES, "a.A.m()", 12.0);
+        methods.postValue(COMPLEXITY, "a.A.m()", Double.NaN);
+        methods.postValue(COMPLEXITY, "a.\u00e9t\u00e9.\u00c7()", 2.0);
+        new ColumnarExporter(run).export(file.getPath());
+
+        final ColumnarReader reader = ColumnarReader.read(file);
+        assertEquals("profile", reader.getProfileName());
+        assertEquals(run.getTimestamp().toString(), reader.getTimestamp());
+        final List<ColumnarReader.Table> tables = reader.getTables();
+        assertEquals(1, tables.size());
+        final ColumnarReader.Table table = tables.get(0);
+        assertEquals(MetricCategory.Method.name(), table.getCategory());
+        assertEquals(3, table.getNumRows());
+        assertEquals("a.A.m()", table.getMeasuredObject(0));
+        assertEquals("a.B.n(int)", table.getMeasuredObject(1));
+        assertEquals("a.\u00e9t\u00e9.\u00c7()", table.getMeasuredObject(2));
+
+        final List<ColumnarReader.Column> columns = table.getColumns();
+        assertEquals(2, columns.size());
+        final ColumnarReader.Column complexity = columns.get(0);
+        assertEquals("Complexity", complexity.getName());
+        assertTrue(complexity.hasValue(0));
+        assertTrue(Double.isNaN(complexity.getValue(0)));
+        assertFalse(complexity.hasValue(1));
+        assertEquals(2.0, complexity.getValue(2), 0.0);
+        final ColumnarReader.Column lines = columns.get(1);
+        assertEquals("Lines", lines.getName());
+        assertEquals("Count", lines.getMetricType());
+        assertEquals(12.0, lines.getValue(0), 0.0);
+        assertEquals(3.0, lines.getValue(1), 0.0);
+        assertFalse(lines.hasValue(2));
+    }
+
+    @Test
+    public void testManyRows() throws IOException {
+        final MetricsRunImpl run = createRun();
+        final MetricsResult classes = run.getResultsForCategory(MetricCategory.Class);
+        for (int i = 0; i < 100000; i++) {
+            final String measuredObject = String.format("a.C%06d", i);
+            classes.postValue(CLASS_COUNT, measuredObject, 1.0);
+            if (i % 3 != 0) {
+                classes.postValue(CLASS_SIZE, measuredObject, (double) i);
+            }
+        }
+        new ColumnarExporter(run).export(file.getPath());
+
+        final List<ColumnarReader.Table> tables = ColumnarReader.read(file).getTables();
+        assertEquals(1, tables.size());
+        final ColumnarReader.Table table = tables.get(0);
+        assertEquals(MetricCategory.Class.name(), table.getCategory());
+        assertEquals(100000, table.getNumRows());
+        final ColumnarReader.Column column = table.getColumns().get(1);
+        assertEquals("ClassSize", column.getName());
+        for (int i = 0; i < 100000; i++) {
+            assertEquals(String.format("a.C%06d", i), table.getMeasuredObject(i));
+            assertEquals(i % 3 != 0, column.hasValue(i));
+            if (i % 3 != 0) {
+                assertEquals((double) i, column.getValue(i), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyRun() throws IOException {
+        new ColumnarExporter(createRun()).export(file.getPath());
+        final ColumnarReader reader = ColumnarReader.read(file);
+        assertEquals("profile", reader.getProfileName());
+        assertTrue(reader.getTables().isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void testBadMagic() throws IOException {
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[]{'M', 'E', 'T', 'B', 1, 0, 0, 0});
+        } finally {
+            out.close();
+        }
+        ColumnarReader.read(file);
+    }
+
+    private static MetricsRunImpl createRun() {
+        final MetricsRunImpl run = new MetricsRunImpl();
+        run.setProfileName("profile");
+        run.setTimestamp(new TimeStamp(1000000000000L));
+        return run;
+    }
+}
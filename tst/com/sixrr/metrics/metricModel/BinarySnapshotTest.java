@@ -0,0 +1,127 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.metrics.metricModel;
+
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricCategory;
+import com.sixrr.metrics.profile.MetricRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class BinarySnapshotTest {
+
+    private static final Metric LINES = new TestMetric.Lines();
+    private static final Metric COMPLEXITY = new TestMetric.Complexity();
+    private static final MetricRepository REPOSITORY = TestMetric.createRepository(LINES, COMPLEXITY);
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("snapshot", BinarySnapshot.EXTENSION);
+    }
+
+    @After
+    public void tearDown() {
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final MetricsRunImpl run = createRun();
+        run.postRawMetric(LINES, "a.A.m()", 12.0);
+        run.postRawMetric(LINES, "a.B.n(int)", 3.0);
+        run.postRawMetric(COMPLEXITY, "a.A.m()", Double.NaN);
+        BinarySnapshot.write(run, file);
+        assertTrue(BinarySnapshot.isBinarySnapshot(file));
+
+        final MetricsRunImpl copy = BinarySnapshot.read(file, REPOSITORY);
+        assertEquals(run.getProfileName(), copy.getProfileName());
+        assertEquals(run.getTimestamp().toString(), copy.getTimestamp().toString());
+        final MetricsResult results = copy.getResultsForCategory(MetricCategory.Method);
+        assertEquals(12.0, results.getDoubleValueForMetric(LINES, "a.A.m()"), 0.0);
+        assertEquals(3.0, results.getDoubleValueForMetric(LINES, "a.B.n(int)"), 0.0);
+        assertTrue(results.hasValueForMetric(COMPLEXITY, "a.A.m()"));
+        assertTrue(Double.isNaN(results.getDoubleValueForMetric(COMPLEXITY, "a.A.m()")));
+        assertFalse(results.hasValueForMetric(COMPLEXITY, "a.B.n(int)"));
+        assertEquals(0, copy.getResultsForCategory(MetricCategory.Class).getMeasuredObjects().length);
+    }
+
+    @Test
+    public void testEmptyRun() throws IOException {
+        BinarySnapshot.write(createRun(), file);
+        final MetricsRunImpl copy = BinarySnapshot.read(file, REPOSITORY);
+        assertEquals("profile", copy.getProfileName());
+        for (MetricCategory category : MetricCategory.values()) {
+            final MetricsResult results = copy.getResultsForCategory(category);
+            assertEquals(0, results.getMeasuredObjects().length);
+            assertEquals(0, results.getMetrics().length);
+        }
+    }
+
+    @Test
+    public void testUnknownMetricSkipped() throws IOException {
+        final MetricsRunImpl run = createRun();
+        run.postRawMetric(LINES, "a.A.m()", 12.0);
+        run.postRawMetric(COMPLEXITY, "a.A.m()", 2.0);
+        BinarySnapshot.write(run, file);
+        final MetricsRunImpl copy = BinarySnapshot.read(file, TestMetric.createRepository(LINES));
+        final MetricsResult results = copy.getResultsForCategory(MetricCategory.Method);
+        assertEquals(12.0, results.getDoubleValueForMetric(LINES, "a.A.m()"), 0.0);
+        assertEquals(1, results.getMetrics().length);
+    }
+
+    @Test(expected = IOException.class)
+    public void testBadMagic() throws IOException {
+        writeHeader(0x12345678, BinarySnapshot.VERSION);
+        assertFalse(BinarySnapshot.isBinarySnapshot(file));
+        BinarySnapshot.read(file, REPOSITORY);
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnsupportedVersion() throws IOException {
+        writeHeader(BinarySnapshot.MAGIC, BinarySnapshot.VERSION + 1);
+        assertTrue(BinarySnapshot.isBinarySnapshot(file));
+        BinarySnapshot.read(file, REPOSITORY);
+    }
+
+    private static MetricsRunImpl createRun() {
+        final MetricsRunImpl run = new MetricsRunImpl();
+        run.setProfileName("profile");
+        run.setTimestamp(new TimeStamp(1000000000000L));
+        return run;
+    }
+
+    private void writeHeader(int magic, int version) throws IOException {
+        final DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        try {
+            out.writeInt(magic);
+            out.writeInt(version);
+            out.writeInt(0);
+        } finally {
+            out.close();
+        }
+    }
+}
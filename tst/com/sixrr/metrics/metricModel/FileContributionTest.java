@@ -0,0 +1,73 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.metrics.metricModel;
+
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricCategory;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FileContributionTest {
+
+    private static final Metric AVERAGE_COMPLEXITY = new TestMetric.AverageComplexity();
+
+    @Test
+    public void testProjectRatio() {
+        final FileContribution first = new FileContribution(null, 1L);
+        final FileContribution second = new FileContribution(null, 1L);
+        // file local calculators post through the recorder, which passes posts on to the file being processed
+        final ContributionRecorder recorder = new ContributionRecorder();
+        recorder.setContribution(first);
+        recorder.postProjectMetric(AVERAGE_COMPLEXITY, 6.0, 2.0);
+        recorder.setContribution(second);
+        recorder.postProjectMetric(AVERAGE_COMPLEXITY, 4.0, 3.0);
+
+        final List<FileContribution.Value> values = first.getValues();
+        assertEquals(1, values.size());
+        final FileContribution.Value total = values.get(0).copy();
+        assertEquals(MetricCategory.Project, total.getCategory());
+        assertEquals("", total.getMeasured());
+        assertTrue(total.isRatio());
+        total.add(second.getValues().get(0));
+        assertEquals(10.0, total.getNumerator(), 0.0);
+        assertEquals(5.0, total.getDenominator(), 0.0);
+
+        final MetricsRunImpl run = new MetricsRunImpl();
+        total.postTo(run, null);
+        final MetricsResult results = run.getResultsForCategory(MetricCategory.Project);
+        assertEquals(2.0, results.getDoubleValueForMetric(AVERAGE_COMPLEXITY, "project"), 0.0);
+        // the first contribution is left as it was recorded
+        assertEquals(6.0, values.get(0).getNumerator(), 0.0);
+    }
+
+    @Test
+    public void testProjectValue() {
+        final FileContribution contribution = new FileContribution(null, 1L);
+        contribution.postProjectMetric(AVERAGE_COMPLEXITY, 3.0);
+        final FileContribution.Value value = contribution.getValues().get(0);
+        assertEquals("", value.getMeasured());
+        assertFalse(value.isRatio());
+
+        final MetricsRunImpl run = new MetricsRunImpl();
+        value.postTo(run, null);
+        final MetricsResult results = run.getResultsForCategory(MetricCategory.Project);
+        assertEquals(3.0, results.getDoubleValueForMetric(AVERAGE_COMPLEXITY, "project"), 0.0);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.metrics.metricModel;
+
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricCategory;
+import com.sixrr.metrics.profile.MetricRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class MappedMetricsRunTest {
+
+    private static final Metric LINES = new TestMetric.Lines();
+    private static final Metric COMPLEXITY = new TestMetric.Complexity();
+    private static final MetricRepository REPOSITORY = TestMetric.createRepository(LINES, COMPLEXITY);
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("snapshot", BinarySnapshot.EXTENSION);
+        final MetricsRunImpl run = new MetricsRunImpl();
+        run.setProfileName("profile");
+        run.setTimestamp(new TimeStamp(1000000000000L));
+        run.postRawMetric(LINES, "a.A.m()", 12.0);
+        run.postRawMetric(LINES, "a.B.n(int)", 3.0);
+        run.postRawMetric(COMPLEXITY, "a.A.m()", Double.NaN);
+        BinarySnapshot.write(run, file);
+    }
+
+    @After
+    public void tearDown() {
+        // fails on Windows if the snapshot is still mapped
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void testValues() {
+        final MappedMetricsRun run = MappedMetricsRun.open(file, REPOSITORY);
+        assertNotNull(run);
+        try {
+            assertEquals("profile", run.getProfileName());
+            final MetricsResult results = run.getResultsForCategory(MetricCategory.Method);
+            assertEquals(Arrays.asList("a.A.m()", "a.B.n(int)"), Arrays.asList(results.getMeasuredObjects()));
+            assertEquals(12.0, results.getDoubleValueForMetric(LINES, "a.A.m()"), 0.0);
+            assertEquals(Double.valueOf(3.0), results.getValueForMetric(LINES, "a.B.n(int)"));
+            assertTrue(results.hasValueForMetric(COMPLEXITY, "a.A.m()"));
+            assertTrue(Double.isNaN(results.getDoubleValueForMetric(COMPLEXITY, "a.A.m()")));
+            assertFalse(results.hasValueForMetric(COMPLEXITY, "a.B.n(int)"));
+            assertNull(results.getValueForMetric(COMPLEXITY, "a.B.n(int)"));
+            assertFalse(results.hasValueForMetric(LINES, "a.C.o()"));
+            assertEquals(Double.valueOf(15.0), results.getTotalForMetric(LINES));
+            assertEquals(0, run.getResultsForCategory(MetricCategory.Class).getMeasuredObjects().length);
+        } finally {
+            run.close();
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly() {
+        final MappedMetricsRun run = MappedMetricsRun.open(file, REPOSITORY);
+        assertNotNull(run);
+        try {
+            run.getResultsForCategory(MetricCategory.Method).postValue(LINES, "a.C.o()", 1.0);
+        } finally {
+            run.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClose() {
+        final MappedMetricsRun run = MappedMetricsRun.open(file, REPOSITORY);
+        assertNotNull(run);
+        run.close();
+        run.close();
+        run.getResultsForCategory(MetricCategory.Method).getDoubleValueForMetric(LINES, "a.A.m()");
+    }
+
+    @Test
+    public void testReleaseAllResults() {
+        final MappedMetricsRun run = MappedMetricsRun.open(file, REPOSITORY);
+        assertNotNull(run);
+        final MetricsResult results = run.getResultsForCategory(MetricCategory.Method);
+        for (MetricCategory category : MetricCategory.values()) {
+            if (category != MetricCategory.Method) {
+                ((MappedMetricsResult) run.getResultsForCategory(category)).release();
+            }
+        }
+        // releasing twice must not count as another category
+        ((MappedMetricsResult) run.getResultsForCategory(MetricCategory.Class)).release();
+        assertEquals(12.0, results.getDoubleValueForMetric(LINES, "a.A.m()"), 0.0);
+        ((MappedMetricsResult) results).release();
+        try {
+            results.getDoubleValueForMetric(LINES, "a.A.m()");
+            fail();
+        } catch (IllegalStateException ignore) {
+        }
+    }
+
+    @Test
+    public void testNotBinarySnapshot() throws IOException {
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write("<SNAPSHOT/>".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        assertNull(MappedMetricsRun.open(file, REPOSITORY));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.sixrr.metrics.metricModel;
+
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricCategory;
+import com.sixrr.metrics.profile.MetricRepository;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class MetricsDiffTest {
+
+    private static final Metric LINES = new TestMetric.Lines();
+    private static final Metric COMPLEXITY = new TestMetric.Complexity();
+    private static final MetricRepository REPOSITORY = TestMetric.createRepository(LINES, COMPLEXITY);
+
+    @Test
+    public void testRows() {
+        final MetricsResult results = new MetricsResultImpl();
+        results.postValue(LINES, "a.D.q()", 1.0);
+        results.postValue(LINES, "a.A.m()", 10.0);
+        results.postValue(COMPLEXITY, "a.A.m()", 2.0);
+        results.postValue(LINES, "a.C.p()", 5.0);
+        results.postValue(COMPLEXITY, "a.C.p()", 3.0);
+        final MetricsResult previousResults = new MetricsResultImpl();
+        previousResults.postValue(LINES, "a.C.p()", 5.0);
+        previousResults.postValue(COMPLEXITY, "a.C.p()", 1.0);
+        previousResults.postValue(LINES, "a.B.n()", 4.0);
+        previousResults.postValue(LINES, "a.A.m()", 10.0);
+        previousResults.postValue(COMPLEXITY, "a.A.m()", 2.0);
+
+        final MetricsDiff diff = MetricsDiff.compute(results, previousResults);
+        assertEquals(Arrays.asList("a.A.m()", "a.B.n()", "a.C.p()", "a.D.q()"),
+                Arrays.asList(diff.getMeasuredObjects()));
+        assertEquals(MetricsDiff.UNCHANGED, diff.getState(0));
+        assertEquals(MetricsDiff.REMOVED, diff.getState(1));
+        assertEquals(MetricsDiff.CHANGED, diff.getState(2));
+        assertEquals(MetricsDiff.ADDED, diff.getState(3));
+        assertEquals(1, diff.countRows(MetricsDiff.CHANGED));
+
+        final int lines = diff.indexOf(LINES);
+        final int complexity = diff.indexOf(COMPLEXITY);
+        assertFalse(diff.hasValue(lines, 1));
+        assertEquals(4.0, diff.getPreviousValue(lines, 1), 0.0);
+        assertTrue(Double.isNaN(diff.getDelta(lines, 1)));
+        assertEquals(3.0, diff.getValue(complexity, 2), 0.0);
+        assertEquals(2.0, diff.getDelta(complexity, 2), 0.0);
+        assertEquals(0.0, diff.getDelta(lines, 2), 0.0);
+        assertTrue(diff.hasValue(lines, 3));
+        assertFalse(diff.hasPreviousValue(lines, 3));
+        assertFalse(diff.hasValue(complexity, 3));
+        assertEquals(-1, diff.indexOf(new TestMetric.Lines()));
+    }
+
+    @Test
+    public void testNaN() {
+        final MetricsResult results = new MetricsResultImpl();
+        results.postValue(LINES, "a.A.m()", Double.NaN);
+        results.postValue(LINES, "a.B.n()", Double.NaN);
+        results.postValue(COMPLEXITY, "a.B.n()", 1.0);
+        final MetricsResult previousResults = new MetricsResultImpl();
+        previousResults.postValue(LINES, "a.A.m()", Double.NaN);
+        previousResults.postValue(COMPLEXITY, "a.B.n()", 1.0);
+
+        final MetricsDiff diff = MetricsDiff.compute(results, previousResults);
+        final int lines = diff.indexOf(LINES);
+        // a NaN value is a value, so it is unchanged when it was NaN before, and changed when there was none
+        assertEquals(MetricsDiff.UNCHANGED, diff.getState(0));
+        assertTrue(diff.hasValue(lines, 0));
+        assertTrue(diff.hasPreviousValue(lines, 0));
+        assertEquals(MetricsDiff.CHANGED, diff.getState(1));
+        assertTrue(diff.hasValue(lines, 1));
+        assertFalse(diff.hasPreviousValue(lines, 1));
+        assertEquals(2, diff.getValues(lines).length);
+        assertEquals(1, diff.getPreviousValues(lines).length);
+    }
+
+    @Test
+    public void testMappedPreviousResults() throws IOException {
+        final MetricsRunImpl previousRun = new MetricsRunImpl();
+        previousRun.setProfileName("profile");
+        previousRun.setTimestamp(new TimeStamp(1000000000000L));
+        previousRun.postRawMetric(LINES, "a.B.n()", 4.0);
+        previousRun.postRawMetric(LINES, "a.A.m()", 8.0);
+        previousRun.postRawMetric(COMPLEXITY, "a.C.p()", 1.0);
+        final File file = File.createTempFile("snapshot", BinarySnapshot.EXTENSION);
+        try {
+            BinarySnapshot.write(previousRun, file);
+            final MappedMetricsRun mapped = MappedMetricsRun.open(file, REPOSITORY);
+            assertNotNull(mapped);
+            try {
+                final MetricsResult results = new MetricsResultImpl();
+                results.postValue(LINES, "a.C.p()", 3.0);
+                results.postValue(LINES, "a.A.m()", 10.0);
+                final MetricsDiff diff =
+                        MetricsDiff.compute(results, mapped.getResultsForCategory(MetricCategory.Method));
+                assertEquals(Arrays.asList("a.A.m()", "a.B.n()", "a.C.p()"),
+                        Arrays.asList(diff.getMeasuredObjects()));
+                final int lines = diff.indexOf(LINES);
+                assertEquals(2.0, diff.getDelta(lines, 0), 0.0);
+                assertEquals(MetricsDiff.REMOVED, diff.getState(1));
+                assertEquals(MetricsDiff.CHANGED, diff.getState(2));
+                assertFalse(diff.hasPreviousValue(lines, 2));
+                assertEquals(1.0, diff.getPreviousValue(diff.indexOf(COMPLEXITY), 2), 0.0);
+            } finally {
+                mapped.close();
+            }
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+}
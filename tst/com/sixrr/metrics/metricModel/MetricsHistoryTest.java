@@ -0,0 +1,209 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.sixrr.metrics.metricModel;
+
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricCategory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MetricsHistoryTest {
+
+    private static final Metric LINES = new TestMetric.Lines();
+    private static final Metric COMPLEXITY = new TestMetric.Complexity();
+    private static final String LINES_NAME = LINES.getClass().getName();
+    private static final String COMPLEXITY_NAME = COMPLEXITY.getClass().getName();
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("history", "");
+        assertTrue(directory.delete());
+    }
+
+    @After
+    public void tearDown() {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                assertTrue(file.delete());
+            }
+        }
+        assertTrue(directory.delete());
+    }
+
+    @Test
+    public void testAppend() throws IOException {
+        final MetricsHistory history = MetricsHistory.open(directory);
+        try {
+            appendRuns(history);
+            assertEquals(3, history.getNumRuns());
+            checkHistory(history);
+        } finally {
+            history.close();
+        }
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        final MetricsHistory history = MetricsHistory.open(directory);
+        try {
+            appendRuns(history);
+        } finally {
+            history.close();
+        }
+        final MetricsHistory reopened = MetricsHistory.open(directory);
+        try {
+            assertEquals(3, reopened.getNumRuns());
+            checkHistory(reopened);
+        } finally {
+            reopened.close();
+        }
+        // the heads are rebuilt from the segments when they are missing
+        assertTrue(new File(directory, "heads.dat").delete());
+        final MetricsHistory rebuilt = MetricsHistory.open(directory);
+        try {
+            checkHistory(rebuilt);
+            rebuilt.append(createRun(4000L, 30.0, 4.0, 1.0));
+            assertEquals(4, rebuilt.getNumRuns());
+            final List<MetricsHistory.Change> changes = rebuilt.getHistory(LINES_NAME, "a.A.m()");
+            assertEquals(3, changes.size());
+            assertEquals(30.0, changes.get(2).getValue(), 0.0);
+        } finally {
+            rebuilt.close();
+        }
+    }
+
+    @Test
+    public void testTruncatedTail() throws IOException {
+        final MetricsHistory history = MetricsHistory.open(directory);
+        try {
+            appendRuns(history);
+        } finally {
+            history.close();
+        }
+        // a run which was interrupted while writing its records
+        appendGarbage("dictionary.dat", new byte[]{1, 0, 0, 0});
+        appendGarbage("runs.idx", new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 9});
+        final MetricsHistory recovered = MetricsHistory.open(directory);
+        try {
+            assertEquals(3, recovered.getNumRuns());
+            checkHistory(recovered);
+            final MetricsRunImpl run = createRun(4000L, 20.0, 4.0, Double.NaN);
+            run.getResultsForCategory(MetricCategory.Method).postValue(LINES, "a.D.q()", 5.0);
+            recovered.append(run);
+        } finally {
+            recovered.close();
+        }
+        final MetricsHistory reopened = MetricsHistory.open(directory);
+        try {
+            assertEquals(4, reopened.getNumRuns());
+            checkHistory(reopened);
+            final List<MetricsHistory.Change> changes = reopened.getHistory(LINES_NAME, "a.D.q()");
+            assertEquals(1, changes.size());
+            assertEquals(4000L, changes.get(0).getTime());
+            assertEquals(5.0, changes.get(0).getValue(), 0.0);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void testTopRegressions() throws IOException {
+        final MetricsHistory history = MetricsHistory.open(directory);
+        try {
+            appendRuns(history);
+            final List<MetricsHistory.Regression> regressions = history.getTopRegressions(1500L, 10);
+            assertEquals(2, regressions.size());
+            assertEquals(LINES_NAME, regressions.get(0).getMetricClassName());
+            assertEquals("a.A.m()", regressions.get(0).getMeasuredObject());
+            assertEquals(10.0, regressions.get(0).getBaseline(), 0.0);
+            assertEquals(20.0, regressions.get(0).getCurrent(), 0.0);
+            assertEquals(COMPLEXITY_NAME, regressions.get(1).getMetricClassName());
+            assertEquals(2.0, regressions.get(1).getDelta(), 0.0);
+            assertEquals(1, history.getTopRegressions(1500L, 1).size());
+            assertTrue(history.getTopRegressions(500L, 10).isEmpty());
+            assertTrue(history.getTopRegressions(3500L, 10).isEmpty());
+        } finally {
+            history.close();
+        }
+    }
+
+    /**
+     * Appends three runs: a.A.m() has 10, 10 and 20 lines, and a complexity of 2, 4 and 4.  a.B.n() only has a
+     * value in the first two runs.
+     */
+    private static void appendRuns(MetricsHistory history) throws IOException {
+        history.append(createRun(1000L, 10.0, 2.0, 7.0));
+        history.append(createRun(2000L, 10.0, 4.0, 7.0));
+        history.append(createRun(3000L, 20.0, 4.0, Double.NaN));
+    }
+
+    private static void checkHistory(MetricsHistory history) throws IOException {
+        final List<MetricsHistory.Change> lines = history.getHistory(LINES_NAME, "a.A.m()");
+        assertEquals(2, lines.size());
+        assertEquals(1000L, lines.get(0).getTime());
+        assertEquals(10.0, lines.get(0).getValue(), 0.0);
+        assertEquals(3000L, lines.get(1).getTime());
+        assertEquals(20.0, lines.get(1).getValue(), 0.0);
+
+        final List<MetricsHistory.Change> removed = history.getHistory(LINES_NAME, "a.B.n()");
+        assertEquals(2, removed.size());
+        assertFalse(removed.get(0).isRemoved());
+        assertTrue(removed.get(1).isRemoved());
+        assertEquals(3000L, removed.get(1).getTime());
+
+        assertEquals(2, history.getHistory(COMPLEXITY_NAME, "a.A.m()").size());
+        assertTrue(history.getHistory(COMPLEXITY_NAME, "a.C.p()").isEmpty());
+        assertTrue(history.getHistory("unknown", "a.A.m()").isEmpty());
+    }
+
+    /**
+     * Creates a run with the values of a.A.m(), and the lines of a.B.n() unless they are NaN.
+     */
+    private static MetricsRunImpl createRun(long time, double lines, double complexity, double otherLines) {
+        final MetricsRunImpl run = new MetricsRunImpl();
+        run.setProfileName("profile");
+        run.setTimestamp(new TimeStamp(time));
+        final MetricsResult results = run.getResultsForCategory(MetricCategory.Method);
+        results.postValue(LINES, "a.A.m()", lines);
+        results.postValue(COMPLEXITY, "a.A.m()", complexity);
+        if (!Double.isNaN(otherLines)) {
+            results.postValue(LINES, "a.B.n()", otherLines);
+        }
+        return run;
+    }
+
+    private void appendGarbage(String fileName, byte[] bytes) throws IOException {
+        final FileOutputStream out = new FileOutputStream(new File(directory, fileName), true);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2005-2017 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.metrics.metricModel;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+
+public class QuoteEscapingReaderTest {
+
+    @Test
+    public void testValidXmlUnchanged() throws IOException {
+        final String xml = "<?xml version=\"1.0\"?>\n<VALUE measured=\"a.B.c(List&lt;String&gt;)\" value=\"1.0\"/>";
+        assertEquals(xml, readAll(new QuoteEscapingReader(new StringReader(xml)), 8192));
+    }
+
+    @Test
+    public void testLessThanInsideQuotesEscaped() throws IOException {
+        final String xml = "<VALUE measured=\"a.B.c(List<String>)\" value=\"1.0\"/>";
+        final String expected = "<VALUE measured=\"a.B.c(List&lt;String>)\" value=\"1.0\"/>";
+        assertEquals(expected, readAll(new QuoteEscapingReader(new StringReader(xml)), 8192));
+    }
+
+    @Test
+    public void testSmallReads() throws IOException {
+        final String xml = "<A b=\"<<\"/><C d=\"x<y\"/>";
+        final String expected = "<A b=\"&lt;&lt;\"/><C d=\"x&lt;y\"/>";
+        assertEquals(expected, readAll(new QuoteEscapingReader(new StringReader(xml)), 1));
+        assertEquals(expected, readAll(new QuoteEscapingReader(new StringReader(xml)), 3));
+    }
+
+    private static String readAll(Reader reader, int bufferSize) throws IOException {
+        final StringBuilder result = new StringBuilder();
+        final char[] buffer = new char[bufferSize];
+        int count;
+        while ((count = reader.read(buffer, 0, buffer.length)) >= 0) {
+            result.append(buffer, 0, count);
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.sixrr.metrics.metricModel;
+
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricCalculator;
+import com.sixrr.metrics.MetricCategory;
+import com.sixrr.metrics.MetricType;
+import com.sixrr.metrics.profile.MetricRepository;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A metric without a calculator, for tests of the result model.  Snapshots identify metrics by class name, so tests
+ * which need several metrics use a subclass for each, like the ones nested in this class.
+ */
+public class TestMetric implements Metric {
+
+    private final MetricCategory category;
+
+    protected TestMetric(MetricCategory category) {
+        this.category = category;
+    }
+
+    @NotNull
+    @Override
+    public String getID() {
+        return getClass().getSimpleName();
+    }
+
+    @NotNull
+    @Override
+    public String getDisplayName() {
+        return getID();
+    }
+
+    @NotNull
+    @Override
+    public String getAbbreviation() {
+        return getID();
+    }
+
+    @NotNull
+    @Override
+    public MetricCategory getCategory() {
+        return category;
+    }
+
+    @NotNull
+    @Override
+    public MetricType getType() {
+        return MetricType.Count;
+    }
+
+    @Override
+    public String getHelpURL() {
+        return null;
+    }
+
+    @Override
+    public String getHelpDisplayString() {
+        return null;
+    }
+
+    @NotNull
+    @Override
+    public MetricCalculator createCalculator() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns a repository which finds the specified metrics by class name, as snapshots store them.
+     */
+    public static MetricRepository createRepository(final Metric... metrics) {
+        return new MetricRepository() {
+            @Override
+            public Metric getMetric(String fqName) {
+                for (Metric metric : metrics) {
+                    if (fqName.equals(metric.getClass().getName())) {
+                        return metric;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    public static class Lines extends TestMetric {
+        public Lines() {
+            super(MetricCategory.Method);
+        }
+    }
+
+    public static class Complexity extends TestMetric {
+        public Complexity() {
+            super(MetricCategory.Method);
+        }
+    }
+
+    public static class ClassCount extends TestMetric {
+        public ClassCount() {
+            super(MetricCategory.Class);
+        }
+    }
+
+    public static class ClassSize extends TestMetric {
+        public ClassSize() {
+            super(MetricCategory.Class);
+        }
+    }
+
+    public static class AverageComplexity extends TestMetric {
+        public AverageComplexity() {
+            super(MetricCategory.Project);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.sixrr.metrics.offline;
+
+import com.sixrr.metrics.Metric;
+import com.sixrr.metrics.MetricCategory;
+import com.sixrr.metrics.metricModel.MetricsResult;
+import com.sixrr.metrics.metricModel.MetricsRunImpl;
+import com.sixrr.metrics.metricModel.TestMetric;
+import com.sixrr.metrics.profile.MetricInstance;
+import com.sixrr.metrics.profile.MetricInstanceImpl;
+import com.sixrr.metrics.profile.MetricsProfile;
+import com.sixrr.metrics.profile.MetricsProfileImpl;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ThresholdGateTest {
+
+    @Test
+    public void testCreateGateProfile() throws CloneNotSupportedException {
+        final MetricInstance lines = new MetricInstanceImpl(new TestMetric.Lines());
+        lines.setEnabled(true);
+        final MetricInstance complexity = new MetricInstanceImpl(new TestMetric.Complexity());
+        complexity.setEnabled(true);
+        complexity.setUpperThresholdEnabled(true);
+        complexity.setUpperThreshold(10.0);
+        final MetricsProfile profile = new MetricsProfileImpl("profile", Arrays.asList(lines, complexity));
+
+        final MetricsProfile gateProfile = ThresholdGate.createGateProfile(profile);
+        assertNotNull(gateProfile);
+        assertEquals(2, gateProfile.getMetricInstances().size());
+        assertFalse(gateProfile.getMetricInstance(lines.getMetric()).isEnabled());
+        assertTrue(gateProfile.getMetricInstance(complexity.getMetric()).isEnabled());
+
+        // the original profile is left as it was
+        assertEquals(2, profile.getMetricInstances().size());
+        assertTrue(profile.getMetricInstance(lines.getMetric()).isEnabled());
+        assertTrue(profile.getMetricInstance(complexity.getMetric()).isEnabled());
+    }
+
+    @Test
+    public void testNoThresholds() throws CloneNotSupportedException {
+        final MetricInstance lines = new MetricInstanceImpl(new TestMetric.Lines());
+        lines.setEnabled(true);
+        final MetricsProfile profile = new MetricsProfileImpl("profile", Arrays.asList(lines));
+        assertNull(ThresholdGate.createGateProfile(profile));
+        assertTrue(profile.getMetricInstance(lines.getMetric()).isEnabled());
+    }
+
+    @Test
+    public void testExport() throws IOException {
+        final Metric linesMetric = new TestMetric.Lines();
+        final Metric complexityMetric = new TestMetric.Complexity();
+        final MetricInstance lines = new MetricInstanceImpl(linesMetric);
+        lines.setEnabled(true);
+        lines.setUpperThresholdEnabled(true);
+        lines.setUpperThreshold(10.0);
+        final MetricInstance complexity = new MetricInstanceImpl(complexityMetric);
+        complexity.setEnabled(true);
+        complexity.setUpperThresholdEnabled(true);
+        complexity.setUpperThreshold(5.0);
+        final MetricsProfile profile = new MetricsProfileImpl("profile", Arrays.asList(lines, complexity));
+
+        final MetricsRunImpl baseline = new MetricsRunImpl();
+        final MetricsResult baselineResults = baseline.getResultsForCategory(MetricCategory.Method);
+        baselineResults.postValue(linesMetric, "a.A.m()", 20.0);
+        baselineResults.postValue(linesMetric, "a.B.n()", 12.0);
+        // the row is outside the thresholds because of its complexity, but its lines are not
+        baselineResults.postValue(linesMetric, "a.D.p()", 5.0);
+        baselineResults.postValue(complexityMetric, "a.D.p()", 8.0);
+        baselineResults.postValue(linesMetric, "a.E.q()", 4.0);
+
+        final MetricsRunImpl run = new MetricsRunImpl();
+        final MetricsResult results = run.getResultsForCategory(MetricCategory.Method);
+        results.postValue(linesMetric, "a.A.m()", 20.0);
+        results.postValue(linesMetric, "a.B.n()", 15.0);
+        results.postValue(linesMetric, "a.C.o()", 11.0);
+        results.postValue(linesMetric, "a.D.p()", 12.0);
+        results.postValue(complexityMetric, "a.D.p()", 2.0);
+        results.postValue(linesMetric, "a.E.q()", 4.0);
+
+        final ThresholdGate gate = new ThresholdGate(run, baseline, profile);
+        final StringWriter out = new StringWriter();
+        final PrintWriter writer = new PrintWriter(out);
+        gate.export(writer);
+        writer.flush();
+        final String[] outputLines = out.toString().split("\\r?\\n");
+        assertEquals("category,measured object,metric,baseline,value,status", outputLines[0]);
+        final Set<String> violations = new HashSet<String>(Arrays.asList(outputLines).subList(1, outputLines.length));
+        assertEquals(new HashSet<String>(Arrays.asList(
+                "Method,\"a.A.m()\",Lines,20.0,20.0,existing",
+                "Method,\"a.B.n()\",Lines,12.0,15.0,worse",
+                "Method,\"a.C.o()\",Lines,n/a,11.0,new",
+                "Method,\"a.D.p()\",Lines,n/a,12.0,new")), violations);
+        assertEquals(3, gate.getFailures());
+
+        // without a baseline every violation is new
+        final ThresholdGate noBaselineGate = new ThresholdGate(run, null, profile);
+        noBaselineGate.export(new PrintWriter(new StringWriter()));
+        assertEquals(4, noBaselineGate.getFailures());
+    }
+}
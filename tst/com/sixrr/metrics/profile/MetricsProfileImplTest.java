@@ -0,0 +1,58 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.sixrr.metrics.profile;
+
+import com.sixrr.metrics.metricModel.TestMetric;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MetricsProfileImplTest {
+
+    @Test
+    public void testClone() throws CloneNotSupportedException {
+        final MetricInstance lines = new MetricInstanceImpl(new TestMetric.Lines());
+        lines.setEnabled(true);
+        final MetricInstance complexity = new MetricInstanceImpl(new TestMetric.Complexity());
+        complexity.setEnabled(true);
+        complexity.setUpperThresholdEnabled(true);
+        complexity.setUpperThreshold(10.0);
+        final MetricsProfileImpl profile = new MetricsProfileImpl("profile", Arrays.asList(lines, complexity));
+
+        final MetricsProfileImpl copy = profile.clone();
+        assertEquals("profile", copy.getName());
+        final List<MetricInstance> copiedInstances = copy.getMetricInstances();
+        assertEquals(2, copiedInstances.size());
+        final MetricInstance copiedLines = copy.getMetricInstance(lines.getMetric());
+        assertNotNull(copiedLines);
+        assertNotSame(lines, copiedLines);
+        assertEquals(10.0, copy.getMetricInstance(complexity.getMetric()).getUpperThreshold(), 0.0);
+
+        // changes to the copy do not affect the original
+        copiedLines.setEnabled(false);
+        copy.addMetricInstance(new MetricInstanceImpl(new TestMetric.ClassSize()));
+        assertEquals(2, profile.getMetricInstances().size());
+        assertSame(lines, profile.getMetricInstance(lines.getMetric()));
+        assertTrue(lines.isEnabled());
+        assertSame(complexity, profile.getMetricInstance(complexity.getMetric()));
+        assertEquals(3, copy.getMetricInstances().size());
+    }
+}
@@ -54,6 +54,18 @@ public class Bag<T> {
         }
     }
 
+    public void merge(Bag<T> bag) {
+        for (Map.Entry<T, Integer> entry : bag.contents.entrySet()) {
+            final T obj = entry.getKey();
+            final Integer currentValue = contents.get(obj);
+            if (currentValue != null) {
+                contents.put(obj, currentValue + entry.getValue());
+            } else {
+                contents.put(obj, entry.getValue());
+            }
+        }
+    }
+
     public void loadFrom(Bag<T> bag) {
         contents.clear();
         contents.putAll(bag.contents);
@@ -17,6 +17,7 @@
 package com.sixrr.metrics.utils;
 
 import gnu.trove.TObjectIntHashMap;
+import gnu.trove.TObjectIntProcedure;
 import gnu.trove.TObjectProcedure;
 import org.jetbrains.annotations.NotNull;
 
@@ -64,6 +65,16 @@ public class BucketedCount<T> {
         return buckets.get(bucketName);
     }
 
+    public void merge(@NotNull BucketedCount<T> other) {
+        other.buckets.forEachEntry(new TObjectIntProcedure<T>() {
+            @Override
+            public boolean execute(T bucketName, int value) {
+                incrementBucketValue(bucketName, value);
+                return true;
+            }
+        });
+    }
+
     public void clear() {
         buckets.clear();
     }
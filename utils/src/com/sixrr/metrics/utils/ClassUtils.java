@@ -20,11 +20,8 @@ import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.roots.ProjectFileIndex;
 import com.intellij.openapi.roots.ProjectRootManager;
-import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
-import com.intellij.psi.search.searches.ClassInheritorsSearch;
-import com.intellij.psi.search.searches.DirectClassInheritorsSearch;
 import com.intellij.psi.util.PsiTreeUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -34,8 +31,6 @@ import java.util.List;
 
 public final class ClassUtils {
 
-    private static final Key<Integer> SUBCLASS_COUNT = new Key<Integer>("MetricsReloadedSubclassCount");
-
     private ClassUtils() {}
 
     @Nullable
@@ -47,20 +42,6 @@ public final class ClassUtils {
         return file.getFileType();
     }
 
-    public static int calculateSubclassCount(final PsiClass aClass) {
-        final Integer subclassCount = aClass.getUserData(SUBCLASS_COUNT);
-        if (subclassCount != null) {
-            return subclassCount.intValue();
-        }
-        if (aClass.hasModifierProperty(PsiModifier.FINAL)) {
-            aClass.putUserData(SUBCLASS_COUNT, Integer.valueOf(0));
-            return 0;
-        }
-        final int size = ClassInheritorsSearch.search(aClass).findAll().size();
-        aClass.putUserData(SUBCLASS_COUNT, Integer.valueOf(size));
-        return size;
-    }
-
     @NotNull
     public static String calculatePackageName(PsiElement element) {
         final PsiFile file = element.getContainingFile();
@@ -132,13 +113,6 @@ public final class ClassUtils {
         return superClass == null || "java.lang.Object".equals(superClass.getQualifiedName());
     }
 
-    public static boolean isLeaf(PsiClass aClass) {
-        if (aClass.isInterface()) {
-            return false;
-        }
-        return DirectClassInheritorsSearch.search(aClass).findFirst() == null;
-    }
-
     @Nullable
     public static PsiPackage findPackage(PsiElement element) {
         if (element == null) {
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2005-2016 Sixth and Red River Software, Bas Leijdekkers
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.sixrr.metrics.utils;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.util.ConcurrencyUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public final class ParallelUtils {
+
+    private ParallelUtils() {}
+
+    /**
+     * Runs every task on its own worker thread under the specified progress indicator, and waits until all of them
+     * have finished.  The first exception thrown by a task is rethrown on the calling thread, and cancellation of the
+     * indicator or interruption of the calling thread is reported as a {@link ProcessCanceledException}.
+     */
+    public static void runInParallel(List<? extends Runnable> tasks, final ProgressIndicator indicator) {
+        final ExecutorService executor = createExecutor(tasks.size());
+        try {
+            final List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size());
+            for (final Runnable task : tasks) {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        ProgressManager.getInstance().executeProcessUnderProgress(task, indicator);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                waitFor(future);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates an executor with the specified number of worker threads.  The caller is responsible for shutting it
+     * down.
+     */
+    public static ExecutorService createExecutor(int numThreads) {
+        return Executors.newFixedThreadPool(numThreads, ConcurrencyUtil.newNamedThreadFactory("MetricsReloaded"));
+    }
+
+    /**
+     * Waits for a future and returns its result.  An exception thrown by the computation is rethrown on the calling
+     * thread, and interruption of the calling thread is reported as a {@link ProcessCanceledException}.
+     */
+    public static <T> T waitFor(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+}